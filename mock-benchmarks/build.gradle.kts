@@ -0,0 +1,61 @@
+plugins {
+    java
+    id("keycloak-mock.base")
+    alias(libs.plugins.jmh)
+}
+
+description = "Benchmarks and load tests for keycloak-mock"
+
+extensions.configure<JavaPluginExtension>("java") {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(libs.versions.jvmTest.get().toInt()))
+    }
+}
+
+dependencies {
+    implementation(project(":mock"))
+    implementation(libs.jsr305)
+    implementation(libs.picocli)
+    implementation(libs.vertx.web.client)
+    runtimeOnly(libs.slf4j.simple)
+    jmhImplementation(project(":mock"))
+    jmhImplementation(libs.jjwt.impl)
+    jmhImplementation(libs.jsr305)
+    jmhRuntimeOnly(libs.slf4j.simple)
+}
+
+val jmhResults = layout.buildDirectory.file("results/jmh/results.json")
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    // fixed settings, so that results of different runs can be compared
+    fork = 2
+    warmupIterations = 5
+    warmup = "1s"
+    iterations = 10
+    timeOnIteration = "1s"
+    jvmArgs.addAll("-Xms1g", "-Xmx1g")
+    profilers.add("gc")
+    resultFormat = "JSON"
+    resultsFile = jmhResults
+    humanOutputFile = layout.buildDirectory.file("results/jmh/human.txt")
+    // run a subset with e.g. -PjmhIncludes=TokenGenerator
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
+
+tasks.register<Copy>("jmhBaseline") {
+    group = "benchmark"
+    description = "Runs all benchmarks and stores the results as the new baseline"
+    dependsOn("jmh")
+    from(jmhResults)
+    into(layout.projectDirectory.dir("baseline"))
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "benchmark"
+    description = "Runs the load test against an in-process mock, pass options with -PloadTestArgs"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "com.tngtech.keycloakmock.loadtest.LoadTest"
+    args("--report", layout.buildDirectory.file("results/loadtest/report.txt").get().asFile.path)
+    providers.gradleProperty("loadTestArgs").orNull?.let { args(it.split(" ")) }
+}
@@ -0,0 +1,81 @@
+package com.tngtech.keycloakmock.api;
+
+import static com.tngtech.keycloakmock.api.TokenConfig.aTokenConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeycloakMockBenchmark {
+  @Param({"1000"})
+  public int batchSize;
+
+  private KeycloakMock keycloakMock;
+  private List<TokenConfig> tokenConfigs;
+
+  @Setup
+  public void setup() {
+    keycloakMock = new KeycloakMock();
+    tokenConfigs = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      tokenConfigs.add(aTokenConfig().withSubject("user-" + i).withRealmRole("user").build());
+    }
+  }
+
+  @Benchmark
+  public List<String> getAccessTokenSequentially() {
+    List<String> tokens = new ArrayList<>(tokenConfigs.size());
+    for (TokenConfig tokenConfig : tokenConfigs) {
+      tokens.add(keycloakMock.getAccessToken(tokenConfig));
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public List<String> getAccessTokensForCollection() {
+    return keycloakMock.getAccessTokens(tokenConfigs);
+  }
+
+  @Benchmark
+  public List<String> getAccessTokensForStream() {
+    return keycloakMock.getAccessTokens(tokenConfigs.stream()).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<String> getAccessTokensForCollectionWithExecutor(ExecutorState executorState) {
+    return keycloakMock.getAccessTokens(tokenConfigs, executorState.executor);
+  }
+
+  // shows how the throughput scales with the number of cores used to sign the tokens
+  @State(Scope.Benchmark)
+  public static class ExecutorState {
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    ForkJoinPool executor;
+
+    @Setup
+    public void setup() {
+      executor = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+      executor.shutdown();
+    }
+  }
+}
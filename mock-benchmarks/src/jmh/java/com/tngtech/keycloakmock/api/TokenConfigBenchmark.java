@@ -0,0 +1,46 @@
+package com.tngtech.keycloakmock.api;
+
+import static com.tngtech.keycloakmock.api.TokenConfig.aTokenConfig;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenConfigBenchmark {
+  private String sourceToken;
+
+  @Setup
+  public void setup() {
+    sourceToken = new KeycloakMock().getAccessToken(createBuilder().build());
+  }
+
+  @Benchmark
+  public TokenConfig build() {
+    return createBuilder().build();
+  }
+
+  @Benchmark
+  public TokenConfig withSourceToken() {
+    return aTokenConfig().withSourceToken(sourceToken).build();
+  }
+
+  private static TokenConfig.Builder createBuilder() {
+    return aTokenConfig()
+        .withSubjectAndGeneratedUserData("john.doe")
+        .withAudience("backend")
+        .withAuthorizedParty("frontend")
+        .withScope("profile")
+        .withRealmRole("user")
+        .withResourceRole("backend", "reader")
+        .withResourceRole("backend", "writer")
+        .withClaim("tenant", "benchmark");
+  }
+}
@@ -0,0 +1,97 @@
+package com.tngtech.keycloakmock.impl;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static com.tngtech.keycloakmock.api.TokenConfig.aTokenConfig;
+
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import com.tngtech.keycloakmock.api.TokenConfig;
+import com.tngtech.keycloakmock.impl.dagger.DaggerSignatureComponent;
+import io.jsonwebtoken.Claims;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenGeneratorBenchmark {
+
+  @Benchmark
+  public String getToken(SigningState state) {
+    return state.tokenGenerator.getToken(state.tokenConfig, state.urlConfiguration);
+  }
+
+  @Benchmark
+  public Claims parseToken(ParsingState state) {
+    return state.tokenGenerator.parseToken(state.token);
+  }
+
+  @State(Scope.Benchmark)
+  public static class SigningState {
+    @Param({"RS256", "ES256", "ED25519"})
+    public SigningAlgorithm signingAlgorithm;
+
+    TokenGenerator tokenGenerator;
+    TokenConfig tokenConfig;
+    UrlConfiguration urlConfiguration;
+
+    @Setup
+    public void setup() {
+      tokenGenerator = createTokenGenerator(signingAlgorithm, 0);
+      tokenConfig = createTokenConfig();
+      urlConfiguration = new UrlConfigurationFactory(aServerConfig().build()).create(null, null);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ParsingState {
+    @Param({"RS256", "ES256", "ED25519"})
+    public SigningAlgorithm signingAlgorithm;
+
+    // 0 disables the cache of verified tokens, so every call verifies the signature
+    @Param({"0", "1000"})
+    public int verifiedTokenCacheSize;
+
+    TokenGenerator tokenGenerator;
+    String token;
+
+    @Setup
+    public void setup() {
+      tokenGenerator = createTokenGenerator(signingAlgorithm, verifiedTokenCacheSize);
+      token =
+          tokenGenerator.getToken(
+              createTokenConfig(),
+              new UrlConfigurationFactory(aServerConfig().build()).create(null, null));
+    }
+  }
+
+  private static TokenGenerator createTokenGenerator(
+      SigningAlgorithm signingAlgorithm, int verifiedTokenCacheSize) {
+    return DaggerSignatureComponent.builder()
+        .defaultScopes(Collections.singletonList("openid"))
+        .defaultAudiences(Collections.singletonList("server"))
+        .defaultTokenLifespan(Duration.ofHours(10))
+        .signingAlgorithm(signingAlgorithm)
+        .verifiedTokenCacheSize(verifiedTokenCacheSize)
+        .build()
+        .tokenGenerator();
+  }
+
+  private static TokenConfig createTokenConfig() {
+    return aTokenConfig()
+        .withSubjectAndGeneratedUserData("john.doe")
+        .withAudience("backend")
+        .withAuthorizedParty("frontend")
+        .withRealmRole("user")
+        .withResourceRole("backend", "reader")
+        .withClaim("tenant", "benchmark")
+        .build();
+  }
+}
@@ -0,0 +1,49 @@
+package com.tngtech.keycloakmock.impl;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UrlConfigurationBenchmark {
+  private UrlConfigurationFactory urlConfigurationFactory;
+  private UrlConfiguration urlConfiguration;
+
+  @Setup
+  public void setup() {
+    urlConfigurationFactory =
+        new UrlConfigurationFactory(aServerConfig().withDefaultHostname("keycloak").build());
+    urlConfiguration = urlConfigurationFactory.create("localhost:8000", "benchmark");
+  }
+
+  @Benchmark
+  public UrlConfiguration create() {
+    return urlConfigurationFactory.create("localhost:8000", "benchmark");
+  }
+
+  @Benchmark
+  public void resolveEndpoints(Blackhole blackhole) {
+    blackhole.consume(urlConfiguration.getIssuer());
+    blackhole.consume(urlConfiguration.getAuthorizationEndpoint());
+    blackhole.consume(urlConfiguration.getTokenEndpoint());
+    blackhole.consume(urlConfiguration.getJwksUri());
+    blackhole.consume(urlConfiguration.getEndSessionEndpoint());
+  }
+
+  @Benchmark
+  public void createAndResolveEndpoints(Blackhole blackhole) {
+    UrlConfiguration configuration = urlConfigurationFactory.create("localhost:8000", "benchmark");
+    blackhole.consume(configuration.getIssuer());
+    blackhole.consume(configuration.getTokenEndpoint());
+  }
+}
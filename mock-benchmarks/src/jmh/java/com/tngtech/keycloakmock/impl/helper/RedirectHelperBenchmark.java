@@ -0,0 +1,85 @@
+package com.tngtech.keycloakmock.impl.helper;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+
+import com.tngtech.keycloakmock.api.LoginRoleMapping;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import com.tngtech.keycloakmock.impl.UrlConfiguration;
+import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
+import com.tngtech.keycloakmock.impl.dagger.DaggerSignatureComponent;
+import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.SessionRequest;
+import com.tngtech.keycloakmock.impl.session.UserData;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RedirectHelperBenchmark {
+  private static final Duration TOKEN_LIFESPAN = Duration.ofHours(10);
+
+  // "code" only builds the URI, the implicit flow also needs signed tokens
+  @Param({"code", "id_token token"})
+  public String responseType;
+
+  private RedirectHelper redirectHelper;
+  private UrlConfiguration urlConfiguration;
+  private SessionRequest sessionRequest;
+  private UserData userData;
+  private List<String> roles;
+  private PersistentSession existingSession;
+
+  @Setup
+  public void setup() {
+    List<String> audiences = Collections.singletonList("server");
+    TokenHelper tokenHelper =
+        new TokenHelper(
+            DaggerSignatureComponent.builder()
+                .defaultScopes(Collections.singletonList("openid"))
+                .defaultAudiences(audiences)
+                .defaultTokenLifespan(TOKEN_LIFESPAN)
+                .signingAlgorithm(SigningAlgorithm.RS256)
+                .verifiedTokenCacheSize(0)
+                .build()
+                .tokenGenerator(),
+            audiences,
+            LoginRoleMapping.TO_BOTH,
+            TOKEN_LIFESPAN);
+    redirectHelper = new RedirectHelper(tokenHelper);
+    urlConfiguration = new UrlConfigurationFactory(aServerConfig().build()).create(null, null);
+    sessionRequest =
+        new SessionRequest.Builder()
+            .setClientId("frontend")
+            .setSessionId("7f2c1a4e-0d5b-4c9e-9a31-2b8f6e4d1c07")
+            .setState("state")
+            .setRedirectUri("http://localhost:3000/callback?existing=parameter")
+            .setResponseType(responseType)
+            .setNonce("nonce")
+            .build();
+    userData = UserData.fromUsernameAndHostname("john.doe", "localhost");
+    roles = Collections.singletonList("user");
+    existingSession = sessionRequest.toSession(userData, roles);
+  }
+
+  @Benchmark
+  public String getRedirectLocationForNewSession() {
+    return redirectHelper.getRedirectLocation(
+        sessionRequest.toSession(userData, roles), urlConfiguration);
+  }
+
+  @Benchmark
+  public String getRedirectLocationForExistingSession() {
+    return redirectHelper.getRedirectLocation(existingSession, urlConfiguration);
+  }
+}
@@ -0,0 +1,100 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(Threads.MAX)
+public class SessionRepositoryBenchmark {
+  private static final UserData USER_DATA =
+      UserData.fromUsernameAndHostname("john.doe", "localhost");
+  private static final List<String> ROLES = Collections.singletonList("user");
+
+  /** Runs a full login: request, session, lookup and logout. */
+  @Benchmark
+  public PersistentSession requestToSessionToLogout(
+      RepositoryState repositoryState, ThreadState threadState) {
+    SessionRepository repository = repositoryState.repository;
+    String sessionId = threadState.nextSessionId();
+    repository.putRequest(createRequest(sessionId));
+    SessionRequest request = repository.getRequest(sessionId);
+    repository.upgradeRequest(request, request.toSession(USER_DATA, ROLES));
+    PersistentSession session = repository.getSession(sessionId);
+    repository.removeSession(sessionId);
+    return session;
+  }
+
+  /** Looks up an existing session, e.g. when refreshing a token. */
+  @Benchmark
+  public PersistentSession getSession(RepositoryState repositoryState, ThreadState threadState) {
+    return repositoryState.repository.getSession(
+        repositoryState.existingSessionIds[threadState.nextExistingIndex()]);
+  }
+
+  private static SessionRequest createRequest(String sessionId) {
+    return new SessionRequest.Builder()
+        .setClientId("frontend")
+        .setSessionId(sessionId)
+        .setRedirectUri("http://localhost:3000/callback")
+        .setResponseType("code")
+        .build();
+  }
+
+  @State(Scope.Benchmark)
+  public static class RepositoryState {
+    @Param({"10000"})
+    public int existingSessions;
+
+    SessionRepository repository;
+    String[] existingSessionIds;
+
+    @Setup
+    public void setup() {
+      // expired entries are never swept, the benchmark only covers the cost of scheduling them
+      repository = new SessionRepository(aServerConfig().build(), System::currentTimeMillis, false);
+      existingSessionIds = new String[existingSessions];
+      for (int i = 0; i < existingSessions; i++) {
+        String sessionId = "existing-" + i;
+        existingSessionIds[i] = sessionId;
+        SessionRequest request = createRequest(sessionId);
+        repository.putRequest(request);
+        repository.upgradeRequest(request, request.toSession(USER_DATA, ROLES));
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private final String prefix = "benchmark-" + Thread.currentThread().getId() + "-";
+    private long counter;
+    private int existingIndex;
+    private int existingSessions;
+
+    @Setup
+    public void setup(RepositoryState repositoryState) {
+      existingSessions = repositoryState.existingSessions;
+    }
+
+    String nextSessionId() {
+      return prefix + counter++;
+    }
+
+    int nextExistingIndex() {
+      existingIndex = existingIndex + 1 == existingSessions ? 0 : existingIndex + 1;
+      return existingIndex;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserDataBenchmark {
+  @Param({"john.doe", "john.doe@example.com", "John Doe"})
+  public String username;
+
+  @Benchmark
+  public UserData fromUsernameAndHostname() {
+    return UserData.fromUsernameAndHostname(username, "localhost");
+  }
+}
@@ -0,0 +1,71 @@
+package com.tngtech.keycloakmock.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+
+/**
+ * Sends requests at a fixed rate, independent of how fast they are answered.
+ *
+ * <p>In contrast to a closed loop, where each client waits for a response before sending the next
+ * request, a slow response does not delay later requests. Latencies are measured from the time a
+ * request was scheduled to be sent, so a server that cannot keep up shows growing latencies instead
+ * of a lower request rate (avoiding coordinated omission).
+ */
+class LoadGenerator {
+  // time to wait for the responses after the last request has been sent
+  private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(30);
+
+  @Nonnull private final LoadTestClient client;
+
+  LoadGenerator(@Nonnull LoadTestClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Run a scenario.
+   *
+   * @param scenario the scenario to run
+   * @param rate the number of requests per second
+   * @param duration the time during which requests are sent
+   * @return the result
+   * @throws InterruptedException if interrupted while waiting for the responses
+   */
+  @Nonnull
+  ScenarioResult run(@Nonnull Scenario scenario, int rate, @Nonnull Duration duration)
+      throws InterruptedException {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    int count = (int) Math.max(1, duration.toNanos() / intervalNanos);
+    long[] latencies = new long[count];
+    AtomicInteger errors = new AtomicInteger();
+    CountDownLatch completed = new CountDownLatch(count);
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      long scheduled = start + i * intervalNanos;
+      long delay;
+      while ((delay = scheduled - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(delay);
+      }
+      int index = i;
+      scenario
+          .run(client)
+          .onComplete(
+              result -> {
+                latencies[index] = System.nanoTime() - scheduled;
+                if (result.failed()) {
+                  errors.incrementAndGet();
+                }
+                completed.countDown();
+              });
+    }
+    if (!completed.await(COMPLETION_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+      throw new IllegalStateException(
+          "Scenario " + scenario + " did not complete within " + COMPLETION_TIMEOUT);
+    }
+    long elapsed = System.nanoTime() - start;
+    return new ScenarioResult(scenario, latencies, errors.get(), elapsed);
+  }
+}
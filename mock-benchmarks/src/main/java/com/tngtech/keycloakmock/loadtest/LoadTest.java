@@ -0,0 +1,193 @@
+package com.tngtech.keycloakmock.loadtest;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+
+import com.tngtech.keycloakmock.api.AccessLogMode;
+import com.tngtech.keycloakmock.api.KeycloakMock;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nonnull;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    description = "Runs an open-loop load test against an in-process keycloak mock.",
+    name = "load-test",
+    mixinStandardHelpOptions = true)
+public class LoadTest implements Callable<Integer> {
+  private static final String REALM = "load-test";
+
+  @Option(
+      names = {"-s", "--scenarios"},
+      description =
+          "Scenarios to run, one after the other (default: all). Valid options:"
+              + " ${COMPLETION-CANDIDATES}",
+      paramLabel = "SCENARIO",
+      split = ",")
+  private List<Scenario> scenarios;
+
+  @Option(
+      names = {"-r", "--rate"},
+      defaultValue = "500",
+      description = "Requests per second sent in each scenario (default: ${DEFAULT-VALUE}).")
+  private int rate;
+
+  @Option(
+      names = {"-d", "--duration"},
+      defaultValue = "30s",
+      description = "Measurement time per scenario (default: ${DEFAULT-VALUE}).")
+  private String duration;
+
+  @Option(
+      names = {"-w", "--warmup"},
+      defaultValue = "10s",
+      description =
+          "Warmup time per scenario, not included in the results (default: ${DEFAULT-VALUE}).")
+  private String warmup;
+
+  @Option(
+      names = {"-c", "--connections"},
+      defaultValue = "64",
+      description = "Maximum number of client connections (default: ${DEFAULT-VALUE}).")
+  private int connections;
+
+  @Option(
+      names = {"-p", "--port"},
+      defaultValue = "8000",
+      description = "The port on which to run the mock (default: ${DEFAULT-VALUE}).")
+  private int port;
+
+  @Option(
+      names = {"-sa", "--signingAlgorithm"},
+      defaultValue = "RS256",
+      description =
+          "Algorithm used to sign generated tokens (default: ${DEFAULT-VALUE}). Valid options:"
+              + " ${COMPLETION-CANDIDATES}")
+  private SigningAlgorithm signingAlgorithm;
+
+  @Option(
+      names = {"-si", "--serverInstances"},
+      defaultValue = "1",
+      description = "Number of HTTP server instances of the mock (default: ${DEFAULT-VALUE}).")
+  private int serverInstances;
+
+  @Option(
+      names = {"-o", "--report"},
+      description = "File to write the report to, in addition to the console.")
+  private Path report;
+
+  public static void main(@Nonnull final String[] args) {
+    System.exit(new CommandLine(new LoadTest()).execute(args));
+  }
+
+  @Override
+  public Integer call() throws InterruptedException, IOException {
+    KeycloakMock keycloakMock =
+        new KeycloakMock(
+            aServerConfig()
+                .withPort(port)
+                .withDefaultRealm(REALM)
+                .withSigningAlgorithm(signingAlgorithm)
+                .withServerInstances(serverInstances)
+                // logging every request would measure the logger rather than the mock
+                .withAccessLogMode(AccessLogMode.DISABLED)
+                // the authorization code scenario exchanges the same code for the whole run
+                .withAuthorizationCodeTtl(Duration.ZERO)
+                .build());
+    Vertx vertx = Vertx.vertx();
+    keycloakMock.start();
+    try {
+      WebClient webClient =
+          WebClient.create(
+              vertx,
+              new WebClientOptions()
+                  .setDefaultHost("localhost")
+                  .setDefaultPort(port)
+                  .setMaxPoolSize(connections)
+                  .setTcpNoDelay(true));
+      LoadTestClient client = new LoadTestClient(webClient, "/auth", REALM);
+      await(client.prepare(), "Unable to log in to the mock");
+
+      Duration measurementTime = parseDuration(duration);
+      Duration warmupTime = parseDuration(warmup);
+      LoadGenerator generator = new LoadGenerator(client);
+
+      List<String> lines = new ArrayList<>();
+      print(
+          lines,
+          String.format(
+              Locale.ROOT,
+              "rate: %d req/s, duration: %s, warmup: %s, connections: %d, algorithm: %s",
+              rate,
+              duration,
+              warmup,
+              connections,
+              signingAlgorithm));
+      print(lines, ScenarioResult.HEADER);
+      int errors = 0;
+      for (Scenario scenario : scenarios != null ? scenarios : Arrays.asList(Scenario.values())) {
+        if (!warmupTime.isZero()) {
+          generator.run(scenario, rate, warmupTime);
+        }
+        ScenarioResult result = generator.run(scenario, rate, measurementTime);
+        errors += result.getErrorCount();
+        print(lines, result.toString());
+      }
+      if (report != null) {
+        writeReport(lines);
+      }
+      return errors == 0 ? 0 : 1;
+    } finally {
+      await(vertx.close(), "Unable to close the client");
+      keycloakMock.stop();
+    }
+  }
+
+  private static void print(@Nonnull List<String> lines, @Nonnull String line) {
+    lines.add(line);
+    System.out.println(line);
+  }
+
+  private void writeReport(@Nonnull List<String> lines) throws IOException {
+    Path parent = report.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (PrintWriter writer =
+        new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+      lines.forEach(writer::println);
+    }
+  }
+
+  private static void await(@Nonnull Future<?> future, @Nonnull String errorMessage)
+      throws InterruptedException {
+    try {
+      future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new IllegalStateException(errorMessage, e);
+    }
+  }
+
+  private static Duration parseDuration(@Nonnull String duration) {
+    // simple trick: just interpret the given string as the suffix part of a Duration string
+    return Duration.parse("PT" + duration.toUpperCase(Locale.ROOT));
+  }
+}
@@ -0,0 +1,177 @@
+package com.tngtech.keycloakmock.loadtest;
+
+import static io.vertx.core.http.HttpResponseExpectation.SC_FOUND;
+import static io.vertx.core.http.HttpResponseExpectation.SC_OK;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/** Sends the requests of all load test scenarios to a running mock. */
+class LoadTestClient {
+  private static final Pattern FORM_ACTION = Pattern.compile("<form action=\"([^\"]+)\"");
+  private static final Pattern CODE = Pattern.compile("[?&]code=([^&#]+)");
+  private static final String CLIENT_ID = "load-test";
+  private static final String USERNAME = "load-test-user";
+  private static final String ROLES = "role1,role2";
+
+  @Nonnull private final WebClient webClient;
+  @Nonnull private final String realmPath;
+  @Nonnull private final String openIdPath;
+
+  // results of the initial login, used by the scenarios that need an existing session or token
+  @Nullable private String authorizationCode;
+  @Nullable private String accessToken;
+  @Nullable private String refreshToken;
+
+  LoadTestClient(@Nonnull WebClient webClient, @Nonnull String contextPath, @Nonnull String realm) {
+    this.webClient = webClient;
+    this.realmPath = contextPath + "/realms/" + realm;
+    this.openIdPath = realmPath + "/protocol/openid-connect";
+  }
+
+  /**
+   * Log in once to get an authorization code, an access token and a refresh token.
+   *
+   * @return a future that completes once the login has finished
+   */
+  @Nonnull
+  Future<Void> prepare() {
+    return login()
+        .compose(
+            code -> {
+              authorizationCode = code;
+              return exchangeCode(code);
+            })
+        .map(
+            json -> {
+              accessToken = json.getString("access_token");
+              refreshToken = json.getString("refresh_token");
+              return null;
+            });
+  }
+
+  @Nonnull
+  Future<?> clientCredentials() {
+    return postToken(
+        MultiMap.caseInsensitiveMultiMap()
+            .add("grant_type", "client_credentials")
+            .add("client_id", CLIENT_ID)
+            .add("client_secret", ROLES));
+  }
+
+  @Nonnull
+  Future<?> password() {
+    return postToken(
+        MultiMap.caseInsensitiveMultiMap()
+            .add("grant_type", "password")
+            .add("client_id", CLIENT_ID)
+            .add("username", USERNAME)
+            .add("password", ROLES));
+  }
+
+  @Nonnull
+  Future<?> authorizationCode() {
+    return exchangeCode(prepared(authorizationCode));
+  }
+
+  @Nonnull
+  Future<?> refreshToken() {
+    return postToken(
+        MultiMap.caseInsensitiveMultiMap()
+            .add("grant_type", "refresh_token")
+            .add("refresh_token", prepared(refreshToken)));
+  }
+
+  @Nonnull
+  Future<?> introspect() {
+    return webClient
+        .post(openIdPath + "/token/introspect")
+        .sendForm(
+            MultiMap.caseInsensitiveMultiMap()
+                .add("token", prepared(accessToken))
+                .add("client_id", CLIENT_ID))
+        .expecting(SC_OK);
+  }
+
+  @Nonnull
+  Future<?> certs() {
+    return webClient.get(openIdPath + "/certs").send().expecting(SC_OK);
+  }
+
+  @Nonnull
+  Future<?> wellKnown() {
+    return webClient.get(realmPath + "/.well-known/openid-configuration").send().expecting(SC_OK);
+  }
+
+  /** Run the full login flow: open the login page, authenticate and exchange the code. */
+  @Nonnull
+  Future<?> loginFlow() {
+    return login().compose(this::exchangeCode);
+  }
+
+  @Nonnull
+  private Future<String> login() {
+    return webClient
+        .get(openIdPath + "/auth")
+        .addQueryParam("client_id", CLIENT_ID)
+        .addQueryParam("redirect_uri", "http://localhost/callback")
+        .addQueryParam("state", "state")
+        .addQueryParam("nonce", "nonce")
+        .addQueryParam("response_type", "code")
+        .send()
+        .expecting(SC_OK)
+        .map(response -> extract(FORM_ACTION, response.bodyAsString()))
+        .compose(
+            action ->
+                webClient
+                    .postAbs(action)
+                    .followRedirects(false)
+                    .sendForm(
+                        MultiMap.caseInsensitiveMultiMap()
+                            .add("username", USERNAME)
+                            .add("password", ROLES))
+                    .expecting(SC_FOUND))
+        .map(response -> extract(CODE, response.getHeader("Location")));
+  }
+
+  @Nonnull
+  private Future<JsonObject> exchangeCode(@Nonnull String code) {
+    return postToken(
+        MultiMap.caseInsensitiveMultiMap()
+            .add("grant_type", "authorization_code")
+            .add("code", code));
+  }
+
+  @Nonnull
+  private Future<JsonObject> postToken(@Nonnull MultiMap form) {
+    return webClient
+        .post(openIdPath + "/token")
+        .sendForm(form)
+        .expecting(SC_OK)
+        .map(HttpResponse::bodyAsJsonObject);
+  }
+
+  @Nonnull
+  private static String extract(@Nonnull Pattern pattern, @Nullable String input) {
+    Matcher matcher = pattern.matcher(input == null ? "" : input);
+    if (!matcher.find()) {
+      throw new IllegalStateException("Unexpected response: " + input);
+    }
+    return matcher.group(1);
+  }
+
+  @Nonnull
+  private static String prepared(@Nullable String value) {
+    if (value == null) {
+      throw new IllegalStateException("Client has not been prepared");
+    }
+    return value;
+  }
+}
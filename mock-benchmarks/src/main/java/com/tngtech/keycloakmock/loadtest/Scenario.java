@@ -0,0 +1,36 @@
+package com.tngtech.keycloakmock.loadtest;
+
+import io.vertx.core.Future;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/** The requests that can be sent during a load test. */
+enum Scenario {
+  /** Token endpoint, client credentials grant. */
+  CLIENT_CREDENTIALS(LoadTestClient::clientCredentials),
+  /** Token endpoint, resource owner password credentials grant. */
+  PASSWORD(LoadTestClient::password),
+  /** Token endpoint, authorization code grant for an existing session. */
+  AUTHORIZATION_CODE(LoadTestClient::authorizationCode),
+  /** Token endpoint, refresh token grant. */
+  REFRESH_TOKEN(LoadTestClient::refreshToken),
+  /** Token introspection endpoint. */
+  INTROSPECT(LoadTestClient::introspect),
+  /** JWKS endpoint. */
+  CERTS(LoadTestClient::certs),
+  /** OpenID discovery endpoint. */
+  WELL_KNOWN(LoadTestClient::wellKnown),
+  /** Login page, authentication and code exchange, measured as a single operation. */
+  LOGIN_FLOW(LoadTestClient::loginFlow);
+
+  @Nonnull private final Function<LoadTestClient, Future<?>> operation;
+
+  Scenario(@Nonnull Function<LoadTestClient, Future<?>> operation) {
+    this.operation = operation;
+  }
+
+  @Nonnull
+  Future<?> run(@Nonnull LoadTestClient client) {
+    return operation.apply(client);
+  }
+}
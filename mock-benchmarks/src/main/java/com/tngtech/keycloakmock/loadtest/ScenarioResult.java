@@ -0,0 +1,75 @@
+package com.tngtech.keycloakmock.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+/** Throughput and latency distribution of a single scenario run. */
+class ScenarioResult {
+  static final String HEADER =
+      String.format(
+          Locale.ROOT,
+          "%-20s %10s %8s %12s %10s %10s %10s %10s",
+          "scenario",
+          "requests",
+          "errors",
+          "req/s",
+          "p50 ms",
+          "p99 ms",
+          "p999 ms",
+          "max ms");
+
+  @Nonnull private final Scenario scenario;
+  @Nonnull private final long[] sortedLatencies;
+  private final int errors;
+  private final long elapsedNanos;
+
+  ScenarioResult(
+      @Nonnull Scenario scenario, @Nonnull long[] latencies, int errors, long elapsedNanos) {
+    this.scenario = scenario;
+    this.sortedLatencies = latencies.clone();
+    Arrays.sort(sortedLatencies);
+    this.errors = errors;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  int getRequestCount() {
+    return sortedLatencies.length;
+  }
+
+  int getErrorCount() {
+    return errors;
+  }
+
+  double getThroughput() {
+    return sortedLatencies.length / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * Get the latency below which the given fraction of all requests was answered.
+   *
+   * @param fraction the fraction between 0 and 1
+   * @return the latency in milliseconds
+   */
+  double getLatencyMillis(double fraction) {
+    int index = (int) Math.ceil(fraction * sortedLatencies.length) - 1;
+    long nanos = sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, index))];
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.ROOT,
+        "%-20s %10d %8d %12.1f %10.3f %10.3f %10.3f %10.3f",
+        scenario,
+        getRequestCount(),
+        getErrorCount(),
+        getThroughput(),
+        getLatencyMillis(0.5),
+        getLatencyMillis(0.99),
+        getLatencyMillis(0.999),
+        getLatencyMillis(1));
+  }
+}
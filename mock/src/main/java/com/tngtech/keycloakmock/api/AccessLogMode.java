@@ -0,0 +1,15 @@
+package com.tngtech.keycloakmock.api;
+
+/** Where to write the access log, i.e. one line per handled request. */
+public enum AccessLogMode {
+  /** Requests are logged at level INFO using SLF4J. */
+  LOGGER,
+  /**
+   * Requests are written to a file, which is rotated once it reaches its maximum size.
+   *
+   * @see ServerConfig.Builder#withAccessLogFile(java.nio.file.Path)
+   */
+  FILE,
+  /** Requests are not logged at all. */
+  DISABLED
+}
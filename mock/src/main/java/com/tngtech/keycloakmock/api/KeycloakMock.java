@@ -1,5 +1,6 @@
 package com.tngtech.keycloakmock.api;
 
+import com.tngtech.keycloakmock.impl.SigningKey;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
 import com.tngtech.keycloakmock.impl.dagger.DaggerServerComponent;
@@ -8,9 +9,19 @@ import com.tngtech.keycloakmock.impl.dagger.ServerComponent;
 import com.tngtech.keycloakmock.impl.dagger.SignatureComponent;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
-import io.vertx.core.http.HttpServer;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -28,6 +39,8 @@ import org.slf4j.LoggerFactory;
  */
 public class KeycloakMock {
   private static final Logger LOG = LoggerFactory.getLogger(KeycloakMock.class);
+  // split batches into more chunks than there are cores to even out differences in signing time
+  private static final int CHUNKS_PER_CORE = 4;
 
   @Nonnull private final ServerConfig serverConfig;
   @Nonnull private final UrlConfigurationFactory urlConfigurationFactory;
@@ -54,10 +67,12 @@ public class KeycloakMock {
    * <p>Depending on the tls parameter, the JWKS endpoint is served via HTTP or HTTPS.
    *
    * @param serverConfig the server configuration to use
-   * @throws IllegalStateException when the built-in keystore could not be read
+   * @throws IllegalStateException when the built-in keystore or the configured signing key file
+   *     could not be read, or the configured signing algorithm is not supported by the JVM
    * @see KeycloakMock#KeycloakMock()
    */
   public KeycloakMock(@Nonnull final ServerConfig serverConfig) {
+    SigningKey.checkSupported(serverConfig.getSigningAlgorithm());
     this.serverConfig = serverConfig;
     this.urlConfigurationFactory = new UrlConfigurationFactory(serverConfig);
     this.signatureComponent =
@@ -65,6 +80,10 @@ public class KeycloakMock {
             .defaultScopes(serverConfig.getDefaultScopes())
             .defaultAudiences(serverConfig.getDefaultAudiences())
             .defaultTokenLifespan(serverConfig.getDefaultTokenLifespan())
+            .signingAlgorithm(serverConfig.getSigningAlgorithm())
+            .verifiedTokenCacheSize(serverConfig.getVerifiedTokenCacheSize())
+            .signingKeyFile(serverConfig.getSigningKeyFile())
+            .signingKeyPassword(serverConfig.getSigningKeyPassword())
             .build();
   }
 
@@ -82,6 +101,103 @@ public class KeycloakMock {
     return signatureComponent.tokenGenerator().getToken(tokenConfig, configuration);
   }
 
+  /**
+   * Get signed access tokens for a batch of token configurations.
+   *
+   * <p>The tokens are signed in parallel using the {@link ForkJoinPool#commonPool() common pool}.
+   *
+   * @param tokenConfigs the configurations of the tokens to generate
+   * @return the access tokens in compact JWT form, in the iteration order of the configurations
+   * @see #getAccessTokens(Collection, Executor)
+   * @see #getAccessTokens(Stream)
+   */
+  @Nonnull
+  public List<String> getAccessTokens(@Nonnull final Collection<TokenConfig> tokenConfigs) {
+    return getAccessTokens(tokenConfigs, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Get signed access tokens for a batch of token configurations.
+   *
+   * <p>The batch is split into chunks which are signed in parallel on the given executor. This
+   * method blocks until all tokens have been generated.
+   *
+   * @param tokenConfigs the configurations of the tokens to generate
+   * @param executor the executor to sign the tokens on, e.g. a {@link ForkJoinPool}
+   * @return the access tokens in compact JWT form, in the iteration order of the configurations
+   * @see #getAccessTokens(Collection)
+   */
+  @Nonnull
+  public List<String> getAccessTokens(
+      @Nonnull final Collection<TokenConfig> tokenConfigs, @Nonnull final Executor executor) {
+    TokenConfig[] configs = tokenConfigs.toArray(new TokenConfig[0]);
+    String[] tokens = new String[configs.length];
+    int chunkCount = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+    int chunkSize = Math.max(1, (configs.length + chunkCount - 1) / chunkCount);
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    for (int start = 0; start < configs.length; start += chunkSize) {
+      int chunkStart = start;
+      int chunkEnd = Math.min(configs.length, start + chunkSize);
+      chunks.add(
+          CompletableFuture.runAsync(
+              () -> {
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                  tokens[i] = getAccessToken(configs[i]);
+                }
+              },
+              executor));
+    }
+    try {
+      CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return Collections.unmodifiableList(Arrays.asList(tokens));
+  }
+
+  /**
+   * Get a stream of signed access tokens for a stream of token configurations.
+   *
+   * <p>The tokens are generated lazily using a parallel stream, so memory consumption does not
+   * depend on the number of tokens. If the given stream is ordered, the resulting stream keeps that
+   * order. Consume it using {@link Stream#forEachOrdered} or a collector to make use of it.
+   *
+   * <p>Unlike {@link #getAccessTokens(Collection, Executor)}, there is no variant taking an
+   * executor, as parallel streams cannot be bound to one: they run on the common {@link
+   * ForkJoinPool}, or on the pool of the thread executing the terminal operation. To sign the
+   * tokens on a dedicated pool, run the terminal operation as a task of that {@link ForkJoinPool}.
+   *
+   * @param tokenConfigs the configurations of the tokens to generate
+   * @return a parallel stream of access tokens in compact JWT form
+   * @see #getAccessTokens(Collection)
+   */
+  @Nonnull
+  public Stream<String> getAccessTokens(@Nonnull final Stream<TokenConfig> tokenConfigs) {
+    return tokenConfigs.parallel().map(this::getAccessToken);
+  }
+
+  /**
+   * Write the key used for signing tokens to a file, including its private key.
+   *
+   * <p>The file can be used as {@link ServerConfig.Builder#withSigningKeyFile(Path) signing key
+   * file} of other mock instances, so that all of them issue tokens which can be verified with the
+   * same JWKS. If the file name ends with '.pem', the key pair is written in PEM format, otherwise
+   * as JWK set. As PEM files do not contain the key ID, PEM export is only possible for keys whose
+   * ID is their JWK thumbprint, e.g. keys which were themselves loaded from a PEM file. Where POSIX
+   * file permissions are supported, only the owner can read the file.
+   *
+   * @param file the file to write the signing key to
+   * @throws IOException if the file could not be written
+   * @throws IllegalStateException if the file name ends with '.pem', but the key ID is not the JWK
+   *     thumbprint
+   */
+  public void exportSigningKey(@Nonnull final Path file) throws IOException {
+    signatureComponent.signingKey().export(file);
+  }
+
   /**
    * Start the server (blocking).
    *
@@ -93,7 +209,7 @@ public class KeycloakMock {
       LOG.warn("Start request ignored as server is already running");
       return;
     }
-    ResultHandler<HttpServer> startHandler = new ResultHandler<>();
+    ResultHandler<Void> startHandler = new ResultHandler<>();
     serverComponent =
         DaggerServerComponent.builder()
             .serverConfig(serverConfig)
@@ -102,7 +218,7 @@ public class KeycloakMock {
             .keyStore(signatureComponent.keyStore())
             .tokenGenerator(signatureComponent.tokenGenerator())
             .build();
-    serverComponent.server().listen(startHandler);
+    serverComponent.serverDeployment().start().onComplete(startHandler);
     startHandler.await();
   }
 
@@ -114,8 +230,10 @@ public class KeycloakMock {
   public synchronized void stop() {
     if (serverComponent != null) {
       ResultHandler<Void> stopServerHandler = new ResultHandler<>();
-      serverComponent.server().close(stopServerHandler);
+      serverComponent.serverDeployment().stop().onComplete(stopServerHandler);
       stopServerHandler.await();
+      serverComponent.accessLog().close();
+      serverComponent.sessionRepository().close();
       ResultHandler<Void> stopVertxHandler = new ResultHandler<>();
       serverComponent.vertx().close(stopVertxHandler);
       stopVertxHandler.await();
@@ -134,7 +252,65 @@ public class KeycloakMock {
     if (serverComponent == null) {
       throw new IllegalStateException("Server is not running!");
     }
-    return serverComponent.server().actualPort();
+    return serverComponent.serverDeployment().actualPort();
+  }
+
+  /**
+   * Return the current metrics of the server.
+   *
+   * <p>The same metrics are also available in Prometheus format at the endpoint '/metrics'.
+   *
+   * @return a snapshot of the metrics
+   * @throws IllegalStateException if the server is not running
+   */
+  @Nonnull
+  public synchronized MetricsSnapshot getMetrics() {
+    if (serverComponent == null) {
+      throw new IllegalStateException("Server is not running!");
+    }
+    return serverComponent.metrics().snapshot();
+  }
+
+  /**
+   * Log out all sessions of a user, as if the user had logged out in every browser.
+   *
+   * @param subject the subject of the user, i.e. the username used during login
+   * @return the number of sessions that have been logged out
+   * @throws IllegalStateException if the server is not running
+   */
+  public synchronized int logoutUser(@Nonnull final String subject) {
+    if (serverComponent == null) {
+      throw new IllegalStateException("Server is not running!");
+    }
+    return serverComponent.sessionRepository().removeSessionsOfUser(subject);
+  }
+
+  /**
+   * Log out all sessions of a client, including logins that have not been completed yet.
+   *
+   * @param clientId the ID of the client
+   * @return the number of sessions and logins that have been removed
+   * @throws IllegalStateException if the server is not running
+   */
+  public synchronized int logoutClient(@Nonnull final String clientId) {
+    if (serverComponent == null) {
+      throw new IllegalStateException("Server is not running!");
+    }
+    return serverComponent.sessionRepository().removeSessionsOfClient(clientId);
+  }
+
+  /**
+   * Return the number of active sessions of a client.
+   *
+   * @param clientId the ID of the client
+   * @return the number of sessions, not counting logins that have not been completed yet
+   * @throws IllegalStateException if the server is not running
+   */
+  public synchronized int getSessionCount(@Nonnull final String clientId) {
+    if (serverComponent == null) {
+      throw new IllegalStateException("Server is not running!");
+    }
+    return serverComponent.sessionRepository().getSessionCount(clientId);
   }
 
   private static class ResultHandler<E> implements Handler<AsyncResult<E>> {
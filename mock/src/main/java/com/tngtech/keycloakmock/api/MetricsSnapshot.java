@@ -0,0 +1,290 @@
+package com.tngtech.keycloakmock.api;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * A point-in-time view of the metrics of a running mock server.
+ *
+ * @see KeycloakMock#getMetrics()
+ */
+public final class MetricsSnapshot {
+  @Nonnull private final Map<String, RouteMetrics> routes;
+  @Nonnull private final Map<String, Long> tokensByGrantType;
+  @Nonnull private final LatencySummary signingTime;
+  private final int activeSessions;
+  private final int pendingSessionRequests;
+  private final int signingQueueDepth;
+  private final long signingRejectedCount;
+  private final long expiredSessionRequests;
+  private final long expiredSessions;
+  private final long evictedSessions;
+  private final long rejectedSessionRequests;
+
+  public MetricsSnapshot(
+      @Nonnull Map<String, RouteMetrics> routes,
+      @Nonnull Map<String, Long> tokensByGrantType,
+      @Nonnull LatencySummary signingTime,
+      int activeSessions,
+      int pendingSessionRequests,
+      int signingQueueDepth,
+      long signingRejectedCount,
+      long expiredSessionRequests,
+      long expiredSessions,
+      long evictedSessions,
+      long rejectedSessionRequests) {
+    this.routes = Collections.unmodifiableMap(routes);
+    this.tokensByGrantType = Collections.unmodifiableMap(tokensByGrantType);
+    this.signingTime = signingTime;
+    this.activeSessions = activeSessions;
+    this.pendingSessionRequests = pendingSessionRequests;
+    this.signingQueueDepth = signingQueueDepth;
+    this.signingRejectedCount = signingRejectedCount;
+    this.expiredSessionRequests = expiredSessionRequests;
+    this.expiredSessions = expiredSessions;
+    this.evictedSessions = evictedSessions;
+    this.rejectedSessionRequests = rejectedSessionRequests;
+  }
+
+  /**
+   * Get the metrics of all routes that have handled at least one request.
+   *
+   * @return the route metrics, keyed by route name
+   */
+  @Nonnull
+  public Map<String, RouteMetrics> getRoutes() {
+    return routes;
+  }
+
+  /**
+   * Get the number of tokens issued by the token endpoint.
+   *
+   * @return the number of tokens, keyed by grant type
+   */
+  @Nonnull
+  public Map<String, Long> getTokensByGrantType() {
+    return tokensByGrantType;
+  }
+
+  /**
+   * Get the time spent signing and verifying tokens.
+   *
+   * @return the signing time
+   */
+  @Nonnull
+  public LatencySummary getSigningTime() {
+    return signingTime;
+  }
+
+  /**
+   * Get the number of sessions created via the login page.
+   *
+   * @return the number of active sessions
+   */
+  public int getActiveSessions() {
+    return activeSessions;
+  }
+
+  /**
+   * Get the number of login requests that have not been completed yet.
+   *
+   * @return the number of pending session requests
+   */
+  public int getPendingSessionRequests() {
+    return pendingSessionRequests;
+  }
+
+  /**
+   * Get the number of signing tasks that are waiting or running.
+   *
+   * @return the signing queue depth
+   */
+  public int getSigningQueueDepth() {
+    return signingQueueDepth;
+  }
+
+  /**
+   * Get the number of requests rejected because the signing queue was full.
+   *
+   * @return the number of rejected requests
+   */
+  public long getSigningRejectedCount() {
+    return signingRejectedCount;
+  }
+
+  /**
+   * Get the number of login requests that were discarded because they were not completed in time.
+   *
+   * @return the number of expired session requests
+   * @see ServerConfig.Builder#withSessionRequestTtl(java.time.Duration)
+   */
+  public long getExpiredSessionRequests() {
+    return expiredSessionRequests;
+  }
+
+  /**
+   * Get the number of sessions that were discarded because their time to live was exceeded.
+   *
+   * @return the number of expired sessions
+   * @see ServerConfig.Builder#withSessionTtl(java.time.Duration)
+   */
+  public long getExpiredSessions() {
+    return expiredSessions;
+  }
+
+  /**
+   * Get the number of login requests and sessions that were discarded to make room for new ones.
+   *
+   * @return the number of evicted sessions
+   * @see ServerConfig.Builder#withSessionCapacity(int)
+   */
+  public long getEvictedSessions() {
+    return evictedSessions;
+  }
+
+  /**
+   * Get the number of logins that were rejected because the session capacity was reached.
+   *
+   * @return the number of rejected session requests
+   * @see ServerConfig.Builder#withSessionCapacity(int)
+   */
+  public long getRejectedSessionRequests() {
+    return rejectedSessionRequests;
+  }
+
+  /** Request metrics of a single route. */
+  public static final class RouteMetrics {
+    @Nonnull private final Map<Integer, Long> statusCounts;
+    @Nonnull private final LatencySummary latency;
+
+    public RouteMetrics(@Nonnull Map<Integer, Long> statusCounts, @Nonnull LatencySummary latency) {
+      this.statusCounts = Collections.unmodifiableMap(statusCounts);
+      this.latency = latency;
+    }
+
+    /**
+     * Get the number of handled requests.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+      return latency.getCount();
+    }
+
+    /**
+     * Get the number of handled requests per status code.
+     *
+     * @return the number of requests, keyed by status code
+     */
+    @Nonnull
+    public Map<Integer, Long> getStatusCounts() {
+      return statusCounts;
+    }
+
+    /**
+     * Get the time from receiving a request until the response has been written.
+     *
+     * @return the request latency
+     */
+    @Nonnull
+    public LatencySummary getLatency() {
+      return latency;
+    }
+  }
+
+  /**
+   * Summary of a latency histogram.
+   *
+   * <p>Percentiles are accurate to within 12.5%.
+   */
+  public static final class LatencySummary {
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    public LatencySummary(
+        long count,
+        double meanMillis,
+        double p50Millis,
+        double p90Millis,
+        double p99Millis,
+        double p999Millis,
+        double maxMillis) {
+      this.count = count;
+      this.meanMillis = meanMillis;
+      this.p50Millis = p50Millis;
+      this.p90Millis = p90Millis;
+      this.p99Millis = p99Millis;
+      this.p999Millis = p999Millis;
+      this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Get the mean of all recorded values.
+     *
+     * @return the mean in milliseconds
+     */
+    public double getMeanMillis() {
+      return meanMillis;
+    }
+
+    /**
+     * Get the median of all recorded values.
+     *
+     * @return the 50th percentile in milliseconds
+     */
+    public double getP50Millis() {
+      return p50Millis;
+    }
+
+    /**
+     * Get the 90th percentile of all recorded values.
+     *
+     * @return the 90th percentile in milliseconds
+     */
+    public double getP90Millis() {
+      return p90Millis;
+    }
+
+    /**
+     * Get the 99th percentile of all recorded values.
+     *
+     * @return the 99th percentile in milliseconds
+     */
+    public double getP99Millis() {
+      return p99Millis;
+    }
+
+    /**
+     * Get the 99.9th percentile of all recorded values.
+     *
+     * @return the 99.9th percentile in milliseconds
+     */
+    public double getP999Millis() {
+      return p999Millis;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return the maximum in milliseconds
+     */
+    public double getMaxMillis() {
+      return maxMillis;
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package com.tngtech.keycloakmock.api;
 
 import com.tngtech.keycloakmock.impl.Protocol;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -8,6 +10,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /** Server configuration to use. */
 public final class ServerConfig {
@@ -24,6 +27,18 @@ public final class ServerConfig {
 
   private static final String DEFAULT_REALM = "master";
   private static final Duration DEFAULT_TOKEN_LIFESPAN = Duration.ofHours(10);
+  private static final int DEFAULT_VERIFIED_TOKEN_CACHE_SIZE = 10_000;
+  private static final int DEFAULT_SIGNING_QUEUE_LIMIT = 1_000;
+  private static final long DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 100;
+  private static final int DEFAULT_HTTP2_WINDOW_SIZE = 65_535;
+  private static final int SYSTEM_DEFAULT_ACCEPT_BACKLOG = -1;
+  private static final String DEFAULT_ACCESS_LOG_FILE = "access.log";
+  private static final long DEFAULT_ACCESS_LOG_MAX_FILE_SIZE = 10L * 1024 * 1024;
+  private static final int DEFAULT_ACCESS_LOG_MAX_FILES = 5;
+  private static final Duration DEFAULT_SESSION_REQUEST_TTL = Duration.ofMinutes(30);
+  private static final Duration DEFAULT_AUTHORIZATION_CODE_TTL = Duration.ofMinutes(10);
+  private static final Duration DEFAULT_SESSION_TTL = Duration.ofHours(10);
+  private static final int DEFAULT_SESSION_CAPACITY = 100_000;
   public static final String DEFAULT_SCOPE = "openid";
   public static final String DEFAULT_AUDIENCE = "server";
 
@@ -36,6 +51,38 @@ public final class ServerConfig {
   @Nonnull private final List<String> defaultScopes;
   @Nonnull private final Duration defaultTokenLifespan;
   @Nonnull private final LoginRoleMapping loginRoleMapping;
+  @Nonnull private final SigningAlgorithm signingAlgorithm;
+  private final int verifiedTokenCacheSize;
+  private final int signingThreads;
+  private final int signingQueueLimit;
+  private final int serverInstances;
+  private final boolean http2;
+  private final long http2MaxConcurrentStreams;
+  private final int http2InitialWindowSize;
+  private final int http2ConnectionWindowSize;
+  private final int acceptBacklog;
+  private final boolean tcpNoDelay;
+  private final boolean tcpFastOpen;
+  private final boolean reusePort;
+  private final boolean tcpKeepAlive;
+  @Nonnull private final Duration idleTimeout;
+  private final boolean nativeTransport;
+  @Nonnull private final AccessLogMode accessLogMode;
+  @Nonnull private final Path accessLogFile;
+  private final double accessLogSampleRate;
+  private final long accessLogMaxFileSize;
+  private final int accessLogMaxFiles;
+  @Nonnull private final Duration sessionRequestTtl;
+  @Nonnull private final Duration authorizationCodeTtl;
+  @Nonnull private final Duration sessionTtl;
+  private final int sessionCapacity;
+  @Nonnull private final SessionEvictionPolicy sessionEvictionPolicy;
+  @Nullable private final Path sessionJournalFile;
+  @Nullable private final String authorizationCodeSecret;
+  @Nullable private final Path signingKeyFile;
+  @Nullable private final String signingKeyPassword;
+  private final boolean opaqueRefreshTokens;
+  private final boolean opaqueAccessTokens;
 
   private ServerConfig(@Nonnull final Builder builder) {
     this.port = (builder.port > 0 ? builder.port : RANDOM_PORT);
@@ -51,6 +98,38 @@ public final class ServerConfig {
     this.defaultScopes = builder.defaultScopes;
     this.defaultTokenLifespan = builder.defaultTokenLifespan;
     this.loginRoleMapping = builder.loginRoleMapping;
+    this.signingAlgorithm = builder.signingAlgorithm;
+    this.verifiedTokenCacheSize = Math.max(0, builder.verifiedTokenCacheSize);
+    this.signingThreads = Math.max(0, builder.signingThreads);
+    this.signingQueueLimit = Math.max(0, builder.signingQueueLimit);
+    this.serverInstances = Math.max(1, builder.serverInstances);
+    this.http2 = builder.http2;
+    this.http2MaxConcurrentStreams = builder.http2MaxConcurrentStreams;
+    this.http2InitialWindowSize = builder.http2InitialWindowSize;
+    this.http2ConnectionWindowSize = builder.http2ConnectionWindowSize;
+    this.acceptBacklog = builder.acceptBacklog;
+    this.tcpNoDelay = builder.tcpNoDelay;
+    this.tcpFastOpen = builder.tcpFastOpen;
+    this.reusePort = builder.reusePort;
+    this.tcpKeepAlive = builder.tcpKeepAlive;
+    this.idleTimeout = builder.idleTimeout;
+    this.nativeTransport = builder.nativeTransport;
+    this.accessLogMode = builder.accessLogMode;
+    this.accessLogFile = builder.accessLogFile;
+    this.accessLogSampleRate = Math.max(0, Math.min(1, builder.accessLogSampleRate));
+    this.accessLogMaxFileSize = builder.accessLogMaxFileSize;
+    this.accessLogMaxFiles = Math.max(0, builder.accessLogMaxFiles);
+    this.sessionRequestTtl = builder.sessionRequestTtl;
+    this.authorizationCodeTtl = builder.authorizationCodeTtl;
+    this.sessionTtl = builder.sessionTtl;
+    this.sessionCapacity = Math.max(0, builder.sessionCapacity);
+    this.sessionEvictionPolicy = builder.sessionEvictionPolicy;
+    this.sessionJournalFile = builder.sessionJournalFile;
+    this.authorizationCodeSecret = builder.authorizationCodeSecret;
+    this.signingKeyFile = builder.signingKeyFile;
+    this.signingKeyPassword = builder.signingKeyPassword;
+    this.opaqueRefreshTokens = builder.opaqueRefreshTokens;
+    this.opaqueAccessTokens = builder.opaqueAccessTokens;
   }
 
   /**
@@ -155,6 +234,306 @@ public final class ServerConfig {
     return loginRoleMapping;
   }
 
+  /**
+   * Get the algorithm used for signing tokens.
+   *
+   * @return signing algorithm
+   */
+  @Nonnull
+  public SigningAlgorithm getSigningAlgorithm() {
+    return signingAlgorithm;
+  }
+
+  /**
+   * Get the maximum number of verified tokens whose claims are cached.
+   *
+   * @return cache size, 0 if caching is disabled
+   */
+  public int getVerifiedTokenCacheSize() {
+    return verifiedTokenCacheSize;
+  }
+
+  /**
+   * Get the number of threads used for signing and verifying tokens.
+   *
+   * @return number of signing threads, 0 if tokens are signed on the event loop
+   */
+  public int getSigningThreads() {
+    return signingThreads;
+  }
+
+  /**
+   * Get the maximum number of pending signing tasks.
+   *
+   * @return signing queue limit, 0 if unlimited
+   */
+  public int getSigningQueueLimit() {
+    return signingQueueLimit;
+  }
+
+  /**
+   * Get the number of HTTP server instances.
+   *
+   * @return number of server instances
+   */
+  public int getServerInstances() {
+    return serverInstances;
+  }
+
+  /**
+   * Get HTTP/2 flag.
+   *
+   * @return whether HTTP/2 is enabled
+   */
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  /**
+   * Get the maximum number of concurrent HTTP/2 streams per connection.
+   *
+   * @return maximum number of concurrent streams
+   */
+  public long getHttp2MaxConcurrentStreams() {
+    return http2MaxConcurrentStreams;
+  }
+
+  /**
+   * Get the initial HTTP/2 flow-control window size of each stream.
+   *
+   * @return initial window size in bytes
+   */
+  public int getHttp2InitialWindowSize() {
+    return http2InitialWindowSize;
+  }
+
+  /**
+   * Get the HTTP/2 flow-control window size of each connection.
+   *
+   * @return connection window size in bytes
+   */
+  public int getHttp2ConnectionWindowSize() {
+    return http2ConnectionWindowSize;
+  }
+
+  /**
+   * Get the maximum number of pending connections.
+   *
+   * @return accept backlog, -1 if the system default is used
+   */
+  public int getAcceptBacklog() {
+    return acceptBacklog;
+  }
+
+  /**
+   * Get TCP_NODELAY flag.
+   *
+   * @return whether Nagle's algorithm is disabled
+   */
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  /**
+   * Get TCP fast open flag.
+   *
+   * @return whether TCP fast open is enabled
+   */
+  public boolean isTcpFastOpen() {
+    return tcpFastOpen;
+  }
+
+  /**
+   * Get SO_REUSEPORT flag.
+   *
+   * @return whether the port can be reused
+   */
+  public boolean isReusePort() {
+    return reusePort;
+  }
+
+  /**
+   * Get SO_KEEPALIVE flag.
+   *
+   * @return whether TCP keep-alive is enabled
+   */
+  public boolean isTcpKeepAlive() {
+    return tcpKeepAlive;
+  }
+
+  /**
+   * Get the time after which idle connections are closed.
+   *
+   * @return idle timeout, zero if idle connections are kept open
+   */
+  @Nonnull
+  public Duration getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Get native transport flag.
+   *
+   * @return whether a native transport is preferred over NIO
+   */
+  public boolean isNativeTransport() {
+    return nativeTransport;
+  }
+
+  /**
+   * Get where the access log is written to.
+   *
+   * @return access log mode
+   */
+  @Nonnull
+  public AccessLogMode getAccessLogMode() {
+    return accessLogMode;
+  }
+
+  /**
+   * Get the file the access log is written to in mode {@link AccessLogMode#FILE}.
+   *
+   * @return access log file
+   */
+  @Nonnull
+  public Path getAccessLogFile() {
+    return accessLogFile;
+  }
+
+  /**
+   * Get the fraction of requests that are written to the access log.
+   *
+   * @return sample rate between 0 and 1
+   */
+  public double getAccessLogSampleRate() {
+    return accessLogSampleRate;
+  }
+
+  /**
+   * Get the size at which the access log file is rotated.
+   *
+   * @return maximum file size in bytes, 0 if the file is never rotated
+   */
+  public long getAccessLogMaxFileSize() {
+    return accessLogMaxFileSize;
+  }
+
+  /**
+   * Get the number of rotated access log files to keep.
+   *
+   * @return maximum number of rotated files
+   */
+  public int getAccessLogMaxFiles() {
+    return accessLogMaxFiles;
+  }
+
+  /**
+   * Get the time after which a login that has not been completed is discarded.
+   *
+   * @return time to live of login requests, zero if they never expire
+   */
+  @Nonnull
+  public Duration getSessionRequestTtl() {
+    return sessionRequestTtl;
+  }
+
+  /**
+   * Get the time during which an authorization code can be exchanged for a token.
+   *
+   * @return time to live of authorization codes, zero if they never expire
+   */
+  @Nonnull
+  public Duration getAuthorizationCodeTtl() {
+    return authorizationCodeTtl;
+  }
+
+  /**
+   * Get the time after which a session is discarded if it is not logged out before.
+   *
+   * @return time to live of sessions, zero if they never expire
+   */
+  @Nonnull
+  public Duration getSessionTtl() {
+    return sessionTtl;
+  }
+
+  /**
+   * Get the maximum number of login requests and sessions kept at the same time.
+   *
+   * @return capacity, 0 if unlimited
+   */
+  public int getSessionCapacity() {
+    return sessionCapacity;
+  }
+
+  /**
+   * Get what happens when a login is started while the session capacity has been reached.
+   *
+   * @return eviction policy
+   */
+  @Nonnull
+  public SessionEvictionPolicy getSessionEvictionPolicy() {
+    return sessionEvictionPolicy;
+  }
+
+  /**
+   * Get the file in which login requests and sessions are persisted across restarts.
+   *
+   * @return session journal file, or null if sessions are only kept in memory
+   */
+  @Nullable
+  public Path getSessionJournalFile() {
+    return sessionJournalFile;
+  }
+
+  /**
+   * Get the secret used to encrypt self-contained authorization codes.
+   *
+   * @return authorization code secret, or null if authorization codes refer to local sessions
+   */
+  @Nullable
+  public String getAuthorizationCodeSecret() {
+    return authorizationCodeSecret;
+  }
+
+  /**
+   * Get the file from which the key for signing tokens is loaded.
+   *
+   * @return signing key file, or null if the built-in or a generated key is used
+   */
+  @Nullable
+  public Path getSigningKeyFile() {
+    return signingKeyFile;
+  }
+
+  /**
+   * Get the password of the signing key file.
+   *
+   * @return signing key password, or null if the file is not protected by a password
+   */
+  @Nullable
+  public String getSigningKeyPassword() {
+    return signingKeyPassword;
+  }
+
+  /**
+   * Get whether short opaque refresh tokens are issued, which are rotated on every use.
+   *
+   * @return true if opaque refresh tokens are issued, false if the access token is used
+   */
+  public boolean isOpaqueRefreshTokens() {
+    return opaqueRefreshTokens;
+  }
+
+  /**
+   * Get whether the token endpoint issues short opaque access tokens instead of signed tokens.
+   *
+   * @return true if opaque access tokens are issued, false if signed tokens are issued
+   */
+  public boolean isOpaqueAccessTokens() {
+    return opaqueAccessTokens;
+  }
+
   /**
    * Builder for {@link ServerConfig}.
    *
@@ -171,6 +550,42 @@ public final class ServerConfig {
     @Nonnull private final List<String> defaultScopes = new ArrayList<>();
     @Nonnull private Duration defaultTokenLifespan = DEFAULT_TOKEN_LIFESPAN;
     @Nonnull private LoginRoleMapping loginRoleMapping = LoginRoleMapping.TO_REALM;
+    @Nonnull private SigningAlgorithm signingAlgorithm = SigningAlgorithm.RS256;
+    private int verifiedTokenCacheSize = DEFAULT_VERIFIED_TOKEN_CACHE_SIZE;
+    private int signingThreads = Runtime.getRuntime().availableProcessors();
+    private int signingQueueLimit = DEFAULT_SIGNING_QUEUE_LIMIT;
+    private int serverInstances = 1;
+    private boolean http2 = false;
+    private long http2MaxConcurrentStreams = DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS;
+    private int http2InitialWindowSize = DEFAULT_HTTP2_WINDOW_SIZE;
+    private int http2ConnectionWindowSize = DEFAULT_HTTP2_WINDOW_SIZE;
+    private int acceptBacklog = SYSTEM_DEFAULT_ACCEPT_BACKLOG;
+    private boolean tcpNoDelay = true;
+    private boolean tcpFastOpen = false;
+    private boolean reusePort = false;
+    private boolean tcpKeepAlive = false;
+    @Nonnull private Duration idleTimeout = Duration.ZERO;
+    private boolean nativeTransport = false;
+    @Nonnull private AccessLogMode accessLogMode = AccessLogMode.LOGGER;
+    @Nonnull private Path accessLogFile = Paths.get(DEFAULT_ACCESS_LOG_FILE);
+    private double accessLogSampleRate = 1;
+    private long accessLogMaxFileSize = DEFAULT_ACCESS_LOG_MAX_FILE_SIZE;
+    private int accessLogMaxFiles = DEFAULT_ACCESS_LOG_MAX_FILES;
+    @Nonnull private Duration sessionRequestTtl = DEFAULT_SESSION_REQUEST_TTL;
+    @Nonnull private Duration authorizationCodeTtl = DEFAULT_AUTHORIZATION_CODE_TTL;
+    @Nonnull private Duration sessionTtl = DEFAULT_SESSION_TTL;
+    private int sessionCapacity = DEFAULT_SESSION_CAPACITY;
+
+    @Nonnull
+    private SessionEvictionPolicy sessionEvictionPolicy =
+        SessionEvictionPolicy.EVICT_EARLIEST_EXPIRING;
+
+    @Nullable private Path sessionJournalFile;
+    @Nullable private String authorizationCodeSecret;
+    @Nullable private Path signingKeyFile;
+    @Nullable private String signingKeyPassword;
+    private boolean opaqueRefreshTokens = false;
+    private boolean opaqueAccessTokens = false;
 
     private Builder() {
       defaultScopes.add(DEFAULT_SCOPE);
@@ -393,6 +808,560 @@ public final class ServerConfig {
       return this;
     }
 
+    /**
+     * Set the algorithm used for signing tokens.
+     *
+     * <p>The default setting is {@link SigningAlgorithm#RS256}, using the built-in RSA key. For all
+     * other algorithms, a new key pair is generated on creation of the mock. Elliptic curve and
+     * EdDSA signatures are considerably cheaper to compute than RSA signatures, which can matter
+     * when generating large amounts of tokens.
+     *
+     * @param signingAlgorithm the signing algorithm
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSigningAlgorithm(@Nonnull final SigningAlgorithm signingAlgorithm) {
+      this.signingAlgorithm = signingAlgorithm;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of verified tokens whose claims are cached.
+     *
+     * <p>Tokens passed to the server, e.g. for refresh or introspection, need to be verified. As
+     * the same token is often passed many times, the claims of verified tokens are cached until the
+     * token expires, so that only the first request pays for the signature verification. If the
+     * cache is full, the token expiring first is evicted.
+     *
+     * <p>The default size is 10000 tokens. Use 0 to disable the cache.
+     *
+     * @param verifiedTokenCacheSize the maximum number of cached tokens
+     * @return builder
+     */
+    @Nonnull
+    public Builder withVerifiedTokenCacheSize(final int verifiedTokenCacheSize) {
+      this.verifiedTokenCacheSize = verifiedTokenCacheSize;
+      return this;
+    }
+
+    /**
+     * Set the number of threads used for signing and verifying tokens.
+     *
+     * <p>Signing tokens is expensive, so by default it is done on a separate worker pool with one
+     * thread per available processor instead of on the event loop. This keeps cheap requests like
+     * fetching the JWKS fast even under load. As the queue of the pool is limited, requests may now
+     * be rejected with status 503 under load, which did not happen in previous versions. Use 0 to
+     * do all work on the event loop as before.
+     *
+     * @param signingThreads the number of signing threads
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSigningThreads(final int signingThreads) {
+      this.signingThreads = signingThreads;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of pending signing tasks.
+     *
+     * <p>If more requests need a token to be signed or verified, they are rejected with status 503
+     * until the queue has drained. The default limit is 1000 tasks. Use 0 for an unlimited queue.
+     *
+     * <p>This setting only applies if signing threads are used.
+     *
+     * @param signingQueueLimit the maximum number of pending signing tasks
+     * @return builder
+     * @see #withSigningThreads(int)
+     */
+    @Nonnull
+    public Builder withSigningQueueLimit(final int signingQueueLimit) {
+      this.signingQueueLimit = signingQueueLimit;
+      return this;
+    }
+
+    /**
+     * Set the number of HTTP server instances.
+     *
+     * <p>Each instance runs on its own event loop, and incoming connections are distributed between
+     * them. All instances share the same sessions and keys. Use e.g. the number of available
+     * processors to make use of all cores under load. The default is a single instance.
+     *
+     * @param serverInstances the number of server instances
+     * @return builder
+     */
+    @Nonnull
+    public Builder withServerInstances(final int serverInstances) {
+      this.serverInstances = serverInstances;
+      return this;
+    }
+
+    /**
+     * Set HTTP/2 flag.
+     *
+     * <p>If set to true, the server supports HTTP/2 in addition to HTTP/1.1. With TLS, the protocol
+     * is negotiated using ALPN; without TLS, clients can either upgrade an HTTP/1.1 connection
+     * (h2c) or use HTTP/2 with prior knowledge. This allows clients to multiplex many requests over
+     * few connections, and applies the HTTP/2 settings of this builder. Default value is false.
+     *
+     * <p>Note that without TLS, the server also accepts h2c if this flag is false, as this is the
+     * default of Vert.x; in that case, the default HTTP/2 settings of Vert.x are used.
+     *
+     * @param http2 the flag to use
+     * @return builder
+     */
+    @Nonnull
+    public Builder withHttp2(final boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of concurrent HTTP/2 streams per connection.
+     *
+     * <p>The default value is 100. This setting only applies if HTTP/2 is enabled.
+     *
+     * @param http2MaxConcurrentStreams the maximum number of concurrent streams
+     * @return builder
+     * @see #withHttp2(boolean)
+     */
+    @Nonnull
+    public Builder withHttp2MaxConcurrentStreams(final long http2MaxConcurrentStreams) {
+      this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+      return this;
+    }
+
+    /**
+     * Set the initial HTTP/2 flow-control window size of each stream.
+     *
+     * <p>The default value is 65535 bytes. This setting only applies if HTTP/2 is enabled.
+     *
+     * @param http2InitialWindowSize the initial window size in bytes
+     * @return builder
+     * @see #withHttp2(boolean)
+     */
+    @Nonnull
+    public Builder withHttp2InitialWindowSize(final int http2InitialWindowSize) {
+      this.http2InitialWindowSize = http2InitialWindowSize;
+      return this;
+    }
+
+    /**
+     * Set the HTTP/2 flow-control window size of each connection.
+     *
+     * <p>This window is shared by all streams of a connection, so it should be larger than the
+     * window of a single stream when many streams are used concurrently. The default value is 65535
+     * bytes. This setting only applies if HTTP/2 is enabled.
+     *
+     * @param http2ConnectionWindowSize the connection window size in bytes
+     * @return builder
+     * @see #withHttp2(boolean)
+     */
+    @Nonnull
+    public Builder withHttp2ConnectionWindowSize(final int http2ConnectionWindowSize) {
+      this.http2ConnectionWindowSize = http2ConnectionWindowSize;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of pending connections.
+     *
+     * <p>Connections that arrive while the backlog is full are refused or reset, so increase this
+     * value if many clients connect at the same time. The operating system may silently cap the
+     * value (e.g. {@code net.core.somaxconn} on Linux). The default value is -1, which uses the
+     * system default.
+     *
+     * @param acceptBacklog the maximum number of pending connections
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAcceptBacklog(final int acceptBacklog) {
+      this.acceptBacklog = acceptBacklog;
+      return this;
+    }
+
+    /**
+     * Set TCP_NODELAY flag.
+     *
+     * <p>If set to true, Nagle's algorithm is disabled, so that small responses are sent without
+     * delay. Default value is true.
+     *
+     * @param tcpNoDelay the flag to use
+     * @return builder
+     */
+    @Nonnull
+    public Builder withTcpNoDelay(final boolean tcpNoDelay) {
+      this.tcpNoDelay = tcpNoDelay;
+      return this;
+    }
+
+    /**
+     * Set TCP fast open flag.
+     *
+     * <p>If set to true, clients that connect again can send data already in the initial handshake.
+     * This is only supported with a native transport. Default value is false.
+     *
+     * @param tcpFastOpen the flag to use
+     * @return builder
+     * @see #withNativeTransport(boolean)
+     */
+    @Nonnull
+    public Builder withTcpFastOpen(final boolean tcpFastOpen) {
+      this.tcpFastOpen = tcpFastOpen;
+      return this;
+    }
+
+    /**
+     * Set SO_REUSEPORT flag.
+     *
+     * <p>If set to true, each server instance binds its own socket to the port and the kernel
+     * distributes incoming connections between them. This is only supported with a native
+     * transport. Default value is false.
+     *
+     * @param reusePort the flag to use
+     * @return builder
+     * @see #withNativeTransport(boolean)
+     * @see #withServerInstances(int)
+     */
+    @Nonnull
+    public Builder withReusePort(final boolean reusePort) {
+      this.reusePort = reusePort;
+      return this;
+    }
+
+    /**
+     * Set SO_KEEPALIVE flag.
+     *
+     * <p>If set to true, the operating system probes idle connections to detect dead peers. Default
+     * value is false.
+     *
+     * @param tcpKeepAlive the flag to use
+     * @return builder
+     */
+    @Nonnull
+    public Builder withTcpKeepAlive(final boolean tcpKeepAlive) {
+      this.tcpKeepAlive = tcpKeepAlive;
+      return this;
+    }
+
+    /**
+     * Set the time after which idle connections are closed.
+     *
+     * <p>By default, idle connections are kept open until the client closes them. Use {@link
+     * Duration#ZERO} to disable the timeout.
+     *
+     * @param idleTimeout as duration
+     * @return builder
+     */
+    @Nonnull
+    public Builder withIdleTimeout(@Nonnull final Duration idleTimeout) {
+      this.idleTimeout = Objects.requireNonNull(idleTimeout);
+      return this;
+    }
+
+    /**
+     * Set native transport flag.
+     *
+     * <p>If set to true, a native transport (e.g. epoll on Linux) is used instead of Java NIO,
+     * provided the corresponding Netty artifact (e.g. {@code io.netty:netty-transport-native-epoll}
+     * with classifier {@code linux-x86_64}) is on the classpath. Otherwise, the server falls back
+     * to NIO. Default value is false.
+     *
+     * @param nativeTransport the flag to use
+     * @return builder
+     */
+    @Nonnull
+    public Builder withNativeTransport(final boolean nativeTransport) {
+      this.nativeTransport = nativeTransport;
+      return this;
+    }
+
+    /**
+     * Set where the access log is written to.
+     *
+     * <p>Each handled request is logged with its status, method and URI. Logging happens
+     * asynchronously in a background thread, so that the event loop is not blocked by slow output.
+     * The default setting is {@link AccessLogMode#LOGGER}.
+     *
+     * @param accessLogMode the access log mode
+     * @return builder
+     * @see #withAccessLogFile(Path)
+     * @see #withAccessLogSampleRate(double)
+     */
+    @Nonnull
+    public Builder withAccessLogMode(@Nonnull final AccessLogMode accessLogMode) {
+      this.accessLogMode = Objects.requireNonNull(accessLogMode);
+      return this;
+    }
+
+    /**
+     * Write the access log to the given file.
+     *
+     * <p>This also sets the access log mode to {@link AccessLogMode#FILE}. Entries are appended to
+     * the file if it already exists. By default, the file 'access.log' in the working directory is
+     * used.
+     *
+     * @param accessLogFile the access log file
+     * @return builder
+     * @see #withAccessLogMaxFileSize(long)
+     * @see #withAccessLogMaxFiles(int)
+     */
+    @Nonnull
+    public Builder withAccessLogFile(@Nonnull final Path accessLogFile) {
+      this.accessLogFile = Objects.requireNonNull(accessLogFile);
+      this.accessLogMode = AccessLogMode.FILE;
+      return this;
+    }
+
+    /**
+     * Set the fraction of requests that are written to the access log.
+     *
+     * <p>Requests are sampled randomly. Use e.g. 0.01 to log only about one in hundred requests
+     * under high load. The default value is 1, i.e. all requests are logged.
+     *
+     * @param accessLogSampleRate the sample rate between 0 and 1
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAccessLogSampleRate(final double accessLogSampleRate) {
+      this.accessLogSampleRate = accessLogSampleRate;
+      return this;
+    }
+
+    /**
+     * Set the size at which the access log file is rotated.
+     *
+     * <p>The default size is 10 MiB. Use 0 to never rotate the file. This setting only applies in
+     * mode {@link AccessLogMode#FILE}.
+     *
+     * @param accessLogMaxFileSize the maximum file size in bytes
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAccessLogMaxFileSize(final long accessLogMaxFileSize) {
+      this.accessLogMaxFileSize = accessLogMaxFileSize;
+      return this;
+    }
+
+    /**
+     * Set the number of rotated access log files to keep.
+     *
+     * <p>Rotated files get the suffixes '.1' (newest) to '.n' (oldest). The default is 5 files. Use
+     * 0 to discard the content on rotation. This setting only applies in mode {@link
+     * AccessLogMode#FILE}.
+     *
+     * @param accessLogMaxFiles the maximum number of rotated files
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAccessLogMaxFiles(final int accessLogMaxFiles) {
+      this.accessLogMaxFiles = accessLogMaxFiles;
+      return this;
+    }
+
+    /**
+     * Set the time after which a login that has not been completed is discarded.
+     *
+     * <p>A login request is created when the login page is opened, and completed when the user
+     * submits the login form. The default value is 30 minutes. Use {@link Duration#ZERO} to keep
+     * login requests until the server is stopped.
+     *
+     * @param sessionRequestTtl the time to live of login requests
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSessionRequestTtl(@Nonnull final Duration sessionRequestTtl) {
+      this.sessionRequestTtl = Objects.requireNonNull(sessionRequestTtl);
+      return this;
+    }
+
+    /**
+     * Set the time during which an authorization code can be exchanged for a token.
+     *
+     * <p>The time starts when the user has logged in. Afterwards, the code is rejected, but the
+     * session itself stays valid. The default value is 10 minutes. Use {@link Duration#ZERO} to
+     * accept codes for as long as their session exists.
+     *
+     * @param authorizationCodeTtl the time to live of authorization codes
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAuthorizationCodeTtl(@Nonnull final Duration authorizationCodeTtl) {
+      this.authorizationCodeTtl = Objects.requireNonNull(authorizationCodeTtl);
+      return this;
+    }
+
+    /**
+     * Set the time after which a session is discarded if it is not logged out before.
+     *
+     * <p>The time starts anew whenever the user logs in again using the session. The default value
+     * is 10 hours. Use {@link Duration#ZERO} to keep sessions until they are logged out.
+     *
+     * @param sessionTtl the time to live of sessions
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSessionTtl(@Nonnull final Duration sessionTtl) {
+      this.sessionTtl = Objects.requireNonNull(sessionTtl);
+      return this;
+    }
+
+    /**
+     * Set the maximum number of login requests and sessions kept at the same time.
+     *
+     * <p>When the capacity has been reached, new logins are handled according to the {@link
+     * #withSessionEvictionPolicy(SessionEvictionPolicy) eviction policy}. The default value is
+     * 100000. Use 0 for an unlimited number of sessions.
+     *
+     * @param sessionCapacity the maximum number of login requests and sessions
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSessionCapacity(final int sessionCapacity) {
+      this.sessionCapacity = sessionCapacity;
+      return this;
+    }
+
+    /**
+     * Set what happens when a login is started while the session capacity has been reached.
+     *
+     * <p>The default setting is {@link SessionEvictionPolicy#EVICT_EARLIEST_EXPIRING}.
+     *
+     * @param sessionEvictionPolicy the eviction policy
+     * @return builder
+     * @see #withSessionCapacity(int)
+     */
+    @Nonnull
+    public Builder withSessionEvictionPolicy(
+        @Nonnull final SessionEvictionPolicy sessionEvictionPolicy) {
+      this.sessionEvictionPolicy = Objects.requireNonNull(sessionEvictionPolicy);
+      return this;
+    }
+
+    /**
+     * Set a file in which login requests and sessions are persisted across restarts.
+     *
+     * <p>Every change is appended to the file, and when the server is started again, all login
+     * requests and sessions are restored from it, so users do not have to log in again. The file is
+     * compacted automatically once it mostly contains outdated changes. By default, sessions are
+     * only kept in memory.
+     *
+     * @param sessionJournalFile the file to persist sessions in, or null to disable persistence
+     * @return builder
+     */
+    @Nonnull
+    public Builder withSessionJournalFile(@Nullable final Path sessionJournalFile) {
+      this.sessionJournalFile = sessionJournalFile;
+      return this;
+    }
+
+    /**
+     * Set a secret to issue self-contained authorization codes.
+     *
+     * <p>By default, an authorization code refers to a session kept in memory, so it can only be
+     * exchanged for a token at the same mock instance. With a secret, the code contains the data of
+     * the session itself, encrypted and integrity-protected with a key derived from the secret.
+     * Then every mock instance configured with the same secret can redeem it, e.g. when running
+     * several instances behind a load balancer. Such codes cannot be revoked, they stay valid until
+     * their {@link #withAuthorizationCodeTtl(Duration) time to live} has passed.
+     *
+     * @param authorizationCodeSecret the secret shared by all mock instances, or null to use codes
+     *     that refer to local sessions
+     * @return builder
+     */
+    @Nonnull
+    public Builder withAuthorizationCodeSecret(@Nullable final String authorizationCodeSecret) {
+      this.authorizationCodeSecret = authorizationCodeSecret;
+      return this;
+    }
+
+    /**
+     * Set a file from which the key for signing tokens is loaded.
+     *
+     * <p>By default, the built-in RSA key is used for {@link SigningAlgorithm#RS256}, and a new key
+     * pair is generated for all other algorithms. With a key file, tokens are signed with the key
+     * pair contained in it instead, so several mock instances using the same file issue tokens
+     * which can be verified with the same JWKS, and keys stay the same across restarts.
+     *
+     * <p>The following formats are supported:
+     *
+     * <ul>
+     *   <li>a PKCS#12 keystore, using the alias of the key entry as key ID
+     *   <li>a JWK set containing a private key, using its 'kid' as key ID
+     *   <li>a PEM file containing an unencrypted PKCS#8 private key, and optionally the matching
+     *       public key or certificate
+     * </ul>
+     *
+     * <p>If the file does not define a key ID, the JWK thumbprint of the public key is used. The
+     * type of the key must match the {@link #withSigningAlgorithm(SigningAlgorithm) signing
+     * algorithm}. Such files can be created using {@link KeycloakMock#exportSigningKey(Path)}.
+     *
+     * @param signingKeyFile the file containing the signing key, or null to use the default key
+     * @return builder
+     * @see #withSigningKeyPassword(String)
+     */
+    @Nonnull
+    public Builder withSigningKeyFile(@Nullable final Path signingKeyFile) {
+      this.signingKeyFile = signingKeyFile;
+      return this;
+    }
+
+    /**
+     * Set the password of the signing key file.
+     *
+     * <p>This is only used for PKCS#12 keystores. By default, an empty password is used.
+     *
+     * @param signingKeyPassword the password of the keystore
+     * @return builder
+     * @see #withSigningKeyFile(Path)
+     */
+    @Nonnull
+    public Builder withSigningKeyPassword(@Nullable final String signingKeyPassword) {
+      this.signingKeyPassword = signingKeyPassword;
+      return this;
+    }
+
+    /**
+     * Set whether short opaque refresh tokens are issued.
+     *
+     * <p>By default, the access token is also returned as refresh token, and refreshing it returns
+     * the same token again. With opaque refresh tokens, a random refresh token is issued instead,
+     * which is kept in memory. Refreshing it returns a newly signed access token and a new refresh
+     * token, while the used refresh token becomes invalid. Refresh tokens expire together with the
+     * {@link #withSessionTtl(Duration) session time to live}, and their number is limited by the
+     * {@link #withSessionCapacity(int) session capacity}, evicting the tokens that expire next.
+     *
+     * <p>Note that some clients, e.g. keycloak-js, expect refresh tokens to be JWTs.
+     *
+     * @param opaqueRefreshTokens whether to issue opaque refresh tokens
+     * @return builder
+     */
+    @Nonnull
+    public Builder withOpaqueRefreshTokens(final boolean opaqueRefreshTokens) {
+      this.opaqueRefreshTokens = opaqueRefreshTokens;
+      return this;
+    }
+
+    /**
+     * Set whether the token endpoint issues short opaque access tokens.
+     *
+     * <p>By default, access tokens are signed tokens, which resource servers can verify locally.
+     * With opaque access tokens, the token endpoint returns a random access token instead, which
+     * can only be validated using token introspection. The signed token is still returned as ID
+     * token. Opaque access tokens are kept in memory until they expire, and their number is limited
+     * by the {@link #withSessionCapacity(int) session capacity}, evicting the tokens that expire
+     * next. Tokens generated using {@link KeycloakMock#getAccessToken(TokenConfig)} are not
+     * affected.
+     *
+     * @param opaqueAccessTokens whether to issue opaque access tokens
+     * @return builder
+     */
+    @Nonnull
+    public Builder withOpaqueAccessTokens(final boolean opaqueAccessTokens) {
+      this.opaqueAccessTokens = opaqueAccessTokens;
+      return this;
+    }
+
     /**
      * Build the server configuration.
      *
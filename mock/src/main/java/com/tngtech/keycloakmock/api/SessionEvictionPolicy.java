@@ -0,0 +1,17 @@
+package com.tngtech.keycloakmock.api;
+
+/**
+ * What to do when a new login is started while the maximum number of sessions has been reached.
+ *
+ * @see ServerConfig.Builder#withSessionCapacity(int)
+ */
+public enum SessionEvictionPolicy {
+  /**
+   * Remove the login request or session that would expire next to make room for the new one.
+   *
+   * <p>If no entry can be removed because expiry is disabled, the new login is rejected.
+   */
+  EVICT_EARLIEST_EXPIRING,
+  /** Reject the new login with status 503. */
+  REJECT_NEW
+}
@@ -0,0 +1,42 @@
+package com.tngtech.keycloakmock.api;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The algorithm used to sign generated tokens.
+ *
+ * <p>For all algorithms except {@link #RS256}, a fresh key pair is generated whenever a new mock
+ * instance is created, unless a {@link ServerConfig.Builder#withSigningKeyFile(java.nio.file.Path)
+ * signing key file} is configured.
+ */
+public enum SigningAlgorithm {
+  /** RSASSA-PKCS1-v1_5 using SHA-256, by default with the built-in 2048 bit RSA key. */
+  RS256("RS256"),
+  /** ECDSA using curve P-256 and SHA-256. */
+  ES256("ES256"),
+  /** ECDSA using curve P-384 and SHA-384. */
+  ES384("ES384"),
+  /**
+   * EdDSA using curve Ed25519.
+   *
+   * <p>Note that this requires Java 15 or later (or an additional security provider supporting
+   * Ed25519).
+   */
+  ED25519("EdDSA");
+
+  @Nonnull private final String jwsAlgorithm;
+
+  SigningAlgorithm(@Nonnull final String jwsAlgorithm) {
+    this.jwsAlgorithm = jwsAlgorithm;
+  }
+
+  /**
+   * The name of the algorithm as used in the JWS header and the discovery document.
+   *
+   * @return the JWS algorithm name
+   */
+  @Nonnull
+  public String getJwsAlgorithm() {
+    return jwsAlgorithm;
+  }
+}
@@ -0,0 +1,59 @@
+package com.tngtech.keycloakmock.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/**
+ * A cache for values derived from request data, e.g. the host header.
+ *
+ * <p>As such keys are controlled by the client, the number of cached values is limited. Once the
+ * limit is reached, values for further keys are created on demand and not cached. There is no
+ * eviction, as the cached values are cheap to keep and the limit is only a safeguard.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class BoundedCache<K, V> {
+  // generous for any real setup, but small enough to not matter if the host header is random
+  public static final int DEFAULT_MAX_SIZE = 1000;
+
+  private final int maxSize;
+  @Nonnull private final ConcurrentMap<K, V> values = new ConcurrentHashMap<>();
+
+  public BoundedCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public BoundedCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Get the cached value for the key, or create it.
+   *
+   * @param key the key
+   * @param factory creates the value if it is not cached yet
+   * @return the cached value, or a new one if the cache is full
+   */
+  @Nonnull
+  public V get(@Nonnull K key, @Nonnull Function<? super K, ? extends V> factory) {
+    V value = values.get(key);
+    if (value == null) {
+      value = factory.apply(key);
+      // the size check is racy, so the limit can be exceeded by the number of concurrent callers
+      if (values.size() < maxSize) {
+        V existing = values.putIfAbsent(key, value);
+        if (existing != null) {
+          value = existing;
+        }
+      }
+    }
+    return value;
+  }
+
+  public int size() {
+    return values.size();
+  }
+}
@@ -0,0 +1,136 @@
+package com.tngtech.keycloakmock.impl;
+
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache for values that are only valid until a given point in time, e.g. data derived
+ * from tokens.
+ *
+ * <p>Lookups do not take any lock. Expired entries are removed lazily when they are looked up, or
+ * when a new entry is added; if the cache is still full, the entries expiring first are evicted.
+ * The entries are additionally kept ordered by expiry, so adding an entry takes O(log n) even if
+ * the cache is full. Values that have already expired are never added.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class ExpiringCache<K, V> {
+  private final int maxSize;
+  @Nonnull private final LongSupplier clock;
+  @Nonnull private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+
+  @Nonnull
+  private final ConcurrentSkipListSet<Entry<K, V>> entriesByExpiry =
+      new ConcurrentSkipListSet<>(
+          Comparator.<Entry<K, V>>comparingLong(e -> e.expiresAtMillis)
+              .thenComparingLong(e -> e.sequenceNumber));
+
+  // makes entries expiring at the same time distinct in the ordered set
+  @Nonnull private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxSize the maximum number of entries, 0 to disable caching
+   */
+  public ExpiringCache(int maxSize) {
+    this(maxSize, System::currentTimeMillis);
+  }
+
+  ExpiringCache(int maxSize, @Nonnull LongSupplier clock) {
+    this.maxSize = maxSize;
+    this.clock = clock;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Get the value for the key.
+   *
+   * @param key the key
+   * @return the value, or null if there is none or it has expired
+   */
+  @Nullable
+  public V get(@Nonnull K key) {
+    Entry<K, V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAtMillis <= clock.getAsLong()) {
+      remove(entry);
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Add a value, unless there already is one for the key.
+   *
+   * @param key the key
+   * @param value the value
+   * @param expiresAtMillis the time after which the value must no longer be used, in milliseconds
+   *     since the epoch
+   */
+  public void put(@Nonnull K key, @Nonnull V value, long expiresAtMillis) {
+    long now = clock.getAsLong();
+    if (maxSize <= 0 || expiresAtMillis <= now) {
+      return;
+    }
+    removeExpired(now);
+    Entry<K, V> entry = new Entry<>(key, value, expiresAtMillis, sequence.getAndIncrement());
+    if (entries.putIfAbsent(key, entry) != null) {
+      return;
+    }
+    entriesByExpiry.add(entry);
+    // the size check is racy, so the limit can be exceeded by the number of concurrent callers
+    while (entries.size() > maxSize) {
+      Entry<K, V> expiringFirst = entriesByExpiry.pollFirst();
+      if (expiringFirst == null) {
+        break;
+      }
+      entries.remove(expiringFirst.key, expiringFirst);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void removeExpired(long now) {
+    // the iterator returns the entries in the order of their expiry
+    for (Entry<K, V> entry : entriesByExpiry) {
+      if (entry.expiresAtMillis > now) {
+        break;
+      }
+      remove(entry);
+    }
+  }
+
+  private void remove(@Nonnull Entry<K, V> entry) {
+    entriesByExpiry.remove(entry);
+    entries.remove(entry.key, entry);
+  }
+
+  private static final class Entry<K, V> {
+    @Nonnull private final K key;
+    @Nonnull private final V value;
+    private final long expiresAtMillis;
+    private final long sequenceNumber;
+
+    private Entry(@Nonnull K key, @Nonnull V value, long expiresAtMillis, long sequenceNumber) {
+      this.key = key;
+      this.value = value;
+      this.expiresAtMillis = expiresAtMillis;
+      this.sequenceNumber = sequenceNumber;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.tngtech.keycloakmock.impl;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deploys the configured number of HTTP server instances.
+ *
+ * <p>Each instance is a separate verticle and thus runs on its own event loop. As all instances
+ * listen on the same port, Vert.x distributes incoming connections between them. All instances
+ * share the same router, and thereby the same handlers, sessions and keys.
+ */
+@Singleton
+public class HttpServerDeployment {
+  private static final Logger LOG = LoggerFactory.getLogger(HttpServerDeployment.class);
+
+  @Nonnull private final Vertx vertx;
+  @Nonnull private final HttpServerOptions options;
+  @Nonnull private final Router router;
+  private final int instances;
+
+  @Nullable private volatile String deploymentId;
+  private volatile int actualPort;
+
+  @Inject
+  HttpServerDeployment(
+      @Nonnull Vertx vertx,
+      @Nonnull HttpServerOptions options,
+      @Nonnull Router router,
+      @Nonnull ServerConfig serverConfig) {
+    this.vertx = vertx;
+    this.options = options;
+    this.router = router;
+    this.instances = serverConfig.getServerInstances();
+  }
+
+  /**
+   * Deploy all server instances.
+   *
+   * @return a future that completes when all instances are listening
+   */
+  @Nonnull
+  public Future<Void> start() {
+    return vertx
+        .deployVerticle(ServerVerticle::new, new DeploymentOptions().setInstances(instances))
+        .onSuccess(id -> deploymentId = id)
+        .mapEmpty();
+  }
+
+  /**
+   * Undeploy all server instances, which also closes the servers.
+   *
+   * @return a future that completes when all instances have been stopped
+   */
+  @Nonnull
+  public Future<Void> stop() {
+    String id = deploymentId;
+    if (id == null) {
+      return Future.succeededFuture();
+    }
+    deploymentId = null;
+    return vertx.undeploy(id);
+  }
+
+  /**
+   * Get the port the servers are listening on.
+   *
+   * @return the port
+   */
+  public int actualPort() {
+    return actualPort;
+  }
+
+  private class ServerVerticle extends AbstractVerticle {
+    @Override
+    public void start(@Nonnull Promise<Void> startPromise) {
+      vertx
+          .createHttpServer(options)
+          .requestHandler(router)
+          .exceptionHandler(t -> LOG.error("Exception while processing request", t))
+          .listen()
+          .onSuccess(server -> actualPort = server.actualPort())
+          .<Void>mapEmpty()
+          .onComplete(startPromise);
+    }
+  }
+}
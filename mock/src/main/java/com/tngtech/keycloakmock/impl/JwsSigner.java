@@ -0,0 +1,187 @@
+package com.tngtech.keycloakmock.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Creates compact JWS strings without going through a generic JWT builder.
+ *
+ * <p>The header never changes for a given key, so its encoded form is computed only once. The
+ * payload is written by the caller through a streaming JSON generator into a buffer that is re-used
+ * per thread, as is the {@link Signature} instance.
+ */
+class JwsSigner {
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final byte SEPARATOR = '.';
+  private static final int INITIAL_BUFFER_SIZE = 2048;
+
+  @Nonnull private final ObjectMapper objectMapper;
+  @Nonnull private final SigningAlgorithm signingAlgorithm;
+  @Nonnull private final byte[] encodedHeader;
+  @Nonnull private final ThreadLocal<SigningContext> signingContext;
+
+  JwsSigner(
+      @Nonnull ObjectMapper objectMapper,
+      @Nonnull SigningAlgorithm signingAlgorithm,
+      @Nonnull PrivateKey privateKey,
+      @Nonnull String keyId) {
+    this.objectMapper = objectMapper;
+    this.signingAlgorithm = signingAlgorithm;
+    Map<String, String> header = new LinkedHashMap<>();
+    header.put("kid", keyId);
+    header.put("typ", "JWT");
+    header.put("alg", signingAlgorithm.getJwsAlgorithm());
+    try {
+      this.encodedHeader = ENCODER.encode(objectMapper.writeValueAsBytes(header));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to encode token header", e);
+    }
+    this.signingContext =
+        ThreadLocal.withInitial(() -> new SigningContext(signingAlgorithm, privateKey));
+  }
+
+  @Nonnull
+  String sign(@Nonnull PayloadWriter payloadWriter) {
+    SigningContext context = signingContext.get();
+    ReusableOutputStream buffer = context.buffer;
+    buffer.reset();
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+      payloadWriter.write(generator);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to encode token payload", e);
+    }
+    byte[] encodedPayload = ENCODER.encode(buffer.contentAsByteBuffer()).array();
+    byte[] encodedSignature;
+    try {
+      Signature signature = context.signature;
+      signature.update(encodedHeader);
+      signature.update(SEPARATOR);
+      signature.update(encodedPayload);
+      encodedSignature = ENCODER.encode(toJoseSignature(signature.sign()));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to sign token", e);
+    }
+    byte[] token =
+        new byte[encodedHeader.length + encodedPayload.length + encodedSignature.length + 2];
+    int offset = 0;
+    System.arraycopy(encodedHeader, 0, token, offset, encodedHeader.length);
+    offset += encodedHeader.length;
+    token[offset++] = SEPARATOR;
+    System.arraycopy(encodedPayload, 0, token, offset, encodedPayload.length);
+    offset += encodedPayload.length;
+    token[offset++] = SEPARATOR;
+    System.arraycopy(encodedSignature, 0, token, offset, encodedSignature.length);
+    return new String(token, StandardCharsets.US_ASCII);
+  }
+
+  @Nonnull
+  private byte[] toJoseSignature(@Nonnull byte[] signature) {
+    switch (signingAlgorithm) {
+      case ES256:
+        return transcodeDerToConcat(signature, 32);
+      case ES384:
+        return transcodeDerToConcat(signature, 48);
+      case RS256:
+      case ED25519:
+      default:
+        return signature;
+    }
+  }
+
+  /**
+   * The JCA providers return ECDSA signatures as DER encoded sequence of the two integers R and S,
+   * while JWS requires the concatenation of both values in fixed length big-endian format.
+   *
+   * @see <a href="https://www.rfc-editor.org/rfc/rfc7518#section-3.4">RFC 7518, section 3.4</a>
+   */
+  @Nonnull
+  static byte[] transcodeDerToConcat(@Nonnull byte[] der, int valueLength) {
+    if (der.length < 8 || der[0] != 0x30) {
+      throw new IllegalStateException("Invalid ECDSA signature format");
+    }
+    // the sequence length is encoded in one byte, or in two if it is larger than 127
+    int offset = (der[1] & 0x80) != 0 ? 2 + (der[1] & 0x7f) : 2;
+    byte[] result = new byte[2 * valueLength];
+    offset = copyInteger(der, offset, result, 0, valueLength);
+    copyInteger(der, offset, result, valueLength, valueLength);
+    return result;
+  }
+
+  private static int copyInteger(
+      @Nonnull byte[] der, int offset, @Nonnull byte[] target, int targetOffset, int valueLength) {
+    if (der[offset] != 0x02) {
+      throw new IllegalStateException("Invalid ECDSA signature format");
+    }
+    int length = der[offset + 1] & 0xff;
+    int start = offset + 2;
+    int end = start + length;
+    // strip the leading zero bytes of the two's complement representation
+    while (length > valueLength && der[start] == 0) {
+      start++;
+      length--;
+    }
+    if (length > valueLength) {
+      throw new IllegalStateException("Invalid ECDSA signature length");
+    }
+    System.arraycopy(der, start, target, targetOffset + valueLength - length, length);
+    return end;
+  }
+
+  @Nonnull
+  private static String getJcaAlgorithm(@Nonnull SigningAlgorithm signingAlgorithm) {
+    switch (signingAlgorithm) {
+      case ES256:
+        return "SHA256withECDSA";
+      case ES384:
+        return "SHA384withECDSA";
+      case ED25519:
+        return "Ed25519";
+      case RS256:
+      default:
+        return "SHA256withRSA";
+    }
+  }
+
+  interface PayloadWriter {
+    void write(@Nonnull JsonGenerator generator) throws IOException;
+  }
+
+  private static class SigningContext {
+    @Nonnull private final ReusableOutputStream buffer = new ReusableOutputStream();
+    @Nonnull private final Signature signature;
+
+    private SigningContext(
+        @Nonnull SigningAlgorithm signingAlgorithm, @Nonnull PrivateKey privateKey) {
+      try {
+        signature = Signature.getInstance(getJcaAlgorithm(signingAlgorithm));
+        // after each call to sign(), the instance is reset to this state, so it can be re-used
+        signature.initSign(privateKey);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("Unable to initialize token signature", e);
+      }
+    }
+  }
+
+  private static class ReusableOutputStream extends ByteArrayOutputStream {
+    private ReusableOutputStream() {
+      super(INITIAL_BUFFER_SIZE);
+    }
+
+    @Nonnull
+    private ByteBuffer contentAsByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
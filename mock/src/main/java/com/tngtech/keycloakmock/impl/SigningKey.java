@@ -0,0 +1,339 @@
+package com.tngtech.keycloakmock.impl;
+
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PrivateJwk;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The key pair used to sign tokens, together with its key ID.
+ *
+ * <p>Signing keys can be loaded from and exported to files, so that several mock instances can
+ * share the same key.
+ */
+public final class SigningKey {
+  private static final Pattern PEM_BLOCK =
+      Pattern.compile("-----BEGIN ([A-Z0-9 ]+)-----([^-]*)-----END \\1-----");
+  private static final String PEM_LINE_SEPARATOR = "\n";
+  private static final int PEM_LINE_LENGTH = 64;
+
+  @Nonnull private final String keyId;
+  @Nonnull private final KeyPair keyPair;
+
+  public SigningKey(@Nonnull String keyId, @Nonnull KeyPair keyPair) {
+    this.keyId = keyId;
+    this.keyPair = keyPair;
+  }
+
+  @Nonnull
+  public String getKeyId() {
+    return keyId;
+  }
+
+  @Nonnull
+  public KeyPair getKeyPair() {
+    return keyPair;
+  }
+
+  /**
+   * Check that the JVM is able to create keys for and sign with the given algorithm.
+   *
+   * <p>RSA and ECDSA are available on every supported JVM, but Ed25519 is only built into Java 15
+   * and later. On older versions, it requires an additional security provider like BouncyCastle.
+   *
+   * @param signingAlgorithm the algorithm to check
+   * @throws IllegalStateException if the algorithm is not available
+   */
+  public static void checkSupported(@Nonnull SigningAlgorithm signingAlgorithm) {
+    if (signingAlgorithm != SigningAlgorithm.ED25519) {
+      return;
+    }
+    try {
+      KeyPairGenerator.getInstance("Ed25519");
+      Signature.getInstance("Ed25519");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(
+          "Signing algorithm ED25519 requires Java 15 or later, or a security provider supporting"
+              + " Ed25519 such as BouncyCastle, but the current Java version is "
+              + System.getProperty("java.version"),
+          e);
+    }
+  }
+
+  /**
+   * Load a signing key from a PKCS#12 keystore, a JWK set or a PEM file.
+   *
+   * @param file the file to read
+   * @param password the password of a PKCS#12 keystore, or null for an empty password
+   * @param signingAlgorithm the algorithm the key is going to be used with
+   * @return the signing key
+   * @throws IllegalStateException if the file cannot be read or contains no suitable key
+   */
+  @Nonnull
+  public static SigningKey load(
+      @Nonnull Path file, @Nullable String password, @Nonnull SigningAlgorithm signingAlgorithm) {
+    SigningKey signingKey;
+    try {
+      byte[] content = Files.readAllBytes(file);
+      String text = new String(content, StandardCharsets.UTF_8).trim();
+      if (text.startsWith("{")) {
+        signingKey = fromJwks(text, signingAlgorithm);
+      } else if (text.contains("-----BEGIN")) {
+        signingKey = fromPem(text, signingAlgorithm);
+      } else {
+        signingKey = fromPkcs12(content, password, signingAlgorithm);
+      }
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      throw new IllegalStateException("Error while loading signing key from " + file, e);
+    }
+    if (signingKey == null) {
+      throw new IllegalStateException(
+          "No private key suitable for " + signingAlgorithm + " found in " + file);
+    }
+    return signingKey;
+  }
+
+  /**
+   * Write this signing key including its private key to a file.
+   *
+   * <p>If the file name ends with '.pem', the keys are written in PEM format. As PEM cannot contain
+   * the key ID and keys loaded from PEM files use the JWK thumbprint as ID, this is only possible
+   * if the key ID is the thumbprint. Otherwise, a JWK set containing the key ID is written.
+   *
+   * <p>Where POSIX file permissions are supported, the file is only readable and writable by its
+   * owner.
+   *
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   * @throws IllegalStateException if the key is written in PEM format, but its ID is not the JWK
+   *     thumbprint
+   */
+  public void export(@Nonnull Path file) throws IOException {
+    String content;
+    if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pem")) {
+      if (!keyId.equals(getThumbprint(keyPair.getPublic()))) {
+        throw new IllegalStateException(
+            "Key ID '"
+                + keyId
+                + "' cannot be written to a PEM file, as instances loading it would use the JWK"
+                + " thumbprint as key ID instead; export the key as JWK set");
+      }
+      content =
+          toPem("PRIVATE KEY", keyPair.getPrivate()) + toPem("PUBLIC KEY", keyPair.getPublic());
+    } else {
+      content =
+          new JsonObject()
+              .put(
+                  "keys",
+                  new JsonArray(
+                      Collections.singletonList(
+                          new JsonObject(
+                              Jwks.UNSAFE_JSON(
+                                  Jwks.builder()
+                                      .keyPair(keyPair)
+                                      .id(keyId)
+                                      .publicKeyUse("sig")
+                                      .build())))))
+              .encodePrettily();
+    }
+    if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      // restrict the permissions before the private key is written
+      Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+      if (Files.exists(file)) {
+        Files.setPosixFilePermissions(file, ownerOnly);
+      } else {
+        Files.createFile(file, PosixFilePermissions.asFileAttribute(ownerOnly));
+      }
+    }
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Nullable
+  private static SigningKey fromJwks(
+      @Nonnull String json, @Nonnull SigningAlgorithm signingAlgorithm) {
+    Iterable<Jwk<?>> keys;
+    if (new JsonObject(json).containsKey("keys")) {
+      JwkSet jwkSet = Jwks.setParser().build().parse(json);
+      keys = jwkSet.getKeys();
+    } else {
+      keys = Collections.singletonList(Jwks.parser().build().parse(json));
+    }
+    for (Jwk<?> jwk : keys) {
+      if (!(jwk instanceof PrivateJwk)) {
+        continue;
+      }
+      PrivateJwk<?, ?, ?> privateJwk = (PrivateJwk<?, ?, ?>) jwk;
+      String use = privateJwk.toPublicJwk().getPublicKeyUse();
+      KeyPair keyPair = privateJwk.toKeyPair().toJavaKeyPair();
+      if ((use == null || "sig".equals(use)) && isSuitable(keyPair.getPublic(), signingAlgorithm)) {
+        return withKeyId(jwk.getId(), keyPair);
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static SigningKey fromPem(@Nonnull String pem, @Nonnull SigningAlgorithm signingAlgorithm)
+      throws GeneralSecurityException {
+    KeyFactory keyFactory = KeyFactory.getInstance(getKeyAlgorithm(signingAlgorithm));
+    PrivateKey privateKey = null;
+    PublicKey publicKey = null;
+    Matcher matcher = PEM_BLOCK.matcher(pem);
+    while (matcher.find()) {
+      byte[] der = Base64.getMimeDecoder().decode(matcher.group(2));
+      switch (matcher.group(1)) {
+        case "PRIVATE KEY":
+          privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(der));
+          break;
+        case "PUBLIC KEY":
+          publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(der));
+          break;
+        case "CERTIFICATE":
+          publicKey =
+              CertificateFactory.getInstance("X.509")
+                  .generateCertificate(new ByteArrayInputStream(der))
+                  .getPublicKey();
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "Unsupported PEM block '"
+                  + matcher.group(1)
+                  + "', only unencrypted PKCS#8 private keys are supported");
+      }
+    }
+    if (privateKey == null) {
+      return null;
+    }
+    if (publicKey == null) {
+      // derive the public key, which is possible for all supported key types
+      publicKey = Jwks.builder().key(privateKey).build().toPublicJwk().toKey();
+    }
+    if (!isSuitable(publicKey, signingAlgorithm)) {
+      return null;
+    }
+    return withKeyId(null, new KeyPair(publicKey, privateKey));
+  }
+
+  @Nullable
+  private static SigningKey fromPkcs12(
+      @Nonnull byte[] content,
+      @Nullable String password,
+      @Nonnull SigningAlgorithm signingAlgorithm)
+      throws IOException, GeneralSecurityException {
+    char[] passwordChars = password != null ? password.toCharArray() : new char[0];
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(new ByteArrayInputStream(content), passwordChars);
+    Enumeration<String> aliases = keyStore.aliases();
+    while (aliases.hasMoreElements()) {
+      String alias = aliases.nextElement();
+      if (!keyStore.isKeyEntry(alias) || keyStore.getCertificate(alias) == null) {
+        continue;
+      }
+      Key key = keyStore.getKey(alias, passwordChars);
+      PublicKey publicKey = keyStore.getCertificate(alias).getPublicKey();
+      if (key instanceof PrivateKey && isSuitable(publicKey, signingAlgorithm)) {
+        return new SigningKey(alias, new KeyPair(publicKey, (PrivateKey) key));
+      }
+    }
+    return null;
+  }
+
+  @Nonnull
+  private static SigningKey withKeyId(@Nullable String keyId, @Nonnull KeyPair keyPair) {
+    if (keyId == null) {
+      // the thumbprint is stable, so all instances using the same key agree on its ID
+      keyId = getThumbprint(keyPair.getPublic());
+    }
+    return new SigningKey(keyId, keyPair);
+  }
+
+  @Nonnull
+  private static String getThumbprint(@Nonnull PublicKey publicKey) {
+    return Jwks.builder().key(publicKey).idFromThumbprint().build().getId();
+  }
+
+  private static boolean isSuitable(
+      @Nonnull PublicKey publicKey, @Nonnull SigningAlgorithm signingAlgorithm) {
+    switch (signingAlgorithm) {
+      case ES256:
+        return hasFieldSize(publicKey, 256);
+      case ES384:
+        return hasFieldSize(publicKey, 384);
+      case ED25519:
+        return "Ed25519".equals(publicKey.getAlgorithm())
+            || "EdDSA".equals(publicKey.getAlgorithm());
+      case RS256:
+      default:
+        return publicKey instanceof RSAPublicKey;
+    }
+  }
+
+  private static boolean hasFieldSize(@Nonnull PublicKey publicKey, int fieldSize) {
+    return publicKey instanceof ECPublicKey
+        && ((ECPublicKey) publicKey).getParams().getCurve().getField().getFieldSize() == fieldSize;
+  }
+
+  @Nonnull
+  private static String getKeyAlgorithm(@Nonnull SigningAlgorithm signingAlgorithm) {
+    switch (signingAlgorithm) {
+      case ES256:
+      case ES384:
+        return "EC";
+      case ED25519:
+        return "Ed25519";
+      case RS256:
+      default:
+        return "RSA";
+    }
+  }
+
+  @Nonnull
+  private static String toPem(@Nonnull String type, @Nonnull Key key) {
+    return "-----BEGIN "
+        + type
+        + "-----"
+        + PEM_LINE_SEPARATOR
+        + Base64.getMimeEncoder(
+                PEM_LINE_LENGTH, PEM_LINE_SEPARATOR.getBytes(StandardCharsets.US_ASCII))
+            .encodeToString(key.getEncoded())
+        + PEM_LINE_SEPARATOR
+        + "-----END "
+        + type
+        + "-----"
+        + PEM_LINE_SEPARATOR;
+  }
+}
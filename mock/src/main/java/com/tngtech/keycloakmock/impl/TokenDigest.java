@@ -0,0 +1,39 @@
+package com.tngtech.keycloakmock.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.annotation.Nonnull;
+
+/**
+ * Creates SHA-256 digests of tokens, to be used as cache keys instead of the (potentially large)
+ * tokens themselves.
+ */
+public final class TokenDigest {
+  private static final ThreadLocal<MessageDigest> DIGEST =
+      ThreadLocal.withInitial(TokenDigest::createDigest);
+
+  private TokenDigest() {}
+
+  /**
+   * Get the digest of a token.
+   *
+   * @param token the token in compact form
+   * @return the SHA-256 digest of the token, which can be compared using {@link
+   *     ByteBuffer#equals(Object)}
+   */
+  @Nonnull
+  public static ByteBuffer of(@Nonnull String token) {
+    return ByteBuffer.wrap(DIGEST.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Nonnull
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+}
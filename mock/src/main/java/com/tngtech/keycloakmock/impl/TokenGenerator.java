@@ -1,62 +1,79 @@
 package com.tngtech.keycloakmock.impl;
 
 import static com.tngtech.keycloakmock.api.ServerConfig.DEFAULT_SCOPE;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_AUDIENCE;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_AUTHENTICATION_CONTEXT_REFERENCE;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_AUTHORIZED_PARTY;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_AUTH_TIME;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_EMAIL;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_EXPIRES_AT;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_FAMILY_NAME;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_GIVEN_NAME;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_ISSUED_AT;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_ISSUER;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_NAME;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_NOT_BEFORE;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_PREFERRED_USERNAME;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_REALM_ACCESS;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_RESOURCE_ACCESS;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_SCOPE;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_SESSION_ID;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_SESSION_STATE;
+import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_SUBJECT;
 import static com.tngtech.keycloakmock.api.TokenConfig.CLAIM_TYPE;
 import static java.util.Optional.ofNullable;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
 import com.tngtech.keycloakmock.api.TokenConfig;
 import com.tngtech.keycloakmock.impl.session.UserData;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import java.security.Key;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 @Singleton
 public class TokenGenerator {
-  @Nonnull private final PublicKey publicKey;
-  @Nonnull private final Key privateKey;
-  @Nonnull private final String keyId;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Nonnull private final JwtParser parser;
+  @Nonnull private final VerifiedClaimsCache verifiedClaimsCache;
+  @Nonnull private final JwsSigner signer;
   @Nonnull private final Collection<String> defaultAudiences;
-  @Nonnull private final Collection<String> defaultScopes;
+  @Nonnull private final String encodedDefaultScopes;
   @Nonnull private final Duration defaultTokenLifespan;
 
   @Inject
   TokenGenerator(
       @Nonnull PublicKey publicKey,
-      @Nonnull Key privateKey,
+      @Nonnull PrivateKey privateKey,
       @Nonnull @Named("keyId") String keyId,
+      @Nonnull SigningAlgorithm signingAlgorithm,
       @Nonnull @Named("audiences") Collection<String> defaultAudiences,
       @Nonnull @Named("scopes") Collection<String> defaultScopes,
-      @Nonnull @Named("tokenLifespan") Duration defaultTokenLifespan) {
-    this.publicKey = publicKey;
-    this.privateKey = privateKey;
-    this.keyId = keyId;
-    this.defaultScopes = defaultScopes;
+      @Nonnull @Named("tokenLifespan") Duration defaultTokenLifespan,
+      @Nonnull VerifiedClaimsCache verifiedClaimsCache) {
+    this.parser = Jwts.parser().verifyWith(publicKey).build();
+    this.verifiedClaimsCache = verifiedClaimsCache;
+    this.signer = new JwsSigner(OBJECT_MAPPER, signingAlgorithm, privateKey, keyId);
+    this.encodedDefaultScopes = encodeScopes(defaultScopes);
     this.defaultAudiences = defaultAudiences;
     this.defaultTokenLifespan = defaultTokenLifespan;
   }
@@ -64,86 +81,180 @@ public class TokenGenerator {
   @Nonnull
   public String getToken(
       @Nonnull TokenConfig tokenConfig, @Nonnull UrlConfiguration requestConfiguration) {
-    JwtBuilder builder =
-        Jwts.builder()
-            .header()
-            .keyId(keyId)
-            .type("JWT")
-            .and()
-            .audience()
-            .add(tokenConfig.getAudience().isEmpty() ? defaultAudiences : tokenConfig.getAudience())
-            .and()
-            .issuedAt(new Date(tokenConfig.getIssuedAt().toEpochMilli()))
-            .claim(CLAIM_AUTH_TIME, tokenConfig.getAuthenticationTime().getEpochSecond())
-            .issuer(requestConfiguration.getIssuer().toASCIIString())
-            .subject(tokenConfig.getSubject())
-            .claim(CLAIM_SCOPE, encodeGivenOrDefaultScopes(tokenConfig.getScopes()))
-            .claim(CLAIM_TYPE, "Bearer")
-            .claim(CLAIM_AUTHORIZED_PARTY, tokenConfig.getAuthorizedParty())
-            .claim(CLAIM_SESSION_ID, tokenConfig.getSessionId())
-            .claim(CLAIM_SESSION_STATE, tokenConfig.getSessionId());
-    if (tokenConfig.getNotBefore() != null) {
-      builder.notBefore(new Date(tokenConfig.getNotBefore().toEpochMilli()));
-    }
+    return signer.sign(generator -> writeClaims(generator, tokenConfig, requestConfiguration));
+  }
+
+  private void writeClaims(
+      @Nonnull JsonGenerator generator,
+      @Nonnull TokenConfig tokenConfig,
+      @Nonnull UrlConfiguration requestConfiguration)
+      throws IOException {
+    // generic claims take precedence over the ones derived from the token config
+    ClaimWriter writer = new ClaimWriter(generator, tokenConfig.getClaims());
+    generator.writeStartObject();
+    writer.writeArray(
+        CLAIM_AUDIENCE,
+        tokenConfig.getAudience().isEmpty() ? defaultAudiences : tokenConfig.getAudience());
+    writer.writeDate(CLAIM_ISSUED_AT, tokenConfig.getIssuedAt());
+    writer.writeNumber(CLAIM_AUTH_TIME, tokenConfig.getAuthenticationTime().getEpochSecond());
+    writer.writeString(CLAIM_ISSUER, requestConfiguration.getIssuerString());
+    writer.writeString(CLAIM_SUBJECT, tokenConfig.getSubject());
+    writer.writeString(CLAIM_SCOPE, encodeGivenOrDefaultScopes(tokenConfig.getScopes()));
+    writer.writeString(CLAIM_TYPE, "Bearer");
+    writer.writeString(CLAIM_AUTHORIZED_PARTY, tokenConfig.getAuthorizedParty());
+    writer.writeString(CLAIM_SESSION_ID, tokenConfig.getSessionId());
+    writer.writeString(CLAIM_SESSION_STATE, tokenConfig.getSessionId());
+    writer.writeDate(CLAIM_NOT_BEFORE, tokenConfig.getNotBefore());
     if (tokenConfig.getExpiration() != null) {
-      builder.expiration(new Date(tokenConfig.getExpiration().toEpochMilli()));
+      writer.writeDate(CLAIM_EXPIRES_AT, tokenConfig.getExpiration());
     } else {
-      builder.expiration(
-          new Date(tokenConfig.getIssuedAt().plus(defaultTokenLifespan).toEpochMilli()));
+      writer.writeDate(CLAIM_EXPIRES_AT, tokenConfig.getIssuedAt().plus(defaultTokenLifespan));
     }
     if (tokenConfig.isGenerateUserDataFromSubject()) {
       UserData generatedUserData =
           UserData.fromUsernameAndHostname(
               tokenConfig.getSubject(), requestConfiguration.getHostname());
-      builder
-          .claim(CLAIM_NAME, ofNullable(tokenConfig.getName()).orElse(generatedUserData.getName()))
-          .claim(
-              CLAIM_GIVEN_NAME,
-              ofNullable(tokenConfig.getGivenName()).orElse(generatedUserData.getGivenName()))
-          .claim(
-              CLAIM_FAMILY_NAME,
-              ofNullable(tokenConfig.getFamilyName()).orElse(generatedUserData.getFamilyName()))
-          .claim(
-              CLAIM_EMAIL, ofNullable(tokenConfig.getEmail()).orElse(generatedUserData.getEmail()))
-          .claim(
-              CLAIM_PREFERRED_USERNAME,
-              ofNullable(tokenConfig.getPreferredUsername())
-                  .orElse(generatedUserData.getPreferredUsername()));
+      writer.writeString(
+          CLAIM_NAME, ofNullable(tokenConfig.getName()).orElse(generatedUserData.getName()));
+      writer.writeString(
+          CLAIM_GIVEN_NAME,
+          ofNullable(tokenConfig.getGivenName()).orElse(generatedUserData.getGivenName()));
+      writer.writeString(
+          CLAIM_FAMILY_NAME,
+          ofNullable(tokenConfig.getFamilyName()).orElse(generatedUserData.getFamilyName()));
+      writer.writeString(
+          CLAIM_EMAIL, ofNullable(tokenConfig.getEmail()).orElse(generatedUserData.getEmail()));
+      writer.writeString(
+          CLAIM_PREFERRED_USERNAME,
+          ofNullable(tokenConfig.getPreferredUsername())
+              .orElse(generatedUserData.getPreferredUsername()));
     } else {
-      builder
-          .claim(CLAIM_NAME, tokenConfig.getName())
-          .claim(CLAIM_GIVEN_NAME, tokenConfig.getGivenName())
-          .claim(CLAIM_FAMILY_NAME, tokenConfig.getFamilyName())
-          .claim(CLAIM_EMAIL, tokenConfig.getEmail())
-          .claim(CLAIM_PREFERRED_USERNAME, tokenConfig.getPreferredUsername());
+      writer.writeString(CLAIM_NAME, tokenConfig.getName());
+      writer.writeString(CLAIM_GIVEN_NAME, tokenConfig.getGivenName());
+      writer.writeString(CLAIM_FAMILY_NAME, tokenConfig.getFamilyName());
+      writer.writeString(CLAIM_EMAIL, tokenConfig.getEmail());
+      writer.writeString(CLAIM_PREFERRED_USERNAME, tokenConfig.getPreferredUsername());
     }
-    return builder
-        .claim(
-            CLAIM_AUTHENTICATION_CONTEXT_REFERENCE,
-            tokenConfig.getAuthenticationContextClassReference())
-        .claim(CLAIM_REALM_ACCESS, tokenConfig.getRealmAccess())
-        .claim(CLAIM_RESOURCE_ACCESS, tokenConfig.getResourceAccess())
-        .claims()
-        .add(tokenConfig.getClaims())
-        .and()
-        .signWith(privateKey)
-        .compact();
+    writer.writeString(
+        CLAIM_AUTHENTICATION_CONTEXT_REFERENCE,
+        tokenConfig.getAuthenticationContextClassReference());
+    writer.writeObject(CLAIM_REALM_ACCESS, tokenConfig.getRealmAccess());
+    writer.writeObject(CLAIM_RESOURCE_ACCESS, tokenConfig.getResourceAccess());
+    writer.writeGenericClaims();
+    generator.writeEndObject();
   }
 
   private String encodeGivenOrDefaultScopes(List<String> scopes) {
     if (scopes.isEmpty()) {
-      return Stream.concat(Stream.of(DEFAULT_SCOPE), defaultScopes.stream())
-          .distinct()
-          .collect(Collectors.joining(" "));
+      return encodedDefaultScopes;
     } else {
-      return Stream.concat(Stream.of(DEFAULT_SCOPE), scopes.stream())
-          .distinct()
-          .collect(Collectors.joining(" "));
+      return encodeScopes(scopes);
     }
   }
 
+  private static String encodeScopes(Collection<String> scopes) {
+    return Stream.concat(Stream.of(DEFAULT_SCOPE), scopes.stream())
+        .distinct()
+        .collect(Collectors.joining(" "));
+  }
+
   public Claims parseToken(@Nonnull String token) {
-    JwtParser parser = Jwts.parser().verifyWith(publicKey).build();
-    return parser.parseSignedClaims(token).getPayload();
+    return verifiedClaimsCache.get(token, t -> parser.parseSignedClaims(t).getPayload());
+  }
+
+  /**
+   * Writes claims in the same way a JWT builder would: empty values are omitted, and dates are
+   * given in seconds since epoch.
+   */
+  private static class ClaimWriter {
+    @Nonnull private final JsonGenerator generator;
+    @Nonnull private final Map<String, Object> genericClaims;
+
+    private ClaimWriter(
+        @Nonnull JsonGenerator generator, @Nonnull Map<String, Object> genericClaims) {
+      this.generator = generator;
+      this.genericClaims = genericClaims;
+    }
+
+    private void writeString(@Nonnull String name, @Nullable String value) throws IOException {
+      if (isOverridden(name) || value == null || value.trim().isEmpty()) {
+        return;
+      }
+      generator.writeStringField(name, value);
+    }
+
+    private void writeNumber(@Nonnull String name, long value) throws IOException {
+      if (isOverridden(name)) {
+        return;
+      }
+      generator.writeNumberField(name, value);
+    }
+
+    private void writeDate(@Nonnull String name, @Nullable Instant value) throws IOException {
+      if (value != null) {
+        writeNumber(name, value.getEpochSecond());
+      }
+    }
+
+    private void writeArray(@Nonnull String name, @Nonnull Collection<String> values)
+        throws IOException {
+      if (isOverridden(name) || values.isEmpty()) {
+        return;
+      }
+      generator.writeArrayFieldStart(name);
+      for (String value : values) {
+        generator.writeString(value);
+      }
+      generator.writeEndArray();
+    }
+
+    private void writeObject(@Nonnull String name, @Nonnull Object value) throws IOException {
+      if (isOverridden(name) || isEmpty(value)) {
+        return;
+      }
+      generator.writeFieldName(name);
+      generator.writeObject(value);
+    }
+
+    private void writeGenericClaims() throws IOException {
+      for (Map.Entry<String, Object> claim : genericClaims.entrySet()) {
+        Object value = claim.getValue();
+        if (isEmpty(value)) {
+          continue;
+        }
+        generator.writeFieldName(claim.getKey());
+        if (value instanceof Date && isDateClaim(claim.getKey())) {
+          generator.writeNumber(((Date) value).getTime() / 1000);
+        } else {
+          generator.writeObject(value);
+        }
+      }
+    }
+
+    private boolean isOverridden(@Nonnull String name) {
+      return genericClaims.containsKey(name);
+    }
+
+    private static boolean isDateClaim(@Nonnull String name) {
+      return CLAIM_ISSUED_AT.equals(name)
+          || CLAIM_NOT_BEFORE.equals(name)
+          || CLAIM_EXPIRES_AT.equals(name);
+    }
+
+    private static boolean isEmpty(@Nullable Object value) {
+      if (value == null) {
+        return true;
+      }
+      if (value instanceof CharSequence) {
+        return value.toString().trim().isEmpty();
+      }
+      if (value instanceof Collection) {
+        return ((Collection<?>) value).isEmpty();
+      }
+      if (value instanceof Map) {
+        return ((Map<?, ?>) value).isEmpty();
+      }
+      return value.getClass().isArray() && Array.getLength(value) == 0;
+    }
   }
 }
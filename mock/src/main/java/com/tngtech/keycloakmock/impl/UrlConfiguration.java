@@ -6,6 +6,13 @@ import java.net.URISyntaxException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+/**
+ * The URLs of the mock as seen by a client, depending on the requested host and realm.
+ *
+ * <p>All URLs that do not depend on further request data are resolved once on creation, so that
+ * instances can be shared via {@link UrlConfigurationFactory} and getters do not need to parse any
+ * URIs.
+ */
 public class UrlConfiguration {
   private static final String ISSUER_PATH = "/realms/";
   private static final String AUTHENTICATION_CALLBACK_PATH = "authenticate/";
@@ -13,6 +20,8 @@ public class UrlConfiguration {
   private static final String ISSUER_OPEN_ID_PATH = "protocol/openid-connect/";
   private static final String OPEN_ID_TOKEN_PATH = "token";
   private static final String OPEN_ID_TOKEN_INTROSPECTION_PATH = OPEN_ID_TOKEN_PATH + "/introspect";
+  private static final String OPEN_ID_TOKEN_INTROSPECTION_BATCH_PATH =
+      OPEN_ID_TOKEN_INTROSPECTION_PATH + "/batch";
   private static final String OPEN_ID_JWKS_PATH = "certs";
   private static final String OPEN_ID_AUTHORIZATION_PATH = "auth";
   private static final String OPEN_ID_END_SESSION_PATH = "logout";
@@ -20,6 +29,19 @@ public class UrlConfiguration {
   @Nonnull private final String hostname;
   @Nonnull private final String contextPath;
   @Nonnull private final String realm;
+  @Nonnull private final URI baseUrl;
+  @Nonnull private final URI js;
+  @Nonnull private final URI jsPath;
+  @Nonnull private final URI issuer;
+  @Nonnull private final String issuerString;
+  @Nonnull private final URI issuerPath;
+  @Nonnull private final URI outOfBandLoginEndpoint;
+  @Nonnull private final URI authorizationEndpoint;
+  @Nonnull private final URI endSessionEndpoint;
+  @Nonnull private final URI tokenEndpoint;
+  @Nonnull private final URI tokenIntrospectionEndpoint;
+  @Nonnull private final URI tokenIntrospectionBatchEndpoint;
+  @Nonnull private final URI jwksUri;
 
   UrlConfiguration(
       @Nonnull ServerConfig serverConfig,
@@ -45,80 +67,110 @@ public class UrlConfiguration {
               : "/".concat(serverConfig.getContextPath());
     }
     this.realm = requestRealm != null ? requestRealm : serverConfig.getDefaultRealm();
-  }
-
-  @Nonnull
-  URI getBaseUrl() {
     try {
-      return new URI(protocol.getValue() + hostname);
+      this.baseUrl = new URI(protocol.getValue() + hostname);
     } catch (URISyntaxException e) {
       throw new IllegalStateException("Invalid URL encountered", e);
     }
+    this.js = resolveContextPath("/js");
+    this.jsPath = resolveContextPath("/js/");
+    this.issuer = resolveContextPath(ISSUER_PATH + realm);
+    this.issuerString = issuer.toASCIIString();
+    this.issuerPath = resolveContextPath(ISSUER_PATH + realm + "/");
+    this.outOfBandLoginEndpoint = issuerPath.resolve(OUT_OF_BAND_PATH);
+    URI openIdPath = issuerPath.resolve(ISSUER_OPEN_ID_PATH);
+    this.authorizationEndpoint = openIdPath.resolve(OPEN_ID_AUTHORIZATION_PATH);
+    this.endSessionEndpoint = openIdPath.resolve(OPEN_ID_END_SESSION_PATH);
+    this.tokenEndpoint = openIdPath.resolve(OPEN_ID_TOKEN_PATH);
+    this.tokenIntrospectionEndpoint = openIdPath.resolve(OPEN_ID_TOKEN_INTROSPECTION_PATH);
+    this.tokenIntrospectionBatchEndpoint =
+        openIdPath.resolve(OPEN_ID_TOKEN_INTROSPECTION_BATCH_PATH);
+    this.jwksUri = openIdPath.resolve(OPEN_ID_JWKS_PATH);
+  }
+
+  @Nonnull
+  URI getBaseUrl() {
+    return baseUrl;
   }
 
   @Nonnull
-  private URI getContextPath(String path) {
-    return getBaseUrl().resolve(contextPath + path);
+  private URI resolveContextPath(String path) {
+    return baseUrl.resolve(contextPath + path);
   }
 
   @Nonnull
   public URI getJs() {
-    return getContextPath("/js");
+    return js;
   }
 
   @Nonnull
   public URI getJsPath() {
-    return getContextPath("/js/");
+    return jsPath;
   }
 
   @Nonnull
   public URI getIssuer() {
-    return getContextPath(ISSUER_PATH + realm);
+    return issuer;
+  }
+
+  /**
+   * Get the issuer in the form used in the 'iss' claim of tokens.
+   *
+   * @return the issuer as ASCII string
+   */
+  @Nonnull
+  public String getIssuerString() {
+    return issuerString;
   }
 
   @Nonnull
   public URI getIssuerPath() {
-    return getContextPath(ISSUER_PATH + realm + "/");
+    return issuerPath;
   }
 
   @Nonnull
   public URI getOpenIdPath(@Nonnull final String path) {
-    return getIssuerPath().resolve(ISSUER_OPEN_ID_PATH).resolve(path);
+    return issuerPath.resolve(ISSUER_OPEN_ID_PATH).resolve(path);
   }
 
   @Nonnull
   public URI getAuthenticationCallbackEndpoint(@Nonnull final String sessionId) {
-    return getIssuerPath().resolve(AUTHENTICATION_CALLBACK_PATH + sessionId);
+    return issuerPath.resolve(AUTHENTICATION_CALLBACK_PATH + sessionId);
   }
 
   @Nonnull
   public URI getOutOfBandLoginLoginEndpoint() {
-    return getIssuerPath().resolve(OUT_OF_BAND_PATH);
+    return outOfBandLoginEndpoint;
   }
 
   @Nonnull
   public URI getAuthorizationEndpoint() {
-    return getOpenIdPath(OPEN_ID_AUTHORIZATION_PATH);
+    return authorizationEndpoint;
   }
 
   @Nonnull
   public URI getEndSessionEndpoint() {
-    return getOpenIdPath(OPEN_ID_END_SESSION_PATH);
+    return endSessionEndpoint;
   }
 
   @Nonnull
   public URI getTokenEndpoint() {
-    return getOpenIdPath(OPEN_ID_TOKEN_PATH);
+    return tokenEndpoint;
   }
 
   @Nonnull
   public URI getTokenIntrospectionEndpoint() {
-    return getOpenIdPath(OPEN_ID_TOKEN_INTROSPECTION_PATH);
+    return tokenIntrospectionEndpoint;
+  }
+
+  @Nonnull
+  public URI getTokenIntrospectionBatchEndpoint() {
+    return tokenIntrospectionBatchEndpoint;
   }
 
   @Nonnull
   public URI getJwksUri() {
-    return getOpenIdPath(OPEN_ID_JWKS_PATH);
+    return jwksUri;
   }
 
   @Nonnull
@@ -2,28 +2,90 @@ package com.tngtech.keycloakmock.impl;
 
 import com.tngtech.keycloakmock.api.ServerConfig;
 import io.vertx.ext.web.RoutingContext;
+import java.util.Objects;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+/**
+ * Provides the {@link UrlConfiguration} for a requested host and realm.
+ *
+ * <p>The protocol is fixed by the server configuration, so configurations only depend on host and
+ * realm and are shared between requests. As the host is taken from the request, the number of
+ * shared configurations is limited; once the limit is reached, configurations for further
+ * combinations are created on demand.
+ */
 @Singleton
 public class UrlConfigurationFactory {
+  static final int MAX_CACHED_CONFIGURATIONS = BoundedCache.DEFAULT_MAX_SIZE;
+
   @Nonnull private final ServerConfig serverConfig;
 
+  @Nonnull
+  private final BoundedCache<CacheKey, UrlConfiguration> configurations =
+      new BoundedCache<>(MAX_CACHED_CONFIGURATIONS);
+
   @Inject
   public UrlConfigurationFactory(@Nonnull ServerConfig serverConfig) {
     this.serverConfig = serverConfig;
   }
 
   public UrlConfiguration create(@Nullable String requestHost, @Nullable String requestRealm) {
-    return new UrlConfiguration(serverConfig, requestHost, requestRealm);
+    return create(new CacheKey(requestHost, requestRealm));
   }
 
   public UrlConfiguration create(@Nonnull RoutingContext routingContext) {
-    return new UrlConfiguration(
-        serverConfig,
-        routingContext.request().getHeader("Host"),
-        routingContext.pathParam("realm"));
+    return create(getCacheKey(routingContext));
+  }
+
+  public UrlConfiguration create(@Nonnull CacheKey cacheKey) {
+    return configurations.get(
+        cacheKey, key -> new UrlConfiguration(serverConfig, key.host, key.realm));
+  }
+
+  /**
+   * Get the key identifying the configuration of a request, which can also be used to cache data
+   * derived from the configuration.
+   *
+   * @param routingContext the context of the request
+   * @return the key consisting of the requested host and realm
+   */
+  @Nonnull
+  public static CacheKey getCacheKey(@Nonnull RoutingContext routingContext) {
+    return new CacheKey(
+        routingContext.request().getHeader("Host"), routingContext.pathParam("realm"));
+  }
+
+  int getCachedConfigurationCount() {
+    return configurations.size();
+  }
+
+  /** The requested host and realm, which determine a {@link UrlConfiguration}. */
+  public static final class CacheKey {
+    @Nullable private final String host;
+    @Nullable private final String realm;
+
+    private CacheKey(@Nullable String host, @Nullable String realm) {
+      this.host = host;
+      this.realm = realm;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey cacheKey = (CacheKey) o;
+      return Objects.equals(host, cacheKey.host) && Objects.equals(realm, cacheKey.realm);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(host, realm);
+    }
   }
 }
@@ -0,0 +1,56 @@
+package com.tngtech.keycloakmock.impl;
+
+import io.jsonwebtoken.Claims;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * A bounded cache of claims of tokens whose signature has already been verified.
+ *
+ * <p>Entries are keyed by the SHA-256 digest of the token, so the cache does not need to hold on to
+ * the (potentially large) tokens themselves. An entry is dropped as soon as the token expires. If
+ * the cache is full, the entry expiring first is evicted. Lookups do not take a lock, so concurrent
+ * requests for different tokens do not contend.
+ */
+@Singleton
+class VerifiedClaimsCache {
+  @Nonnull private final ExpiringCache<ByteBuffer, Claims> cache;
+
+  @Inject
+  VerifiedClaimsCache(@Named("verifiedTokenCacheSize") int maxSize) {
+    this.cache = new ExpiringCache<>(maxSize);
+  }
+
+  /**
+   * Get the claims of the token, verifying it only if it is not yet known.
+   *
+   * @param token the token in compact form
+   * @param verifier the function used to verify the token and extract its claims in case of a cache
+   *     miss
+   * @return the verified claims
+   */
+  @Nonnull
+  Claims get(@Nonnull String token, @Nonnull Function<String, Claims> verifier) {
+    if (!cache.isEnabled()) {
+      return verifier.apply(token);
+    }
+    ByteBuffer key = TokenDigest.of(token);
+    Claims cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    Claims claims = verifier.apply(token);
+    Date expiration = claims.getExpiration();
+    cache.put(key, claims, expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+    return claims;
+  }
+
+  int size() {
+    return cache.size();
+  }
+}
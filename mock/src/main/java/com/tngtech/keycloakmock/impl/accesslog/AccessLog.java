@@ -0,0 +1,191 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records handled requests without blocking the event loop.
+ *
+ * <p>Entries are put into a bounded, lock-free ring buffer by the event loops and written to the
+ * configured sink in batches by a single background thread. If the buffer is full because the sink
+ * cannot keep up, entries are dropped rather than slowing down request handling.
+ */
+@Singleton
+public class AccessLog {
+  private static final Logger LOG = LoggerFactory.getLogger(AccessLog.class);
+  private static final int CAPACITY = 8192;
+  private static final int BATCH_SIZE = 512;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+  @Nullable private final AccessLogSink sink;
+  private final double sampleRate;
+
+  private final int mask;
+  @Nonnull private final AtomicReferenceArray<AccessLogEntry> slots;
+  @Nonnull private final AtomicLong producerIndex = new AtomicLong();
+  // only written by the drain thread, but read by the producers to detect a full buffer
+  @Nonnull private final AtomicLong consumerIndex = new AtomicLong();
+  @Nonnull private final LongAdder dropped = new LongAdder();
+
+  @Nullable private final Thread drainThread;
+  private volatile boolean running = true;
+
+  @Inject
+  AccessLog(@Nonnull ServerConfig serverConfig) {
+    this(createSink(serverConfig), CAPACITY, serverConfig.getAccessLogSampleRate());
+  }
+
+  AccessLog(@Nullable AccessLogSink sink, int capacity, double sampleRate) {
+    this.sink = sink;
+    this.sampleRate = sampleRate;
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    if (isEnabled()) {
+      drainThread = new Thread(this::drainLoop, "keycloak-mock-access-log");
+      drainThread.setDaemon(true);
+      drainThread.start();
+    } else {
+      drainThread = null;
+    }
+  }
+
+  /**
+   * Check whether requests are logged at all.
+   *
+   * @return true if requests are logged
+   */
+  public boolean isEnabled() {
+    return sink != null && sampleRate > 0;
+  }
+
+  /**
+   * Record a handled request.
+   *
+   * <p>Depending on the sample rate, only a fraction of all requests is actually recorded.
+   *
+   * @param status the response status code
+   * @param method the request method
+   * @param uri the request URI
+   */
+  public void log(int status, @Nonnull String method, @Nonnull String uri) {
+    if (!isEnabled()
+        || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      return;
+    }
+    AccessLogEntry entry = new AccessLogEntry(System.currentTimeMillis(), status, method, uri);
+    long index;
+    do {
+      index = producerIndex.get();
+      if (index - consumerIndex.get() > mask) {
+        dropped.increment();
+        return;
+      }
+    } while (!producerIndex.compareAndSet(index, index + 1));
+    slots.lazySet((int) index & mask, entry);
+  }
+
+  /**
+   * Get the number of entries that were dropped because the buffer was full.
+   *
+   * @return the number of dropped entries
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /** Write all pending entries and stop the background thread. */
+  public void close() {
+    if (drainThread == null || !running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(drainThread);
+    try {
+      drainThread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drainLoop() {
+    AccessLogSink activeSink = Objects.requireNonNull(sink);
+    List<AccessLogEntry> batch = new ArrayList<>(BATCH_SIZE);
+    while (running) {
+      if (drain(batch, activeSink) == 0) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+    }
+    // entries added after the last regular drain
+    while (drain(batch, activeSink) > 0) {
+      // keep draining
+    }
+    try {
+      activeSink.close();
+    } catch (IOException e) {
+      LOG.warn("Unable to close access log", e);
+    }
+  }
+
+  private int drain(@Nonnull List<AccessLogEntry> batch, @Nonnull AccessLogSink activeSink) {
+    long index = consumerIndex.get();
+    while (batch.size() < BATCH_SIZE) {
+      int slot = (int) index & mask;
+      // a claimed slot may not be published yet; it is picked up with the next batch
+      AccessLogEntry entry = slots.get(slot);
+      if (entry == null) {
+        break;
+      }
+      slots.lazySet(slot, null);
+      batch.add(entry);
+      index++;
+    }
+    consumerIndex.lazySet(index);
+    int count = batch.size();
+    if (count > 0) {
+      try {
+        activeSink.write(batch);
+      } catch (IOException e) {
+        LOG.warn("Unable to write {} access log entries", count, e);
+      }
+      batch.clear();
+    }
+    return count;
+  }
+
+  @Nullable
+  private static AccessLogSink createSink(@Nonnull ServerConfig serverConfig) {
+    switch (serverConfig.getAccessLogMode()) {
+      case LOGGER:
+        return new LoggerSink();
+      case FILE:
+        Path file = serverConfig.getAccessLogFile();
+        try {
+          return new RotatingFileSink(
+              file, serverConfig.getAccessLogMaxFileSize(), serverConfig.getAccessLogMaxFiles());
+        } catch (IOException e) {
+          throw new IllegalStateException("Unable to open access log file " + file, e);
+        }
+      case DISABLED:
+      default:
+        return null;
+    }
+  }
+}
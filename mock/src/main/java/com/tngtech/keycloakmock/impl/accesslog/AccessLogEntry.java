@@ -0,0 +1,36 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import javax.annotation.Nonnull;
+
+/** A single handled request. */
+final class AccessLogEntry {
+  private final long timestamp;
+  private final int status;
+  @Nonnull private final String method;
+  @Nonnull private final String uri;
+
+  AccessLogEntry(long timestamp, int status, @Nonnull String method, @Nonnull String uri) {
+    this.timestamp = timestamp;
+    this.status = status;
+    this.method = method;
+    this.uri = uri;
+  }
+
+  long getTimestamp() {
+    return timestamp;
+  }
+
+  int getStatus() {
+    return status;
+  }
+
+  @Nonnull
+  String getMethod() {
+    return method;
+  }
+
+  @Nonnull
+  String getUri() {
+    return uri;
+  }
+}
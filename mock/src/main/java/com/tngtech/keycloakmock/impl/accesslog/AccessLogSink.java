@@ -0,0 +1,12 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/** Destination of access log entries. Sinks are only ever called from a single thread. */
+interface AccessLogSink {
+  void write(@Nonnull List<AccessLogEntry> entries) throws IOException;
+
+  void close() throws IOException;
+}
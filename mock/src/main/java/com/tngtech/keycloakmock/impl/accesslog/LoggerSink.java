@@ -0,0 +1,32 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import com.tngtech.keycloakmock.impl.handler.CommonHandler;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes access log entries at level INFO.
+ *
+ * <p>Entries are logged in the category of the {@link CommonHandler}, which used to log them
+ * directly, so that existing logging configurations keep working.
+ */
+class LoggerSink implements AccessLogSink {
+  private static final Logger LOG = LoggerFactory.getLogger(CommonHandler.class);
+
+  @Override
+  public void write(@Nonnull List<AccessLogEntry> entries) {
+    if (!LOG.isInfoEnabled()) {
+      return;
+    }
+    for (AccessLogEntry entry : entries) {
+      LOG.info("{}: {} {}", entry.getStatus(), entry.getMethod(), entry.getUri());
+    }
+  }
+
+  @Override
+  public void close() {
+    // nothing to do
+  }
+}
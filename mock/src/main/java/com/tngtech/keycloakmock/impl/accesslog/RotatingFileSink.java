@@ -0,0 +1,99 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Appends access log entries to a file.
+ *
+ * <p>Once the file has reached its maximum size, it is renamed to {@code <file>.1}, previously
+ * rotated files are shifted by one ({@code <file>.1} becomes {@code <file>.2} and so on), and the
+ * oldest file is deleted if the maximum number of rotated files is exceeded.
+ */
+class RotatingFileSink implements AccessLogSink {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @Nonnull private final Path file;
+  private final long maxFileSize;
+  private final int maxFiles;
+
+  @Nonnull private OutputStream outputStream;
+  private long size;
+
+  RotatingFileSink(@Nonnull Path file, long maxFileSize, int maxFiles) throws IOException {
+    this.file = file;
+    this.maxFileSize = maxFileSize;
+    this.maxFiles = maxFiles;
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    this.outputStream = open();
+  }
+
+  @Override
+  public void write(@Nonnull List<AccessLogEntry> entries) throws IOException {
+    for (AccessLogEntry entry : entries) {
+      byte[] line =
+          (Instant.ofEpochMilli(entry.getTimestamp())
+                  + " "
+                  + entry.getStatus()
+                  + ": "
+                  + entry.getMethod()
+                  + " "
+                  + entry.getUri()
+                  + System.lineSeparator())
+              .getBytes(StandardCharsets.UTF_8);
+      outputStream.write(line);
+      size += line.length;
+      if (maxFileSize > 0 && size >= maxFileSize) {
+        rotate();
+      }
+    }
+    outputStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    outputStream.close();
+  }
+
+  private void rotate() throws IOException {
+    outputStream.close();
+    if (maxFiles > 0) {
+      Files.deleteIfExists(rotatedFile(maxFiles));
+      for (int i = maxFiles - 1; i >= 1; i--) {
+        Path source = rotatedFile(i);
+        if (Files.exists(source)) {
+          Files.move(source, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(file);
+    }
+    outputStream = open();
+  }
+
+  @Nonnull
+  private OutputStream open() throws IOException {
+    size = Files.exists(file) ? Files.size(file) : 0;
+    return new BufferedOutputStream(
+        Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+        BUFFER_SIZE);
+  }
+
+  @Nonnull
+  private Path rotatedFile(int index) {
+    return file.resolveSibling(file.getFileName() + "." + index);
+  }
+}
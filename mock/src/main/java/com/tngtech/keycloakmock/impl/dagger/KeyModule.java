@@ -1,29 +1,38 @@
 package com.tngtech.keycloakmock.impl.dagger;
 
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import com.tngtech.keycloakmock.impl.SigningKey;
+import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.Key;
+import java.nio.file.Path;
+import java.security.KeyPair;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Objects;
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 @Module
 class KeyModule {
   private static final String KEY = "rsa";
+  private static final String DEFAULT_KEY_ID = "keyId";
 
   @Provides
   @Named("keyId")
   @Singleton
-  String provideKeyId() {
-    return "keyId";
+  String provideKeyId(SigningKey signingKey) {
+    return signingKey.getKeyId();
   }
 
   @Provides
@@ -42,19 +51,55 @@ class KeyModule {
 
   @Provides
   @Singleton
-  PublicKey providePublicKey(KeyStore keyStore) {
-    try {
-      return Objects.requireNonNull(keyStore.getCertificate(KEY).getPublicKey());
-    } catch (KeyStoreException e) {
-      throw new IllegalStateException("Error while loading public key for verifying token", e);
+  SigningKey provideSigningKey(
+      SigningAlgorithm signingAlgorithm,
+      Lazy<KeyStore> keyStore,
+      @Nullable @Named("signingKeyFile") Path signingKeyFile,
+      @Nullable @Named("signingKeyPassword") String signingKeyPassword) {
+    if (signingKeyFile != null) {
+      return SigningKey.load(signingKeyFile, signingKeyPassword, signingAlgorithm);
     }
+    switch (signingAlgorithm) {
+      case ES256:
+        return new SigningKey(DEFAULT_KEY_ID, Jwts.SIG.ES256.keyPair().build());
+      case ES384:
+        return new SigningKey(DEFAULT_KEY_ID, Jwts.SIG.ES384.keyPair().build());
+      case ED25519:
+        return new SigningKey(DEFAULT_KEY_ID, Jwks.CRV.Ed25519.keyPair().build());
+      case RS256:
+      default:
+        return new SigningKey(DEFAULT_KEY_ID, loadKeyPair(keyStore.get()));
+    }
+  }
+
+  @Provides
+  @Singleton
+  KeyPair provideKeyPair(SigningKey signingKey) {
+    return signingKey.getKeyPair();
+  }
+
+  @Provides
+  @Singleton
+  PublicKey providePublicKey(KeyPair keyPair) {
+    return keyPair.getPublic();
   }
 
   @Provides
   @Singleton
-  Key provideSecretKey(KeyStore keyStore) {
+  PrivateKey provideSecretKey(KeyPair keyPair) {
+    return keyPair.getPrivate();
+  }
+
+  private static KeyPair loadKeyPair(KeyStore keyStore) {
+    PublicKey publicKey;
+    try {
+      publicKey = Objects.requireNonNull(keyStore.getCertificate(KEY).getPublicKey());
+    } catch (KeyStoreException e) {
+      throw new IllegalStateException("Error while loading public key for verifying token", e);
+    }
     try {
-      return Objects.requireNonNull(keyStore.getKey(KEY, new char[] {}));
+      return new KeyPair(
+          publicKey, (PrivateKey) Objects.requireNonNull(keyStore.getKey(KEY, new char[] {})));
     } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException e) {
       throw new IllegalStateException("Error while loading private key for signing token", e);
     }
@@ -1,11 +1,14 @@
 package com.tngtech.keycloakmock.impl.dagger;
 
 import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.HttpServerDeployment;
 import com.tngtech.keycloakmock.impl.TokenGenerator;
+import com.tngtech.keycloakmock.impl.accesslog.AccessLog;
+import com.tngtech.keycloakmock.impl.metrics.Metrics;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
 import dagger.BindsInstance;
 import dagger.Component;
 import io.vertx.core.Vertx;
-import io.vertx.core.http.HttpServer;
 import java.security.KeyStore;
 import java.security.PublicKey;
 import javax.inject.Named;
@@ -14,19 +17,18 @@ import javax.inject.Singleton;
 @Component(modules = ServerModule.class)
 @Singleton
 public interface ServerComponent {
-  HttpServer server();
+  HttpServerDeployment serverDeployment();
 
   Vertx vertx();
 
-  @Component.Builder
-  abstract class Builder {
-    Builder() {
-      vertx(Vertx.vertx());
-    }
+  AccessLog accessLog();
 
-    @BindsInstance
-    abstract Builder vertx(Vertx vertx);
+  Metrics metrics();
 
+  SessionRepository sessionRepository();
+
+  @Component.Builder
+  abstract class Builder {
     @BindsInstance
     public abstract Builder serverConfig(ServerConfig serverConfig);
 
@@ -5,6 +5,7 @@ import static io.netty.handler.codec.http.HttpHeaderValues.TEXT_HTML;
 
 import com.tngtech.keycloakmock.api.LoginRoleMapping;
 import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
 import com.tngtech.keycloakmock.impl.handler.AuthenticationRoute;
@@ -15,9 +16,11 @@ import com.tngtech.keycloakmock.impl.handler.IFrameRoute;
 import com.tngtech.keycloakmock.impl.handler.JwksRoute;
 import com.tngtech.keycloakmock.impl.handler.LoginRoute;
 import com.tngtech.keycloakmock.impl.handler.LogoutRoute;
+import com.tngtech.keycloakmock.impl.handler.MetricsRoute;
 import com.tngtech.keycloakmock.impl.handler.OptionalClientAuthHandler;
 import com.tngtech.keycloakmock.impl.handler.OutOfBandLoginRoute;
 import com.tngtech.keycloakmock.impl.handler.ResourceFileHandler;
+import com.tngtech.keycloakmock.impl.handler.TokenIntrospectionBatchRoute;
 import com.tngtech.keycloakmock.impl.handler.TokenIntrospectionRoute;
 import com.tngtech.keycloakmock.impl.handler.TokenRoute;
 import com.tngtech.keycloakmock.impl.handler.WellKnownRoute;
@@ -25,10 +28,12 @@ import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.Http2Settings;
 import io.vertx.core.http.HttpMethod;
-import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.net.JksOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.common.template.TemplateEngine;
@@ -42,7 +47,10 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -53,6 +61,19 @@ import org.slf4j.LoggerFactory;
 public class ServerModule {
   private static final Logger LOG = LoggerFactory.getLogger(ServerModule.class);
 
+  @Provides
+  @Singleton
+  Vertx provideVertx(@Nonnull ServerConfig serverConfig) {
+    Vertx vertx =
+        Vertx.vertx(new VertxOptions().setPreferNativeTransport(serverConfig.isNativeTransport()));
+    if (serverConfig.isNativeTransport() && !vertx.isNativeTransportEnabled()) {
+      LOG.warn(
+          "Native transport is not available, falling back to NIO",
+          vertx.unavailableNativeTransportCause());
+    }
+    return vertx;
+  }
+
   @Provides
   @Singleton
   TemplateEngine provideTemplateEngine(@Nonnull Vertx vertx) {
@@ -111,12 +132,40 @@ public class ServerModule {
   @Singleton
   HttpServerOptions provideHttpServerOptions(
       @Nonnull ServerConfig serverConfig, @Nonnull Lazy<Buffer> keyStoreBuffer) {
-    HttpServerOptions options = new HttpServerOptions().setPort(serverConfig.getPort());
+    int port = serverConfig.getPort();
+    if (port == 0 && serverConfig.getServerInstances() > 1) {
+      // with a negative port, Vert.x lets all server instances share the same random port
+      port = -1;
+    }
+    int idleTimeoutMillis =
+        (int) Math.min(Integer.MAX_VALUE, serverConfig.getIdleTimeout().toMillis());
+    HttpServerOptions options =
+        new HttpServerOptions()
+            .setPort(port)
+            .setAcceptBacklog(serverConfig.getAcceptBacklog())
+            .setTcpNoDelay(serverConfig.isTcpNoDelay())
+            .setTcpFastOpen(serverConfig.isTcpFastOpen())
+            .setReusePort(serverConfig.isReusePort())
+            .setTcpKeepAlive(serverConfig.isTcpKeepAlive())
+            .setIdleTimeout(idleTimeoutMillis)
+            .setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
     if (serverConfig.getProtocol().isTls()) {
       options
           .setSsl(true)
           .setKeyCertOptions(new JksOptions().setValue(keyStoreBuffer.get()).setPassword(""));
     }
+    if (serverConfig.isHttp2()) {
+      // without HTTP/2, h2c is left at the Vert.x default, which accepts it with default settings
+      options
+          .setHttp2ClearTextEnabled(true)
+          .setUseAlpn(serverConfig.getProtocol().isTls())
+          .setAlpnVersions(Arrays.asList(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1))
+          .setInitialSettings(
+              new Http2Settings()
+                  .setMaxConcurrentStreams(serverConfig.getHttp2MaxConcurrentStreams())
+                  .setInitialWindowSize(serverConfig.getHttp2InitialWindowSize()))
+          .setHttp2ConnectionWindowSize(serverConfig.getHttp2ConnectionWindowSize());
+    }
     return options;
   }
 
@@ -135,6 +184,7 @@ public class ServerModule {
       @Nonnull OptionalClientAuthHandler clientAuthHandler,
       @Nonnull TokenRoute tokenRoute,
       @Nonnull TokenIntrospectionRoute tokenIntrospectionRoute,
+      @Nonnull TokenIntrospectionBatchRoute tokenIntrospectionBatchRoute,
       @Nonnull IFrameRoute iframeRoute,
       @Nonnull @Named("webCryptoShimJs") ResourceFileHandler webCryptoShimJsHandler,
       @Nonnull @Named("cookie1") ResourceFileHandler thirdPartyCookies1Route,
@@ -143,7 +193,8 @@ public class ServerModule {
       @Nonnull OutOfBandLoginRoute outOfBandLoginRoute,
       @Nonnull @Named("keycloakJs") ResourceFileHandler keycloakJsRoute,
       @Nonnull @Named("stylesheet") ResourceFileHandler stylesheetRoute,
-      @Nonnull DocumentationRoute documentationRoute) {
+      @Nonnull DocumentationRoute documentationRoute,
+      @Nonnull MetricsRoute metricsRoute) {
     UrlConfiguration routing = urlConfigurationFactory.create(null, ":realm");
     Router router = Router.router(vertx);
     router
@@ -180,6 +231,12 @@ public class ServerModule {
         .handler(BodyHandler.create())
         .handler(SimpleAuthenticationHandler.create().authenticate(clientAuthHandler::handle))
         .handler(tokenIntrospectionRoute);
+    router
+        .post(routing.getTokenIntrospectionBatchEndpoint().getPath())
+        .setName("token introspection batch endpoint (non-standard)")
+        .handler(BodyHandler.create())
+        .handler(SimpleAuthenticationHandler.create().authenticate(clientAuthHandler::handle))
+        .handler(tokenIntrospectionBatchRoute);
     router
         .get(routing.getOpenIdPath("login-status-iframe.html*").getPath())
         .setName("Keycloak login iframe")
@@ -216,23 +273,27 @@ public class ServerModule {
         .setName("documentation endpoint")
         .produces(TEXT_HTML.toString())
         .handler(documentationRoute);
+    router.get("/metrics").setName("metrics in Prometheus format").handler(metricsRoute);
     return router;
   }
 
   @Provides
   @Singleton
-  HttpServer provideServer(
-      @Nonnull Vertx vertx, @Nonnull HttpServerOptions options, @Nonnull Router router) {
-    return vertx
-        .createHttpServer(options)
-        .requestHandler(router)
-        .exceptionHandler(t -> LOG.error("Exception while processing request", t));
+  LoginRoleMapping provideLoginRoleMapping(@Nonnull ServerConfig serverConfig) {
+    return serverConfig.getLoginRoleMapping();
   }
 
   @Provides
   @Singleton
-  LoginRoleMapping provideLoginRoleMapping(@Nonnull ServerConfig serverConfig) {
-    return serverConfig.getLoginRoleMapping();
+  SigningAlgorithm provideSigningAlgorithm(@Nonnull ServerConfig serverConfig) {
+    return serverConfig.getSigningAlgorithm();
+  }
+
+  @Provides
+  @Singleton
+  @Named("tokenLifespan")
+  Duration provideTokenLifespan(@Nonnull ServerConfig serverConfig) {
+    return serverConfig.getDefaultTokenLifespan();
   }
 
   @Provides
@@ -1,12 +1,16 @@
 package com.tngtech.keycloakmock.impl.dagger;
 
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import com.tngtech.keycloakmock.impl.SigningKey;
 import com.tngtech.keycloakmock.impl.TokenGenerator;
 import dagger.BindsInstance;
 import dagger.Component;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.PublicKey;
 import java.time.Duration;
 import java.util.Collection;
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -25,6 +29,8 @@ public interface SignatureComponent {
 
   TokenGenerator tokenGenerator();
 
+  SigningKey signingKey();
+
   @Component.Builder
   abstract class Builder {
     @BindsInstance
@@ -38,6 +44,20 @@ public interface SignatureComponent {
     public abstract Builder defaultTokenLifespan(
         @Named("tokenLifespan") Duration defaultTokenLifespan);
 
+    @BindsInstance
+    public abstract Builder signingAlgorithm(SigningAlgorithm signingAlgorithm);
+
+    @BindsInstance
+    public abstract Builder verifiedTokenCacheSize(
+        @Named("verifiedTokenCacheSize") int verifiedTokenCacheSize);
+
+    @BindsInstance
+    public abstract Builder signingKeyFile(@Nullable @Named("signingKeyFile") Path signingKeyFile);
+
+    @BindsInstance
+    public abstract Builder signingKeyPassword(
+        @Nullable @Named("signingKeyPassword") String signingKeyPassword);
+
     public abstract SignatureComponent build();
   }
 }
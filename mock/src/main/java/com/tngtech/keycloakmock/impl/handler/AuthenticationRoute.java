@@ -31,15 +31,18 @@ public class AuthenticationRoute implements Handler<RoutingContext> {
   @Nonnull private final SessionRepository sessionRepository;
   @Nonnull private final RedirectHelper redirectHelper;
   @Nonnull private final UrlConfigurationFactory urlConfigurationFactory;
+  @Nonnull private final SigningExecutor signingExecutor;
 
   @Inject
   AuthenticationRoute(
       @Nonnull SessionRepository sessionRepository,
       @Nonnull RedirectHelper redirectHelper,
-      @Nonnull UrlConfigurationFactory urlConfigurationFactory) {
+      @Nonnull UrlConfigurationFactory urlConfigurationFactory,
+      @Nonnull SigningExecutor signingExecutor) {
     this.sessionRepository = sessionRepository;
     this.redirectHelper = redirectHelper;
     this.urlConfigurationFactory = urlConfigurationFactory;
+    this.signingExecutor = signingExecutor;
   }
 
   @Override
@@ -68,13 +71,24 @@ public class AuthenticationRoute implements Handler<RoutingContext> {
     PersistentSession session =
         request.toSession(
             UserData.fromUsernameAndHostname(username, requestConfiguration.getHostname()), roles);
-    sessionRepository.upgradeRequest(request, session);
 
-    routingContext
-        .response()
-        .addCookie(redirectHelper.getSessionCookie(session, requestConfiguration))
-        .putHeader("location", redirectHelper.getRedirectLocation(session, requestConfiguration))
-        .setStatusCode(302)
-        .end();
+    // the redirect may contain a signed token; only store the session once it has been signed, so
+    // that a rejected request leaves the login pending and can simply be retried
+    signingExecutor
+        .submit(() -> redirectHelper.getRedirectLocation(session, requestConfiguration))
+        .map(
+            location -> {
+              sessionRepository.upgradeRequest(request, session);
+              return location;
+            })
+        .onSuccess(
+            location ->
+                routingContext
+                    .response()
+                    .addCookie(redirectHelper.getSessionCookie(session, requestConfiguration))
+                    .putHeader("location", location)
+                    .setStatusCode(302)
+                    .end())
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
   }
 }
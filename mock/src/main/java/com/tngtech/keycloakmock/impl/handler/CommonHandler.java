@@ -1,34 +1,55 @@
 package com.tngtech.keycloakmock.impl.handler;
 
+import com.tngtech.keycloakmock.impl.accesslog.AccessLog;
+import com.tngtech.keycloakmock.impl.metrics.Metrics;
 import io.vertx.core.Handler;
+import io.vertx.ext.web.Route;
 import io.vertx.ext.web.RoutingContext;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 @Singleton
 public class CommonHandler implements Handler<RoutingContext> {
-  private static final Logger LOG = LoggerFactory.getLogger(CommonHandler.class);
+  private static final String UNNAMED_ROUTE = "other";
+
+  @Nonnull private final AccessLog accessLog;
+  @Nonnull private final Metrics metrics;
 
   @Inject
-  CommonHandler() {}
+  CommonHandler(@Nonnull AccessLog accessLog, @Nonnull Metrics metrics) {
+    this.accessLog = accessLog;
+    this.metrics = metrics;
+  }
 
   @Override
   public void handle(@Nonnull RoutingContext routingContext) {
+    long start = System.nanoTime();
     routingContext
         .response()
-        .bodyEndHandler(
-            aVoid ->
-                LOG.info(
-                    "{}: {} {}",
-                    routingContext.response().getStatusCode(),
-                    routingContext.request().method().name(),
-                    routingContext.request().uri()))
+        .bodyEndHandler(aVoid -> recordRequest(routingContext, System.nanoTime() - start))
         .putHeader("Access-Control-Allow-Origin", routingContext.request().headers().get("Origin"))
         .putHeader("Access-Control-Allow-Methods", "GET,POST")
         .putHeader("Access-Control-Allow-Credentials", "true");
     routingContext.next();
   }
+
+  private void recordRequest(@Nonnull RoutingContext routingContext, long nanos) {
+    int status = routingContext.response().getStatusCode();
+    metrics.recordRequest(getRouteName(routingContext.currentRoute()), status, nanos);
+    if (accessLog.isEnabled()) {
+      accessLog.log(
+          status, routingContext.request().method().name(), routingContext.request().uri());
+    }
+  }
+
+  @Nonnull
+  private static String getRouteName(@Nullable Route route) {
+    // if a path is set but the name is null, the path is returned instead
+    if (route == null || route.getName() == null || route.getName().equals(route.getPath())) {
+      return UNNAMED_ROUTE;
+    }
+    return route.getName();
+  }
 }
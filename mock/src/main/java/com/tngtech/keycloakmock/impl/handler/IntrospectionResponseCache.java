@@ -0,0 +1,104 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.ExpiringCache;
+import com.tngtech.keycloakmock.impl.TokenDigest;
+import io.vertx.core.buffer.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * A bounded cache of encoded responses for active tokens at the token introspection endpoint.
+ *
+ * <p>Entries are keyed by the SHA-256 digest of the token and the ID of the requesting client, as
+ * the response depends on whether the client is an audience of the token. An entry is dropped as
+ * soon as the token expires. If the cache is full, the entry expiring first is evicted. The size is
+ * the same as the one of the verified token cache. Lookups do not take a lock, so concurrent
+ * requests for different tokens do not contend.
+ */
+@Singleton
+class IntrospectionResponseCache {
+  @Nonnull private final ExpiringCache<CacheKey, Buffer> cache;
+
+  @Inject
+  IntrospectionResponseCache(@Nonnull ServerConfig serverConfig) {
+    this(serverConfig.getVerifiedTokenCacheSize());
+  }
+
+  IntrospectionResponseCache(int maxSize) {
+    this.cache = new ExpiringCache<>(maxSize);
+  }
+
+  /**
+   * Get the cached response for a token.
+   *
+   * @param token the token in compact form
+   * @param clientId the ID of the requesting client
+   * @return the encoded response, or null if there is none or the token has expired
+   */
+  @Nullable
+  Buffer get(@Nonnull String token, @Nonnull String clientId) {
+    if (!cache.isEnabled()) {
+      return null;
+    }
+    return cache.get(new CacheKey(TokenDigest.of(token), clientId));
+  }
+
+  /**
+   * Cache the response for an active token.
+   *
+   * @param token the token in compact form
+   * @param clientId the ID of the requesting client
+   * @param response the encoded response, which must be shareable between requests
+   * @param expiration the expiration of the token, or null if it does not expire
+   */
+  void put(
+      @Nonnull String token,
+      @Nonnull String clientId,
+      @Nonnull Buffer response,
+      @Nullable Date expiration) {
+    if (!cache.isEnabled()) {
+      return;
+    }
+    cache.put(
+        new CacheKey(TokenDigest.of(token), clientId),
+        response,
+        expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+  }
+
+  int size() {
+    return cache.size();
+  }
+
+  private static final class CacheKey {
+    @Nonnull private final ByteBuffer tokenDigest;
+    @Nonnull private final String clientId;
+
+    private CacheKey(@Nonnull ByteBuffer tokenDigest, @Nonnull String clientId) {
+      this.tokenDigest = tokenDigest;
+      this.clientId = clientId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey cacheKey = (CacheKey) o;
+      return tokenDigest.equals(cacheKey.tokenDigest) && clientId.equals(cacheKey.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tokenDigest, clientId);
+    }
+  }
+}
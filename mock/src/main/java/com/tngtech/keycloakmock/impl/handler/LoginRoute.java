@@ -8,6 +8,7 @@ import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
 import com.tngtech.keycloakmock.impl.helper.RedirectHelper;
 import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.SessionCapacityExceededException;
 import com.tngtech.keycloakmock.impl.session.SessionRepository;
 import com.tngtech.keycloakmock.impl.session.SessionRequest;
 import io.vertx.core.Handler;
@@ -39,17 +40,20 @@ public class LoginRoute implements Handler<RoutingContext> {
   @Nonnull private final RedirectHelper redirectHelper;
   @Nonnull private final TemplateEngine engine;
   @Nonnull private final UrlConfigurationFactory urlConfigurationFactory;
+  @Nonnull private final SigningExecutor signingExecutor;
 
   @Inject
   LoginRoute(
       @Nonnull SessionRepository sessionRepository,
       @Nonnull RedirectHelper redirectHelper,
       @Nonnull TemplateEngine engine,
-      @Nonnull UrlConfigurationFactory urlConfigurationFactory) {
+      @Nonnull UrlConfigurationFactory urlConfigurationFactory,
+      @Nonnull SigningExecutor signingExecutor) {
     this.sessionRepository = sessionRepository;
     this.redirectHelper = redirectHelper;
     this.engine = engine;
     this.urlConfigurationFactory = urlConfigurationFactory;
+    this.signingExecutor = signingExecutor;
   }
 
   @Override
@@ -91,16 +95,31 @@ public class LoginRoute implements Handler<RoutingContext> {
       PersistentSession oldSession = existingSession.get();
       PersistentSession newSession =
           request.toSession(oldSession.getUserData(), oldSession.getRoles());
-      sessionRepository.updateSession(oldSession, newSession);
-      routingContext
-          .response()
-          .addCookie(redirectHelper.getSessionCookie(newSession, requestConfiguration))
-          .putHeader(
-              "location", redirectHelper.getRedirectLocation(newSession, requestConfiguration))
-          .setStatusCode(302)
-          .end();
+      // the redirect may contain a signed token; only store the session once it has been signed
+      signingExecutor
+          .submit(() -> redirectHelper.getRedirectLocation(newSession, requestConfiguration))
+          .map(
+              location -> {
+                sessionRepository.updateSession(oldSession, newSession);
+                return location;
+              })
+          .onSuccess(
+              location ->
+                  routingContext
+                      .response()
+                      .addCookie(redirectHelper.getSessionCookie(newSession, requestConfiguration))
+                      .putHeader("location", location)
+                      .setStatusCode(302)
+                      .end())
+          .onFailure(t -> SigningExecutor.fail(routingContext, t));
     } else {
-      sessionRepository.putRequest(request);
+      try {
+        sessionRepository.putRequest(request);
+      } catch (SessionCapacityExceededException e) {
+        LOG.warn("Rejecting login: {}", e.getMessage());
+        routingContext.fail(503);
+        return;
+      }
       routingContext.put(
           CTX_AUTHENTICATION_URI,
           requestConfiguration.getAuthenticationCallbackEndpoint(request.getSessionId()));
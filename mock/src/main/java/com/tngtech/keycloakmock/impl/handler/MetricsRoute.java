@@ -0,0 +1,30 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+
+import com.tngtech.keycloakmock.impl.metrics.Metrics;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+@Singleton
+public class MetricsRoute implements Handler<RoutingContext> {
+  private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  @Nonnull private final Metrics metrics;
+
+  @Inject
+  MetricsRoute(@Nonnull Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void handle(@Nonnull RoutingContext routingContext) {
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE, PROMETHEUS_CONTENT_TYPE)
+        .end(metrics.toPrometheus());
+  }
+}
@@ -1,47 +1,187 @@
 package com.tngtech.keycloakmock.impl.handler;
 
+import static io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CACHE_CONTROL;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.ETAG;
+import static io.netty.handler.codec.http.HttpHeaderNames.IF_NONE_MATCH;
+import static io.netty.handler.codec.http.HttpHeaderNames.VARY;
+import static io.netty.handler.codec.http.HttpHeaderValues.GZIP;
 
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.http.impl.MimeMapping;
 import io.vertx.ext.web.RoutingContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Optional;
-import java.util.Scanner;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Serves a static classpath resource.
+ *
+ * <p>The resource is read only once, when the handler is created, and kept in memory together with
+ * a gzip-compressed variant. Responses carry a strong ETag, so that clients can revalidate their
+ * cached copy with {@code If-None-Match} and get a 304 response without body.
+ */
 public class ResourceFileHandler implements Handler<RoutingContext> {
   private static final Logger LOG = LoggerFactory.getLogger(ResourceFileHandler.class);
+  // the resources only change with a new version of the mock, so a short max-age is sufficient
+  private static final String CACHE_CONTROL_VALUE = "public, max-age=3600";
 
   @Nonnull private final String resource;
   @Nonnull private final String contentType;
+  @Nullable private final Variant identity;
+  @Nullable private final Variant gzip;
 
   public ResourceFileHandler(@Nonnull String resource) {
     this.resource = resource;
     this.contentType = MimeMapping.getMimeTypeForFilename(resource);
+    byte[] content = loadResource(resource);
+    if (content == null) {
+      LOG.error("Unable to find resource {}", resource);
+      this.identity = null;
+      this.gzip = null;
+    } else {
+      String hash = hash(content);
+      this.identity = new Variant(content, "\"" + hash + "\"");
+      byte[] compressed = compress(content);
+      // small resources can get larger when compressed
+      this.gzip =
+          compressed.length < content.length
+              ? new Variant(compressed, "\"" + hash + "-gzip\"")
+              : null;
+    }
   }
 
   @Override
   public void handle(@Nonnull RoutingContext routingContext) {
-    Optional<String> resourceContent = loadResourceAsString(resource);
-    if (resourceContent.isPresent()) {
-      routingContext.response().putHeader(CONTENT_TYPE, contentType).end(resourceContent.get());
-    } else {
+    if (identity == null) {
       LOG.error("Unable to find resource {}", resource);
       routingContext.fail(404);
+      return;
+    }
+    HttpServerRequest request = routingContext.request();
+    HttpServerResponse response = routingContext.response();
+    Variant variant = identity;
+    if (gzip != null) {
+      response.putHeader(VARY, ACCEPT_ENCODING);
+      if (acceptsGzip(request.getHeader(ACCEPT_ENCODING))) {
+        variant = gzip;
+      }
+    }
+    response.putHeader(ETAG, variant.etag).putHeader(CACHE_CONTROL, CACHE_CONTROL_VALUE);
+    if (matches(request.getHeader(IF_NONE_MATCH), variant.etag)) {
+      response.setStatusCode(304).end();
+      return;
+    }
+    if (variant == gzip) {
+      response.putHeader(CONTENT_ENCODING, GZIP);
+    }
+    response.putHeader(CONTENT_TYPE, contentType).end(variant.content);
+  }
+
+  private static boolean acceptsGzip(@Nullable String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      if (!GZIP.contentEqualsIgnoreCase(name) && !"*".equals(name)) {
+        continue;
+      }
+      boolean rejected = false;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            rejected = Double.parseDouble(parameter.substring(2)) <= 0;
+          } catch (NumberFormatException e) {
+            rejected = true;
+          }
+        }
+      }
+      if (!rejected) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(@Nullable String ifNoneMatch, @Nonnull String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      // If-None-Match uses the weak comparison
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if ("*".equals(tag) || etag.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private byte[] loadResource(@Nonnull String resource) {
+    try (InputStream inputStream = getClass().getResourceAsStream(resource)) {
+      if (inputStream == null) {
+        return null;
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      int read;
+      while ((read = inputStream.read(chunk)) != -1) {
+        outputStream.write(chunk, 0, read);
+      }
+      return outputStream.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read resource " + resource, e);
     }
   }
 
-  private Optional<String> loadResourceAsString(String resource) {
-    InputStream inputStream = getClass().getResourceAsStream(resource);
-    if (inputStream == null) {
-      return Optional.empty();
+  @Nonnull
+  private static byte[] compress(@Nonnull byte[] content) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream)) {
+      gzipStream.write(content);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to compress resource", e);
     }
-    try (Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name())) {
-      return Optional.of(scanner.useDelimiter("\\A").next());
+    return outputStream.toByteArray();
+  }
+
+  @Nonnull
+  private static String hash(@Nonnull byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  private static class Variant {
+    @Nonnull private final Buffer content;
+    @Nonnull private final String etag;
+
+    private Variant(@Nonnull byte[] content, @Nonnull String etag) {
+      this.content = SharedBuffers.direct(content);
+      this.etag = etag;
     }
   }
 }
@@ -0,0 +1,54 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+
+/**
+ * Creates buffers whose content can be used for more than one response.
+ *
+ * <p>Vert.x writes a slice of the buffer, so an unreleasable buffer can be shared between requests
+ * and event loops without its content being freed after the first response has been written.
+ */
+final class SharedBuffers {
+  private SharedBuffers() {}
+
+  /**
+   * Wrap content without copying it, for content that is used by a few responses.
+   *
+   * @param content the content
+   * @return an unreleasable heap buffer
+   */
+  @Nonnull
+  static ByteBuf wrap(@Nonnull String content) {
+    return Unpooled.unreleasableBuffer(
+        Unpooled.wrappedBuffer(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Copy content to direct memory, for content that is used by many responses, so that it does not
+   * need to be copied again on every write.
+   *
+   * @param content the content
+   * @return an unreleasable direct buffer
+   */
+  @Nonnull
+  static Buffer direct(@Nonnull byte[] content) {
+    return Buffer.buffer(
+        Unpooled.unreleasableBuffer(Unpooled.directBuffer(content.length).writeBytes(content)));
+  }
+
+  /**
+   * Copy content to direct memory, for content that is used by many responses.
+   *
+   * @param content the content
+   * @return an unreleasable direct buffer
+   * @see #direct(byte[])
+   */
+  @Nonnull
+  static Buffer direct(@Nonnull String content) {
+    return direct(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
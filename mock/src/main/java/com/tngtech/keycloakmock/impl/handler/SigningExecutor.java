@@ -0,0 +1,187 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.metrics.LatencyHistogram;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.ext.web.RoutingContext;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs cryptographic work (signing and verifying tokens) outside of the event loop.
+ *
+ * <p>A single slow signature would otherwise hold up all other connections handled by the same
+ * event loop. The number of pending tasks is limited; if the limit is reached, new tasks are
+ * rejected and the request is answered with status 503, so that clients can back off.
+ *
+ * <p>If no signing threads are configured, tasks are run directly on the calling thread.
+ */
+@Singleton
+public class SigningExecutor {
+  private static final Logger LOG = LoggerFactory.getLogger(SigningExecutor.class);
+  private static final String POOL_NAME = "keycloak-mock-signing";
+
+  @Nullable private final WorkerExecutor workerExecutor;
+  private final int queueLimit;
+
+  @Nonnull private final AtomicInteger pending = new AtomicInteger();
+  @Nonnull private final LongAdder completed = new LongAdder();
+  @Nonnull private final LongAdder rejected = new LongAdder();
+  @Nonnull private final LongAdder totalWaitNanos = new LongAdder();
+  @Nonnull private final AtomicLong maxWaitNanos = new AtomicLong();
+  @Nonnull private final LatencyHistogram signingTime = new LatencyHistogram();
+
+  @Inject
+  SigningExecutor(@Nonnull Vertx vertx, @Nonnull ServerConfig serverConfig) {
+    if (serverConfig.getSigningThreads() > 0) {
+      this.workerExecutor =
+          vertx.createSharedWorkerExecutor(POOL_NAME, serverConfig.getSigningThreads());
+    } else {
+      this.workerExecutor = null;
+    }
+    this.queueLimit = serverConfig.getSigningQueueLimit();
+  }
+
+  /**
+   * Run the given task.
+   *
+   * @param task the task to run
+   * @param <T> the result type of the task
+   * @return a future that is completed on the calling context once the task is done, or failed with
+   *     a {@link SigningRejectedException} if too many tasks are pending
+   */
+  @Nonnull
+  public <T> Future<T> submit(@Nonnull Callable<T> task) {
+    if (workerExecutor == null) {
+      try {
+        return Future.succeededFuture(timed(task));
+      } catch (Exception e) {
+        return Future.failedFuture(e);
+      }
+    }
+    if (pending.incrementAndGet() > queueLimit && queueLimit > 0) {
+      pending.decrementAndGet();
+      rejected.increment();
+      return Future.failedFuture(new SigningRejectedException(queueLimit));
+    }
+    long submittedAt = System.nanoTime();
+    return workerExecutor
+        .executeBlocking(
+            () -> {
+              recordWaitTime(System.nanoTime() - submittedAt);
+              return timed(task);
+            },
+            false)
+        .andThen(
+            result -> {
+              pending.decrementAndGet();
+              completed.increment();
+            });
+  }
+
+  /**
+   * Fail the request because of an error in a submitted task.
+   *
+   * @param routingContext the context of the request
+   * @param throwable the cause of the failure
+   */
+  public static void fail(@Nonnull RoutingContext routingContext, @Nonnull Throwable throwable) {
+    if (throwable instanceof SigningRejectedException) {
+      LOG.warn(throwable.getMessage());
+      routingContext.fail(503, throwable);
+    } else {
+      routingContext.fail(throwable);
+    }
+  }
+
+  /**
+   * Get the number of tasks that are waiting or running.
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    return pending.get();
+  }
+
+  /**
+   * Get the number of tasks that have been completed on the signing threads.
+   *
+   * @return the number of completed tasks
+   */
+  public long getCompletedCount() {
+    return completed.sum();
+  }
+
+  /**
+   * Get the number of tasks that have been rejected because the queue was full.
+   *
+   * @return the number of rejected tasks
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * Get the average time tasks had to wait before a signing thread picked them up.
+   *
+   * @return the average wait time in milliseconds
+   */
+  public double getAverageWaitMillis() {
+    long count = completed.sum();
+    if (count == 0) {
+      return 0;
+    }
+    return (double) totalWaitNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * Get the longest time a task had to wait before a signing thread picked it up.
+   *
+   * @return the maximum wait time in milliseconds
+   */
+  public double getMaxWaitMillis() {
+    return (double) maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * Get the time spent running tasks.
+   *
+   * @return the histogram of task durations
+   */
+  @Nonnull
+  public LatencyHistogram getSigningTime() {
+    return signingTime;
+  }
+
+  private <T> T timed(@Nonnull Callable<T> task) throws Exception {
+    long start = System.nanoTime();
+    try {
+      return task.call();
+    } finally {
+      signingTime.record(System.nanoTime() - start);
+    }
+  }
+
+  private void recordWaitTime(long waitNanos) {
+    totalWaitNanos.add(waitNanos);
+    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+  }
+
+  /** Signals that a task was not accepted because too many tasks are pending. */
+  public static class SigningRejectedException extends RuntimeException {
+    SigningRejectedException(int queueLimit) {
+      super("Signing queue limit of " + queueLimit + " pending tasks reached, rejecting request");
+    }
+  }
+}
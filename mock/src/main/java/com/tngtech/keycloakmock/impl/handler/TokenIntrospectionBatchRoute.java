@@ -0,0 +1,72 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static com.tngtech.keycloakmock.impl.handler.TokenIntrospectionRoute.TOKEN_INTROSPECTION_PARAM_TOKEN;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Handles non-standard batch token introspection requests.
+ *
+ * <p>The request contains any number of {@code token} form parameters, up to {@link
+ * #MAX_BATCH_SIZE}. The response is a JSON array containing the introspection response for each
+ * token in the same order, which is written to the client in chunks without copying the responses.
+ * All tokens of a batch are verified in a single task, so a batch cannot fill up the queue of the
+ * signing threads and cause other requests to be rejected.
+ */
+@Singleton
+public class TokenIntrospectionBatchRoute implements Handler<RoutingContext> {
+  static final int MAX_BATCH_SIZE = 1000;
+
+  private static final Buffer ARRAY_START = SharedBuffers.direct("[");
+  private static final Buffer ARRAY_SEPARATOR = SharedBuffers.direct(",");
+  private static final Buffer ARRAY_END = SharedBuffers.direct("]");
+
+  @Nonnull private final TokenIntrospectionRoute tokenIntrospectionRoute;
+
+  @Inject
+  TokenIntrospectionBatchRoute(@Nonnull TokenIntrospectionRoute tokenIntrospectionRoute) {
+    this.tokenIntrospectionRoute = tokenIntrospectionRoute;
+  }
+
+  @Override
+  public void handle(@Nonnull RoutingContext routingContext) {
+    String clientId = TokenIntrospectionRoute.getClientId(routingContext);
+    if (clientId == null || clientId.isEmpty()) {
+      routingContext.fail(401);
+      return;
+    }
+
+    List<String> tokens =
+        routingContext.request().formAttributes().getAll(TOKEN_INTROSPECTION_PARAM_TOKEN);
+    if (tokens.isEmpty() || tokens.size() > MAX_BATCH_SIZE) {
+      routingContext.fail(400);
+      return;
+    }
+
+    tokenIntrospectionRoute
+        .introspectAll(tokens, clientId)
+        .onSuccess(responses -> writeResponses(routingContext.response(), responses))
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
+  }
+
+  private static void writeResponses(
+      @Nonnull HttpServerResponse response, @Nonnull List<Buffer> responses) {
+    response.putHeader(CONTENT_TYPE, APPLICATION_JSON).setChunked(true).write(ARRAY_START);
+    for (int i = 0; i < responses.size(); i++) {
+      if (i > 0) {
+        response.write(ARRAY_SEPARATOR);
+      }
+      response.write(responses.get(i));
+    }
+    response.end(ARRAY_END);
+  }
+}
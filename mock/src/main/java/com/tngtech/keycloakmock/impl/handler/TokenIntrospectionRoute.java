@@ -4,36 +4,60 @@ import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
 
 import com.tngtech.keycloakmock.impl.TokenGenerator;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository.Introspection;
 import io.jsonwebtoken.Claims;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Handles token introspection requests.
+ *
+ * <p>Responses for active signed tokens are cached per token and client until the token expires, so
+ * repeated requests for the same token neither verify nor encode anything. Opaque access tokens are
+ * looked up in the {@link AccessTokenRepository}, which already contains their encoded response.
+ */
 @Singleton
 public class TokenIntrospectionRoute implements Handler<RoutingContext> {
   private static final Logger LOG = LoggerFactory.getLogger(TokenIntrospectionRoute.class);
 
   static final String TOKEN_INTROSPECTION_PARAM_TOKEN = "token";
+  private static final Buffer INACTIVE =
+      SharedBuffers.direct(new JsonObject().put("active", false).encode());
 
-  private final TokenGenerator tokenGenerator;
+  @Nonnull private final TokenGenerator tokenGenerator;
+  @Nonnull private final SigningExecutor signingExecutor;
+  @Nonnull private final AccessTokenRepository accessTokenRepository;
+  @Nonnull private final IntrospectionResponseCache responseCache;
 
   @Inject
-  TokenIntrospectionRoute(@Nonnull TokenGenerator tokenGenerator) {
+  TokenIntrospectionRoute(
+      @Nonnull TokenGenerator tokenGenerator,
+      @Nonnull SigningExecutor signingExecutor,
+      @Nonnull AccessTokenRepository accessTokenRepository,
+      @Nonnull IntrospectionResponseCache responseCache) {
     this.tokenGenerator = tokenGenerator;
+    this.signingExecutor = signingExecutor;
+    this.accessTokenRepository = accessTokenRepository;
+    this.responseCache = responseCache;
   }
 
   @Override
   public void handle(@Nonnull RoutingContext routingContext) {
-    String clientId =
-        Optional.ofNullable(routingContext.user())
-            .map(u -> u.<String>get(OptionalClientAuthHandler.CTX_CLIENT_ID))
-            .orElse(null);
+    String clientId = getClientId(routingContext);
     if (clientId == null || clientId.isEmpty()) {
       routingContext.fail(401);
       return;
@@ -41,25 +65,114 @@ public class TokenIntrospectionRoute implements Handler<RoutingContext> {
 
     String token = routingContext.request().getFormAttribute(TOKEN_INTROSPECTION_PARAM_TOKEN);
 
-    JsonObject response = new JsonObject();
+    introspect(token, clientId)
+        .onSuccess(
+            response ->
+                routingContext.response().putHeader(CONTENT_TYPE, APPLICATION_JSON).end(response))
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
+  }
+
+  @Nullable
+  static String getClientId(@Nonnull RoutingContext routingContext) {
+    return Optional.ofNullable(routingContext.user())
+        .map(u -> u.<String>get(OptionalClientAuthHandler.CTX_CLIENT_ID))
+        .orElse(null);
+  }
+
+  /**
+   * Introspect a token on behalf of a client.
+   *
+   * @param token the token to introspect
+   * @param clientId the ID of the requesting client
+   * @return the encoded introspection response, or a failed future if the token could not be
+   *     verified because the signing threads are overloaded
+   */
+  @Nonnull
+  Future<Buffer> introspect(@Nullable String token, @Nonnull String clientId) {
+    Buffer response = introspectWithoutVerification(token, clientId);
+    if (response != null) {
+      return Future.succeededFuture(response);
+    }
+    return signingExecutor.submit(() -> verify(Objects.requireNonNull(token), clientId));
+  }
+
+  /**
+   * Introspect several tokens on behalf of a client.
+   *
+   * <p>All tokens which need to be verified are verified in a single task, so that a batch only
+   * takes up one place in the queue of the signing threads.
+   *
+   * @param tokens the tokens to introspect
+   * @param clientId the ID of the requesting client
+   * @return the encoded introspection responses in the order of the tokens, or a failed future if
+   *     the tokens could not be verified because the signing threads are overloaded
+   */
+  @Nonnull
+  Future<List<Buffer>> introspectAll(@Nonnull List<String> tokens, @Nonnull String clientId) {
+    List<Buffer> responses = new ArrayList<>(tokens.size());
+    boolean verificationNeeded = false;
+    for (String token : tokens) {
+      Buffer response = introspectWithoutVerification(token, clientId);
+      responses.add(response);
+      verificationNeeded |= response == null;
+    }
+    if (!verificationNeeded) {
+      return Future.succeededFuture(responses);
+    }
+    return signingExecutor.submit(
+        () -> {
+          for (int i = 0; i < responses.size(); i++) {
+            if (responses.get(i) == null) {
+              responses.set(i, verify(tokens.get(i), clientId));
+            }
+          }
+          return responses;
+        });
+  }
+
+  @Nullable
+  private Buffer introspectWithoutVerification(@Nullable String token, @Nonnull String clientId) {
+    if (token == null) {
+      return INACTIVE;
+    }
+    // signed tokens always contain dots, opaque access tokens never do
+    if (accessTokenRepository.isEnabled() && token.indexOf('.') < 0) {
+      return introspectOpaqueToken(token, clientId);
+    }
+    return responseCache.get(token, clientId);
+  }
+
+  @Nonnull
+  private Buffer verify(@Nonnull String token, @Nonnull String clientId) {
+    Claims claims;
     try {
-      Claims claims = tokenGenerator.parseToken(token);
-      if (claims.getAudience().contains(clientId)) {
-        claims.forEach(response::put);
-        routingContext
-            .response()
-            .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-            .end(response.put("active", true).encode());
-        return;
-      } else {
-        LOG.warn("Requesting client {} is not a target audience of the token", clientId);
-      }
-    } catch (Exception e) {
+      claims = tokenGenerator.parseToken(token);
+    } catch (RuntimeException e) {
       LOG.error("Failed to parse token", e);
+      return INACTIVE;
+    }
+    if (!claims.getAudience().contains(clientId)) {
+      LOG.warn("Requesting client {} is not a target audience of the token", clientId);
+      return INACTIVE;
+    }
+    JsonObject response = new JsonObject();
+    claims.forEach(response::put);
+    response.put("active", true);
+    Buffer encoded = Buffer.buffer(SharedBuffers.wrap(response.encode()));
+    responseCache.put(token, clientId, encoded, claims.getExpiration());
+    return encoded;
+  }
+
+  @Nonnull
+  private Buffer introspectOpaqueToken(@Nonnull String token, @Nonnull String clientId) {
+    Introspection introspection = accessTokenRepository.introspect(token);
+    if (introspection == null) {
+      return INACTIVE;
+    }
+    if (!introspection.hasAudience(clientId)) {
+      LOG.warn("Requesting client {} is not a target audience of the token", clientId);
+      return INACTIVE;
     }
-    routingContext
-        .response()
-        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(response.put("active", false).encode());
+    return introspection.getResponse();
   }
 }
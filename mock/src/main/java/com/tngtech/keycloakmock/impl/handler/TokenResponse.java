@@ -0,0 +1,131 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_ACCESS_TOKEN;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_EXPIRES_IN;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_ID_TOKEN;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_REFRESH_EXPIRES_IN;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_REFRESH_TOKEN;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_SESSION_STATE;
+import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_RESPONSE_TOKEN_TYPE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Assembles the JSON body of a token response.
+ *
+ * <p>The response consists of fixed parts, which are encoded only once, and the variable parts in
+ * between. These are combined into a composite buffer without copying them, so the bytes of a token
+ * are held only once, although the same token is usually used as access, refresh and ID token.
+ */
+final class TokenResponse {
+  private static final ByteBuf BEFORE_ACCESS_TOKEN =
+      template("{\"%s\":\"", TOKEN_RESPONSE_ACCESS_TOKEN);
+  private static final ByteBuf BEFORE_EXPIRES_IN =
+      template(
+          "\",\"%s\":\"Bearer\",\"%s\":", TOKEN_RESPONSE_TOKEN_TYPE, TOKEN_RESPONSE_EXPIRES_IN);
+  private static final ByteBuf BEFORE_REFRESH_TOKEN =
+      template(",\"%s\":\"", TOKEN_RESPONSE_REFRESH_TOKEN);
+  private static final ByteBuf BEFORE_REFRESH_EXPIRES_IN =
+      template("\",\"%s\":", TOKEN_RESPONSE_REFRESH_EXPIRES_IN);
+  private static final ByteBuf BEFORE_ID_TOKEN = template(",\"%s\":\"", TOKEN_RESPONSE_ID_TOKEN);
+  private static final ByteBuf BEFORE_SESSION_STATE =
+      template("\",\"%s\":", TOKEN_RESPONSE_SESSION_STATE);
+  private static final ByteBuf END = template("}");
+  private static final ByteBuf NULL = template("null");
+  private static final int COMPONENT_COUNT = 13;
+
+  private TokenResponse() {}
+
+  /**
+   * Create the body of a token response.
+   *
+   * @param token the token to use as access, refresh and ID token
+   * @param expiresInSeconds the remaining lifespan of the token
+   * @param sessionId the session the token belongs to, if any
+   * @return the encoded response body
+   */
+  @Nonnull
+  static Buffer create(@Nonnull String token, long expiresInSeconds, @Nullable String sessionId) {
+    return create(token, expiresInSeconds, token, expiresInSeconds, token, sessionId);
+  }
+
+  /**
+   * Create the body of a token response with separate tokens.
+   *
+   * @param accessToken the access token
+   * @param expiresInSeconds the remaining lifespan of the access token
+   * @param refreshToken the refresh token
+   * @param refreshExpiresInSeconds the remaining lifespan of the refresh token, zero if it does not
+   *     expire
+   * @param idToken the ID token
+   * @param sessionId the session the tokens belong to, if any
+   * @return the encoded response body
+   */
+  @Nonnull
+  static Buffer create(
+      @Nonnull String accessToken,
+      long expiresInSeconds,
+      @Nonnull String refreshToken,
+      long refreshExpiresInSeconds,
+      @Nonnull String idToken,
+      @Nullable String sessionId) {
+    ByteBuf accessTokenBytes = SharedBuffers.wrap(toJsonStringContent(accessToken));
+    ByteBuf expiresIn = SharedBuffers.wrap(Long.toString(expiresInSeconds));
+    ByteBuf idTokenBytes =
+        idToken.equals(accessToken)
+            ? accessTokenBytes
+            : SharedBuffers.wrap(toJsonStringContent(idToken));
+    ByteBuf refreshTokenBytes =
+        refreshToken.equals(idToken)
+            ? idTokenBytes
+            : refreshToken.equals(accessToken)
+                ? accessTokenBytes
+                : SharedBuffers.wrap(toJsonStringContent(refreshToken));
+    ByteBuf refreshExpiresIn =
+        refreshExpiresInSeconds == expiresInSeconds
+            ? expiresIn
+            : SharedBuffers.wrap(Long.toString(refreshExpiresInSeconds));
+    // the fixed parts are shared, so they are added as duplicates with their own indices
+    CompositeByteBuf result = Unpooled.compositeBuffer(COMPONENT_COUNT);
+    result.addComponents(
+        true,
+        BEFORE_ACCESS_TOKEN.duplicate(),
+        accessTokenBytes.duplicate(),
+        BEFORE_EXPIRES_IN.duplicate(),
+        expiresIn.duplicate(),
+        BEFORE_REFRESH_TOKEN.duplicate(),
+        refreshTokenBytes.duplicate(),
+        BEFORE_REFRESH_EXPIRES_IN.duplicate(),
+        refreshExpiresIn.duplicate(),
+        BEFORE_ID_TOKEN.duplicate(),
+        idTokenBytes.duplicate(),
+        BEFORE_SESSION_STATE.duplicate(),
+        sessionId != null ? SharedBuffers.wrap(Json.encode(sessionId)) : NULL.duplicate(),
+        END.duplicate());
+    return Buffer.buffer(result);
+  }
+
+  @Nonnull
+  private static String toJsonStringContent(@Nonnull String value) {
+    // compact JWTs and opaque tokens never need escaping, so this is just a safety net
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+        String encoded = Json.encode(value);
+        return encoded.substring(1, encoded.length() - 1);
+      }
+    }
+    return value;
+  }
+
+  @Nonnull
+  private static ByteBuf template(@Nonnull String format, @Nonnull Object... arguments) {
+    return SharedBuffers.wrap(String.format(format, arguments));
+  }
+}
@@ -5,19 +5,28 @@ import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
 
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
+import com.tngtech.keycloakmock.impl.helper.AuthorizationCodeHelper;
 import com.tngtech.keycloakmock.impl.helper.TokenHelper;
+import com.tngtech.keycloakmock.impl.metrics.Metrics;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository;
 import com.tngtech.keycloakmock.impl.session.AdHocSession;
+import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.RefreshTokenRepository;
 import com.tngtech.keycloakmock.impl.session.Session;
-import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import com.tngtech.keycloakmock.impl.session.SignedToken;
 import io.vertx.core.Handler;
-import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.User;
 import io.vertx.ext.web.RoutingContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 @Singleton
@@ -41,19 +50,35 @@ public class TokenRoute implements Handler<RoutingContext> {
   static final String TOKEN_RESPONSE_REFRESH_EXPIRES_IN = "refresh_expires_in";
   static final String TOKEN_RESPONSE_ID_TOKEN = "id_token";
   static final String TOKEN_RESPONSE_SESSION_STATE = "session_state";
+  private static final String CLAIM_EXPIRATION = "exp";
 
-  @Nonnull private final SessionRepository sessionRepository;
+  @Nonnull private final AuthorizationCodeHelper authorizationCodeHelper;
   @Nonnull private final TokenHelper tokenHelper;
   @Nonnull private final UrlConfigurationFactory urlConfigurationFactory;
+  @Nonnull private final SigningExecutor signingExecutor;
+  @Nonnull private final Metrics metrics;
+  @Nonnull private final RefreshTokenRepository refreshTokenRepository;
+  @Nonnull private final AccessTokenRepository accessTokenRepository;
+  @Nonnull private final Duration tokenLifespan;
 
   @Inject
   TokenRoute(
-      @Nonnull SessionRepository sessionRepository,
+      @Nonnull AuthorizationCodeHelper authorizationCodeHelper,
       @Nonnull TokenHelper tokenHelper,
-      @Nonnull UrlConfigurationFactory urlConfigurationFactory) {
-    this.sessionRepository = sessionRepository;
+      @Nonnull UrlConfigurationFactory urlConfigurationFactory,
+      @Nonnull SigningExecutor signingExecutor,
+      @Nonnull Metrics metrics,
+      @Nonnull RefreshTokenRepository refreshTokenRepository,
+      @Nonnull AccessTokenRepository accessTokenRepository,
+      @Nonnull @Named("tokenLifespan") Duration tokenLifespan) {
+    this.authorizationCodeHelper = authorizationCodeHelper;
     this.tokenHelper = tokenHelper;
     this.urlConfigurationFactory = urlConfigurationFactory;
+    this.signingExecutor = signingExecutor;
+    this.metrics = metrics;
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.accessTokenRepository = accessTokenRepository;
+    this.tokenLifespan = tokenLifespan;
   }
 
   @Override
@@ -78,21 +103,32 @@ public class TokenRoute implements Handler<RoutingContext> {
   }
 
   private void handleAuthorizationCodeFlow(RoutingContext routingContext) {
-    // here again we use the equality of authorization code and session ID
-    String sessionId = routingContext.request().getFormAttribute(TOKEN_PARAM_CODE);
-    UrlConfiguration requestConfiguration = urlConfigurationFactory.create(routingContext);
-    String token =
-        Optional.ofNullable(sessionRepository.getSession(sessionId))
-            .map(s -> tokenHelper.getToken(s, requestConfiguration))
-            .orElse(null);
-    if (token == null) {
+    String code = routingContext.request().getFormAttribute(TOKEN_PARAM_CODE);
+    PersistentSession session = code != null ? authorizationCodeHelper.getSession(code) : null;
+    if (session == null) {
       routingContext.fail(404);
       return;
     }
-    routingContext
-        .response()
-        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(toTokenResponse(token, sessionId));
+    UrlConfiguration requestConfiguration = urlConfigurationFactory.create(routingContext);
+    signingExecutor
+        .submit(() -> tokenHelper.getToken(session, requestConfiguration))
+        .onSuccess(
+            token -> {
+              if (token == null) {
+                routingContext.fail(404);
+                return;
+              }
+              // the token of the session may have been signed before, e.g. for the redirect
+              SignedToken signedToken = session.getSignedToken();
+              Instant issuedAt = signedToken != null ? signedToken.getIssuedAt() : Instant.now();
+              sendTokenResponse(
+                  routingContext,
+                  GRANT_AUTHORIZATION_CODE,
+                  token,
+                  issuedAt.plus(tokenLifespan),
+                  session);
+            })
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
   }
 
   private void handleRefreshTokenFlow(RoutingContext routingContext) {
@@ -101,13 +137,32 @@ public class TokenRoute implements Handler<RoutingContext> {
       routingContext.fail(400);
       return;
     }
-    Map<String, Object> token = tokenHelper.parseToken(refreshToken);
-    String sessionId = (String) token.get(TOKEN_RESPONSE_SESSION_STATE);
-
-    routingContext
-        .response()
-        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(toTokenResponse(refreshToken, sessionId));
+    if (refreshTokenRepository.isEnabled()) {
+      // redeeming invalidates the token, so each refresh token can only be used once
+      Session session = refreshTokenRepository.redeem(refreshToken);
+      if (session == null) {
+        routingContext.fail(400);
+        return;
+      }
+      UrlConfiguration requestConfiguration = urlConfigurationFactory.create(routingContext);
+      signToken(routingContext, GRANT_REFRESH_TOKEN, session, requestConfiguration);
+      return;
+    }
+    signingExecutor
+        .submit(() -> tokenHelper.parseToken(refreshToken))
+        .onSuccess(
+            token -> {
+              Instant expiresAt = getExpiration(token);
+              sendTokenResponse(
+                  routingContext,
+                  GRANT_REFRESH_TOKEN,
+                  refreshToken,
+                  expiresAt,
+                  refreshToken,
+                  expiresAt,
+                  (String) token.get(TOKEN_RESPONSE_SESSION_STATE));
+            })
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
   }
 
   private void handlePasswordFlow(RoutingContext routingContext) {
@@ -130,12 +185,7 @@ public class TokenRoute implements Handler<RoutingContext> {
     Session session =
         AdHocSession.fromClientIdUsernameAndPassword(
             clientId, requestConfiguration.getHostname(), username, password);
-    String token = tokenHelper.getToken(session, requestConfiguration);
-
-    routingContext
-        .response()
-        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(toTokenResponse(token, session.getSessionId()));
+    signToken(routingContext, GRANT_PASSWORD, session, requestConfiguration);
   }
 
   private void handleClientCredentialsFlow(RoutingContext routingContext) {
@@ -159,23 +209,87 @@ public class TokenRoute implements Handler<RoutingContext> {
         AdHocSession.fromClientIdUsernameAndPassword(
             clientId, requestConfiguration.getHostname(), clientId, password);
 
-    final String token = tokenHelper.getToken(session, requestConfiguration);
+    signToken(routingContext, GRANT_CLIENT_CREDENTIALS, session, requestConfiguration);
+  }
+
+  private void signToken(
+      @Nonnull RoutingContext routingContext,
+      @Nonnull String grantType,
+      @Nonnull Session session,
+      @Nonnull UrlConfiguration requestConfiguration) {
+    signingExecutor
+        .submit(() -> tokenHelper.getToken(session, requestConfiguration))
+        .onSuccess(
+            token ->
+                sendTokenResponse(
+                    routingContext, grantType, token, Instant.now().plus(tokenLifespan), session))
+        .onFailure(t -> SigningExecutor.fail(routingContext, t));
+  }
+
+  private void sendTokenResponse(
+      @Nonnull RoutingContext routingContext,
+      @Nonnull String grantType,
+      @Nonnull String token,
+      @Nonnull Instant expiresAt,
+      @Nonnull Session session) {
+    if (!refreshTokenRepository.isEnabled()) {
+      sendTokenResponse(
+          routingContext, grantType, token, expiresAt, token, expiresAt, session.getSessionId());
+      return;
+    }
+    String refreshToken = refreshTokenRepository.create(session);
+    long refreshTtlMillis = refreshTokenRepository.getTtlMillis();
+    sendTokenResponse(
+        routingContext,
+        grantType,
+        token,
+        expiresAt,
+        refreshToken,
+        // like offline tokens in Keycloak, refresh tokens without expiration have no expires_in
+        refreshTtlMillis > 0 ? Instant.now().plusMillis(refreshTtlMillis) : null,
+        session.getSessionId());
+  }
 
+  private void sendTokenResponse(
+      @Nonnull RoutingContext routingContext,
+      @Nonnull String grantType,
+      @Nonnull String token,
+      @Nonnull Instant expiresAt,
+      @Nonnull String refreshToken,
+      @Nullable Instant refreshExpiresAt,
+      @Nullable String sessionId) {
+    metrics.recordTokenIssued(grantType);
+    // the signed token is always used as ID token, as clients need to verify it themselves
+    String accessToken =
+        accessTokenRepository.isEnabled() ? accessTokenRepository.create(token, expiresAt) : token;
+    Instant now = Instant.now();
     routingContext
         .response()
         .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(toTokenResponse(token, session.getSessionId()));
+        .end(
+            TokenResponse.create(
+                accessToken,
+                getSecondsUntil(now, expiresAt),
+                refreshToken,
+                refreshExpiresAt != null ? getSecondsUntil(now, refreshExpiresAt) : 0,
+                token,
+                sessionId));
   }
 
-  private String toTokenResponse(String token, String sessionId) {
-    return new JsonObject()
-        .put(TOKEN_RESPONSE_ACCESS_TOKEN, token)
-        .put(TOKEN_RESPONSE_TOKEN_TYPE, "Bearer")
-        .put(TOKEN_RESPONSE_EXPIRES_IN, 36_000)
-        .put(TOKEN_RESPONSE_REFRESH_TOKEN, token)
-        .put(TOKEN_RESPONSE_REFRESH_EXPIRES_IN, 36_000)
-        .put(TOKEN_RESPONSE_ID_TOKEN, token)
-        .put(TOKEN_RESPONSE_SESSION_STATE, sessionId)
-        .encode();
+  private static long getSecondsUntil(@Nonnull Instant now, @Nonnull Instant instant) {
+    return Math.max(0, Duration.between(now, instant).getSeconds());
+  }
+
+  @Nonnull
+  private static Instant getExpiration(@Nonnull Map<String, Object> claims) {
+    Object expiration = claims.get(CLAIM_EXPIRATION);
+    if (expiration instanceof Date) {
+      return ((Date) expiration).toInstant();
+    }
+    if (expiration instanceof Number) {
+      return Instant.ofEpochSecond(((Number) expiration).longValue());
+    }
+    // tokens without expiration do not expire
+    return Instant.MAX;
   }
 }
@@ -3,9 +3,12 @@ package com.tngtech.keycloakmock.impl.handler;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpHeaderValues.APPLICATION_JSON;
 
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import com.tngtech.keycloakmock.impl.BoundedCache;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
@@ -15,23 +18,47 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+/**
+ * Serves the OpenID Connect discovery document.
+ *
+ * <p>The document only depends on the {@link UrlConfiguration}, which is determined by the
+ * requested host and realm, so the encoded response is cached per host and realm. As the host is
+ * taken from the request, the number of cached responses is limited in the same way as the number
+ * of shared configurations.
+ */
 @Singleton
 public class WellKnownRoute implements Handler<RoutingContext> {
-
   @Nonnull private final UrlConfigurationFactory urlConfigurationFactory;
+  @Nonnull private final SigningAlgorithm signingAlgorithm;
+
+  @Nonnull
+  private final BoundedCache<UrlConfigurationFactory.CacheKey, Buffer> responses =
+      new BoundedCache<>();
 
   @Inject
-  WellKnownRoute(@Nonnull UrlConfigurationFactory urlConfigurationFactory) {
+  WellKnownRoute(
+      @Nonnull UrlConfigurationFactory urlConfigurationFactory,
+      @Nonnull SigningAlgorithm signingAlgorithm) {
     this.urlConfigurationFactory = urlConfigurationFactory;
+    this.signingAlgorithm = signingAlgorithm;
   }
 
   @Override
   public void handle(@Nonnull RoutingContext routingContext) {
-    UrlConfiguration requestConfiguration = urlConfigurationFactory.create(routingContext);
-    routingContext
-        .response()
-        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-        .end(getConfiguration(requestConfiguration).encode());
+    Buffer response =
+        responses.get(
+            UrlConfigurationFactory.getCacheKey(routingContext),
+            key -> createResponse(urlConfigurationFactory.create(key)));
+    routingContext.response().putHeader(CONTENT_TYPE, APPLICATION_JSON).end(response);
+  }
+
+  int getCachedResponseCount() {
+    return responses.size();
+  }
+
+  @Nonnull
+  private Buffer createResponse(@Nonnull UrlConfiguration requestConfiguration) {
+    return SharedBuffers.direct(getConfiguration(requestConfiguration).encode());
   }
 
   private JsonObject getConfiguration(@Nonnull UrlConfiguration requestConfiguration) {
@@ -53,7 +80,7 @@ public class WellKnownRoute implements Handler<RoutingContext> {
         .put("subject_types_supported", new JsonArray(Collections.singletonList("public")))
         .put(
             "id_token_signing_alg_values_supported",
-            new JsonArray(Collections.singletonList("RS256")));
+            new JsonArray(Collections.singletonList(signingAlgorithm.getJwsAlgorithm())));
     return result;
   }
 }
@@ -0,0 +1,210 @@
+package com.tngtech.keycloakmock.impl.helper;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import com.tngtech.keycloakmock.impl.session.SessionRequest;
+import com.tngtech.keycloakmock.impl.session.UserData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates authorization codes and resolves them to the session they were issued for.
+ *
+ * <p>By default, the session ID is used as authorization code, and the session is looked up in the
+ * {@link SessionRepository}. If an authorization code secret is configured, the code contains all
+ * data of the session instead, encrypted with AES-GCM using a key derived from the secret. Such a
+ * code can be redeemed by every mock instance using the same secret, without any shared state. In
+ * turn, it stays valid until it expires, even if the session is logged out in the meantime.
+ */
+@Singleton
+public class AuthorizationCodeHelper {
+  private static final Logger LOG = LoggerFactory.getLogger(AuthorizationCodeHelper.class);
+  private static final String CIPHER = "AES/GCM/NoPadding";
+  private static final byte VERSION = 1;
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_LENGTH_BITS = 128;
+
+  @Nonnull private final SessionRepository sessionRepository;
+  @Nonnull private final LongSupplier clock;
+  private final long codeTtlMillis;
+  @Nullable private final SecretKeySpec key;
+  @Nonnull private final SecureRandom random = new SecureRandom();
+
+  @Inject
+  AuthorizationCodeHelper(
+      @Nonnull ServerConfig serverConfig, @Nonnull SessionRepository sessionRepository) {
+    this(serverConfig, sessionRepository, System::currentTimeMillis);
+  }
+
+  AuthorizationCodeHelper(
+      @Nonnull ServerConfig serverConfig,
+      @Nonnull SessionRepository sessionRepository,
+      @Nonnull LongSupplier clock) {
+    this.sessionRepository = sessionRepository;
+    this.clock = clock;
+    this.codeTtlMillis = Math.max(0, serverConfig.getAuthorizationCodeTtl().toMillis());
+    String secret = serverConfig.getAuthorizationCodeSecret();
+    this.key = secret != null ? deriveKey(secret) : null;
+  }
+
+  /**
+   * Create an authorization code for a session.
+   *
+   * @param session the session the user has logged in to
+   * @return the authorization code
+   */
+  @Nonnull
+  public String createCode(@Nonnull PersistentSession session) {
+    if (key == null) {
+      return session.getSessionId();
+    }
+    try {
+      byte[] iv = new byte[IV_LENGTH];
+      random.nextBytes(iv);
+      Cipher cipher = Cipher.getInstance(CIPHER);
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+      byte[] encrypted = cipher.doFinal(serialize(session, clock.getAsLong()));
+      byte[] code = new byte[1 + IV_LENGTH + encrypted.length];
+      code[0] = VERSION;
+      System.arraycopy(iv, 0, code, 1, IV_LENGTH);
+      System.arraycopy(encrypted, 0, code, 1 + IV_LENGTH, encrypted.length);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(code);
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException("Unable to create authorization code", e);
+    }
+  }
+
+  /**
+   * Get the session belonging to an authorization code, if the code has not expired yet.
+   *
+   * @param code the authorization code
+   * @return the session, or null if the code is unknown, invalid or expired
+   */
+  @Nullable
+  public PersistentSession getSession(@Nonnull String code) {
+    if (key == null) {
+      return sessionRepository.getSessionForAuthorizationCode(code);
+    }
+    try {
+      byte[] decoded = Base64.getUrlDecoder().decode(code);
+      if (decoded.length <= 1 + IV_LENGTH || decoded[0] != VERSION) {
+        LOG.warn("Invalid authorization code format");
+        return null;
+      }
+      Cipher cipher = Cipher.getInstance(CIPHER);
+      cipher.init(
+          Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, decoded, 1, IV_LENGTH));
+      byte[] decrypted = cipher.doFinal(decoded, 1 + IV_LENGTH, decoded.length - 1 - IV_LENGTH);
+      return deserialize(decrypted);
+    } catch (IllegalArgumentException | GeneralSecurityException | IOException e) {
+      // codes of other secrets or manipulated codes fail the authentication of AES-GCM
+      LOG.warn("Unable to decrypt authorization code: {}", e.toString());
+      return null;
+    }
+  }
+
+  @Nonnull
+  private static byte[] serialize(@Nonnull PersistentSession session, long issuedAtMillis)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeLong(issuedAtMillis);
+      output.writeUTF(session.getSessionId());
+      output.writeUTF(session.getClientId());
+      output.writeUTF(session.getRedirectUri());
+      output.writeUTF(session.getResponseType());
+      writeNullable(output, session.getState());
+      writeNullable(output, session.getResponseMode());
+      writeNullable(output, session.getNonce());
+      UserData userData = session.getUserData();
+      output.writeUTF(userData.getSubject());
+      writeNullable(output, userData.getGivenName());
+      output.writeUTF(userData.getFamilyName());
+      output.writeUTF(userData.getEmail());
+      output.writeUTF(userData.getPreferredUsername());
+      output.writeInt(session.getRoles().size());
+      for (String role : session.getRoles()) {
+        output.writeUTF(role);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  @Nullable
+  private PersistentSession deserialize(@Nonnull byte[] data) throws IOException {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+      long issuedAtMillis = input.readLong();
+      if (codeTtlMillis > 0 && clock.getAsLong() - issuedAtMillis > codeTtlMillis) {
+        return null;
+      }
+      SessionRequest request =
+          new SessionRequest.Builder()
+              .setSessionId(input.readUTF())
+              .setClientId(input.readUTF())
+              .setRedirectUri(input.readUTF())
+              .setResponseType(input.readUTF())
+              .setState(readNullable(input))
+              .setResponseMode(readNullable(input))
+              .setNonce(readNullable(input))
+              .build();
+      UserData userData =
+          UserData.of(
+              input.readUTF(),
+              readNullable(input),
+              input.readUTF(),
+              input.readUTF(),
+              input.readUTF());
+      int roleCount = input.readInt();
+      List<String> roles = new ArrayList<>();
+      for (int i = 0; i < roleCount; i++) {
+        roles.add(input.readUTF());
+      }
+      return request.toSession(userData, roles);
+    }
+  }
+
+  private static void writeNullable(@Nonnull DataOutputStream output, @Nullable String value)
+      throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(@Nonnull DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  @Nonnull
+  private static SecretKeySpec deriveKey(@Nonnull String secret) {
+    try {
+      byte[] hash =
+          MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+      return new SecretKeySpec(hash, "AES");
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to derive authorization code key", e);
+    }
+  }
+}
@@ -36,10 +36,13 @@ public class RedirectHelper {
   private static final String DUMMY_USER_ID = "dummy-user-id";
 
   @Nonnull private final TokenHelper tokenHelper;
+  @Nonnull private final AuthorizationCodeHelper authorizationCodeHelper;
 
   @Inject
-  RedirectHelper(@Nonnull TokenHelper tokenHelper) {
+  RedirectHelper(
+      @Nonnull TokenHelper tokenHelper, @Nonnull AuthorizationCodeHelper authorizationCodeHelper) {
     this.tokenHelper = tokenHelper;
+    this.authorizationCodeHelper = authorizationCodeHelper;
   }
 
   @Nullable
@@ -111,15 +114,18 @@ public class RedirectHelper {
     List<String> parameters = new ArrayList<>();
     parameters.add(getResponseParameter(SESSION_STATE, session.getSessionId()));
     parameters.add(getResponseParameter(STATE, session.getState()));
-    String token = tokenHelper.getToken(session, requestConfiguration);
-    if (token == null) {
-      LOG.warn("No token available for session {}", session.getSessionId());
-      return null;
+    String token = null;
+    if (responseType == ResponseType.ID_TOKEN || responseType == ResponseType.ID_TOKEN_PLUS_TOKEN) {
+      // only sign a token if it is actually part of the response
+      token = tokenHelper.getToken(session, requestConfiguration);
+      if (token == null) {
+        LOG.warn("No token available for session {}", session.getSessionId());
+        return null;
+      }
     }
     switch (responseType) {
       case CODE:
-        // for simplicity, use session ID as authorization code
-        parameters.add(getResponseParameter(CODE, session.getSessionId()));
+        parameters.add(getResponseParameter(CODE, authorizationCodeHelper.createCode(session)));
         break;
       case ID_TOKEN:
         parameters.add(getResponseParameter(ID_TOKEN, token));
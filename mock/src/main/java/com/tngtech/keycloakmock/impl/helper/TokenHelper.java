@@ -6,8 +6,12 @@ import com.tngtech.keycloakmock.api.LoginRoleMapping;
 import com.tngtech.keycloakmock.api.TokenConfig.Builder;
 import com.tngtech.keycloakmock.impl.TokenGenerator;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
+import com.tngtech.keycloakmock.impl.session.PersistentSession;
 import com.tngtech.keycloakmock.impl.session.Session;
+import com.tngtech.keycloakmock.impl.session.SignedToken;
 import com.tngtech.keycloakmock.impl.session.UserData;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Map;
 import javax.annotation.Nonnull;
@@ -24,15 +28,42 @@ public class TokenHelper {
   @Nonnull private final TokenGenerator tokenGenerator;
   @Nonnull private final Collection<String> defaultAudiences;
   @Nonnull private final LoginRoleMapping loginRoleMapping;
+  @Nonnull private final Duration maximumTokenReuseAge;
 
   @Inject
   TokenHelper(
       @Nonnull TokenGenerator tokenGenerator,
       @Nonnull @Named("audiences") Collection<String> defaultAudiences,
-      @Nonnull LoginRoleMapping loginRoleMapping) {
+      @Nonnull LoginRoleMapping loginRoleMapping,
+      @Nonnull @Named("tokenLifespan") Duration tokenLifespan) {
     this.tokenGenerator = tokenGenerator;
     this.defaultAudiences = defaultAudiences;
     this.loginRoleMapping = loginRoleMapping;
+    // only hand out tokens which still have at least half of their lifespan left
+    this.maximumTokenReuseAge = tokenLifespan.dividedBy(2);
+  }
+
+  /**
+   * Get a token for a persistent session.
+   *
+   * <p>As the session does not change, the token is only signed once and then re-used for the
+   * redirect after login, the code exchange and the ID token, as long as it was issued for the same
+   * issuer and is not too old.
+   */
+  @Nullable
+  public String getToken(
+      @Nonnull PersistentSession session, @Nonnull UrlConfiguration requestConfiguration) {
+    String issuer = requestConfiguration.getIssuerString();
+    Instant now = Instant.now();
+    SignedToken signedToken = session.getSignedToken();
+    if (signedToken != null && signedToken.isReusable(issuer, now, maximumTokenReuseAge)) {
+      return signedToken.getToken();
+    }
+    String token = getToken((Session) session, requestConfiguration);
+    if (token != null) {
+      session.setSignedToken(new SignedToken(issuer, token, now));
+    }
+    return token;
   }
 
   @Nullable
@@ -0,0 +1,153 @@
+package com.tngtech.keycloakmock.impl.metrics;
+
+import com.tngtech.keycloakmock.api.MetricsSnapshot.LatencySummary;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+
+/**
+ * A lock-free histogram of latencies with log-linear buckets.
+ *
+ * <p>Like HdrHistogram, values are recorded in microseconds into buckets whose width grows with the
+ * value: below 16 µs, each microsecond has its own bucket; above, each power of two is split into 8
+ * buckets. This bounds the relative error of all percentiles to 12.5% while covering latencies of
+ * up to 19 hours with less than 300 counters.
+ */
+public class LatencyHistogram {
+  private static final int LINEAR_LIMIT = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_BITS = 4;
+  private static final int MAX_EXPONENT = 36;
+  private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+  private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_BITS) * SUB_BUCKETS;
+
+  @Nonnull private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  @Nonnull private final LongAdder count = new LongAdder();
+  @Nonnull private final LongAdder sumMicros = new LongAdder();
+  @Nonnull private final AtomicLong maxMicros = new AtomicLong();
+
+  /**
+   * Record a single latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    counts.incrementAndGet(bucketIndex(micros));
+    count.increment();
+    sumMicros.add(micros);
+    if (micros > maxMicros.get()) {
+      maxMicros.accumulateAndGet(micros, Math::max);
+    }
+  }
+
+  long getCount() {
+    return count.sum();
+  }
+
+  long getSumMicros() {
+    return sumMicros.sum();
+  }
+
+  /**
+   * Get the number of recorded values that are below the given value.
+   *
+   * <p>Values are compared at bucket precision: a bucket is only included if all of its values are
+   * below the given value. The result is exact if the value is a bucket boundary, otherwise the
+   * values of the bucket containing it are missing. Use {@link #alignToBucketBoundary(long)} to
+   * choose exact bounds.
+   *
+   * @param micros the exclusive upper bound in microseconds
+   * @return the cumulative count
+   */
+  long getCountBelow(long micros) {
+    long result = 0;
+    for (int i = 0; i < BUCKET_COUNT && upperBound(i) < micros; i++) {
+      result += counts.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Get the value below which the given fraction of recorded values falls.
+   *
+   * @param fraction the fraction between 0 and 1
+   * @return the upper bound of the bucket containing the percentile, in microseconds
+   */
+  long getValueAtFraction(double fraction) {
+    long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long cumulative = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= rank) {
+        return Math.min(upperBound(i), maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  @Nonnull
+  LatencySummary summarize() {
+    long currentCount = getCount();
+    return new LatencySummary(
+        currentCount,
+        currentCount == 0 ? 0 : toMillis(getSumMicros()) / currentCount,
+        toMillis(getValueAtFraction(0.5)),
+        toMillis(getValueAtFraction(0.9)),
+        toMillis(getValueAtFraction(0.99)),
+        toMillis(getValueAtFraction(0.999)),
+        toMillis(maxMicros.get()));
+  }
+
+  static int bucketIndex(long micros) {
+    if (micros < LINEAR_LIMIT) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+    return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Get the bucket boundary closest to the given value, i.e. the smallest value of a bucket.
+   *
+   * @param micros the value in microseconds
+   * @return the closest bucket boundary in microseconds
+   */
+  static long alignToBucketBoundary(long micros) {
+    long value = Math.min(MAX_VALUE, Math.max(0, micros));
+    if (value <= LINEAR_LIMIT) {
+      return value;
+    }
+    int index = bucketIndex(value);
+    long lower = upperBound(index - 1) + 1;
+    long upper = upperBound(index) + 1;
+    return value - lower <= upper - value ? lower : upper;
+  }
+
+  /** The largest value that falls into the given bucket. */
+  static long upperBound(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+    int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  private static double toMillis(long micros) {
+    return micros / 1000.0;
+  }
+}
@@ -0,0 +1,297 @@
+package com.tngtech.keycloakmock.impl.metrics;
+
+import com.tngtech.keycloakmock.api.MetricsSnapshot;
+import com.tngtech.keycloakmock.api.MetricsSnapshot.RouteMetrics;
+import com.tngtech.keycloakmock.impl.accesslog.AccessLog;
+import com.tngtech.keycloakmock.impl.handler.SigningExecutor;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Collects metrics about the requests handled by the server.
+ *
+ * <p>All recording methods are lock-free, so they can be called from the event loops.
+ */
+@Singleton
+public class Metrics {
+  // latency buckets exported to Prometheus, in microseconds
+  private static final long[] NOMINAL_BUCKET_BOUNDS = {
+    100, 250, 500, 1_000,
+    2_500, 5_000, 10_000, 25_000,
+    50_000, 100_000, 250_000, 500_000,
+    1_000_000, 2_500_000, 5_000_000, 10_000_000
+  };
+  // the bounds are moved to the closest bucket boundary of the histogram, as only there its counts
+  // are exact, e.g. 2.5 ms becomes 2.56 ms
+  private static final long[] BUCKET_BOUNDS =
+      LongStream.of(NOMINAL_BUCKET_BOUNDS).map(LatencyHistogram::alignToBucketBoundary).toArray();
+  private static final String PREFIX = "keycloak_mock_";
+
+  @Nonnull private final SessionRepository sessionRepository;
+  @Nonnull private final SigningExecutor signingExecutor;
+  @Nonnull private final AccessLog accessLog;
+
+  @Nonnull private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+  @Nonnull private final ConcurrentMap<String, LongAdder> tokens = new ConcurrentHashMap<>();
+
+  @Inject
+  Metrics(
+      @Nonnull SessionRepository sessionRepository,
+      @Nonnull SigningExecutor signingExecutor,
+      @Nonnull AccessLog accessLog) {
+    this.sessionRepository = sessionRepository;
+    this.signingExecutor = signingExecutor;
+    this.accessLog = accessLog;
+  }
+
+  /**
+   * Record a handled request.
+   *
+   * @param route the name of the route that handled the request
+   * @param status the response status code
+   * @param nanos the time taken to handle the request, in nanoseconds
+   */
+  public void recordRequest(@Nonnull String route, int status, long nanos) {
+    Route metrics = routes.computeIfAbsent(route, r -> new Route());
+    metrics.latency.record(nanos);
+    metrics.statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+  }
+
+  /**
+   * Record a token issued by the token endpoint.
+   *
+   * @param grantType the grant type used to request the token
+   */
+  public void recordTokenIssued(@Nonnull String grantType) {
+    tokens.computeIfAbsent(grantType, g -> new LongAdder()).increment();
+  }
+
+  /**
+   * Create a snapshot of all metrics.
+   *
+   * @return the snapshot
+   */
+  @Nonnull
+  public MetricsSnapshot snapshot() {
+    Map<String, RouteMetrics> routeMetrics = new TreeMap<>();
+    routes.forEach(
+        (name, route) -> {
+          Map<Integer, Long> statusCounts = new TreeMap<>();
+          route.statusCounts.forEach((status, count) -> statusCounts.put(status, count.sum()));
+          routeMetrics.put(name, new RouteMetrics(statusCounts, route.latency.summarize()));
+        });
+    Map<String, Long> tokenCounts = new TreeMap<>();
+    tokens.forEach((grantType, count) -> tokenCounts.put(grantType, count.sum()));
+    return new MetricsSnapshot(
+        routeMetrics,
+        tokenCounts,
+        signingExecutor.getSigningTime().summarize(),
+        sessionRepository.getSessionCount(),
+        sessionRepository.getRequestCount(),
+        signingExecutor.getQueueDepth(),
+        signingExecutor.getRejectedCount(),
+        sessionRepository.getExpiredRequestCount(),
+        sessionRepository.getExpiredSessionCount(),
+        sessionRepository.getEvictedCount(),
+        sessionRepository.getRejectedCount());
+  }
+
+  /**
+   * Render all metrics in the Prometheus text exposition format.
+   *
+   * @return the metrics
+   */
+  @Nonnull
+  public String toPrometheus() {
+    StringBuilder builder = new StringBuilder();
+    header(builder, "requests_total", "counter", "Number of handled requests.");
+    new TreeMap<>(routes)
+        .forEach(
+            (name, route) ->
+                new TreeMap<>(route.statusCounts)
+                    .forEach(
+                        (status, count) ->
+                            builder
+                                .append(PREFIX)
+                                .append("requests_total{route=\"")
+                                .append(escape(name))
+                                .append("\",status=\"")
+                                .append(status)
+                                .append("\"} ")
+                                .append(count.sum())
+                                .append('\n')));
+    header(
+        builder,
+        "request_duration_seconds",
+        "histogram",
+        "Time from receiving a request until the response has been written.");
+    new TreeMap<>(routes)
+        .forEach(
+            (name, route) ->
+                histogram(
+                    builder,
+                    "request_duration_seconds",
+                    "route=\"" + escape(name) + "\",",
+                    route.latency));
+    header(builder, "tokens_issued_total", "counter", "Number of tokens issued by grant type.");
+    new TreeMap<>(tokens)
+        .forEach(
+            (grantType, count) ->
+                builder
+                    .append(PREFIX)
+                    .append("tokens_issued_total{grant_type=\"")
+                    .append(escape(grantType))
+                    .append("\"} ")
+                    .append(count.sum())
+                    .append('\n'));
+    header(
+        builder,
+        "signing_duration_seconds",
+        "histogram",
+        "Time spent signing or verifying tokens.");
+    histogram(builder, "signing_duration_seconds", "", signingExecutor.getSigningTime());
+    singleValue(
+        builder,
+        "signing_queue_depth",
+        "gauge",
+        "Number of signing tasks that are waiting or running.",
+        signingExecutor.getQueueDepth());
+    singleValue(
+        builder,
+        "signing_rejected_total",
+        "counter",
+        "Number of requests rejected because the signing queue was full.",
+        signingExecutor.getRejectedCount());
+    singleValue(
+        builder,
+        "sessions_active",
+        "gauge",
+        "Number of sessions created via the login page.",
+        sessionRepository.getSessionCount());
+    singleValue(
+        builder,
+        "session_requests_pending",
+        "gauge",
+        "Number of login requests that have not been completed yet.",
+        sessionRepository.getRequestCount());
+    header(
+        builder,
+        "sessions_removed_total",
+        "counter",
+        "Number of login requests and sessions removed before they were completed or logged out.");
+    sessionRemoved(builder, "request_expired", sessionRepository.getExpiredRequestCount());
+    sessionRemoved(builder, "session_expired", sessionRepository.getExpiredSessionCount());
+    sessionRemoved(builder, "evicted", sessionRepository.getEvictedCount());
+    singleValue(
+        builder,
+        "session_requests_rejected_total",
+        "counter",
+        "Number of logins rejected because the session capacity was reached.",
+        sessionRepository.getRejectedCount());
+    singleValue(
+        builder,
+        "access_log_dropped_total",
+        "counter",
+        "Number of access log entries dropped because the buffer was full.",
+        accessLog.getDroppedCount());
+    return builder.toString();
+  }
+
+  private static void header(
+      @Nonnull StringBuilder builder,
+      @Nonnull String name,
+      @Nonnull String type,
+      @Nonnull String help) {
+    builder.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    builder.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void singleValue(
+      @Nonnull StringBuilder builder,
+      @Nonnull String name,
+      @Nonnull String type,
+      @Nonnull String help,
+      long value) {
+    header(builder, name, type, help);
+    builder.append(PREFIX).append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void sessionRemoved(
+      @Nonnull StringBuilder builder, @Nonnull String reason, long value) {
+    builder
+        .append(PREFIX)
+        .append("sessions_removed_total{reason=\"")
+        .append(reason)
+        .append("\"} ")
+        .append(value)
+        .append('\n');
+  }
+
+  private static void histogram(
+      @Nonnull StringBuilder builder,
+      @Nonnull String name,
+      @Nonnull String labels,
+      @Nonnull LatencyHistogram histogram) {
+    for (long bound : BUCKET_BOUNDS) {
+      builder
+          .append(PREFIX)
+          .append(name)
+          .append("_bucket{")
+          .append(labels)
+          .append("le=\"")
+          .append(BigDecimal.valueOf(bound).movePointLeft(6).stripTrailingZeros().toPlainString())
+          .append("\"} ")
+          .append(histogram.getCountBelow(bound))
+          .append('\n');
+    }
+    // buckets and count are not read atomically, so make sure the result is consistent
+    long count = Math.max(histogram.getCount(), histogram.getCountBelow(Long.MAX_VALUE));
+    builder
+        .append(PREFIX)
+        .append(name)
+        .append("_bucket{")
+        .append(labels)
+        .append("le=\"+Inf\"} ")
+        .append(count)
+        .append('\n');
+    String sumAndCountLabels =
+        labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+    builder
+        .append(PREFIX)
+        .append(name)
+        .append("_sum")
+        .append(sumAndCountLabels)
+        .append(' ')
+        .append(histogram.getSumMicros() / 1_000_000.0)
+        .append('\n');
+    builder
+        .append(PREFIX)
+        .append(name)
+        .append("_count")
+        .append(sumAndCountLabels)
+        .append(' ')
+        .append(count)
+        .append('\n');
+  }
+
+  @Nonnull
+  private static String escape(@Nonnull String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static class Route {
+    @Nonnull private final LatencyHistogram latency = new LatencyHistogram();
+
+    @Nonnull
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+  }
+}
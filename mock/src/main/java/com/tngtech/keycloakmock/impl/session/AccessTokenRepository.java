@@ -0,0 +1,141 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Keeps track of opaque access tokens.
+ *
+ * <p>An opaque access token is a short random string standing in for a signed token, which is still
+ * used as ID token. Instead of the claims themselves, only the audience and the complete, already
+ * encoded introspection response are kept, so introspecting an opaque access token is a single
+ * lookup without verifying a signature or encoding JSON.
+ *
+ * <p>Opaque access tokens are only issued if enabled in the {@link ServerConfig}. They are
+ * discarded once they expire, and their number is limited by the session capacity.
+ */
+@Singleton
+public class AccessTokenRepository {
+  private static final String CLAIM_AUDIENCE = "aud";
+  private static final String INTROSPECTION_ACTIVE = "active";
+  private static final long MAX_EPOCH_SECOND = Long.MAX_VALUE / 1000;
+
+  private final boolean enabled;
+  @Nonnull private final OpaqueTokenStore<Introspection> store;
+
+  @Inject
+  AccessTokenRepository(@Nonnull ServerConfig serverConfig) {
+    this(serverConfig, System::currentTimeMillis);
+  }
+
+  AccessTokenRepository(@Nonnull ServerConfig serverConfig, @Nonnull LongSupplier clock) {
+    this.enabled = serverConfig.isOpaqueAccessTokens();
+    this.store =
+        new OpaqueTokenStore<>(
+            serverConfig.getDefaultTokenLifespan().toMillis(),
+            serverConfig.getSessionCapacity(),
+            clock);
+  }
+
+  /**
+   * Get whether opaque access tokens are issued.
+   *
+   * @return true if opaque access tokens are issued, false if signed tokens are used
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Issue an opaque access token for a signed token.
+   *
+   * <p>The signed token is not verified, so it must have been created by this server.
+   *
+   * @param signedToken the signed token containing the claims of the access token
+   * @param expiresAt the time after which the access token expires
+   * @return the opaque access token
+   */
+  @Nonnull
+  public String create(@Nonnull String signedToken, @Nonnull Instant expiresAt) {
+    int payloadStart = signedToken.indexOf('.') + 1;
+    int payloadEnd = signedToken.indexOf('.', payloadStart);
+    if (payloadStart == 0 || payloadEnd < 0) {
+      throw new IllegalArgumentException("Not a signed token");
+    }
+    byte[] payload = Base64.getUrlDecoder().decode(signedToken.substring(payloadStart, payloadEnd));
+    JsonObject claims = new JsonObject(Buffer.buffer(payload));
+    List<String> audience = getAudience(claims.getValue(CLAIM_AUDIENCE));
+    byte[] response = claims.put(INTROSPECTION_ACTIVE, true).toBuffer().getBytes();
+    long expiresAtMillis =
+        expiresAt.getEpochSecond() < MAX_EPOCH_SECOND ? expiresAt.toEpochMilli() : Long.MAX_VALUE;
+    return store.add(new Introspection(audience, response), expiresAtMillis);
+  }
+
+  /**
+   * Look up an opaque access token.
+   *
+   * @param accessToken the opaque access token
+   * @return the introspection result, or null if the token is unknown or has expired
+   */
+  @Nullable
+  public Introspection introspect(@Nonnull String accessToken) {
+    return store.get(accessToken);
+  }
+
+  public int getAccessTokenCount() {
+    return store.size();
+  }
+
+  @Nonnull
+  private static List<String> getAudience(@Nullable Object audience) {
+    if (audience instanceof String) {
+      return Collections.singletonList((String) audience);
+    }
+    if (audience instanceof JsonArray) {
+      List<String> result = new ArrayList<>(((JsonArray) audience).size());
+      for (Object value : (JsonArray) audience) {
+        result.add(String.valueOf(value));
+      }
+      return result;
+    }
+    return Collections.emptyList();
+  }
+
+  /** The stored result of introspecting an active opaque access token. */
+  public static final class Introspection {
+    @Nonnull private final List<String> audience;
+    @Nonnull private final byte[] response;
+
+    private Introspection(@Nonnull List<String> audience, @Nonnull byte[] response) {
+      this.audience = audience;
+      this.response = response;
+    }
+
+    public boolean hasAudience(@Nonnull String clientId) {
+      return audience.contains(clientId);
+    }
+
+    /**
+     * Get the encoded introspection response, containing all claims of the token.
+     *
+     * @return the response body, which shares its content with other responses
+     */
+    @Nonnull
+    public Buffer getResponse() {
+      return Buffer.buffer(Unpooled.wrappedBuffer(response));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import com.tngtech.keycloakmock.impl.session.TimingWheel.Timeout;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Maps short random tokens to values until they expire.
+ *
+ * <p>Tokens are resolved with a single lookup in a concurrent map. Expired tokens are removed using
+ * a {@link TimingWheel}, which is advanced while adding new tokens, so no background thread is
+ * needed. When the capacity is reached, the tokens which expire next are evicted.
+ *
+ * @param <T> the type of the values
+ */
+class OpaqueTokenStore<T> {
+  private static final int WHEEL_BUCKETS = 4096;
+  private static final long MIN_TICK_MILLIS = 1_000;
+  private static final int TOKEN_BYTES = 16;
+
+  @Nonnull private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+  @Nonnull private final AtomicInteger count = new AtomicInteger();
+  @Nonnull private final SecureRandom random = new SecureRandom();
+
+  @Nonnull private final LongSupplier clock;
+  private final int capacity;
+  private final long tickMillis;
+  @Nonnull private final TimingWheel<Entry<T>> timingWheel;
+  private volatile long nextExpiryMillis;
+
+  /**
+   * Create a new store.
+   *
+   * @param maxTtlMillis the usual maximum time to live of tokens, used to size the timing wheel
+   * @param capacity the maximum number of tokens, 0 if unlimited
+   * @param clock the clock to use
+   */
+  OpaqueTokenStore(long maxTtlMillis, int capacity, @Nonnull LongSupplier clock) {
+    this.clock = clock;
+    this.capacity = capacity;
+    this.tickMillis = Math.max(MIN_TICK_MILLIS, maxTtlMillis / (WHEEL_BUCKETS - 1));
+    long now = clock.getAsLong();
+    this.timingWheel = new TimingWheel<>(tickMillis, WHEEL_BUCKETS, now);
+    this.nextExpiryMillis = now + tickMillis;
+  }
+
+  /**
+   * Add a value under a new random token.
+   *
+   * @param value the value
+   * @param expiresAtMillis the time after which the token expires, {@link Long#MAX_VALUE} if it
+   *     never expires
+   * @return the token
+   */
+  @Nonnull
+  String add(@Nonnull T value, long expiresAtMillis) {
+    expireIfDue(clock.getAsLong());
+    ensureCapacity();
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    // tokens that never expire end up in a bucket that is never due, but can still be evicted
+    Entry<T> entry = new Entry<>(token, value, expiresAtMillis);
+    entry.timeout = timingWheel.schedule(entry, expiresAtMillis);
+    entries.put(token, entry);
+    count.incrementAndGet();
+    return token;
+  }
+
+  /**
+   * Get the value of a token.
+   *
+   * @param token the token
+   * @return the value, or null if the token is unknown or has expired
+   */
+  @Nullable
+  T get(@Nonnull String token) {
+    Entry<T> entry = entries.get(token);
+    if (entry == null || clock.getAsLong() >= entry.expiresAtMillis) {
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Remove a token, so it cannot be used anymore.
+   *
+   * @param token the token
+   * @return the value, or null if the token is unknown, was already removed or has expired
+   */
+  @Nullable
+  T remove(@Nonnull String token) {
+    Entry<T> entry = entries.remove(token);
+    if (entry == null) {
+      return null;
+    }
+    count.decrementAndGet();
+    timingWheel.cancel(entry.timeout);
+    if (clock.getAsLong() >= entry.expiresAtMillis) {
+      return null;
+    }
+    return entry.value;
+  }
+
+  int size() {
+    return count.get();
+  }
+
+  private void expireIfDue(long now) {
+    // usually only one caller per tick advances the wheel, all others skip it without locking
+    if (now < nextExpiryMillis) {
+      return;
+    }
+    nextExpiryMillis = now + tickMillis;
+    timingWheel.expire(now, this::discard);
+  }
+
+  private void ensureCapacity() {
+    // the check is racy, so the capacity can be exceeded by the number of concurrent callers
+    while (capacity > 0 && count.get() >= capacity) {
+      Entry<T> earliest = timingWheel.pollEarliest();
+      if (earliest == null) {
+        return;
+      }
+      discard(earliest);
+    }
+  }
+
+  private void discard(@Nonnull Entry<T> entry) {
+    if (entries.remove(entry.token, entry)) {
+      count.decrementAndGet();
+    }
+  }
+
+  private static final class Entry<T> {
+    @Nonnull private final String token;
+    @Nonnull private final T value;
+    private final long expiresAtMillis;
+    // set right after creation, before the entry is visible to other threads
+    private Timeout<Entry<T>> timeout;
+
+    private Entry(@Nonnull String token, @Nonnull T value, long expiresAtMillis) {
+      this.token = token;
+      this.value = value;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+}
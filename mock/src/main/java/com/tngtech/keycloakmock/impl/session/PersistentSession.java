@@ -15,6 +15,10 @@ public class PersistentSession implements Session {
   @Nonnull private final String responseType;
   @Nullable private final String responseMode;
   @Nullable private final String nonce;
+  // all fields above are final, so a token signed for the session can be re-used until it gets too
+  // old; this cache is the only mutable state and is shared between signing threads, so it is
+  // volatile to publish the (immutable) token safely
+  @Nullable private volatile SignedToken signedToken;
 
   PersistentSession(
       @Nonnull SessionRequest request, @Nonnull UserData userData, @Nonnull List<String> roles) {
@@ -78,4 +82,28 @@ public class PersistentSession implements Session {
   public String getNonce() {
     return nonce;
   }
+
+  /**
+   * Get the token most recently signed for this session.
+   *
+   * <p>This may be called from any thread.
+   *
+   * @return the token, or null if none has been signed yet
+   */
+  @Nullable
+  public SignedToken getSignedToken() {
+    return signedToken;
+  }
+
+  /**
+   * Remember a token signed for this session, so that it can be re-used.
+   *
+   * <p>This may be called from any thread. If tokens are signed concurrently, the last one wins,
+   * which is fine as all of them are valid for the session.
+   *
+   * @param signedToken the token
+   */
+  public void setSignedToken(@Nonnull SignedToken signedToken) {
+    this.signedToken = signedToken;
+  }
 }
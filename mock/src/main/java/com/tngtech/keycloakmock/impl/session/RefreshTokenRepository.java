@@ -0,0 +1,113 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import java.util.function.LongSupplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Keeps track of opaque refresh tokens.
+ *
+ * <p>A refresh token is a short random string, which is mapped to the session it was issued for, so
+ * it can be resolved with a single lookup instead of verifying a signature. Each refresh token can
+ * only be redeemed once, so that clients have to use the new refresh token issued along with the
+ * refreshed access token.
+ *
+ * <p>Refresh tokens issued for a session stored in the {@link SessionRepository} are only valid as
+ * long as the session exists, so they are revoked when the session is logged out, expires or is
+ * evicted. Sessions restored from stateless authorization codes of other instances are not stored,
+ * so their refresh tokens stay valid until they expire.
+ *
+ * <p>Opaque refresh tokens are only issued if enabled in the {@link ServerConfig}. Refresh tokens
+ * expire after the session time to live, and their number is limited by the session capacity.
+ */
+@Singleton
+public class RefreshTokenRepository {
+  private final boolean enabled;
+  private final long ttlMillis;
+  @Nonnull private final SessionRepository sessionRepository;
+  @Nonnull private final OpaqueTokenStore<Grant> store;
+  @Nonnull private final LongSupplier clock;
+
+  @Inject
+  RefreshTokenRepository(
+      @Nonnull ServerConfig serverConfig, @Nonnull SessionRepository sessionRepository) {
+    this(serverConfig, sessionRepository, System::currentTimeMillis);
+  }
+
+  RefreshTokenRepository(
+      @Nonnull ServerConfig serverConfig,
+      @Nonnull SessionRepository sessionRepository,
+      @Nonnull LongSupplier clock) {
+    this.enabled = serverConfig.isOpaqueRefreshTokens();
+    this.ttlMillis = Math.max(0, serverConfig.getSessionTtl().toMillis());
+    this.sessionRepository = sessionRepository;
+    this.store = new OpaqueTokenStore<>(ttlMillis, serverConfig.getSessionCapacity(), clock);
+    this.clock = clock;
+  }
+
+  /**
+   * Get whether opaque refresh tokens are issued.
+   *
+   * @return true if opaque refresh tokens are issued, false if the access token is used instead
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Get the time after which refresh tokens expire.
+   *
+   * @return time to live of refresh tokens in milliseconds, zero if they never expire
+   */
+  public long getTtlMillis() {
+    return ttlMillis;
+  }
+
+  /**
+   * Issue a new refresh token for a session.
+   *
+   * @param session the session to refresh tokens for
+   * @return the refresh token
+   */
+  @Nonnull
+  public String create(@Nonnull Session session) {
+    boolean stored = sessionRepository.getSession(session.getSessionId()) != null;
+    return store.add(
+        new Grant(session, stored), ttlMillis > 0 ? clock.getAsLong() + ttlMillis : Long.MAX_VALUE);
+  }
+
+  /**
+   * Redeem a refresh token, which invalidates it.
+   *
+   * @param refreshToken the refresh token
+   * @return the session the token was issued for, or null if the token is unknown, was already
+   *     redeemed or has expired, or if its session has been removed in the meantime
+   */
+  @Nullable
+  public Session redeem(@Nonnull String refreshToken) {
+    Grant grant = store.remove(refreshToken);
+    if (grant == null
+        || (grant.stored && sessionRepository.getSession(grant.session.getSessionId()) == null)) {
+      return null;
+    }
+    return grant.session;
+  }
+
+  public int getRefreshTokenCount() {
+    return store.size();
+  }
+
+  private static final class Grant {
+    @Nonnull private final Session session;
+    // whether the session was stored when the token was issued, and thus can be logged out
+    private final boolean stored;
+
+    private Grant(@Nonnull Session session, boolean stored) {
+      this.session = session;
+      this.stored = stored;
+    }
+  }
+}
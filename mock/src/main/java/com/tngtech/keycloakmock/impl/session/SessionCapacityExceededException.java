@@ -0,0 +1,7 @@
+package com.tngtech.keycloakmock.impl.session;
+
+public class SessionCapacityExceededException extends RuntimeException {
+  public SessionCapacityExceededException(String message) {
+    super(message);
+  }
+}
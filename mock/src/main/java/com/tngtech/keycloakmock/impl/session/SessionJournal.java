@@ -0,0 +1,462 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only log of session transitions, used to restore sessions after a restart.
+ *
+ * <p>The file starts with a magic number and a format version, followed by records. Each record
+ * consists of the length of its payload, a CRC32 checksum of the payload, and the payload itself,
+ * which starts with the record type. The length is written last, so a record that was only partly
+ * written when the process died is recognized by its zero length or wrong checksum, and the log is
+ * truncated before it when it is opened again.
+ *
+ * <p>Records are written to a memory-mapped region of the file, which is extended in chunks. The
+ * data is handed over to the operating system immediately, so it survives the process being killed;
+ * {@link #flush()} additionally writes it to the disk.
+ *
+ * <p>As every transition appends a new record, the log is rewritten from time to time to only
+ * contain the current state, see {@link #compact(Runnable)}.
+ */
+class SessionJournal {
+  private static final Logger LOG = LoggerFactory.getLogger(SessionJournal.class);
+  private static final int MAGIC = 0x4b4d534a;
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_SIZE = 8;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final long MAP_CHUNK_SIZE = 16L * 1024 * 1024;
+  private static final byte TYPE_REQUEST = 1;
+  private static final byte TYPE_SESSION = 2;
+  private static final byte TYPE_REMOVAL = 3;
+  // compact once most of the log consists of outdated records
+  private static final long MIN_RECORDS_FOR_COMPACTION = 10_000;
+  private static final long RECORDS_PER_LIVE_ENTRY_FOR_COMPACTION = 2;
+
+  @Nonnull private final Path file;
+  @Nonnull private final CRC32 crc = new CRC32();
+  @Nonnull private ByteBuffer payload = ByteBuffer.allocate(1024);
+
+  @Nonnull private FileChannel channel;
+  @Nullable private MappedByteBuffer mapped;
+  // the file offset at which the mapped region starts
+  private long mappedStart;
+  // the file offset at which the next record is written
+  private long position;
+  private long records;
+
+  /**
+   * Open a journal file, creating it if it does not exist yet.
+   *
+   * @param file the file to store the journal in
+   * @throws IOException if the file cannot be opened or is not a session journal
+   */
+  SessionJournal(@Nonnull Path file) throws IOException {
+    this.file = file;
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    this.channel = openChannel(file);
+  }
+
+  /**
+   * Read all records of the journal.
+   *
+   * <p>This has to be called once before the first record is appended, as it also determines where
+   * new records are appended.
+   *
+   * @param listener called for each record, in the order the records were written
+   * @throws IOException if the journal cannot be read
+   */
+  synchronized void replay(@Nonnull Listener listener) throws IOException {
+    long size = channel.size();
+    if (size < FILE_HEADER_SIZE) {
+      writeFileHeader();
+      return;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Session journal " + file + " is too large to be restored: " + size);
+    }
+    ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("File " + file + " is not a session journal of a supported version");
+    }
+    long count = 0;
+    // most values are the same for many sessions, sharing them keeps the restored heap small
+    Map<Object, Object> sharedValues = new HashMap<>();
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      int start = buffer.position();
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        buffer.position(start);
+        break;
+      }
+      ByteBuffer record = buffer.slice();
+      record.limit(length);
+      crc.reset();
+      crc.update(record.duplicate());
+      if ((int) crc.getValue() != checksum || !readRecord(record, listener, sharedValues)) {
+        buffer.position(start);
+        break;
+      }
+      buffer.position(start + RECORD_HEADER_SIZE + length);
+      count++;
+    }
+    records = count;
+    position = buffer.position();
+    // drop a partly written record, so that it cannot be mistaken for a valid one later on
+    channel.truncate(position);
+  }
+
+  /**
+   * Append a record for a login request.
+   *
+   * @param request the login request
+   * @param createdMillis the time the request was created
+   */
+  synchronized void appendRequest(@Nonnull SessionRequest request, long createdMillis) {
+    payload.clear();
+    payload.put(TYPE_REQUEST);
+    payload.putLong(createdMillis);
+    putRequestFields(request.getSessionId(), request.getClientId(), request.getRedirectUri());
+    putString(request.getResponseType());
+    putString(request.getState());
+    putString(request.getResponseMode());
+    putString(request.getNonce());
+    append();
+  }
+
+  /**
+   * Append a record for a session.
+   *
+   * @param session the session
+   * @param createdMillis the time the session was created
+   */
+  synchronized void appendSession(@Nonnull PersistentSession session, long createdMillis) {
+    payload.clear();
+    payload.put(TYPE_SESSION);
+    payload.putLong(createdMillis);
+    putRequestFields(session.getSessionId(), session.getClientId(), session.getRedirectUri());
+    putString(session.getResponseType());
+    putString(session.getState());
+    putString(session.getResponseMode());
+    putString(session.getNonce());
+    UserData userData = session.getUserData();
+    putString(userData.getSubject());
+    putString(userData.getGivenName());
+    putString(userData.getFamilyName());
+    putString(userData.getEmail());
+    putString(userData.getPreferredUsername());
+    ensurePayloadCapacity(Integer.BYTES);
+    payload.putInt(session.getRoles().size());
+    for (String role : session.getRoles()) {
+      putString(role);
+    }
+    append();
+  }
+
+  /**
+   * Append a record for the removal of a login request or session.
+   *
+   * @param sessionId the ID of the removed login request or session
+   */
+  synchronized void appendRemoval(@Nonnull String sessionId) {
+    payload.clear();
+    payload.put(TYPE_REMOVAL);
+    putString(sessionId);
+    append();
+  }
+
+  /**
+   * Check whether the journal contains so many outdated records that it should be compacted.
+   *
+   * @param liveEntries the current number of login requests and sessions
+   * @return true if {@link #compact(Runnable)} should be called
+   */
+  synchronized boolean shouldCompact(int liveEntries) {
+    return records >= MIN_RECORDS_FOR_COMPACTION
+        && records > RECORDS_PER_LIVE_ENTRY_FOR_COMPACTION * liveEntries;
+  }
+
+  /**
+   * Replace the journal by a new one that only contains the current state.
+   *
+   * <p>The new journal is written to a temporary file, which then atomically replaces the journal,
+   * so that either the old or the new journal is kept if the process dies in between. Records
+   * appended by other threads while the journal is compacted are blocked until it has finished.
+   *
+   * @param writeLiveEntries appends a record for each current login request and session, using
+   *     {@link #appendRequest(SessionRequest, long)} and {@link #appendSession(PersistentSession,
+   *     long)}
+   * @throws IOException if the new journal cannot be written
+   */
+  synchronized void compact(@Nonnull Runnable writeLiveEntries) throws IOException {
+    Path compactedFile = file.resolveSibling(file.getFileName() + ".compact");
+    long previousRecords = records;
+    closeChannel();
+    channel =
+        FileChannel.open(
+            compactedFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      writeFileHeader();
+      records = 0;
+      writeLiveEntries.run();
+      closeChannel();
+      replaceFile(compactedFile, file);
+    } catch (IOException | RuntimeException e) {
+      // the channel may already be closed, and the original journal has to be reopened anyway
+      try {
+        closeChannel();
+        Files.deleteIfExists(compactedFile);
+      } catch (IOException cleanupException) {
+        e.addSuppressed(cleanupException);
+      }
+      channel = openChannel(file);
+      position = channel.size();
+      records = previousRecords;
+      throw e;
+    }
+    channel = openChannel(file);
+  }
+
+  /**
+   * Atomically replace the journal file.
+   *
+   * @param source the file containing the new journal
+   * @param target the journal file
+   * @throws IOException if the file cannot be replaced
+   */
+  void replaceFile(@Nonnull Path source, @Nonnull Path target) throws IOException {
+    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Write all appended records to the disk. */
+  synchronized void flush() {
+    if (mapped != null) {
+      mapped.force();
+    }
+  }
+
+  /**
+   * Write all appended records to the disk and close the journal.
+   *
+   * @throws IOException if the journal cannot be closed
+   */
+  synchronized void close() throws IOException {
+    closeChannel();
+  }
+
+  private void append() {
+    int length = payload.position();
+    crc.reset();
+    crc.update(payload.array(), 0, length);
+    try {
+      MappedByteBuffer target = mapForWriting(RECORD_HEADER_SIZE + length);
+      int offset = (int) (position - mappedStart);
+      target.position(offset + RECORD_HEADER_SIZE);
+      target.put(payload.array(), 0, length);
+      target.putInt(offset + Integer.BYTES, (int) crc.getValue());
+      target.putInt(offset, length);
+      position += RECORD_HEADER_SIZE + length;
+      records++;
+    } catch (IOException e) {
+      // the session is still kept in memory, it is only lost when the server is restarted
+      LOG.warn("Unable to append to session journal {}", file, e);
+    }
+  }
+
+  private void writeFileHeader() throws IOException {
+    position = 0;
+    MappedByteBuffer target = mapForWriting(FILE_HEADER_SIZE);
+    target.putInt(0, MAGIC);
+    target.putInt(Integer.BYTES, VERSION);
+    position = FILE_HEADER_SIZE;
+  }
+
+  @Nonnull
+  private MappedByteBuffer mapForWriting(int length) throws IOException {
+    MappedByteBuffer current = mapped;
+    if (current != null
+        && position >= mappedStart
+        && position + length <= mappedStart + current.capacity()) {
+      return current;
+    }
+    // mapping beyond the end of the file extends it
+    current = channel.map(MapMode.READ_WRITE, position, Math.max(MAP_CHUNK_SIZE, length));
+    mapped = current;
+    mappedStart = position;
+    return current;
+  }
+
+  private void closeChannel() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+    flush();
+    mapped = null;
+    mappedStart = 0;
+    // remove the unused part of the last mapped chunk
+    channel.truncate(position);
+    channel.force(true);
+    channel.close();
+  }
+
+  private void putRequestFields(
+      @Nonnull String sessionId, @Nonnull String clientId, @Nonnull String redirectUri) {
+    putString(sessionId);
+    putString(clientId);
+    putString(redirectUri);
+  }
+
+  private void putString(@Nullable String value) {
+    if (value == null) {
+      ensurePayloadCapacity(Integer.BYTES);
+      payload.putInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    ensurePayloadCapacity(Integer.BYTES + bytes.length);
+    payload.putInt(bytes.length);
+    payload.put(bytes);
+  }
+
+  private void ensurePayloadCapacity(int additionalBytes) {
+    if (payload.remaining() < additionalBytes) {
+      ByteBuffer larger =
+          ByteBuffer.allocate(
+              Math.max(payload.capacity() * 2, payload.position() + additionalBytes));
+      payload.flip();
+      larger.put(payload);
+      payload = larger;
+    }
+  }
+
+  private static boolean readRecord(
+      @Nonnull ByteBuffer record,
+      @Nonnull Listener listener,
+      @Nonnull Map<Object, Object> sharedValues) {
+    try {
+      byte type = record.get();
+      if (type == TYPE_REMOVAL) {
+        listener.onRemoval(getNonnullString(record));
+        return true;
+      }
+      long createdMillis = record.getLong();
+      SessionRequest request =
+          new SessionRequest.Builder()
+              .setSessionId(getNonnullString(record))
+              .setClientId(share(getNonnullString(record), sharedValues))
+              .setRedirectUri(share(getNonnullString(record), sharedValues))
+              .setResponseType(share(getNonnullString(record), sharedValues))
+              .setState(getString(record))
+              .setResponseMode(share(getString(record), sharedValues))
+              .setNonce(getString(record))
+              .build();
+      if (type == TYPE_REQUEST) {
+        listener.onRequest(request, createdMillis);
+        return true;
+      }
+      if (type != TYPE_SESSION) {
+        return false;
+      }
+      UserData userData =
+          UserData.of(
+              share(getNonnullString(record), sharedValues),
+              share(getString(record), sharedValues),
+              share(getNonnullString(record), sharedValues),
+              share(getNonnullString(record), sharedValues),
+              share(getNonnullString(record), sharedValues));
+      int roleCount = record.getInt();
+      if (roleCount < 0) {
+        return false;
+      }
+      List<String> roles = new ArrayList<>(Math.min(roleCount, record.remaining()));
+      for (int i = 0; i < roleCount; i++) {
+        roles.add(share(getNonnullString(record), sharedValues));
+      }
+      listener.onSession(request.toSession(userData, share(roles, sharedValues)), createdMillis);
+      return true;
+    } catch (BufferUnderflowException | BufferOverflowException | InvalidRecordException e) {
+      return false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private static <T> T share(@Nullable T value, @Nonnull Map<Object, Object> sharedValues) {
+    if (value == null) {
+      return null;
+    }
+    Object existing = sharedValues.putIfAbsent(value, value);
+    return existing != null ? (T) existing : value;
+  }
+
+  @Nonnull
+  private static String getNonnullString(@Nonnull ByteBuffer record) {
+    String value = getString(record);
+    if (value == null) {
+      throw new InvalidRecordException();
+    }
+    return value;
+  }
+
+  @Nullable
+  private static String getString(@Nonnull ByteBuffer record) {
+    int length = record.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > record.remaining()) {
+      throw new InvalidRecordException();
+    }
+    byte[] bytes = new byte[length];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Nonnull
+  private static FileChannel openChannel(@Nonnull Path file) throws IOException {
+    return FileChannel.open(
+        file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /** Receives the records of a journal while it is replayed. */
+  interface Listener {
+    void onRequest(@Nonnull SessionRequest request, long createdMillis);
+
+    void onSession(@Nonnull PersistentSession session, long createdMillis);
+
+    void onRemoval(@Nonnull String sessionId);
+  }
+
+  private static class InvalidRecordException extends RuntimeException {
+    InvalidRecordException() {
+      super(null, null, false, false);
+    }
+  }
+}
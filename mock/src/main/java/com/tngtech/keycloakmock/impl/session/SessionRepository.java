@@ -1,53 +1,204 @@
 package com.tngtech.keycloakmock.impl.session;
 
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.api.SessionEvictionPolicy;
+import com.tngtech.keycloakmock.impl.session.TimingWheel.Timeout;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Keeps track of login requests and sessions.
+ *
+ * <p>Entries expire after their configured time to live, which is enforced by a background thread
+ * sweeping a {@link TimingWheel}. The total number of entries is limited; when the limit is
+ * reached, new login requests either evict the entry that would expire next or are rejected.
+ *
+ * <p>Besides the session ID, entries are indexed by client ID and, once the user has logged in, by
+ * subject, so that all sessions of a client or user can be found without looking at other entries.
+ *
+ * <p>If a session journal file is configured, every change is also appended to a {@link
+ * SessionJournal}, which is replayed when the repository is created. Changes of the same entry are
+ * journaled while holding the lock of its map bin, so they are written in the order they happened.
+ */
 @Singleton
 public class SessionRepository {
+  private static final Logger LOG = LoggerFactory.getLogger(SessionRepository.class);
+  private static final int WHEEL_BUCKETS = 4096;
+  private static final long MIN_TICK_MILLIS = 1_000;
+  private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
 
   @Nonnull
   private final ConcurrentMap<String, RequestOrSession> sessions = new ConcurrentHashMap<>();
 
+  @Nonnull
+  private final ConcurrentMap<String, Set<String>> sessionIdsByClient = new ConcurrentHashMap<>();
+
+  @Nonnull
+  private final ConcurrentMap<String, Set<String>> sessionIdsBySubject = new ConcurrentHashMap<>();
+
+  @Nonnull private final AtomicInteger sessionCount = new AtomicInteger();
+  @Nonnull private final AtomicInteger requestCount = new AtomicInteger();
+  @Nonnull private final LongAdder expiredRequests = new LongAdder();
+  @Nonnull private final LongAdder expiredSessions = new LongAdder();
+  @Nonnull private final LongAdder evicted = new LongAdder();
+  @Nonnull private final LongAdder rejected = new LongAdder();
+
+  @Nonnull private final LongSupplier clock;
+  private final long requestTtlMillis;
+  private final long codeTtlMillis;
+  private final long sessionTtlMillis;
+  private final int capacity;
+  @Nonnull private final SessionEvictionPolicy evictionPolicy;
+  @Nonnull private final TimingWheel<RequestOrSession> timingWheel;
+  @Nullable private final SessionJournal journal;
+
+  @Nullable private final Thread sweeperThread;
+  private volatile boolean running = true;
+
   @Inject
-  SessionRepository() {}
+  SessionRepository(@Nonnull ServerConfig serverConfig) {
+    this(serverConfig, System::currentTimeMillis, true);
+  }
+
+  SessionRepository(
+      @Nonnull ServerConfig serverConfig, @Nonnull LongSupplier clock, boolean startSweeper) {
+    this.clock = clock;
+    this.requestTtlMillis = toMillis(serverConfig.getSessionRequestTtl());
+    this.codeTtlMillis = toMillis(serverConfig.getAuthorizationCodeTtl());
+    this.sessionTtlMillis = toMillis(serverConfig.getSessionTtl());
+    this.capacity = serverConfig.getSessionCapacity();
+    this.evictionPolicy = serverConfig.getSessionEvictionPolicy();
+    // all entries have to expire within one revolution of the wheel to be evicted in order
+    long maxTtlMillis = Math.max(requestTtlMillis, sessionTtlMillis);
+    long tickMillis = Math.max(MIN_TICK_MILLIS, maxTtlMillis / (WHEEL_BUCKETS - 1));
+    this.timingWheel = new TimingWheel<>(tickMillis, WHEEL_BUCKETS, clock.getAsLong());
+    this.journal = restore(serverConfig.getSessionJournalFile());
+    if (startSweeper && (requestTtlMillis > 0 || sessionTtlMillis > 0 || journal != null)) {
+      sweeperThread = new Thread(() -> sweepLoop(tickMillis), "keycloak-mock-session-sweeper");
+      sweeperThread.setDaemon(true);
+      sweeperThread.start();
+    } else {
+      sweeperThread = null;
+    }
+  }
 
   @Nullable
   public PersistentSession getSession(@Nonnull String sessionId) {
     return sessions.getOrDefault(sessionId, RequestOrSession.EMPTY).session;
   }
 
+  /**
+   * Get the session belonging to an authorization code, if the code has not expired yet.
+   *
+   * @param code the authorization code, which is the same as the session ID
+   * @return the session, or null if there is none or the code has expired
+   */
+  @Nullable
+  public PersistentSession getSessionForAuthorizationCode(@Nonnull String code) {
+    RequestOrSession entry = sessions.get(code);
+    if (entry == null
+        || entry.session == null
+        || (codeTtlMillis > 0 && clock.getAsLong() - entry.createdMillis > codeTtlMillis)) {
+      return null;
+    }
+    return entry.session;
+  }
+
   public void updateSession(
       @Nonnull PersistentSession oldSession, @Nonnull PersistentSession newSession) {
-    if (!sessions.replace(
-        newSession.getSessionId(),
-        new RequestOrSession(oldSession),
-        new RequestOrSession(newSession))) {
+    RequestOrSession newEntry = createEntry(newSession);
+    RequestOrSession existing = sessions.get(newSession.getSessionId());
+    if (existing == null || existing.session != oldSession || !replace(existing, newEntry)) {
       throw new InvalidSessionStateException(
           "Unable to re-use existing session, it was updated in the meantime. Session ID: "
               + newSession.getSessionId());
     }
+    reindex(existing, newEntry);
+    reschedule(existing, newEntry, sessionTtlMillis);
   }
 
   public void upgradeRequest(
       @Nonnull SessionRequest existingRequest, @Nonnull PersistentSession newSession) {
-    if (!sessions.replace(
-        newSession.getSessionId(),
-        new RequestOrSession(existingRequest),
-        new RequestOrSession(newSession))) {
+    RequestOrSession newEntry = createEntry(newSession);
+    RequestOrSession existing = sessions.get(newSession.getSessionId());
+    if (existing == null || existing.request != existingRequest || !replace(existing, newEntry)) {
       throw new InvalidSessionStateException(
           "Unable to create session from request, it was updated in the meantime. Session ID: "
               + newSession.getSessionId());
     }
+    requestCount.decrementAndGet();
+    sessionCount.incrementAndGet();
+    reindex(existing, newEntry);
+    reschedule(existing, newEntry, sessionTtlMillis);
   }
 
   public void removeSession(@Nonnull String sessionId) {
-    sessions.remove(sessionId);
+    RequestOrSession removed = remove(sessionId, null);
+    if (removed != null) {
+      decrementCount(removed);
+      cancel(removed);
+      unindex(removed);
+    }
+  }
+
+  /**
+   * Remove all sessions of a user.
+   *
+   * @param subject the subject of the user
+   * @return the number of removed sessions
+   */
+  public int removeSessionsOfUser(@Nonnull String subject) {
+    return removeAll(sessionIdsBySubject.get(subject), entry -> entry.session != null);
+  }
+
+  /**
+   * Remove all sessions and pending login requests of a client.
+   *
+   * @param clientId the ID of the client
+   * @return the number of removed sessions and login requests
+   */
+  public int removeSessionsOfClient(@Nonnull String clientId) {
+    return removeAll(sessionIdsByClient.get(clientId), entry -> true);
+  }
+
+  /**
+   * Get the number of sessions of a client, not counting pending login requests.
+   *
+   * @param clientId the ID of the client
+   * @return the number of sessions
+   */
+  public int getSessionCount(@Nonnull String clientId) {
+    Set<String> sessionIds = sessionIdsByClient.get(clientId);
+    if (sessionIds == null) {
+      return 0;
+    }
+    int count = 0;
+    for (String sessionId : sessionIds) {
+      RequestOrSession entry = sessions.get(sessionId);
+      if (entry != null && entry.session != null && clientId.equals(entry.clientId())) {
+        count++;
+      }
+    }
+    return count;
   }
 
   @Nullable
@@ -55,51 +206,420 @@ public class SessionRepository {
     return sessions.getOrDefault(sessionId, RequestOrSession.EMPTY).request;
   }
 
+  /**
+   * Store a new login request.
+   *
+   * @param sequest the request to store
+   * @throws InvalidSessionStateException if the session ID is already in use
+   * @throws SessionCapacityExceededException if the maximum number of sessions has been reached and
+   *     no other entry could be evicted
+   */
   public void putRequest(@Nonnull SessionRequest sequest) {
-    if (sessions.putIfAbsent(sequest.getSessionId(), new RequestOrSession(sequest)) != null) {
+    ensureCapacity();
+    RequestOrSession entry = createEntry(sequest);
+    if (!insert(entry)) {
       throw new InvalidSessionStateException(
           "Unable to create session request, session ID is already in use: "
               + sequest.getSessionId());
     }
+    requestCount.incrementAndGet();
+    index(entry);
+    reschedule(null, entry, requestTtlMillis);
   }
 
-  private static class RequestOrSession {
-    static final RequestOrSession EMPTY = new RequestOrSession();
+  public int getSessionCount() {
+    return sessionCount.get();
+  }
 
-    @Nullable private final SessionRequest request;
-    @Nullable private final PersistentSession session;
+  public int getRequestCount() {
+    return requestCount.get();
+  }
 
-    RequestOrSession(@Nonnull SessionRequest sessionRequest) {
-      request = Objects.requireNonNull(sessionRequest);
-      session = null;
+  /**
+   * Get the number of login requests that were removed because they were not completed in time.
+   *
+   * @return the number of expired requests
+   */
+  public long getExpiredRequestCount() {
+    return expiredRequests.sum();
+  }
+
+  /**
+   * Get the number of sessions that were removed because their time to live was exceeded.
+   *
+   * @return the number of expired sessions
+   */
+  public long getExpiredSessionCount() {
+    return expiredSessions.sum();
+  }
+
+  /**
+   * Get the number of login requests and sessions that were removed to make room for new ones.
+   *
+   * @return the number of evicted entries
+   */
+  public long getEvictedCount() {
+    return evicted.sum();
+  }
+
+  /**
+   * Get the number of login requests that were rejected because the capacity was reached.
+   *
+   * @return the number of rejected requests
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /** Remove all entries whose time to live has been exceeded. */
+  void expire() {
+    timingWheel.expire(
+        clock.getAsLong(),
+        entry -> {
+          if (remove(entry.sessionId, entry) != null) {
+            decrementCount(entry);
+            unindex(entry);
+            (entry.session != null ? expiredSessions : expiredRequests).increment();
+          }
+        });
+  }
+
+  /** Compact the session journal if it contains too many outdated records. */
+  void compactJournalIfNecessary() {
+    if (journal == null || !journal.shouldCompact(sessions.size())) {
+      return;
+    }
+    try {
+      journal.compact(() -> sessions.values().forEach(this::appendToJournal));
+    } catch (IOException e) {
+      LOG.warn("Unable to compact session journal", e);
+    }
+  }
+
+  /** Stop the background thread removing expired entries and close the session journal. */
+  public synchronized void close() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (sweeperThread != null) {
+      LockSupport.unpark(sweeperThread);
+      try {
+        sweeperThread.join(CLOSE_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
     }
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        LOG.warn("Unable to close session journal", e);
+      }
+    }
+  }
 
-    RequestOrSession(@Nonnull PersistentSession persistentSession) {
-      request = null;
-      session = Objects.requireNonNull(persistentSession);
+  private void sweepLoop(long tickMillis) {
+    while (running) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(tickMillis));
+      expire();
+      if (journal != null) {
+        compactJournalIfNecessary();
+        journal.flush();
+      }
     }
+  }
 
-    private RequestOrSession() {
-      request = null;
-      session = null;
+  @Nullable
+  private SessionJournal restore(@Nullable Path journalFile) {
+    if (journalFile == null) {
+      return null;
     }
+    SessionJournal restoredJournal;
+    // replaying into a plain map and copying it at once is a lot faster than growing the
+    // concurrent map one entry at a time
+    Map<String, RequestOrSession> restored = new HashMap<>();
+    try {
+      restoredJournal = new SessionJournal(journalFile);
+      restoredJournal.replay(
+          new SessionJournal.Listener() {
+            @Override
+            public void onRequest(@Nonnull SessionRequest request, long createdMillis) {
+              restored.put(
+                  request.getSessionId(),
+                  new RequestOrSession(request.getSessionId(), request, null, createdMillis));
+            }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
+            @Override
+            public void onSession(@Nonnull PersistentSession session, long createdMillis) {
+              restored.put(
+                  session.getSessionId(),
+                  new RequestOrSession(session.getSessionId(), null, session, createdMillis));
+            }
+
+            @Override
+            public void onRemoval(@Nonnull String sessionId) {
+              restored.remove(sessionId);
+            }
+          });
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to restore sessions from " + journalFile, e);
+    }
+    sessions.putAll(restored);
+    for (RequestOrSession entry : restored.values()) {
+      (entry.session != null ? sessionCount : requestCount).incrementAndGet();
+      index(entry);
+      // entries that have expired while the server was stopped are removed with the next sweep
+      reschedule(null, entry, entry.session != null ? sessionTtlMillis : requestTtlMillis);
+    }
+    LOG.info(
+        "Restored {} sessions and {} login requests from {}",
+        sessionCount.get(),
+        requestCount.get(),
+        journalFile);
+    return restoredJournal;
+  }
+
+  private boolean insert(@Nonnull RequestOrSession entry) {
+    if (journal == null) {
+      return sessions.putIfAbsent(entry.sessionId, entry) == null;
+    }
+    return sessions.computeIfAbsent(
+            entry.sessionId,
+            sessionId -> {
+              appendToJournal(entry);
+              return entry;
+            })
+        == entry;
+  }
+
+  private boolean replace(@Nonnull RequestOrSession existing, @Nonnull RequestOrSession newEntry) {
+    if (journal == null) {
+      return sessions.replace(existing.sessionId, existing, newEntry);
+    }
+    return sessions.computeIfPresent(
+            existing.sessionId,
+            (sessionId, current) -> {
+              if (current != existing) {
+                return current;
+              }
+              appendToJournal(newEntry);
+              return newEntry;
+            })
+        == newEntry;
+  }
+
+  /**
+   * Remove an entry.
+   *
+   * @param sessionId the session ID of the entry
+   * @param expected the entry to remove, or null to remove any entry with that session ID
+   * @return the removed entry, or null if there was no matching entry
+   */
+  @Nullable
+  private RequestOrSession remove(@Nonnull String sessionId, @Nullable RequestOrSession expected) {
+    if (journal == null) {
+      if (expected == null) {
+        return sessions.remove(sessionId);
       }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
+      return sessions.remove(sessionId, expected) ? expected : null;
+    }
+    RequestOrSession[] removed = new RequestOrSession[1];
+    sessions.computeIfPresent(
+        sessionId,
+        (key, current) -> {
+          if (expected != null && current != expected) {
+            return current;
+          }
+          journal.appendRemoval(key);
+          removed[0] = current;
+          return null;
+        });
+    return removed[0];
+  }
+
+  private void appendToJournal(@Nonnull RequestOrSession entry) {
+    if (entry.session != null) {
+      Objects.requireNonNull(journal).appendSession(entry.session, entry.createdMillis);
+    } else {
+      Objects.requireNonNull(journal)
+          .appendRequest(Objects.requireNonNull(entry.request), entry.createdMillis);
+    }
+  }
+
+  private void ensureCapacity() {
+    if (capacity <= 0) {
+      return;
+    }
+    // concurrent logins may exceed the capacity by the number of event loops for a short time
+    while (sessionCount.get() + requestCount.get() >= capacity) {
+      RequestOrSession victim =
+          evictionPolicy == SessionEvictionPolicy.EVICT_EARLIEST_EXPIRING
+              ? timingWheel.pollEarliest()
+              : null;
+      if (victim == null) {
+        rejected.increment();
+        throw new SessionCapacityExceededException(
+            "Unable to create session request, the maximum number of sessions has been reached: "
+                + capacity);
+      }
+      if (remove(victim.sessionId, victim) != null) {
+        decrementCount(victim);
+        unindex(victim);
+        evicted.increment();
+      }
+    }
+  }
+
+  private int removeAll(
+      @Nullable Set<String> sessionIds, @Nonnull Predicate<RequestOrSession> filter) {
+    if (sessionIds == null) {
+      return 0;
+    }
+    int removed = 0;
+    // the set is concurrent, so removing entries from it while iterating is safe
+    for (String sessionId : sessionIds) {
+      RequestOrSession entry = sessions.get(sessionId);
+      if (entry != null && filter.test(entry) && remove(sessionId, entry) != null) {
+        decrementCount(entry);
+        cancel(entry);
+        unindex(entry);
+        removed++;
       }
-      RequestOrSession requestOrSession = (RequestOrSession) o;
-      return Objects.equals(request, requestOrSession.request)
-          && Objects.equals(session, requestOrSession.session);
+    }
+    return removed;
+  }
+
+  private void index(@Nonnull RequestOrSession entry) {
+    addToIndex(sessionIdsByClient, entry.clientId(), entry.sessionId);
+    addToIndex(sessionIdsBySubject, entry.subject(), entry.sessionId);
+    // the entry may have been removed or replaced before it was indexed
+    if (sessions.get(entry.sessionId) != entry) {
+      unindex(entry);
+    }
+  }
+
+  private void reindex(@Nonnull RequestOrSession oldEntry, @Nonnull RequestOrSession newEntry) {
+    // only touch changed keys, so that lookups never miss an entry that keeps its key
+    if (!oldEntry.clientId().equals(newEntry.clientId())) {
+      removeFromIndex(sessionIdsByClient, oldEntry.clientId(), oldEntry.sessionId);
+    }
+    if (!Objects.equals(oldEntry.subject(), newEntry.subject())) {
+      removeFromIndex(sessionIdsBySubject, oldEntry.subject(), oldEntry.sessionId);
+    }
+    index(newEntry);
+  }
+
+  private void unindex(@Nonnull RequestOrSession entry) {
+    // a concurrent update may already have stored and indexed a new entry with the same ID, whose
+    // keys have to stay; comparing the keys instead of the entries also keeps them if the new entry
+    // is replaced once more before it is indexed itself
+    RequestOrSession current = sessions.get(entry.sessionId);
+    if (current == null || !current.clientId().equals(entry.clientId())) {
+      removeFromIndex(sessionIdsByClient, entry.clientId(), entry.sessionId);
+    }
+    if (current == null || !Objects.equals(current.subject(), entry.subject())) {
+      removeFromIndex(sessionIdsBySubject, entry.subject(), entry.sessionId);
+    }
+  }
+
+  private static void addToIndex(
+      @Nonnull ConcurrentMap<String, Set<String>> index,
+      @Nullable String key,
+      @Nonnull String sessionId) {
+    if (key == null) {
+      return;
+    }
+    index.compute(
+        key,
+        (k, sessionIds) -> {
+          Set<String> result = sessionIds != null ? sessionIds : ConcurrentHashMap.newKeySet();
+          result.add(sessionId);
+          return result;
+        });
+  }
+
+  private static void removeFromIndex(
+      @Nonnull ConcurrentMap<String, Set<String>> index,
+      @Nullable String key,
+      @Nonnull String sessionId) {
+    if (key == null) {
+      return;
+    }
+    // empty sets are removed atomically, so that a concurrent add never ends up in a dropped set
+    index.computeIfPresent(
+        key,
+        (k, sessionIds) -> {
+          sessionIds.remove(sessionId);
+          return sessionIds.isEmpty() ? null : sessionIds;
+        });
+  }
+
+  private void reschedule(
+      @Nullable RequestOrSession oldEntry, @Nonnull RequestOrSession newEntry, long ttlMillis) {
+    if (oldEntry != null) {
+      cancel(oldEntry);
+    }
+    if (ttlMillis > 0) {
+      newEntry.timeout = timingWheel.schedule(newEntry, newEntry.createdMillis + ttlMillis);
+    }
+  }
+
+  private void cancel(@Nonnull RequestOrSession entry) {
+    Timeout<RequestOrSession> timeout = entry.timeout;
+    if (timeout != null) {
+      timingWheel.cancel(timeout);
+    }
+  }
+
+  private void decrementCount(@Nonnull RequestOrSession entry) {
+    (entry.session != null ? sessionCount : requestCount).decrementAndGet();
+  }
+
+  @Nonnull
+  private RequestOrSession createEntry(@Nonnull SessionRequest request) {
+    return new RequestOrSession(request.getSessionId(), request, null, clock.getAsLong());
+  }
+
+  @Nonnull
+  private RequestOrSession createEntry(@Nonnull PersistentSession session) {
+    return new RequestOrSession(session.getSessionId(), null, session, clock.getAsLong());
+  }
+
+  private static long toMillis(@Nonnull Duration ttl) {
+    return ttl.isNegative() ? 0 : ttl.toMillis();
+  }
+
+  private static class RequestOrSession {
+    static final RequestOrSession EMPTY = new RequestOrSession("", null, null, 0);
+
+    @Nonnull private final String sessionId;
+    @Nullable private final SessionRequest request;
+    @Nullable private final PersistentSession session;
+    private final long createdMillis;
+    @Nullable private volatile Timeout<RequestOrSession> timeout;
+
+    RequestOrSession(
+        @Nonnull String sessionId,
+        @Nullable SessionRequest request,
+        @Nullable PersistentSession session,
+        long createdMillis) {
+      this.sessionId = sessionId;
+      this.request = request;
+      this.session = session;
+      this.createdMillis = createdMillis;
+    }
+
+    @Nonnull
+    String clientId() {
+      return session != null
+          ? session.getClientId()
+          : Objects.requireNonNull(request).getClientId();
     }
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(request, session);
+    @Nullable
+    String subject() {
+      return session != null ? session.getUserData().getSubject() : null;
     }
   }
 }
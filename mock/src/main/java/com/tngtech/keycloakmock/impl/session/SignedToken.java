@@ -0,0 +1,34 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import javax.annotation.Nonnull;
+
+/** A token that has been signed for a session, together with the context it was signed for. */
+public class SignedToken {
+
+  @Nonnull private final String issuer;
+  @Nonnull private final String token;
+  @Nonnull private final Instant issuedAt;
+
+  public SignedToken(@Nonnull String issuer, @Nonnull String token, @Nonnull Instant issuedAt) {
+    this.issuer = issuer;
+    this.token = token;
+    this.issuedAt = issuedAt;
+  }
+
+  @Nonnull
+  public String getToken() {
+    return token;
+  }
+
+  @Nonnull
+  public Instant getIssuedAt() {
+    return issuedAt;
+  }
+
+  public boolean isReusable(
+      @Nonnull String requestedIssuer, @Nonnull Instant now, @Nonnull Duration maximumAge) {
+    return issuer.equals(requestedIssuer) && issuedAt.plus(maximumAge).isAfter(now);
+  }
+}
@@ -0,0 +1,186 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A hashed timing wheel to expire a large number of values with little overhead.
+ *
+ * <p>Time is divided into ticks, and each tick is mapped to one of a fixed number of buckets. A
+ * value is added to the bucket of the tick in which it expires, so scheduling and cancelling are
+ * O(1), and expiring only needs to look at the buckets of the ticks that have passed. Values that
+ * expire more than one revolution of the wheel in the future share their bucket with values of
+ * earlier revolutions and are skipped until their tick has been reached.
+ *
+ * <p>Values are expired at tick precision: a value is never expired before its deadline, but may be
+ * expired up to one tick later. The tick length should be chosen so that all values expire within
+ * one revolution, otherwise {@link #pollEarliest()} does not find the earliest value.
+ *
+ * @param <T> the type of the scheduled values
+ */
+class TimingWheel<T> {
+  private final long tickMillis;
+  @Nonnull private final Bucket<T>[] buckets;
+  private final int mask;
+  // the last tick for which all due values have been expired
+  private volatile long currentTick;
+
+  @SuppressWarnings("unchecked")
+  TimingWheel(long tickMillis, int bucketCount, long nowMillis) {
+    this.tickMillis = tickMillis;
+    int size = Integer.highestOneBit(Math.max(2, bucketCount - 1)) << 1;
+    this.buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket<>();
+    }
+    this.mask = size - 1;
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  /**
+   * Schedule a value.
+   *
+   * @param value the value to schedule
+   * @param deadlineMillis the time after which the value expires, in milliseconds since epoch
+   * @return a handle which can be used to cancel the timeout
+   */
+  @Nonnull
+  Timeout<T> schedule(@Nonnull T value, long deadlineMillis) {
+    // round up, so that values are never expired early
+    long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis == 0 ? 0 : 1);
+    // a deadline in the past still has to end up in a bucket that is going to be visited
+    Timeout<T> timeout = new Timeout<>(value, Math.max(deadlineTick, currentTick + 1));
+    Bucket<T> bucket = buckets[(int) (timeout.deadlineTick & mask)];
+    synchronized (bucket) {
+      bucket.add(timeout);
+    }
+    return timeout;
+  }
+
+  /**
+   * Cancel a timeout. Cancelling a timeout that has already expired or was cancelled has no effect.
+   *
+   * @param timeout the timeout to cancel
+   */
+  void cancel(@Nonnull Timeout<T> timeout) {
+    Bucket<T> bucket = buckets[(int) (timeout.deadlineTick & mask)];
+    synchronized (bucket) {
+      bucket.remove(timeout);
+    }
+  }
+
+  /**
+   * Remove all values whose deadline has passed.
+   *
+   * @param nowMillis the current time in milliseconds since epoch
+   * @param consumer called for each expired value, after it has been removed from the wheel
+   */
+  synchronized void expire(long nowMillis, @Nonnull Consumer<T> consumer) {
+    long targetTick = nowMillis / tickMillis;
+    if (targetTick <= currentTick) {
+      return;
+    }
+    // after a full revolution, all buckets have been visited
+    long firstTick = Math.max(currentTick + 1, targetTick - mask);
+    List<T> expired = new ArrayList<>();
+    for (long tick = firstTick; tick <= targetTick; tick++) {
+      Bucket<T> bucket = buckets[(int) (tick & mask)];
+      synchronized (bucket) {
+        bucket.removeDue(targetTick, expired);
+      }
+    }
+    currentTick = targetTick;
+    expired.forEach(consumer);
+  }
+
+  /**
+   * Remove the value that expires next.
+   *
+   * <p>This assumes that all values expire within one revolution of the wheel. Values that expire
+   * in the same tick are removed in the order they were scheduled.
+   *
+   * @return the value, or null if the wheel is empty
+   */
+  @Nullable
+  T pollEarliest() {
+    long firstTick = currentTick + 1;
+    for (long tick = firstTick; tick <= firstTick + mask; tick++) {
+      Bucket<T> bucket = buckets[(int) (tick & mask)];
+      synchronized (bucket) {
+        Timeout<T> first = bucket.head;
+        if (first != null) {
+          bucket.remove(first);
+          return first.value;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** A scheduled value. */
+  static final class Timeout<T> {
+    @Nonnull private final T value;
+    private final long deadlineTick;
+    // the links are guarded by the lock of the bucket
+    @Nullable private Timeout<T> previous;
+    @Nullable private Timeout<T> next;
+    private boolean linked;
+
+    private Timeout(@Nonnull T value, long deadlineTick) {
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+
+  /** A doubly linked list of timeouts, guarded by its own lock. */
+  private static final class Bucket<T> {
+    @Nullable private Timeout<T> head;
+    @Nullable private Timeout<T> tail;
+
+    private void add(@Nonnull Timeout<T> timeout) {
+      timeout.previous = tail;
+      if (tail != null) {
+        tail.next = timeout;
+      } else {
+        head = timeout;
+      }
+      tail = timeout;
+      timeout.linked = true;
+    }
+
+    private boolean remove(@Nonnull Timeout<T> timeout) {
+      if (!timeout.linked) {
+        return false;
+      }
+      if (timeout.previous != null) {
+        timeout.previous.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.previous = timeout.previous;
+      } else {
+        tail = timeout.previous;
+      }
+      timeout.previous = null;
+      timeout.next = null;
+      timeout.linked = false;
+      return true;
+    }
+
+    private void removeDue(long tick, @Nonnull List<T> expired) {
+      Timeout<T> current = head;
+      while (current != null) {
+        Timeout<T> next = current.next;
+        if (current.deadlineTick <= tick) {
+          remove(current);
+          expired.add(current.value);
+        }
+        current = next;
+      }
+    }
+  }
+}
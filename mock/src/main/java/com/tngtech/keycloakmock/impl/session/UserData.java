@@ -27,6 +27,26 @@ public class UserData {
     this.preferredUsername = preferredUsername;
   }
 
+  /**
+   * Recreate user data from its parts, e.g. after it has been serialized.
+   *
+   * @param subject the subject
+   * @param givenName the given name, if any
+   * @param familyName the family name
+   * @param email the email address
+   * @param preferredUsername the preferred username
+   * @return the user data
+   */
+  @Nonnull
+  public static UserData of(
+      @Nonnull String subject,
+      @Nullable String givenName,
+      @Nonnull String familyName,
+      @Nonnull String email,
+      @Nonnull String preferredUsername) {
+    return new UserData(subject, givenName, familyName, email, preferredUsername);
+  }
+
   public static UserData fromUsernameAndHostname(
       @Nonnull String username, @Nonnull String hostname) {
     String email;
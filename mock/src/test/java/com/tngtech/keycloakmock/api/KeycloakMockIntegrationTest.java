@@ -35,6 +35,7 @@ import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpResponseExpectation;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
@@ -173,6 +174,52 @@ class KeycloakMockIntegrationTest {
     return Stream.of(Arguments.of(8000, false), Arguments.of(8001, true), Arguments.of(0, true));
   }
 
+  @ParameterizedTest
+  @MethodSource("serverInstancesAndPort")
+  void mock_server_can_be_started_with_multiple_instances(
+      int port, Vertx vertx, VertxTestContext testContext) {
+    keycloakMock = new KeycloakMock(aServerConfig().withPort(port).withServerInstances(4).build());
+    keycloakMock.start();
+    if (port > 0) {
+      assertThat(keycloakMock.getActualPort()).isEqualTo(port);
+    } else {
+      assertThat(keycloakMock.getActualPort()).isGreaterThan(0);
+    }
+    WebClient webClient = WebClient.create(vertx);
+    Future.all(
+            Stream.generate(
+                    () ->
+                        webClient
+                            .get("/auth/realms/master/protocol/openid-connect/certs")
+                            .port(keycloakMock.getActualPort())
+                            .send()
+                            .expecting(SC_OK.and(JSON)))
+                .limit(8)
+                .collect(Collectors.toList()))
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  private static Stream<Arguments> serverInstancesAndPort() {
+    return Stream.of(Arguments.of(8000), Arguments.of(0));
+  }
+
+  @Test
+  void mock_server_supports_http2_with_prior_knowledge(Vertx vertx, VertxTestContext testContext) {
+    keycloakMock = new KeycloakMock(aServerConfig().withHttp2(true).build());
+    keycloakMock.start();
+    WebClient.create(
+            vertx,
+            new WebClientOptions()
+                .setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false))
+        .get("/auth/realms/master/protocol/openid-connect/certs")
+        .port(8000)
+        .send()
+        .expecting(SC_OK.and(JSON))
+        .expecting(r -> r.version() == HttpVersion.HTTP_2)
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
   @Test
   void generated_token_is_valid() {
     keycloakMock = new KeycloakMock();
@@ -662,6 +709,52 @@ class KeycloakMockIntegrationTest {
         .onComplete(testContext.succeedingThenComplete());
   }
 
+  @Test
+  void opaque_refresh_tokens_are_rotated(Vertx vertx) {
+    keycloakMock = new KeycloakMock(aServerConfig().withOpaqueRefreshTokens(true).build());
+    keycloakMock.start();
+
+    WebClient webClient = WebClient.create(vertx);
+
+    JsonObject login =
+        Future.await(
+            webClient
+                .post(TOKEN_ENDPOINT_URL)
+                .port(8000)
+                .basicAuthentication("client", "does not matter")
+                .sendForm(
+                    MultiMap.caseInsensitiveMultiMap()
+                        .add("username", "username")
+                        .add("password", "role1,role2,role3")
+                        .add("grant_type", "password"))
+                .expecting(SC_OK)
+                .map(HttpResponse::bodyAsJsonObject));
+    String refreshToken = login.getString("refresh_token");
+    JsonObject refreshed =
+        Future.await(
+            refresh(webClient, refreshToken).expecting(SC_OK).map(HttpResponse::bodyAsJsonObject));
+    HttpResponse<Buffer> reused = Future.await(refresh(webClient, refreshToken));
+
+    assertThat(refreshToken).isNotEqualTo(login.getString("access_token")).doesNotContain(".");
+    assertThat(refreshed.getString("refresh_token")).isNotEqualTo(refreshToken);
+    TokenConfig tokenConfig =
+        aTokenConfig().withSourceToken(refreshed.getString("access_token")).build();
+    assertThat(tokenConfig.getPreferredUsername()).isEqualTo("username");
+    assertThat(tokenConfig.getRealmAccess().getRoles())
+        .containsExactlyInAnyOrder("role1", "role2", "role3");
+    assertThat(reused.statusCode()).isEqualTo(400);
+  }
+
+  private Future<HttpResponse<Buffer>> refresh(WebClient webClient, String refreshToken) {
+    return webClient
+        .post(TOKEN_ENDPOINT_URL)
+        .port(8000)
+        .sendForm(
+            MultiMap.caseInsensitiveMultiMap()
+                .add("grant_type", "refresh_token")
+                .add("refresh_token", refreshToken));
+  }
+
   @Test
   void mock_server_login_with_client_credentials_flow_works(
       Vertx vertx, VertxTestContext testContext) {
@@ -750,6 +843,34 @@ class KeycloakMockIntegrationTest {
         .onComplete(testContext.succeedingThenComplete());
   }
 
+  @Test
+  void metrics_are_recorded(Vertx vertx, VertxTestContext testContext) {
+    keycloakMock = new KeycloakMock();
+    keycloakMock.start();
+    WebClient client = WebClient.create(vertx);
+
+    client
+        .post(TOKEN_ENDPOINT_URL)
+        .port(8000)
+        .basicAuthentication("client", "role1")
+        .sendForm(MultiMap.caseInsensitiveMultiMap().add("grant_type", "client_credentials"))
+        .expecting(SC_OK)
+        .compose(r -> client.get("/metrics").port(8000).send())
+        .expecting(SC_OK)
+        .map(HttpResponse::bodyAsString)
+        .expecting(
+            body -> {
+              assertThat(body)
+                  .contains(
+                      "keycloak_mock_tokens_issued_total{grant_type=\"client_credentials\"} 1\n")
+                  .contains("# TYPE keycloak_mock_request_duration_seconds histogram\n");
+              assertThat(keycloakMock.getMetrics().getTokensByGrantType())
+                  .containsExactly(entry("client_credentials", 1L));
+              return true;
+            })
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
   @Test
   void token_introspection_works(Vertx vertx, VertxTestContext testContext) {
     keycloakMock = new KeycloakMock();
@@ -776,6 +897,78 @@ class KeycloakMockIntegrationTest {
         .onComplete(testContext.succeedingThenComplete());
   }
 
+  @Test
+  void tokens_can_be_introspected_in_batch(Vertx vertx, VertxTestContext testContext) {
+    keycloakMock = new KeycloakMock();
+    keycloakMock.start();
+
+    TokenConfig tokenConfig = aTokenConfig().withAudience("myclient").build();
+    String accessToken = keycloakMock.getAccessToken(tokenConfig);
+
+    WebClient.create(vertx)
+        .post("/auth/realms/realm/protocol/openid-connect/token/introspect/batch")
+        .port(8000)
+        .sendForm(
+            MultiMap.caseInsensitiveMultiMap()
+                .add("token", accessToken)
+                .add("token", "invalid")
+                .add("token", accessToken)
+                .add("client_id", "myclient"))
+        .expecting(SC_OK)
+        .map(HttpResponse::bodyAsJsonArray)
+        .expecting(
+            json -> {
+              assertThat(json).hasSize(3);
+              assertThat(json.getJsonObject(0).getBoolean("active")).isTrue();
+              assertThat(json.getJsonObject(0).getMap())
+                  .containsAllEntriesOf(tokenConfig.getClaims());
+              assertThat(json.getJsonObject(1).getMap()).containsExactly(entry("active", false));
+              assertThat(json.getJsonObject(2)).isEqualTo(json.getJsonObject(0));
+              return true;
+            })
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  void opaque_access_token_can_be_introspected(Vertx vertx) {
+    keycloakMock = new KeycloakMock(aServerConfig().withOpaqueAccessTokens(true).build());
+    keycloakMock.start();
+
+    WebClient webClient = WebClient.create(vertx);
+
+    JsonObject login =
+        Future.await(
+            webClient
+                .post(TOKEN_ENDPOINT_URL)
+                .port(8000)
+                .basicAuthentication("client", "does not matter")
+                .sendForm(
+                    MultiMap.caseInsensitiveMultiMap()
+                        .add("username", "username")
+                        .add("password", "role1")
+                        .add("grant_type", "password"))
+                .expecting(SC_OK)
+                .map(HttpResponse::bodyAsJsonObject));
+    String accessToken = login.getString("access_token");
+    JsonObject introspection =
+        Future.await(
+            webClient
+                .post("/auth/realms/realm/protocol/openid-connect/token/introspect")
+                .port(8000)
+                .sendForm(
+                    MultiMap.caseInsensitiveMultiMap()
+                        .add("token", accessToken)
+                        .add("client_id", "client"))
+                .expecting(SC_OK)
+                .map(HttpResponse::bodyAsJsonObject));
+
+    assertThat(accessToken).doesNotContain(".");
+    Claims idToken = jwtParser.parseSignedClaims(login.getString("id_token")).getPayload();
+    assertThat(introspection.getBoolean("active")).isTrue();
+    assertThat(introspection.getString("sub")).isEqualTo(idToken.getSubject());
+    assertThat(introspection.getString("preferred_username")).isEqualTo("username");
+  }
+
   @Test
   void token_introspection_does_not_leak_claims_on_invalid_token(
       Vertx vertx, VertxTestContext testContext) {
@@ -8,7 +8,13 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -92,4 +98,65 @@ class KeycloakMockTest {
 
     assertThat(jwt.getPayload().getAudience()).containsExactlyInAnyOrder("audience1", "audience2");
   }
+
+  @Test
+  void batch_tokens_keep_input_order() {
+    KeycloakMock keycloakMock = new KeycloakMock(SERVER_CONFIG);
+    List<TokenConfig> tokenConfigs = tokenConfigsForSubjects(100);
+
+    List<String> tokens = keycloakMock.getAccessTokens(tokenConfigs);
+
+    assertThat(tokens).extracting(this::subjectOf).containsExactlyElementsOf(subjects(100));
+  }
+
+  @Test
+  void batch_tokens_are_signed_on_given_executor() {
+    KeycloakMock keycloakMock = new KeycloakMock(SERVER_CONFIG);
+    List<TokenConfig> tokenConfigs = tokenConfigsForSubjects(100);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    AtomicInteger executedTasks = new AtomicInteger();
+
+    try {
+      List<String> tokens =
+          keycloakMock.getAccessTokens(
+              tokenConfigs,
+              task ->
+                  executor.execute(
+                      () -> {
+                        executedTasks.incrementAndGet();
+                        task.run();
+                      }));
+
+      assertThat(tokens).extracting(this::subjectOf).containsExactlyElementsOf(subjects(100));
+      assertThat(executedTasks).hasPositiveValue();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void streamed_tokens_keep_input_order() {
+    KeycloakMock keycloakMock = new KeycloakMock(SERVER_CONFIG);
+
+    List<String> tokens =
+        keycloakMock
+            .getAccessTokens(tokenConfigsForSubjects(100).stream())
+            .collect(Collectors.toList());
+
+    assertThat(tokens).extracting(this::subjectOf).containsExactlyElementsOf(subjects(100));
+  }
+
+  private List<String> subjects(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "user" + i).collect(Collectors.toList());
+  }
+
+  private List<TokenConfig> tokenConfigsForSubjects(int count) {
+    return subjects(count).stream()
+        .map(subject -> TokenConfig.aTokenConfig().withSubject(subject).build())
+        .collect(Collectors.toList());
+  }
+
+  private String subjectOf(String token) {
+    return jwtParser.parseSignedClaims(token).getPayload().getSubject();
+  }
 }
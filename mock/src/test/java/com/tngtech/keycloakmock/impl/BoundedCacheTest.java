@@ -0,0 +1,40 @@
+package com.tngtech.keycloakmock.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+  private final AtomicInteger createdValues = new AtomicInteger();
+
+  @Test
+  void values_are_created_once_per_key() {
+    BoundedCache<String, Integer> uut = new BoundedCache<>(2);
+
+    Integer value = uut.get("key", this::create);
+
+    assertThat(uut.get("key", this::create)).isSameAs(value);
+    assertThat(uut.get("other key", this::create)).isNotEqualTo(value);
+    assertThat(createdValues).hasValue(2);
+    assertThat(uut.size()).isEqualTo(2);
+  }
+
+  @Test
+  void values_are_not_cached_once_limit_is_reached() {
+    BoundedCache<String, Integer> uut = new BoundedCache<>(2);
+    uut.get("first", this::create);
+    uut.get("second", this::create);
+
+    Integer value = uut.get("third", this::create);
+
+    assertThat(uut.get("third", this::create)).isNotEqualTo(value);
+    assertThat(uut.get("first", this::create)).isEqualTo(1);
+    assertThat(createdValues).hasValue(4);
+    assertThat(uut.size()).isEqualTo(2);
+  }
+
+  private Integer create(String key) {
+    return createdValues.incrementAndGet();
+  }
+}
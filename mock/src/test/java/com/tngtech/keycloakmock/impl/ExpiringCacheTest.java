@@ -0,0 +1,85 @@
+package com.tngtech.keycloakmock.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ExpiringCacheTest {
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void value_is_returned_until_it_expires() {
+    ExpiringCache<String, String> uut = new ExpiringCache<>(10, now::get);
+    uut.put("key", "value", 2000);
+
+    now.set(1999);
+    assertThat(uut.get("key")).isEqualTo("value");
+
+    now.set(2000);
+    assertThat(uut.get("key")).isNull();
+    assertThat(uut.size()).isZero();
+  }
+
+  @Test
+  void expired_value_is_not_added() {
+    ExpiringCache<String, String> uut = new ExpiringCache<>(10, now::get);
+
+    uut.put("key", "value", 1000);
+
+    assertThat(uut.size()).isZero();
+  }
+
+  @Test
+  void existing_value_is_kept() {
+    ExpiringCache<String, String> uut = new ExpiringCache<>(10, now::get);
+    uut.put("key", "value", 2000);
+
+    uut.put("key", "other value", 3000);
+
+    assertThat(uut.get("key")).isEqualTo("value");
+  }
+
+  @Test
+  void expired_values_are_removed_before_evicting_others_when_full() {
+    ExpiringCache<String, String> uut = new ExpiringCache<>(2, now::get);
+    uut.put("first", "value", 2000);
+    uut.put("second", "value", 3000);
+
+    now.set(2500);
+    uut.put("third", "value", 4000);
+
+    assertThat(uut.size()).isEqualTo(2);
+    assertThat(uut.get("second")).isEqualTo("value");
+    assertThat(uut.get("third")).isEqualTo("value");
+  }
+
+  @Test
+  void value_expiring_first_is_evicted_when_full() {
+    ExpiringCache<String, String> uut = new ExpiringCache<>(2, now::get);
+    uut.put("first", "value", 3000);
+    uut.put("second", "value", 2000);
+
+    uut.put("third", "value", 4000);
+
+    assertThat(uut.size()).isEqualTo(2);
+    assertThat(uut.get("first")).isEqualTo("value");
+    assertThat(uut.get("second")).isNull();
+    assertThat(uut.get("third")).isEqualTo("value");
+  }
+
+  @Test
+  void entries_are_evicted_in_order_of_expiry() {
+    ExpiringCache<Integer, String> uut = new ExpiringCache<>(10, now::get);
+
+    for (int i = 0; i < 100; i++) {
+      uut.put(i, "value", 2000 + (i * 37) % 100);
+    }
+
+    assertThat(uut.size()).isEqualTo(10);
+    for (int i = 0; i < 100; i++) {
+      boolean expiresLast = (i * 37) % 100 >= 90;
+      assertThat(uut.get(i) != null).as("entry %d", i).isEqualTo(expiresLast);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.tngtech.keycloakmock.impl;
+
+import static com.tngtech.keycloakmock.test.KeyHelper.loadValidKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class SigningKeyTest {
+  private static final char[] PASSWORD = "secret".toCharArray();
+
+  @TempDir Path directory;
+
+  @ParameterizedTest
+  @EnumSource(SigningAlgorithm.class)
+  void all_signing_algorithms_are_supported_on_current_jvm(SigningAlgorithm signingAlgorithm) {
+    assertThatCode(() -> SigningKey.checkSupported(signingAlgorithm)).doesNotThrowAnyException();
+  }
+
+  @Test
+  void exported_jwk_set_is_loaded() throws Exception {
+    SigningKey signingKey = new SigningKey("myKey", Jwts.SIG.ES256.keyPair().build());
+    Path file = directory.resolve("key.json");
+    signingKey.export(file);
+
+    SigningKey result = SigningKey.load(file, null, SigningAlgorithm.ES256);
+
+    assertThat(result.getKeyId()).isEqualTo("myKey");
+    assertThat(result.getKeyPair().getPublic()).isEqualTo(signingKey.getKeyPair().getPublic());
+    assertThat(result.getKeyPair().getPrivate()).isEqualTo(signingKey.getKeyPair().getPrivate());
+  }
+
+  @Test
+  void exported_pem_is_loaded_with_same_key_id() throws Exception {
+    KeyPair keyPair = Jwts.SIG.ES384.keyPair().build();
+    SigningKey signingKey = new SigningKey(getThumbprint(keyPair), keyPair);
+    Path file = directory.resolve("key.pem");
+    signingKey.export(file);
+
+    SigningKey result = SigningKey.load(file, null, SigningAlgorithm.ES384);
+
+    assertThat(result.getKeyId()).isEqualTo(signingKey.getKeyId());
+    assertThat(result.getKeyPair().getPublic()).isEqualTo(signingKey.getKeyPair().getPublic());
+    assertThat(result.getKeyPair().getPrivate()).isEqualTo(signingKey.getKeyPair().getPrivate());
+  }
+
+  @Test
+  void exported_file_is_only_accessible_by_owner() throws Exception {
+    assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    SigningKey signingKey = new SigningKey("myKey", Jwts.SIG.ES256.keyPair().build());
+    Path newFile = directory.resolve("key.json");
+    Path existingFile = directory.resolve("existing.json");
+    Files.createFile(
+        existingFile,
+        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-r--r--")));
+
+    signingKey.export(newFile);
+    signingKey.export(existingFile);
+
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(newFile)))
+        .isEqualTo("rw-------");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(existingFile)))
+        .isEqualTo("rw-------");
+  }
+
+  @Test
+  void pem_export_of_key_id_other_than_thumbprint_is_rejected() {
+    SigningKey signingKey = new SigningKey("keyId", Jwts.SIG.ES384.keyPair().build());
+    Path file = directory.resolve("key.pem");
+
+    assertThatThrownBy(() -> signingKey.export(file))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("export the key as JWK set");
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  void public_key_is_derived_if_missing_in_pem() throws Exception {
+    KeyPair keyPair = Jwts.SIG.RS256.keyPair().build();
+    Path file = directory.resolve("key.pem");
+    new SigningKey(getThumbprint(keyPair), keyPair).export(file);
+    String pem = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+    Files.write(
+        file,
+        pem.substring(0, pem.indexOf("-----BEGIN PUBLIC KEY")).getBytes(StandardCharsets.US_ASCII));
+
+    SigningKey result = SigningKey.load(file, null, SigningAlgorithm.RS256);
+
+    assertThat(result.getKeyPair().getPublic()).isEqualTo(keyPair.getPublic());
+  }
+
+  @Test
+  void pkcs12_keystore_is_loaded_with_alias_as_key_id() throws Exception {
+    Path file = directory.resolve("key.p12");
+    writeBuiltInKeyAsPkcs12(file);
+
+    SigningKey result = SigningKey.load(file, "secret", SigningAlgorithm.RS256);
+
+    assertThat(result.getKeyId()).isEqualTo("my-alias");
+    assertThat(result.getKeyPair().getPublic()).isEqualTo(loadValidKey());
+  }
+
+  @Test
+  void pkcs12_keystore_with_wrong_password_is_rejected() throws Exception {
+    Path file = directory.resolve("key.p12");
+    writeBuiltInKeyAsPkcs12(file);
+
+    assertThatThrownBy(() -> SigningKey.load(file, "wrong", SigningAlgorithm.RS256))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void key_not_matching_signing_algorithm_is_rejected() throws Exception {
+    Path file = directory.resolve("key.json");
+    new SigningKey("myKey", Jwts.SIG.ES256.keyPair().build()).export(file);
+
+    assertThatThrownBy(() -> SigningKey.load(file, null, SigningAlgorithm.ES384))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("No private key suitable for ES384");
+  }
+
+  private static String getThumbprint(KeyPair keyPair) {
+    return Jwks.builder().key(keyPair.getPublic()).idFromThumbprint().build().getId();
+  }
+
+  private static void writeBuiltInKeyAsPkcs12(Path file) throws Exception {
+    KeyStore builtIn = KeyStore.getInstance("JKS");
+    try (InputStream inputStream = SigningKeyTest.class.getResourceAsStream("/keystore.jks")) {
+      builtIn.load(inputStream, null);
+    }
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(null, null);
+    keyStore.setKeyEntry(
+        "my-alias",
+        builtIn.getKey("rsa", new char[0]),
+        PASSWORD,
+        new Certificate[] {builtIn.getCertificate("rsa")});
+    try (OutputStream outputStream = Files.newOutputStream(file)) {
+      keyStore.store(outputStream, PASSWORD);
+    }
+  }
+}
@@ -8,12 +8,12 @@ import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
 
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
 import com.tngtech.keycloakmock.impl.dagger.DaggerSignatureComponent;
+import com.tngtech.keycloakmock.impl.dagger.SignatureComponent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwts;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.security.PublicKey;
 import java.time.Duration;
 import java.time.Instant;
@@ -28,6 +28,8 @@ import org.assertj.core.util.Sets;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -64,8 +66,8 @@ class TokenGeneratorTest {
   private TokenGenerator uut;
 
   @BeforeEach
-  void setup() throws URISyntaxException {
-    doReturn(new URI(ISSUER)).when(urlConfiguration).getIssuer();
+  void setup() {
+    doReturn(ISSUER).when(urlConfiguration).getIssuerString();
   }
 
   private TokenGenerator setupUut(
@@ -76,6 +78,8 @@ class TokenGeneratorTest {
         .defaultScopes(defaultScopes)
         .defaultAudiences(defaultAudiences)
         .defaultTokenLifespan(defaultLifespan)
+        .signingAlgorithm(SigningAlgorithm.RS256)
+        .verifiedTokenCacheSize(0)
         .build()
         .tokenGenerator();
   }
@@ -113,7 +117,7 @@ class TokenGeneratorTest {
                 .build(),
             urlConfiguration);
 
-    verify(urlConfiguration).getIssuer();
+    verify(urlConfiguration).getIssuerString();
     Jws<Claims> jwt = Jwts.parser().verifyWith(publicKey).build().parseSignedClaims(token);
     assertThat(jwt.getHeader())
         .containsEntry("alg", "RS256")
@@ -334,4 +338,50 @@ class TokenGeneratorTest {
 
     assertThat(claims.getAudience()).containsExactlyInAnyOrder("look-only-at-me");
   }
+
+  @Test
+  void generic_claims_override_standard_claims() {
+    uut = setupUut(Collections.emptyList(), Collections.emptyList(), Duration.ofHours(10));
+
+    String token =
+        uut.getToken(
+            aTokenConfig()
+                .withSubject("ignored")
+                .withClaim("sub", "overridden")
+                .withClaim("typ", "ID")
+                .withClaim("empty", "")
+                .withClaim("empty_list", Collections.emptyList())
+                .build(),
+            urlConfiguration);
+
+    Claims claims =
+        Jwts.parser().verifyWith(publicKey).build().parseSignedClaims(token).getPayload();
+
+    assertThat(claims.getSubject()).isEqualTo("overridden");
+    assertThat(claims).containsEntry("typ", "ID").doesNotContainKeys("empty", "empty_list");
+    assertThat(claims).doesNotContainKeys("aud", "resource_access");
+  }
+
+  @ParameterizedTest
+  @EnumSource(SigningAlgorithm.class)
+  void token_is_signed_with_configured_algorithm(SigningAlgorithm signingAlgorithm) {
+    SignatureComponent signatureComponent =
+        DaggerSignatureComponent.builder()
+            .defaultScopes(Collections.emptyList())
+            .defaultAudiences(Collections.emptyList())
+            .defaultTokenLifespan(Duration.ofHours(10))
+            .signingAlgorithm(signingAlgorithm)
+            .verifiedTokenCacheSize(0)
+            .build();
+    uut = signatureComponent.tokenGenerator();
+
+    String token = uut.getToken(aTokenConfig().build(), urlConfiguration);
+
+    Jws<Claims> jwt =
+        Jwts.parser().verifyWith(signatureComponent.publicKey()).build().parseSignedClaims(token);
+    assertThat(jwt.getHeader())
+        .containsEntry("alg", signingAlgorithm.getJwsAlgorithm())
+        .containsEntry("kid", "keyId");
+    assertThat(uut.parseToken(token)).isEqualTo(jwt.getPayload());
+  }
 }
@@ -9,6 +9,7 @@ import com.tngtech.keycloakmock.api.ServerConfig;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.RoutingContext;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -57,4 +58,28 @@ class UrlConfigurationFactoryTest {
     assertThat(result.getHostname()).hasToString(expectedHost);
     assertThat(result.getRealm()).hasToString(expectedRealm);
   }
+
+  @Test
+  void configurations_are_shared_per_host_and_realm() {
+    UrlConfiguration result = uut.create(REQUEST_HOST, REQUEST_REALM);
+
+    assertThat(uut.create(REQUEST_HOST, REQUEST_REALM)).isSameAs(result);
+    assertThat(uut.create(REQUEST_HOST, null)).isNotSameAs(result);
+    assertThat(uut.create(null, REQUEST_REALM)).isNotSameAs(result);
+    assertThat(uut.getCachedConfigurationCount()).isEqualTo(3);
+  }
+
+  @Test
+  void number_of_shared_configurations_is_limited() {
+    for (int i = 0; i < UrlConfigurationFactory.MAX_CACHED_CONFIGURATIONS; i++) {
+      uut.create(REQUEST_HOST + i, REQUEST_REALM);
+    }
+
+    UrlConfiguration result = uut.create(REQUEST_HOST, REQUEST_REALM);
+
+    assertThat(result.getHostname()).isEqualTo(REQUEST_HOST);
+    assertThat(uut.create(REQUEST_HOST, REQUEST_REALM)).isNotSameAs(result);
+    assertThat(uut.getCachedConfigurationCount())
+        .isEqualTo(UrlConfigurationFactory.MAX_CACHED_CONFIGURATIONS);
+  }
 }
@@ -88,6 +88,7 @@ class UrlConfigurationTest {
     uut = new UrlConfiguration(aServerConfig().build(), requestHost, requestRealm);
 
     assertThat(uut.getIssuer()).hasToString(expectedIssuer);
+    assertThat(uut.getIssuerString()).isEqualTo(expectedIssuer);
   }
 
   @Test
@@ -0,0 +1,94 @@
+package com.tngtech.keycloakmock.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import io.jsonwebtoken.Claims;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+
+class VerifiedClaimsCacheTest {
+  private static final Date FUTURE = Date.from(Instant.now().plus(1, ChronoUnit.HOURS));
+  private static final Date FAR_FUTURE = Date.from(Instant.now().plus(2, ChronoUnit.HOURS));
+  private static final Date PAST = Date.from(Instant.now().minus(1, ChronoUnit.HOURS));
+
+  private final Map<String, Claims> claimsByToken = new HashMap<>();
+  private final AtomicInteger verifications = new AtomicInteger();
+  private final Function<String, Claims> verifier =
+      token -> {
+        verifications.incrementAndGet();
+        return claimsByToken.get(token);
+      };
+
+  @Test
+  void token_is_verified_only_once() {
+    VerifiedClaimsCache uut = new VerifiedClaimsCache(10);
+    Claims claims = addToken("token", FUTURE);
+
+    assertThat(uut.get("token", verifier)).isSameAs(claims);
+    assertThat(uut.get("token", verifier)).isSameAs(claims);
+
+    assertThat(verifications).hasValue(1);
+  }
+
+  @Test
+  void expired_token_is_verified_again() {
+    VerifiedClaimsCache uut = new VerifiedClaimsCache(10);
+    addToken("token", PAST);
+
+    uut.get("token", verifier);
+    uut.get("token", verifier);
+
+    assertThat(verifications).hasValue(2);
+    assertThat(uut.size()).isZero();
+  }
+
+  @Test
+  void token_expiring_first_is_evicted_when_full() {
+    VerifiedClaimsCache uut = new VerifiedClaimsCache(2);
+    addToken("short", FUTURE);
+    addToken("long", FAR_FUTURE);
+    addToken("other", FAR_FUTURE);
+
+    uut.get("long", verifier);
+    uut.get("short", verifier);
+    uut.get("other", verifier);
+    assertThat(uut.size()).isEqualTo(2);
+    assertThat(verifications).hasValue(3);
+
+    uut.get("long", verifier);
+    uut.get("other", verifier);
+    assertThat(verifications).hasValue(3);
+
+    uut.get("short", verifier);
+    assertThat(verifications).hasValue(4);
+  }
+
+  @Test
+  void cache_can_be_disabled() {
+    VerifiedClaimsCache uut = new VerifiedClaimsCache(0);
+    addToken("token", FUTURE);
+
+    uut.get("token", verifier);
+    uut.get("token", verifier);
+
+    assertThat(verifications).hasValue(2);
+    assertThat(uut.size()).isZero();
+  }
+
+  @Nonnull
+  private Claims addToken(@Nonnull String token, @Nonnull Date expiration) {
+    Claims claims = mock(Claims.class);
+    doReturn(expiration).when(claims).getExpiration();
+    claimsByToken.put(token, claims);
+    return claims;
+  }
+}
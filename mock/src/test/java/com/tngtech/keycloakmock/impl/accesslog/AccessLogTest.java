@@ -0,0 +1,97 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+
+class AccessLogTest {
+
+  private final RecordingSink sink = new RecordingSink();
+
+  @Test
+  void entries_are_written_in_order() {
+    AccessLog uut = new AccessLog(sink, 16, 1);
+
+    for (int i = 0; i < 10; i++) {
+      uut.log(200, "GET", "/" + i);
+    }
+    uut.close();
+
+    assertThat(sink.entries.stream().map(AccessLogEntry::getUri).collect(Collectors.toList()))
+        .containsExactly("/0", "/1", "/2", "/3", "/4", "/5", "/6", "/7", "/8", "/9");
+    assertThat(sink.closed).isTrue();
+  }
+
+  @Test
+  void nothing_is_logged_if_disabled() {
+    AccessLog uut = new AccessLog(null, 16, 1);
+
+    uut.log(200, "GET", "/");
+    uut.close();
+
+    assertThat(uut.isEnabled()).isFalse();
+  }
+
+  @Test
+  void nothing_is_logged_with_zero_sample_rate() {
+    AccessLog uut = new AccessLog(sink, 16, 0);
+
+    uut.log(200, "GET", "/");
+    uut.close();
+
+    assertThat(uut.isEnabled()).isFalse();
+    assertThat(sink.entries).isEmpty();
+  }
+
+  @Test
+  void entries_are_dropped_if_buffer_is_full() throws InterruptedException {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingSink blockingSink =
+        new RecordingSink() {
+          @Override
+          public void write(@Nonnull List<AccessLogEntry> entries) {
+            super.write(entries);
+            writing.countDown();
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        };
+    AccessLog uut = new AccessLog(blockingSink, 4, 1);
+
+    uut.log(200, "GET", "/blocking");
+    assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < 6; i++) {
+      uut.log(200, "GET", "/" + i);
+    }
+    release.countDown();
+    uut.close();
+
+    assertThat(uut.getDroppedCount()).isEqualTo(2);
+    assertThat(blockingSink.entries).hasSize(5);
+  }
+
+  private static class RecordingSink implements AccessLogSink {
+    private final List<AccessLogEntry> entries = new ArrayList<>();
+    private volatile boolean closed = false;
+
+    @Override
+    public void write(@Nonnull List<AccessLogEntry> entries) {
+      this.entries.addAll(entries);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.tngtech.keycloakmock.impl.accesslog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RotatingFileSinkTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void entries_are_appended_to_file() throws IOException {
+    Path file = directory.resolve("access.log");
+    RotatingFileSink uut = new RotatingFileSink(file, 0, 1);
+
+    uut.write(Collections.singletonList(new AccessLogEntry(0, 200, "GET", "/first")));
+    uut.write(Collections.singletonList(new AccessLogEntry(0, 404, "POST", "/second")));
+    uut.close();
+
+    assertThat(Files.readAllLines(file))
+        .containsExactly(
+            "1970-01-01T00:00:00Z 200: GET /first", "1970-01-01T00:00:00Z 404: POST /second");
+  }
+
+  @Test
+  void file_is_rotated_when_full() throws IOException {
+    Path file = directory.resolve("access.log");
+    RotatingFileSink uut = new RotatingFileSink(file, 10, 2);
+
+    for (int i = 0; i < 4; i++) {
+      uut.write(Collections.singletonList(new AccessLogEntry(0, 200, "GET", "/" + i)));
+    }
+    uut.close();
+
+    assertThat(Files.readAllLines(file)).isEmpty();
+    assertThat(Files.readAllLines(directory.resolve("access.log.1")))
+        .containsExactly("1970-01-01T00:00:00Z 200: GET /3");
+    assertThat(Files.readAllLines(directory.resolve("access.log.2")))
+        .containsExactly("1970-01-01T00:00:00Z 200: GET /2");
+    assertThat(directory.resolve("access.log.3")).doesNotExist();
+  }
+}
@@ -0,0 +1,114 @@
+package com.tngtech.keycloakmock.impl.dagger;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ServerModuleTest {
+
+  private final ServerModule uut = new ServerModule();
+
+  @Test
+  void http2_is_not_configured_by_default() {
+    HttpServerOptions options = createOptions(aServerConfig().build());
+
+    assertThat(options.isHttp2ClearTextEnabled())
+        .isEqualTo(HttpServerOptions.DEFAULT_HTTP2_CLEAR_TEXT_ENABLED);
+    assertThat(options.isUseAlpn()).isFalse();
+    assertThat(options.getInitialSettings().getMaxConcurrentStreams())
+        .isEqualTo(new HttpServerOptions().getInitialSettings().getMaxConcurrentStreams());
+  }
+
+  @Test
+  void http2_clear_text_is_configured() {
+    HttpServerOptions options =
+        createOptions(
+            aServerConfig()
+                .withHttp2(true)
+                .withHttp2MaxConcurrentStreams(500)
+                .withHttp2InitialWindowSize(1_048_576)
+                .withHttp2ConnectionWindowSize(16_777_216)
+                .build());
+
+    assertThat(options.isHttp2ClearTextEnabled()).isTrue();
+    assertThat(options.isUseAlpn()).isFalse();
+    assertThat(options.getInitialSettings().getMaxConcurrentStreams()).isEqualTo(500);
+    assertThat(options.getInitialSettings().getInitialWindowSize()).isEqualTo(1_048_576);
+    assertThat(options.getHttp2ConnectionWindowSize()).isEqualTo(16_777_216);
+  }
+
+  @Test
+  void http2_uses_alpn_with_tls() {
+    HttpServerOptions options =
+        createOptions(aServerConfig().withHttp2(true).withTls(true).build());
+
+    assertThat(options.isSsl()).isTrue();
+    assertThat(options.isUseAlpn()).isTrue();
+    assertThat(options.getAlpnVersions()).containsExactly(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1);
+  }
+
+  @Test
+  void random_port_is_shared_between_multiple_instances() {
+    HttpServerOptions options =
+        createOptions(aServerConfig().withRandomPort().withServerInstances(2).build());
+
+    assertThat(options.getPort()).isNegative();
+  }
+
+  @Test
+  void socket_options_use_defaults() {
+    HttpServerOptions options = createOptions(aServerConfig().build());
+
+    assertThat(options.getAcceptBacklog()).isEqualTo(-1);
+    assertThat(options.isTcpNoDelay()).isTrue();
+    assertThat(options.isTcpFastOpen()).isFalse();
+    assertThat(options.isReusePort()).isFalse();
+    assertThat(options.isTcpKeepAlive()).isFalse();
+    assertThat(options.getIdleTimeout()).isZero();
+  }
+
+  @Test
+  void socket_options_are_configured() {
+    HttpServerOptions options =
+        createOptions(
+            aServerConfig()
+                .withAcceptBacklog(4096)
+                .withTcpNoDelay(false)
+                .withTcpFastOpen(true)
+                .withReusePort(true)
+                .withTcpKeepAlive(true)
+                .withIdleTimeout(Duration.ofSeconds(30))
+                .build());
+
+    assertThat(options.getAcceptBacklog()).isEqualTo(4096);
+    assertThat(options.isTcpNoDelay()).isFalse();
+    assertThat(options.isTcpFastOpen()).isTrue();
+    assertThat(options.isReusePort()).isTrue();
+    assertThat(options.isTcpKeepAlive()).isTrue();
+    assertThat(options.getIdleTimeout()).isEqualTo(30_000);
+    assertThat(options.getIdleTimeoutUnit()).isEqualTo(TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  void vertx_falls_back_to_nio_without_native_transport() {
+    Vertx vertx = uut.provideVertx(aServerConfig().withNativeTransport(true).build());
+    try {
+      // the test classpath does not contain any native transport
+      assertThat(vertx.isNativeTransportEnabled()).isFalse();
+    } finally {
+      vertx.close();
+    }
+  }
+
+  private HttpServerOptions createOptions(ServerConfig serverConfig) {
+    return uut.provideHttpServerOptions(serverConfig, Buffer::buffer);
+  }
+}
@@ -1,5 +1,6 @@
 package com.tngtech.keycloakmock.impl.handler;
 
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
 import static com.tngtech.keycloakmock.impl.handler.AuthenticationRoute.AUTHENTICATE_PATH_PARAM_SESSION_ID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -8,16 +9,21 @@ import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
+import com.tngtech.keycloakmock.impl.handler.SigningExecutor.SigningRejectedException;
 import com.tngtech.keycloakmock.impl.helper.RedirectHelper;
 import com.tngtech.keycloakmock.impl.session.PersistentSession;
 import com.tngtech.keycloakmock.impl.session.SessionRepository;
 import com.tngtech.keycloakmock.impl.session.SessionRequest;
 import com.tngtech.keycloakmock.impl.session.UserData;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.Cookie;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
@@ -53,6 +59,9 @@ class AuthenticationRouteTest {
   @Mock private PersistentSession session;
   @Mock private Cookie cookie;
 
+  private final SigningExecutor signingExecutor =
+      new SigningExecutor(mock(Vertx.class), aServerConfig().withSigningThreads(0).build());
+
   @Captor private ArgumentCaptor<List<String>> rolesCaptor;
 
   private AuthenticationRoute uut;
@@ -64,7 +73,9 @@ class AuthenticationRouteTest {
 
   @Test
   void missing_session_causes_error() {
-    uut = new AuthenticationRoute(sessionRepository, redirectHelper, urlConfigurationFactory);
+    uut =
+        new AuthenticationRoute(
+            sessionRepository, redirectHelper, urlConfigurationFactory, signingExecutor);
 
     uut.handle(routingContext);
 
@@ -79,7 +90,9 @@ class AuthenticationRouteTest {
     doReturn(sessionRequest).when(sessionRepository).getRequest(SESSION_ID);
     doReturn(request).when(routingContext).request();
 
-    uut = new AuthenticationRoute(sessionRepository, redirectHelper, urlConfigurationFactory);
+    uut =
+        new AuthenticationRoute(
+            sessionRepository, redirectHelper, urlConfigurationFactory, signingExecutor);
 
     uut.handle(routingContext);
 
@@ -92,13 +105,16 @@ class AuthenticationRouteTest {
   @Test
   void correct_token_is_created() {
     setupValidRequest();
-    uut = new AuthenticationRoute(sessionRepository, redirectHelper, urlConfigurationFactory);
+    uut =
+        new AuthenticationRoute(
+            sessionRepository, redirectHelper, urlConfigurationFactory, signingExecutor);
 
     uut.handle(routingContext);
 
     verify(sessionRepository).getRequest(SESSION_ID);
     verify(sessionRequest).toSession(eq(USER), rolesCaptor.capture());
     assertThat(rolesCaptor.getValue()).containsExactlyInAnyOrder("role1", "role2", "role3");
+    verify(sessionRepository).upgradeRequest(sessionRequest, session);
     verify(response).putHeader("location", REDIRECT_URI);
     verify(response).addCookie(cookie);
     verify(response).setStatusCode(302);
@@ -106,6 +122,27 @@ class AuthenticationRouteTest {
     verifyNoMoreInteractions(response);
   }
 
+  @Test
+  void login_stays_pending_if_signing_is_rejected() {
+    SigningRejectedException exception = new SigningRejectedException(1);
+    SigningExecutor rejectingExecutor = mock(SigningExecutor.class);
+    doReturn(Future.failedFuture(exception)).when(rejectingExecutor).submit(any());
+    doReturn(USERNAME).when(request).getFormAttribute("username");
+    doReturn(request).when(routingContext).request();
+    doReturn(sessionRequest).when(sessionRepository).getRequest(SESSION_ID);
+    doReturn(session).when(sessionRequest).toSession(eq(USER), anyList());
+    doReturn(contextConfiguration).when(urlConfigurationFactory).create(routingContext);
+    doReturn(HOSTNAME).when(contextConfiguration).getHostname();
+    uut =
+        new AuthenticationRoute(
+            sessionRepository, redirectHelper, urlConfigurationFactory, rejectingExecutor);
+
+    uut.handle(routingContext);
+
+    verify(sessionRepository, never()).upgradeRequest(any(), any());
+    verify(routingContext).fail(503, exception);
+  }
+
   private void setupValidRequest() {
     doReturn(USERNAME).when(request).getFormAttribute("username");
     doReturn(ROLES).when(request).getFormAttribute("password");
@@ -0,0 +1,70 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.buffer.Buffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+class IntrospectionResponseCacheTest {
+  private static final Date FUTURE = Date.from(Instant.now().plus(1, ChronoUnit.HOURS));
+  private static final Date FAR_FUTURE = Date.from(Instant.now().plus(2, ChronoUnit.HOURS));
+  private static final Date PAST = Date.from(Instant.now().minus(1, ChronoUnit.HOURS));
+  private static final Buffer RESPONSE = Buffer.buffer("{\"active\":true}");
+
+  @Test
+  void response_is_cached_per_token_and_client() {
+    IntrospectionResponseCache uut = new IntrospectionResponseCache(10);
+
+    uut.put("token", "client", RESPONSE, FUTURE);
+
+    assertThat(uut.get("token", "client")).isSameAs(RESPONSE);
+    assertThat(uut.get("token", "other")).isNull();
+    assertThat(uut.get("other", "client")).isNull();
+  }
+
+  @Test
+  void expired_response_is_not_cached() {
+    IntrospectionResponseCache uut = new IntrospectionResponseCache(10);
+
+    uut.put("token", "client", RESPONSE, PAST);
+
+    assertThat(uut.get("token", "client")).isNull();
+    assertThat(uut.size()).isZero();
+  }
+
+  @Test
+  void response_without_expiration_is_cached() {
+    IntrospectionResponseCache uut = new IntrospectionResponseCache(10);
+
+    uut.put("token", "client", RESPONSE, null);
+
+    assertThat(uut.get("token", "client")).isSameAs(RESPONSE);
+  }
+
+  @Test
+  void response_expiring_first_is_evicted_when_full() {
+    IntrospectionResponseCache uut = new IntrospectionResponseCache(2);
+
+    uut.put("short", "client", RESPONSE, FUTURE);
+    uut.put("long", "client", RESPONSE, FAR_FUTURE);
+    uut.put("other", "client", RESPONSE, FAR_FUTURE);
+
+    assertThat(uut.size()).isEqualTo(2);
+    assertThat(uut.get("short", "client")).isNull();
+    assertThat(uut.get("long", "client")).isSameAs(RESPONSE);
+    assertThat(uut.get("other", "client")).isSameAs(RESPONSE);
+  }
+
+  @Test
+  void cache_can_be_disabled() {
+    IntrospectionResponseCache uut = new IntrospectionResponseCache(0);
+
+    uut.put("token", "client", RESPONSE, FUTURE);
+
+    assertThat(uut.get("token", "client")).isNull();
+    assertThat(uut.size()).isZero();
+  }
+}
@@ -0,0 +1,147 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.ACCEPT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CACHE_CONTROL;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.ETAG;
+import static io.netty.handler.codec.http.HttpHeaderNames.IF_NONE_MATCH;
+import static io.netty.handler.codec.http.HttpHeaderValues.GZIP;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceFileHandlerTest {
+  private static final String RESOURCE = "/style.css";
+
+  @Mock private RoutingContext routingContext;
+  @Mock private HttpServerRequest request;
+  @Mock private HttpServerResponse serverResponse;
+
+  @Captor private ArgumentCaptor<String> etagCaptor;
+  @Captor private ArgumentCaptor<Buffer> bufferCaptor;
+
+  @Test
+  void resource_is_served_with_etag() throws IOException {
+    setupRequest();
+    ResourceFileHandler uut = new ResourceFileHandler(RESOURCE);
+
+    uut.handle(routingContext);
+
+    verify(serverResponse).end(bufferCaptor.capture());
+    assertThat(bufferCaptor.getValue().getBytes()).isEqualTo(readResource());
+    verify(serverResponse).putHeader(CONTENT_TYPE, "text/css");
+    verify(serverResponse).putHeader(eq(ETAG), any(String.class));
+    verify(serverResponse).putHeader(eq(CACHE_CONTROL), any(String.class));
+    verify(serverResponse, never()).putHeader(eq(CONTENT_ENCODING), any(CharSequence.class));
+  }
+
+  @Test
+  void matching_etag_is_answered_with_not_modified() {
+    setupRequest();
+    ResourceFileHandler uut = new ResourceFileHandler(RESOURCE);
+    uut.handle(routingContext);
+    verify(serverResponse).putHeader(eq(ETAG), etagCaptor.capture());
+    // strict stubbing would complain about the other headers being read as well
+    lenient()
+        .doReturn("\"other\", W/" + etagCaptor.getValue())
+        .when(request)
+        .getHeader(IF_NONE_MATCH);
+    doReturn(serverResponse).when(serverResponse).setStatusCode(anyInt());
+
+    uut.handle(routingContext);
+
+    verify(serverResponse).setStatusCode(304);
+    verify(serverResponse).end();
+  }
+
+  @Test
+  void gzip_variant_is_served_if_accepted() throws IOException {
+    setupRequest();
+    lenient().doReturn("deflate, gzip;q=0.8").when(request).getHeader(ACCEPT_ENCODING);
+    ResourceFileHandler uut = new ResourceFileHandler(RESOURCE);
+
+    uut.handle(routingContext);
+
+    verify(serverResponse).putHeader(CONTENT_ENCODING, GZIP);
+    verify(serverResponse).end(bufferCaptor.capture());
+    assertThat(decompress(bufferCaptor.getValue().getBytes())).isEqualTo(readResource());
+  }
+
+  @Test
+  void gzip_variant_is_not_served_if_rejected() {
+    setupRequest();
+    lenient().doReturn("gzip;q=0, identity").when(request).getHeader(ACCEPT_ENCODING);
+    ResourceFileHandler uut = new ResourceFileHandler(RESOURCE);
+
+    uut.handle(routingContext);
+
+    verify(serverResponse, never()).putHeader(eq(CONTENT_ENCODING), any(CharSequence.class));
+  }
+
+  @Test
+  void missing_resource_fails_with_not_found() {
+    ResourceFileHandler uut = new ResourceFileHandler("/does-not-exist.js");
+
+    uut.handle(routingContext);
+
+    verify(routingContext).fail(404);
+  }
+
+  private void setupRequest() {
+    doReturn(request).when(routingContext).request();
+    doReturn(serverResponse).when(routingContext).response();
+    doReturn(serverResponse)
+        .when(serverResponse)
+        .putHeader(any(CharSequence.class), any(CharSequence.class));
+  }
+
+  @Nonnull
+  private byte[] readResource() throws IOException {
+    try (InputStream inputStream = getClass().getResourceAsStream(RESOURCE)) {
+      assertThat(inputStream).isNotNull();
+      return readAll(inputStream);
+    }
+  }
+
+  @Nonnull
+  private static byte[] decompress(@Nonnull byte[] compressed) throws IOException {
+    try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return readAll(inputStream);
+    }
+  }
+
+  @Nonnull
+  private static byte[] readAll(@Nonnull InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = inputStream.read(chunk)) != -1) {
+      outputStream.write(chunk, 0, read);
+    }
+    return outputStream.toByteArray();
+  }
+}
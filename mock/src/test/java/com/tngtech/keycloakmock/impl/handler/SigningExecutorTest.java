@@ -0,0 +1,83 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.tngtech.keycloakmock.impl.handler.SigningExecutor.SigningRejectedException;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.RoutingContext;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SigningExecutorTest {
+
+  private final Vertx vertx = Vertx.vertx();
+
+  @AfterEach
+  void tearDown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void task_is_run_on_calling_thread_without_signing_threads() {
+    Vertx unusedVertx = mock(Vertx.class);
+    SigningExecutor uut =
+        new SigningExecutor(unusedVertx, aServerConfig().withSigningThreads(0).build());
+
+    Future<String> result = uut.submit(() -> Thread.currentThread().getName());
+
+    assertThat(result.result()).isEqualTo(Thread.currentThread().getName());
+    verifyNoInteractions(unusedVertx);
+  }
+
+  @Test
+  void task_is_run_on_signing_thread() throws Exception {
+    SigningExecutor uut = new SigningExecutor(vertx, aServerConfig().withSigningThreads(2).build());
+
+    String threadName =
+        uut.submit(() -> Thread.currentThread().getName())
+            .toCompletionStage()
+            .toCompletableFuture()
+            .get(10, TimeUnit.SECONDS);
+
+    assertThat(threadName).startsWith("keycloak-mock-signing");
+    assertThat(uut.getCompletedCount()).isEqualTo(1);
+    assertThat(uut.getQueueDepth()).isZero();
+  }
+
+  @Test
+  void task_is_rejected_if_queue_is_full() throws Exception {
+    SigningExecutor uut =
+        new SigningExecutor(
+            vertx, aServerConfig().withSigningThreads(1).withSigningQueueLimit(1).build());
+    CountDownLatch latch = new CountDownLatch(1);
+
+    Future<Boolean> blocking = uut.submit(() -> latch.await(10, TimeUnit.SECONDS));
+    Future<String> rejected = uut.submit(() -> "rejected");
+
+    assertThat(rejected.failed()).isTrue();
+    assertThat(rejected.cause()).isInstanceOf(SigningRejectedException.class);
+    assertThat(uut.getQueueDepth()).isEqualTo(1);
+    assertThat(uut.getRejectedCount()).isEqualTo(1);
+
+    latch.countDown();
+    assertThat(blocking.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS))
+        .isTrue();
+  }
+
+  @Test
+  void rejection_fails_request_with_service_unavailable() {
+    RoutingContext routingContext = mock(RoutingContext.class);
+    SigningRejectedException exception = new SigningRejectedException(1);
+
+    SigningExecutor.fail(routingContext, exception);
+
+    verify(routingContext).fail(503, exception);
+  }
+}
@@ -0,0 +1,169 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static com.tngtech.keycloakmock.impl.handler.OptionalClientAuthHandler.CTX_CLIENT_ID;
+import static com.tngtech.keycloakmock.impl.handler.TokenIntrospectionBatchRoute.MAX_BATCH_SIZE;
+import static com.tngtech.keycloakmock.impl.handler.TokenIntrospectionRoute.TOKEN_INTROSPECTION_PARAM_TOKEN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.tngtech.keycloakmock.impl.TokenGenerator;
+import com.tngtech.keycloakmock.impl.handler.SigningExecutor.SigningRejectedException;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository;
+import io.jsonwebtoken.Jwts;
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.web.RoutingContext;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TokenIntrospectionBatchRouteTest {
+  private static final Buffer FIRST = Buffer.buffer("{\"active\":true}");
+  private static final Buffer SECOND = Buffer.buffer("{\"active\":false}");
+
+  @Mock TokenIntrospectionRoute tokenIntrospectionRoute;
+
+  @Mock RoutingContext routingContext;
+  @Mock HttpServerRequest request;
+  @Mock HttpServerResponse response;
+
+  @Captor ArgumentCaptor<Buffer> writeCaptor;
+  @Captor ArgumentCaptor<Buffer> endCaptor;
+
+  private final MultiMap formAttributes = MultiMap.caseInsensitiveMultiMap();
+
+  TokenIntrospectionBatchRoute uut;
+
+  @BeforeEach
+  void setUp() {
+    uut = new TokenIntrospectionBatchRoute(tokenIntrospectionRoute);
+
+    when(routingContext.request()).thenReturn(request);
+    when(request.formAttributes()).thenReturn(formAttributes);
+    User user = User.create(JsonObject.of(CTX_CLIENT_ID, "client123"));
+    when(routingContext.user()).thenReturn(user);
+  }
+
+  @Test
+  void responses_are_written_in_request_order() {
+    setUpResponse();
+    formAttributes.add(TOKEN_INTROSPECTION_PARAM_TOKEN, "first");
+    formAttributes.add(TOKEN_INTROSPECTION_PARAM_TOKEN, "second");
+    when(tokenIntrospectionRoute.introspectAll(Arrays.asList("first", "second"), "client123"))
+        .thenReturn(Future.succeededFuture(Arrays.asList(FIRST, SECOND)));
+
+    uut.handle(routingContext);
+
+    verify(response).setChunked(true);
+    assertThat(getBody()).isEqualTo("[{\"active\":true},{\"active\":false}]");
+  }
+
+  @Test
+  void missing_tokens_cause_bad_request() {
+    uut.handle(routingContext);
+
+    verify(routingContext).fail(400);
+    verifyNoInteractions(tokenIntrospectionRoute);
+  }
+
+  @Test
+  void too_many_tokens_cause_bad_request() {
+    for (int i = 0; i <= MAX_BATCH_SIZE; i++) {
+      formAttributes.add(TOKEN_INTROSPECTION_PARAM_TOKEN, "token" + i);
+    }
+
+    uut.handle(routingContext);
+
+    verify(routingContext).fail(400);
+    verifyNoInteractions(tokenIntrospectionRoute);
+  }
+
+  @Test
+  void rejected_introspection_causes_service_unavailable() {
+    SigningRejectedException exception = new SigningRejectedException(1);
+    formAttributes.add(TOKEN_INTROSPECTION_PARAM_TOKEN, "first");
+    when(tokenIntrospectionRoute.introspectAll(anyList(), anyString()))
+        .thenReturn(Future.failedFuture(exception));
+
+    uut.handle(routingContext);
+
+    verify(routingContext).fail(503, exception);
+    verifyNoInteractions(response);
+  }
+
+  @Test
+  void full_batch_only_takes_up_one_place_in_signing_queue() {
+    Vertx vertx = Vertx.vertx();
+    try {
+      SigningExecutor signingExecutor =
+          new SigningExecutor(
+              vertx, aServerConfig().withSigningThreads(1).withSigningQueueLimit(1).build());
+      TokenGenerator tokenGenerator = mock(TokenGenerator.class);
+      when(tokenGenerator.parseToken(anyString()))
+          .thenReturn(Jwts.claims().audience().add("client123").and().build());
+      uut =
+          new TokenIntrospectionBatchRoute(
+              new TokenIntrospectionRoute(
+                  tokenGenerator,
+                  signingExecutor,
+                  mock(AccessTokenRepository.class),
+                  new IntrospectionResponseCache(0)));
+      setUpResponse();
+      for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+        formAttributes.add(TOKEN_INTROSPECTION_PARAM_TOKEN, "header.token" + i + ".signature");
+      }
+
+      uut.handle(routingContext);
+
+      verify(response, timeout(10_000)).end(any(Buffer.class));
+      verify(routingContext, never()).fail(anyInt(), any());
+      verify(tokenGenerator, times(MAX_BATCH_SIZE)).parseToken(anyString());
+      assertThat(new JsonArray(getBody())).hasSize(MAX_BATCH_SIZE);
+      assertThat(signingExecutor.getCompletedCount()).isEqualTo(1);
+      assertThat(signingExecutor.getRejectedCount()).isZero();
+    } finally {
+      vertx.close();
+    }
+  }
+
+  private void setUpResponse() {
+    when(routingContext.response()).thenReturn(response);
+    when(response.putHeader(any(CharSequence.class), any(CharSequence.class))).thenReturn(response);
+    when(response.setChunked(anyBoolean())).thenReturn(response);
+    when(response.write(any(Buffer.class))).thenReturn(Future.succeededFuture());
+  }
+
+  private String getBody() {
+    verify(response, atLeastOnce()).write(writeCaptor.capture());
+    verify(response).end(endCaptor.capture());
+    return writeCaptor.getAllValues().stream().map(Buffer::toString).collect(Collectors.joining())
+        + endCaptor.getValue();
+  }
+}
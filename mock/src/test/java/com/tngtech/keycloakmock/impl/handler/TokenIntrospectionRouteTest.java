@@ -1,22 +1,34 @@
 package com.tngtech.keycloakmock.impl.handler;
 
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
 import static com.tngtech.keycloakmock.impl.handler.OptionalClientAuthHandler.CTX_CLIENT_ID;
 import static com.tngtech.keycloakmock.impl.handler.TokenIntrospectionRoute.TOKEN_INTROSPECTION_PARAM_TOKEN;
 import static java.util.Collections.singletonList;
 import static net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.tngtech.keycloakmock.impl.TokenGenerator;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository.Introspection;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.User;
 import io.vertx.ext.web.RoutingContext;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,18 +42,27 @@ class TokenIntrospectionRouteTest {
   private static final String TOKEN = "token123";
 
   @Mock TokenGenerator tokenGenerator;
+  @Mock AccessTokenRepository accessTokenRepository;
+  @Mock Introspection introspection;
 
   @Mock RoutingContext routingContext;
   @Mock HttpServerRequest request;
   @Mock HttpServerResponse response;
 
-  @Captor ArgumentCaptor<String> bodyCaptor;
+  @Captor ArgumentCaptor<Buffer> bufferCaptor;
+
+  private final SigningExecutor signingExecutor =
+      new SigningExecutor(mock(Vertx.class), aServerConfig().withSigningThreads(0).build());
+
+  private final IntrospectionResponseCache responseCache = new IntrospectionResponseCache(10);
 
   TokenIntrospectionRoute uut;
 
   @BeforeEach
   void setUp() {
-    uut = new TokenIntrospectionRoute(tokenGenerator);
+    uut =
+        new TokenIntrospectionRoute(
+            tokenGenerator, signingExecutor, accessTokenRepository, responseCache);
 
     when(routingContext.request()).thenReturn(request);
     when(request.getFormAttribute(TOKEN_INTROSPECTION_PARAM_TOKEN)).thenReturn(TOKEN);
@@ -58,22 +79,111 @@ class TokenIntrospectionRouteTest {
 
     uut.handle(routingContext);
 
-    verify(response).end(bodyCaptor.capture());
+    verify(response).end(bufferCaptor.capture());
 
-    assertThatJson(bodyCaptor.getValue())
+    assertThatJson(bufferCaptor.getValue().toString())
         .isObject()
         .containsOnly(
             entry("active", true), entry("foo", "bar"), entry("aud", singletonList("client123")));
   }
 
+  @Test
+  void response_for_active_token_is_cached() {
+    Claims claims = Jwts.claims().audience().add("client123").and().add("foo", "bar").build();
+    when(tokenGenerator.parseToken(TOKEN)).thenReturn(claims);
+
+    uut.handle(routingContext);
+    uut.handle(routingContext);
+
+    verify(tokenGenerator, times(1)).parseToken(TOKEN);
+    verify(response, times(2)).end(bufferCaptor.capture());
+    assertThat(bufferCaptor.getAllValues().get(1).toString())
+        .isEqualTo(bufferCaptor.getAllValues().get(0).toString());
+    assertThat(responseCache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void only_uncached_tokens_of_batch_are_verified() {
+    Claims claims = Jwts.claims().audience().add("client123").and().build();
+    when(tokenGenerator.parseToken(anyString())).thenReturn(claims);
+    uut.handle(routingContext);
+
+    List<Buffer> result =
+        uut.introspectAll(Arrays.asList(TOKEN, "other", null), "client123").result();
+
+    verify(tokenGenerator).parseToken(TOKEN);
+    verify(tokenGenerator).parseToken("other");
+    assertThat(result).hasSize(3);
+    assertThat(new JsonObject(result.get(0)).getBoolean("active")).isTrue();
+    assertThat(new JsonObject(result.get(1)).getBoolean("active")).isTrue();
+    assertThat(new JsonObject(result.get(2)).getBoolean("active")).isFalse();
+  }
+
+  @Test
+  void response_for_inactive_token_is_not_cached() {
+    when(tokenGenerator.parseToken(TOKEN)).thenThrow(new RuntimeException("test"));
+
+    uut.handle(routingContext);
+    uut.handle(routingContext);
+
+    verify(tokenGenerator, times(2)).parseToken(TOKEN);
+    assertThat(responseCache.size()).isZero();
+  }
+
   @Test
   void exception_returns_active_false() {
     when(tokenGenerator.parseToken(TOKEN)).thenThrow(new RuntimeException("test"));
 
     uut.handle(routingContext);
 
-    verify(response).end(bodyCaptor.capture());
+    verify(response).end(bufferCaptor.capture());
+
+    assertThatJson(bufferCaptor.getValue().toString())
+        .isObject()
+        .containsOnly(entry("active", false));
+  }
+
+  @Test
+  void opaque_token_returns_stored_response() {
+    Buffer storedResponse = Buffer.buffer("{\"active\":true,\"foo\":\"bar\"}");
+    when(accessTokenRepository.isEnabled()).thenReturn(true);
+    when(accessTokenRepository.introspect(TOKEN)).thenReturn(introspection);
+    when(introspection.hasAudience("client123")).thenReturn(true);
+    when(introspection.getResponse()).thenReturn(storedResponse);
+
+    uut.handle(routingContext);
+
+    verify(response).end(storedResponse);
+    verifyNoInteractions(tokenGenerator);
+  }
+
+  @Test
+  void unknown_opaque_token_returns_active_false() {
+    when(accessTokenRepository.isEnabled()).thenReturn(true);
+    when(accessTokenRepository.introspect(TOKEN)).thenReturn(null);
+
+    uut.handle(routingContext);
+
+    verify(response).end(bufferCaptor.capture());
+
+    assertThatJson(bufferCaptor.getValue().toString())
+        .isObject()
+        .containsOnly(entry("active", false));
+    verifyNoInteractions(tokenGenerator);
+  }
+
+  @Test
+  void opaque_token_for_other_audience_returns_active_false() {
+    when(accessTokenRepository.isEnabled()).thenReturn(true);
+    when(accessTokenRepository.introspect(TOKEN)).thenReturn(introspection);
+    when(introspection.hasAudience("client123")).thenReturn(false);
+
+    uut.handle(routingContext);
+
+    verify(response).end(bufferCaptor.capture());
 
-    assertThatJson(bodyCaptor.getValue()).isObject().containsOnly(entry("active", false));
+    assertThatJson(bufferCaptor.getValue().toString())
+        .isObject()
+        .containsOnly(entry("active", false));
   }
 }
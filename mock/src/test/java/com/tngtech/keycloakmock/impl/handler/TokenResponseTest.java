@@ -0,0 +1,67 @@
+package com.tngtech.keycloakmock.impl.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+class TokenResponseTest {
+  private static final String TOKEN = "header.payload.signature";
+
+  @Test
+  void response_contains_token_in_all_fields() {
+    Buffer result = TokenResponse.create(TOKEN, 3600, "session123");
+
+    assertThat(new JsonObject(result))
+        .isEqualTo(
+            new JsonObject()
+                .put("access_token", TOKEN)
+                .put("token_type", "Bearer")
+                .put("expires_in", 3600L)
+                .put("refresh_token", TOKEN)
+                .put("refresh_expires_in", 3600L)
+                .put("id_token", TOKEN)
+                .put("session_state", "session123"));
+  }
+
+  @Test
+  void response_contains_separate_tokens() {
+    JsonObject result =
+        new JsonObject(TokenResponse.create("access", 300, "refresh", 36000, TOKEN, "session123"));
+
+    assertThat(result.getString("access_token")).isEqualTo("access");
+    assertThat(result.getString("id_token")).isEqualTo(TOKEN);
+    assertThat(result.getLong("expires_in")).isEqualTo(300L);
+    assertThat(result.getString("refresh_token")).isEqualTo("refresh");
+    assertThat(result.getLong("refresh_expires_in")).isEqualTo(36000L);
+  }
+
+  @Test
+  void missing_session_is_encoded_as_null() {
+    JsonObject result = new JsonObject(TokenResponse.create(TOKEN, 0, null));
+
+    assertThat(result.containsKey("session_state")).isTrue();
+    assertThat(result.getString("session_state")).isNull();
+    assertThat(result.getLong("expires_in")).isZero();
+  }
+
+  @Test
+  void special_characters_are_escaped() {
+    JsonObject result =
+        new JsonObject(TokenResponse.create("with \"quotes\"\n", 1, "session \\ ä"));
+
+    assertThat(result.getString("access_token")).isEqualTo("with \"quotes\"\n");
+    assertThat(result.getString("id_token")).isEqualTo("with \"quotes\"\n");
+    assertThat(result.getString("session_state")).isEqualTo("session \\ ä");
+  }
+
+  @Test
+  void responses_do_not_share_state() {
+    Buffer first = TokenResponse.create("first", 1, "session1");
+    Buffer second = TokenResponse.create("second", 2, "session2");
+
+    assertThat(new JsonObject(first).getString("refresh_token")).isEqualTo("first");
+    assertThat(new JsonObject(second).getString("refresh_token")).isEqualTo("second");
+  }
+}
@@ -1,5 +1,6 @@
 package com.tngtech.keycloakmock.impl.handler;
 
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
 import static com.tngtech.keycloakmock.impl.handler.OptionalClientAuthHandler.CTX_CLIENT_ID;
 import static com.tngtech.keycloakmock.impl.handler.TokenRoute.GRANT_AUTHORIZATION_CODE;
 import static com.tngtech.keycloakmock.impl.handler.TokenRoute.GRANT_CLIENT_CREDENTIALS;
@@ -9,16 +10,22 @@ import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_PARAM_CODE;
 import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_PARAM_GRANT_TYPE;
 import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_PARAM_REFRESH_TOKEN;
 import static com.tngtech.keycloakmock.impl.handler.TokenRoute.TOKEN_PARAM_USERNAME;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
+import com.tngtech.keycloakmock.impl.helper.AuthorizationCodeHelper;
 import com.tngtech.keycloakmock.impl.helper.TokenHelper;
-import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import com.tngtech.keycloakmock.impl.metrics.Metrics;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository;
+import com.tngtech.keycloakmock.impl.session.RefreshTokenRepository;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.auth.User;
 import io.vertx.ext.web.RoutingContext;
+import java.time.Duration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,15 +36,22 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class TokenRouteTest {
 
   private static final String UNKNOWN_SESSION = "unknown";
+  private static final Duration TOKEN_LIFESPAN = Duration.ofHours(10);
 
-  @Mock SessionRepository sessionRepository;
+  @Mock AuthorizationCodeHelper authorizationCodeHelper;
   @Mock TokenHelper tokenHelper;
   @Mock UrlConfigurationFactory urlConfigurationFactory;
+  @Mock Metrics metrics;
+  @Mock RefreshTokenRepository refreshTokenRepository;
+  @Mock AccessTokenRepository accessTokenRepository;
 
   @Mock RoutingContext routingContext;
   @Mock HttpServerRequest request;
   @Mock User user;
 
+  private final SigningExecutor signingExecutor =
+      new SigningExecutor(mock(Vertx.class), aServerConfig().withSigningThreads(0).build());
+
   TokenRoute uut;
 
   @BeforeEach
@@ -49,12 +63,21 @@ class TokenRouteTest {
   void missing_grant_type_causes_error() {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
     verify(routingContext).fail(400);
-    verifyNoMoreInteractions(sessionRepository, tokenHelper);
+    verifyNoMoreInteractions(authorizationCodeHelper, tokenHelper);
   }
 
   @Test
@@ -62,7 +85,16 @@ class TokenRouteTest {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_AUTHORIZATION_CODE);
     when(request.getFormAttribute(TOKEN_PARAM_CODE)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -74,9 +106,18 @@ class TokenRouteTest {
   void unknown_authorization_code_causes_error_for_type_authorization_code() {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_AUTHORIZATION_CODE);
     when(request.getFormAttribute(TOKEN_PARAM_CODE)).thenReturn(UNKNOWN_SESSION);
-    when(sessionRepository.getSession(UNKNOWN_SESSION)).thenReturn(null);
-
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    when(authorizationCodeHelper.getSession(UNKNOWN_SESSION)).thenReturn(null);
+
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -89,7 +130,40 @@ class TokenRouteTest {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_REFRESH_TOKEN);
     when(request.getFormAttribute(TOKEN_PARAM_REFRESH_TOKEN)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
+
+    uut.handle(routingContext);
+
+    verify(routingContext).fail(400);
+    verifyNoMoreInteractions(tokenHelper);
+  }
+
+  @Test
+  void unknown_opaque_token_causes_error_for_type_refresh_token() {
+    when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_REFRESH_TOKEN);
+    when(request.getFormAttribute(TOKEN_PARAM_REFRESH_TOKEN)).thenReturn(UNKNOWN_SESSION);
+    when(refreshTokenRepository.isEnabled()).thenReturn(true);
+    when(refreshTokenRepository.redeem(UNKNOWN_SESSION)).thenReturn(null);
+
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -102,7 +176,16 @@ class TokenRouteTest {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_PASSWORD);
     when(routingContext.user()).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -116,7 +199,16 @@ class TokenRouteTest {
     when(routingContext.user()).thenReturn(user);
     when(user.get(CTX_CLIENT_ID)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -131,7 +223,16 @@ class TokenRouteTest {
     when(user.get(CTX_CLIENT_ID)).thenReturn("myclient");
     when(request.getFormAttribute(TOKEN_PARAM_USERNAME)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -144,7 +245,16 @@ class TokenRouteTest {
     when(request.getFormAttribute(TOKEN_PARAM_GRANT_TYPE)).thenReturn(GRANT_CLIENT_CREDENTIALS);
     when(routingContext.user()).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
@@ -158,7 +268,16 @@ class TokenRouteTest {
     when(routingContext.user()).thenReturn(user);
     when(user.get(CTX_CLIENT_ID)).thenReturn(null);
 
-    uut = new TokenRoute(sessionRepository, tokenHelper, urlConfigurationFactory);
+    uut =
+        new TokenRoute(
+            authorizationCodeHelper,
+            tokenHelper,
+            urlConfigurationFactory,
+            signingExecutor,
+            metrics,
+            refreshTokenRepository,
+            accessTokenRepository,
+            TOKEN_LIFESPAN);
 
     uut.handle(routingContext);
 
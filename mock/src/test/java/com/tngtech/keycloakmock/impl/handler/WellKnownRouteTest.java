@@ -1,12 +1,18 @@
 package com.tngtech.keycloakmock.impl.handler;
 
 import static net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.UrlConfigurationFactory;
 import com.tngtech.keycloakmock.test.ConfigurationResponse;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
@@ -14,6 +20,8 @@ import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -28,17 +36,79 @@ class WellKnownRouteTest extends HandlerTestBase {
 
   @Mock private UrlConfigurationFactory urlConfigurationFactory;
   @Mock private UrlConfiguration contextConfiguration;
+  @Mock private HttpServerRequest request;
+
+  @Captor private ArgumentCaptor<Buffer> bufferCaptor;
 
   private WellKnownRoute wellKnownRoute;
 
   @BeforeEach
   void setup() {
-    wellKnownRoute = new WellKnownRoute(urlConfigurationFactory);
+    wellKnownRoute = new WellKnownRoute(urlConfigurationFactory, SigningAlgorithm.RS256);
   }
 
   @Test
   void well_known_configuration_is_complete() throws URISyntaxException {
-    doReturn(contextConfiguration).when(urlConfigurationFactory).create(routingContext);
+    setupUrlConfiguration();
+
+    wellKnownRoute.handle(routingContext);
+
+    verify(serverResponse).end(bufferCaptor.capture());
+    String response = bufferCaptor.getValue().toString();
+
+    assertThatJson(response).isEqualTo(getExpectedResponse());
+  }
+
+  @Test
+  void well_known_configuration_is_cached_per_host_and_realm() throws URISyntaxException {
+    setupUrlConfiguration();
+
+    wellKnownRoute.handle(routingContext);
+    wellKnownRoute.handle(routingContext);
+
+    verify(urlConfigurationFactory).create(any(UrlConfigurationFactory.CacheKey.class));
+    verify(contextConfiguration).getIssuer();
+    verify(serverResponse, times(2)).end(bufferCaptor.capture());
+    assertThat(bufferCaptor.getAllValues().get(1)).isSameAs(bufferCaptor.getAllValues().get(0));
+    assertThatJson(bufferCaptor.getAllValues().get(1).toString()).isEqualTo(getExpectedResponse());
+    assertThat(wellKnownRoute.getCachedResponseCount()).isEqualTo(1);
+  }
+
+  @Test
+  void well_known_configuration_is_cached_separately_for_other_host() throws URISyntaxException {
+    setupUrlConfiguration();
+
+    wellKnownRoute.handle(routingContext);
+    doReturn("other.host").when(request).getHeader("Host");
+    wellKnownRoute.handle(routingContext);
+
+    verify(urlConfigurationFactory, times(2)).create(any(UrlConfigurationFactory.CacheKey.class));
+    assertThat(wellKnownRoute.getCachedResponseCount()).isEqualTo(2);
+  }
+
+  @Test
+  void well_known_configuration_contains_configured_signing_algorithm() throws URISyntaxException {
+    wellKnownRoute = new WellKnownRoute(urlConfigurationFactory, SigningAlgorithm.ED25519);
+    setupUrlConfiguration();
+
+    wellKnownRoute.handle(routingContext);
+
+    verify(serverResponse).end(bufferCaptor.capture());
+    String response = bufferCaptor.getValue().toString();
+
+    assertThatJson(response)
+        .node("id_token_signing_alg_values_supported")
+        .isArray()
+        .containsExactly("EdDSA");
+  }
+
+  private void setupUrlConfiguration() throws URISyntaxException {
+    doReturn(request).when(routingContext).request();
+    doReturn("localhost").when(request).getHeader("Host");
+    doReturn("realm").when(routingContext).pathParam("realm");
+    doReturn(contextConfiguration)
+        .when(urlConfigurationFactory)
+        .create(any(UrlConfigurationFactory.CacheKey.class));
     doReturn(new URI(ISSUER)).when(contextConfiguration).getIssuer();
     doReturn(new URI(AUTHORIZATION_ENDPOINT)).when(contextConfiguration).getAuthorizationEndpoint();
     doReturn(new URI(END_SESSION_ENDPOINT)).when(contextConfiguration).getEndSessionEndpoint();
@@ -47,13 +117,6 @@ class WellKnownRouteTest extends HandlerTestBase {
     doReturn(new URI(INTROSPECTION_ENDPOINT))
         .when(contextConfiguration)
         .getTokenIntrospectionEndpoint();
-
-    wellKnownRoute.handle(routingContext);
-
-    verify(serverResponse).end(captor.capture());
-    String response = captor.getValue();
-
-    assertThatJson(response).isEqualTo(getExpectedResponse());
   }
 
   private ConfigurationResponse getExpectedResponse() {
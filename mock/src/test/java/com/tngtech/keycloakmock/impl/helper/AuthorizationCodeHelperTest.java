@@ -0,0 +1,119 @@
+package com.tngtech.keycloakmock.impl.helper;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import com.tngtech.keycloakmock.impl.session.SessionRequest;
+import com.tngtech.keycloakmock.impl.session.UserData;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorizationCodeHelperTest {
+  private static final String SECRET = "shared secret";
+
+  @Mock private SessionRepository sessionRepository;
+
+  private final AtomicLong now = new AtomicLong(0);
+
+  private final PersistentSession session =
+      new SessionRequest.Builder()
+          .setClientId("client")
+          .setSessionId("session123")
+          .setRedirectUri("http://localhost/callback")
+          .setResponseType("code")
+          .setState("state123")
+          .setNonce("nonce123")
+          .build()
+          .toSession(
+              UserData.fromUsernameAndHostname("john.doe", "localhost"),
+              Arrays.asList("reader", "writer"));
+
+  @Test
+  void session_id_is_used_as_code_without_secret() {
+    AuthorizationCodeHelper uut = create(aServerConfig().build());
+    doReturn(session).when(sessionRepository).getSessionForAuthorizationCode("session123");
+
+    String code = uut.createCode(session);
+
+    assertThat(code).isEqualTo("session123");
+    assertThat(uut.getSession(code)).isSameAs(session);
+  }
+
+  @Test
+  void code_can_be_redeemed_by_other_instance_with_same_secret() {
+    AuthorizationCodeHelper issuer = create(aServerConfig().withAuthorizationCodeSecret(SECRET));
+    AuthorizationCodeHelper uut = create(aServerConfig().withAuthorizationCodeSecret(SECRET));
+
+    PersistentSession result = uut.getSession(issuer.createCode(session));
+
+    assertThat(result).isNotNull();
+    assertThat(result.getSessionId()).isEqualTo("session123");
+    assertThat(result.getClientId()).isEqualTo("client");
+    assertThat(result.getRedirectUri()).isEqualTo("http://localhost/callback");
+    assertThat(result.getState()).isEqualTo("state123");
+    assertThat(result.getResponseMode()).isNull();
+    assertThat(result.getNonce()).isEqualTo("nonce123");
+    assertThat(result.getRoles()).containsExactly("reader", "writer");
+    assertThat(result.getUserData().getSubject()).isEqualTo("john.doe");
+    assertThat(result.getUserData().getEmail()).isEqualTo("john.doe@localhost");
+    assertThat(result.getUserData().getGivenName()).isEqualTo("John");
+    verifyNoInteractions(sessionRepository);
+  }
+
+  @Test
+  void code_of_other_secret_is_rejected() {
+    AuthorizationCodeHelper issuer =
+        create(aServerConfig().withAuthorizationCodeSecret("other secret"));
+    AuthorizationCodeHelper uut = create(aServerConfig().withAuthorizationCodeSecret(SECRET));
+
+    assertThat(uut.getSession(issuer.createCode(session))).isNull();
+  }
+
+  @Test
+  void manipulated_code_is_rejected() {
+    AuthorizationCodeHelper uut = create(aServerConfig().withAuthorizationCodeSecret(SECRET));
+    char[] code = uut.createCode(session).toCharArray();
+    code[code.length / 2] = code[code.length / 2] == 'A' ? 'B' : 'A';
+
+    assertThat(uut.getSession(new String(code))).isNull();
+    assertThat(uut.getSession("not a code")).isNull();
+  }
+
+  @Test
+  void expired_code_is_rejected() {
+    AuthorizationCodeHelper uut =
+        create(
+            aServerConfig()
+                .withAuthorizationCodeSecret(SECRET)
+                .withAuthorizationCodeTtl(Duration.ofMinutes(1)));
+    String code = uut.createCode(session);
+
+    now.set(60_000);
+    assertThat(uut.getSession(code)).isNotNull();
+
+    now.set(60_001);
+    assertThat(uut.getSession(code)).isNull();
+  }
+
+  @Nonnull
+  private AuthorizationCodeHelper create(@Nonnull ServerConfig.Builder builder) {
+    return create(builder.build());
+  }
+
+  @Nonnull
+  private AuthorizationCodeHelper create(@Nonnull ServerConfig serverConfig) {
+    return new AuthorizationCodeHelper(serverConfig, sessionRepository, now::get);
+  }
+}
@@ -1,15 +1,19 @@
 package com.tngtech.keycloakmock.impl.helper;
 
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.session.PersistentSession;
 import com.tngtech.keycloakmock.impl.session.ResponseMode;
 import com.tngtech.keycloakmock.impl.session.ResponseType;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
 import io.vertx.core.http.Cookie;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -23,6 +27,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,6 +51,10 @@ class RedirectHelperTest {
 
   @Mock private TokenHelper tokenHelper;
 
+  @Spy
+  private AuthorizationCodeHelper authorizationCodeHelper =
+      new AuthorizationCodeHelper(aServerConfig().build(), mock(SessionRepository.class));
+
   @Mock private PersistentSession session;
   @Mock private UrlConfiguration urlConfiguration;
 
@@ -125,7 +134,9 @@ class RedirectHelperTest {
     if (mode != null) {
       doReturn(mode.toString()).when(session).getResponseMode();
     }
-    doReturn(TOKEN).when(tokenHelper).getToken(session, urlConfiguration);
+    if (type == ResponseType.ID_TOKEN || type == ResponseType.ID_TOKEN_PLUS_TOKEN) {
+      doReturn(TOKEN).when(tokenHelper).getToken(session, urlConfiguration);
+    }
 
     String redirectLocation = uut.getRedirectLocation(session, urlConfiguration);
 
@@ -171,7 +182,6 @@ class RedirectHelperTest {
     doReturn(originalRedirectUri).when(session).getRedirectUri();
     doReturn(ResponseType.CODE.toString()).when(session).getResponseType();
     doReturn(mode.toString()).when(session).getResponseMode();
-    doReturn(TOKEN).when(tokenHelper).getToken(session, urlConfiguration);
 
     String redirectLocation = uut.getRedirectLocation(session, urlConfiguration);
 
@@ -186,7 +196,6 @@ class RedirectHelperTest {
     doReturn(ResponseType.CODE.toString()).when(session).getResponseType();
     URI oobUri = URI.create("file:///oob-dummy");
     doReturn(oobUri).when(urlConfiguration).getOutOfBandLoginLoginEndpoint();
-    doReturn(TOKEN).when(tokenHelper).getToken(session, urlConfiguration);
 
     String redirectLocation = uut.getRedirectLocation(session, urlConfiguration);
 
@@ -195,6 +204,17 @@ class RedirectHelperTest {
         .isEqualTo("file:/oob-dummy?session_state=session123&state=state123&code=session123");
   }
 
+  @Test
+  void no_token_is_generated_for_code_flow() {
+    doReturn(SESSION_ID).when(session).getSessionId();
+    doReturn(REDIRECT_URI).when(session).getRedirectUri();
+    doReturn(ResponseType.CODE.toString()).when(session).getResponseType();
+
+    uut.getRedirectLocation(session, urlConfiguration);
+
+    verifyNoInteractions(tokenHelper);
+  }
+
   @Test
   void cookie_is_generated_correctly() {
     doReturn(SESSION_ID).when(session).getSessionId();
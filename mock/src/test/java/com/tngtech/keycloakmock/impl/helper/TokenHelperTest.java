@@ -2,15 +2,21 @@ package com.tngtech.keycloakmock.impl.helper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import com.tngtech.keycloakmock.api.LoginRoleMapping;
 import com.tngtech.keycloakmock.api.TokenConfig;
 import com.tngtech.keycloakmock.impl.TokenGenerator;
 import com.tngtech.keycloakmock.impl.UrlConfiguration;
 import com.tngtech.keycloakmock.impl.session.PersistentSession;
+import com.tngtech.keycloakmock.impl.session.SignedToken;
 import com.tngtech.keycloakmock.impl.session.UserData;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
@@ -34,6 +40,8 @@ class TokenHelperTest {
   private static final UserData USER = UserData.fromUsernameAndHostname("jane.user", "example.com");
   private static final String TOKEN = "token123";
   private static final List<String> ROLES = Arrays.asList("role1", "role2");
+  private static final Duration LIFESPAN = Duration.ofHours(10);
+  private static final String ISSUER = "http://localhost:8000/auth/realms/master";
 
   @Mock private TokenGenerator tokenGenerator;
 
@@ -46,17 +54,24 @@ class TokenHelperTest {
 
   @BeforeEach
   void setup() {
-    doReturn(CLIENT_ID).when(session).getClientId();
-    doReturn(SESSION_ID).when(session).getSessionId();
-    doReturn(NONCE).when(session).getNonce();
-    doReturn(USER).when(session).getUserData();
-    doReturn(ROLES).when(session).getRoles();
-    doReturn(TOKEN).when(tokenGenerator).getToken(configCaptor.capture(), same(urlConfiguration));
+    // not all stubs are needed when a token stored in the session is re-used
+    lenient().doReturn(CLIENT_ID).when(session).getClientId();
+    lenient().doReturn(SESSION_ID).when(session).getSessionId();
+    lenient().doReturn(NONCE).when(session).getNonce();
+    lenient().doReturn(USER).when(session).getUserData();
+    lenient().doReturn(ROLES).when(session).getRoles();
+    doReturn(ISSUER).when(urlConfiguration).getIssuerString();
+    lenient()
+        .doReturn(TOKEN)
+        .when(tokenGenerator)
+        .getToken(configCaptor.capture(), same(urlConfiguration));
   }
 
   @Test
   void token_is_correctly_generated() {
-    uut = new TokenHelper(tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM);
+    uut =
+        new TokenHelper(
+            tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM, LIFESPAN);
 
     uut.getToken(session, urlConfiguration);
 
@@ -84,7 +99,10 @@ class TokenHelperTest {
   void default_audiences_are_added() {
     uut =
         new TokenHelper(
-            tokenGenerator, Lists.list("audience1", "audience2"), LoginRoleMapping.TO_REALM);
+            tokenGenerator,
+            Lists.list("audience1", "audience2"),
+            LoginRoleMapping.TO_REALM,
+            LIFESPAN);
 
     uut.getToken(session, urlConfiguration);
 
@@ -98,7 +116,10 @@ class TokenHelperTest {
   void resource_roles_are_added() {
     uut =
         new TokenHelper(
-            tokenGenerator, Lists.list("audience1", "audience2"), LoginRoleMapping.TO_RESOURCE);
+            tokenGenerator,
+            Lists.list("audience1", "audience2"),
+            LoginRoleMapping.TO_RESOURCE,
+            LIFESPAN);
 
     uut.getToken(session, urlConfiguration);
 
@@ -120,7 +141,10 @@ class TokenHelperTest {
   void resource_and_realm_roles_are_added() {
     uut =
         new TokenHelper(
-            tokenGenerator, Lists.list("audience1", "audience2"), LoginRoleMapping.TO_BOTH);
+            tokenGenerator,
+            Lists.list("audience1", "audience2"),
+            LoginRoleMapping.TO_BOTH,
+            LIFESPAN);
 
     uut.getToken(session, urlConfiguration);
 
@@ -136,4 +160,59 @@ class TokenHelperTest {
     assertThat(tokenConfig.getResourceAccess().get("audience2").getRoles())
         .containsExactlyInAnyOrderElementsOf(ROLES);
   }
+
+  @Test
+  void token_is_stored_in_session() {
+    uut =
+        new TokenHelper(
+            tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM, LIFESPAN);
+
+    String token = uut.getToken(session, urlConfiguration);
+
+    assertThat(token).isEqualTo(TOKEN);
+    ArgumentCaptor<SignedToken> signedTokenCaptor = ArgumentCaptor.forClass(SignedToken.class);
+    verify(session).setSignedToken(signedTokenCaptor.capture());
+    assertThat(signedTokenCaptor.getValue().getToken()).isEqualTo(TOKEN);
+  }
+
+  @Test
+  void token_stored_in_session_is_reused() {
+    uut =
+        new TokenHelper(
+            tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM, LIFESPAN);
+    doReturn(new SignedToken(ISSUER, "stored", Instant.now())).when(session).getSignedToken();
+
+    String token = uut.getToken(session, urlConfiguration);
+
+    assertThat(token).isEqualTo("stored");
+    verify(tokenGenerator, never()).getToken(any(), any());
+  }
+
+  @Test
+  void token_stored_in_session_is_not_reused_for_other_issuer() {
+    uut =
+        new TokenHelper(
+            tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM, LIFESPAN);
+    doReturn(new SignedToken("http://other/issuer", "stored", Instant.now()))
+        .when(session)
+        .getSignedToken();
+
+    String token = uut.getToken(session, urlConfiguration);
+
+    assertThat(token).isEqualTo(TOKEN);
+  }
+
+  @Test
+  void old_token_stored_in_session_is_not_reused() {
+    uut =
+        new TokenHelper(
+            tokenGenerator, Collections.emptyList(), LoginRoleMapping.TO_REALM, LIFESPAN);
+    doReturn(new SignedToken(ISSUER, "stored", Instant.now().minus(LIFESPAN.dividedBy(2))))
+        .when(session)
+        .getSignedToken();
+
+    String token = uut.getToken(session, urlConfiguration);
+
+    assertThat(token).isEqualTo(TOKEN);
+  }
 }
@@ -0,0 +1,79 @@
+package com.tngtech.keycloakmock.impl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.tngtech.keycloakmock.api.MetricsSnapshot.LatencySummary;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void buckets_are_contiguous() {
+    for (int index = 1; index < 272; index++) {
+      long lowerBound = LatencyHistogram.upperBound(index - 1) + 1;
+      assertThat(LatencyHistogram.bucketIndex(lowerBound)).isEqualTo(index);
+      assertThat(LatencyHistogram.bucketIndex(LatencyHistogram.upperBound(index))).isEqualTo(index);
+    }
+  }
+
+  @Test
+  void percentiles_are_accurate() {
+    LatencyHistogram uut = new LatencyHistogram();
+
+    for (int i = 1; i <= 1000; i++) {
+      uut.record(TimeUnit.MICROSECONDS.toNanos(i * 100L));
+    }
+    LatencySummary summary = uut.summarize();
+
+    assertThat(summary.getCount()).isEqualTo(1000);
+    assertThat(summary.getMeanMillis()).isCloseTo(50.05, within(0.01));
+    assertThat(summary.getP50Millis()).isCloseTo(50, within(50 * 0.125));
+    assertThat(summary.getP99Millis()).isCloseTo(99, within(99 * 0.125));
+    assertThat(summary.getMaxMillis()).isEqualTo(100);
+  }
+
+  @Test
+  void cumulative_counts_respect_bucket_bounds() {
+    LatencyHistogram uut = new LatencyHistogram();
+
+    uut.record(TimeUnit.MICROSECONDS.toNanos(10));
+    uut.record(TimeUnit.MILLISECONDS.toNanos(5));
+    uut.record(TimeUnit.SECONDS.toNanos(2));
+
+    assertThat(uut.getCountBelow(100)).isEqualTo(1);
+    assertThat(uut.getCountBelow(1_000_000)).isEqualTo(2);
+    assertThat(uut.getCountBelow(Long.MAX_VALUE)).isEqualTo(3);
+  }
+
+  @Test
+  void cumulative_counts_are_exact_at_aligned_bounds() {
+    LatencyHistogram uut = new LatencyHistogram();
+    long bound = LatencyHistogram.alignToBucketBoundary(2_500);
+
+    uut.record(TimeUnit.MICROSECONDS.toNanos(bound - 1));
+    uut.record(TimeUnit.MICROSECONDS.toNanos(bound));
+
+    assertThat(bound).isEqualTo(2_560);
+    assertThat(uut.getCountBelow(bound)).isEqualTo(1);
+    assertThat(uut.getCountBelow(bound + 1)).isEqualTo(1);
+  }
+
+  @Test
+  void bounds_are_aligned_to_closest_bucket_boundary() {
+    assertThat(LatencyHistogram.alignToBucketBoundary(5)).isEqualTo(5);
+    assertThat(LatencyHistogram.alignToBucketBoundary(100)).isEqualTo(96);
+    assertThat(LatencyHistogram.alignToBucketBoundary(1_000)).isEqualTo(1_024);
+    assertThat(LatencyHistogram.alignToBucketBoundary(1_024)).isEqualTo(1_024);
+  }
+
+  @Test
+  void empty_histogram_has_zero_summary() {
+    LatencySummary summary = new LatencyHistogram().summarize();
+
+    assertThat(summary.getCount()).isZero();
+    assertThat(summary.getMeanMillis()).isZero();
+    assertThat(summary.getP999Millis()).isZero();
+  }
+}
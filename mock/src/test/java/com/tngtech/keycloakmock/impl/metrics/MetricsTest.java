@@ -0,0 +1,83 @@
+package com.tngtech.keycloakmock.impl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+
+import com.tngtech.keycloakmock.api.MetricsSnapshot;
+import com.tngtech.keycloakmock.impl.accesslog.AccessLog;
+import com.tngtech.keycloakmock.impl.handler.SigningExecutor;
+import com.tngtech.keycloakmock.impl.session.SessionRepository;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsTest {
+
+  @Mock private SessionRepository sessionRepository;
+  @Mock private SigningExecutor signingExecutor;
+  @Mock private AccessLog accessLog;
+
+  private Metrics uut;
+
+  @BeforeEach
+  void setup() {
+    doReturn(new LatencyHistogram()).when(signingExecutor).getSigningTime();
+    doReturn(2).when(sessionRepository).getSessionCount();
+    doReturn(1).when(sessionRepository).getRequestCount();
+    doReturn(4L).when(sessionRepository).getExpiredRequestCount();
+    doReturn(3L).when(sessionRepository).getExpiredSessionCount();
+    doReturn(5L).when(sessionRepository).getEvictedCount();
+    doReturn(6L).when(sessionRepository).getRejectedCount();
+    uut = new Metrics(sessionRepository, signingExecutor, accessLog);
+    uut.recordRequest("token endpoint", 200, TimeUnit.MILLISECONDS.toNanos(2));
+    uut.recordRequest("token endpoint", 200, TimeUnit.MILLISECONDS.toNanos(20));
+    uut.recordRequest("token endpoint", 400, TimeUnit.MILLISECONDS.toNanos(1));
+    uut.recordTokenIssued("password");
+    uut.recordTokenIssued("password");
+  }
+
+  @Test
+  void snapshot_contains_all_metrics() {
+    MetricsSnapshot snapshot = uut.snapshot();
+
+    assertThat(snapshot.getRoutes()).containsOnlyKeys("token endpoint");
+    MetricsSnapshot.RouteMetrics route = snapshot.getRoutes().get("token endpoint");
+    assertThat(route.getRequestCount()).isEqualTo(3);
+    assertThat(route.getStatusCounts()).containsEntry(200, 2L).containsEntry(400, 1L);
+    assertThat(snapshot.getTokensByGrantType()).containsEntry("password", 2L);
+    assertThat(snapshot.getActiveSessions()).isEqualTo(2);
+    assertThat(snapshot.getPendingSessionRequests()).isEqualTo(1);
+    assertThat(snapshot.getExpiredSessionRequests()).isEqualTo(4);
+    assertThat(snapshot.getExpiredSessions()).isEqualTo(3);
+    assertThat(snapshot.getEvictedSessions()).isEqualTo(5);
+    assertThat(snapshot.getRejectedSessionRequests()).isEqualTo(6);
+  }
+
+  @Test
+  void metrics_are_rendered_in_prometheus_format() {
+    String result = uut.toPrometheus();
+
+    assertThat(result)
+        .contains(
+            "# TYPE keycloak_mock_requests_total counter\n",
+            "keycloak_mock_requests_total{route=\"token endpoint\",status=\"200\"} 2\n",
+            "keycloak_mock_requests_total{route=\"token endpoint\",status=\"400\"} 1\n",
+            "keycloak_mock_request_duration_seconds_bucket{route=\"token endpoint\",le=\"0.00256\"}"
+                + " 2\n",
+            "keycloak_mock_request_duration_seconds_bucket{route=\"token endpoint\",le=\"+Inf\"}"
+                + " 3\n",
+            "keycloak_mock_request_duration_seconds_count{route=\"token endpoint\"} 3\n",
+            "keycloak_mock_tokens_issued_total{grant_type=\"password\"} 2\n",
+            "keycloak_mock_signing_duration_seconds_count 0\n",
+            "keycloak_mock_sessions_active 2\n",
+            "keycloak_mock_session_requests_pending 1\n",
+            "keycloak_mock_sessions_removed_total{reason=\"request_expired\"} 4\n",
+            "keycloak_mock_sessions_removed_total{reason=\"session_expired\"} 3\n",
+            "keycloak_mock_sessions_removed_total{reason=\"evicted\"} 5\n",
+            "keycloak_mock_session_requests_rejected_total 6\n");
+  }
+}
@@ -0,0 +1,115 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.impl.session.AccessTokenRepository.Introspection;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+
+class AccessTokenRepositoryTest {
+  private static final Instant EXPIRATION = Instant.ofEpochSecond(3600);
+
+  private final AtomicLong now = new AtomicLong(0);
+
+  @Test
+  void introspection_contains_claims_of_signed_token() {
+    AccessTokenRepository uut = create(aServerConfig().withOpaqueAccessTokens(true).build());
+    JsonObject claims =
+        new JsonObject()
+            .put("sub", "john.doe")
+            .put("aud", new JsonArray().add("client").add("server"))
+            .put("exp", EXPIRATION.getEpochSecond());
+
+    String accessToken = uut.create(sign(claims), EXPIRATION);
+    Introspection result = uut.introspect(accessToken);
+
+    assertThat(uut.isEnabled()).isTrue();
+    assertThat(accessToken).hasSize(22).doesNotContain(".");
+    assertThat(result).isNotNull();
+    assertThat(result.hasAudience("client")).isTrue();
+    assertThat(result.hasAudience("server")).isTrue();
+    assertThat(result.hasAudience("other")).isFalse();
+    assertThat(new JsonObject(result.getResponse())).isEqualTo(claims.copy().put("active", true));
+  }
+
+  @Test
+  void single_audience_is_supported() {
+    AccessTokenRepository uut = create(aServerConfig().build());
+
+    String accessToken = uut.create(sign(new JsonObject().put("aud", "client")), EXPIRATION);
+
+    assertThat(uut.introspect(accessToken)).isNotNull();
+    assertThat(uut.introspect(accessToken).hasAudience("client")).isTrue();
+  }
+
+  @Test
+  void access_token_can_be_introspected_until_it_expires() {
+    AccessTokenRepository uut = create(aServerConfig().build());
+    String accessToken = uut.create(sign(new JsonObject()), EXPIRATION);
+
+    now.set(EXPIRATION.toEpochMilli() - 1);
+    assertThat(uut.introspect(accessToken)).isNotNull();
+
+    now.set(EXPIRATION.toEpochMilli());
+    assertThat(uut.introspect(accessToken)).isNull();
+  }
+
+  @Test
+  void access_token_without_expiration_does_not_expire() {
+    AccessTokenRepository uut = create(aServerConfig().build());
+    String accessToken = uut.create(sign(new JsonObject()), Instant.MAX);
+
+    now.set(Long.MAX_VALUE - 1);
+
+    assertThat(uut.introspect(accessToken)).isNotNull();
+  }
+
+  @Test
+  void unknown_access_token_is_not_found() {
+    AccessTokenRepository uut = create(aServerConfig().build());
+
+    assertThat(uut.introspect("unknown")).isNull();
+  }
+
+  @Test
+  void number_of_access_tokens_is_limited_by_session_capacity() {
+    AccessTokenRepository uut = create(aServerConfig().withSessionCapacity(1).build());
+    String first = uut.create(sign(new JsonObject()), EXPIRATION);
+    String second = uut.create(sign(new JsonObject()), EXPIRATION);
+
+    assertThat(uut.getAccessTokenCount()).isEqualTo(1);
+    assertThat(uut.introspect(first)).isNull();
+    assertThat(uut.introspect(second)).isNotNull();
+  }
+
+  @Test
+  void malformed_signed_token_is_rejected() {
+    AccessTokenRepository uut = create(aServerConfig().build());
+
+    assertThatThrownBy(() -> uut.create("opaque", EXPIRATION))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Nonnull
+  private AccessTokenRepository create(@Nonnull ServerConfig serverConfig) {
+    return new AccessTokenRepository(serverConfig, now::get);
+  }
+
+  @Nonnull
+  private static String sign(@Nonnull JsonObject claims) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8))
+        + "."
+        + encoder.encodeToString(claims.encode().getBytes(StandardCharsets.UTF_8))
+        + ".signature";
+  }
+}
@@ -0,0 +1,123 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.USER_DATA;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.createRequest;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.login;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.roles;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import java.time.Duration;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+
+class RefreshTokenRepositoryTest {
+  private static final Session SESSION =
+      AdHocSession.fromClientIdUsernameAndPassword("client", "localhost", "john.doe", "role");
+
+  private final SessionFixture fixture = new SessionFixture();
+  private SessionRepository sessionRepository;
+
+  @Test
+  void refresh_token_can_only_be_redeemed_once() {
+    RefreshTokenRepository uut = create(aServerConfig().withOpaqueRefreshTokens(true).build());
+
+    String refreshToken = uut.create(SESSION);
+
+    assertThat(uut.isEnabled()).isTrue();
+    assertThat(refreshToken).hasSize(22).doesNotContain(".");
+    assertThat(uut.redeem(refreshToken)).isSameAs(SESSION);
+    assertThat(uut.redeem(refreshToken)).isNull();
+    assertThat(uut.getRefreshTokenCount()).isZero();
+  }
+
+  @Test
+  void refresh_tokens_are_unique() {
+    RefreshTokenRepository uut = create(aServerConfig().build());
+
+    assertThat(uut.create(SESSION)).isNotEqualTo(uut.create(SESSION));
+    assertThat(uut.getRefreshTokenCount()).isEqualTo(2);
+  }
+
+  @Test
+  void refresh_tokens_expire_with_session_ttl() {
+    RefreshTokenRepository uut =
+        create(aServerConfig().withSessionTtl(Duration.ofHours(1)).build());
+    String refreshToken = uut.create(SESSION);
+    String expiredRefreshToken = uut.create(SESSION);
+
+    fixture.now.set(Duration.ofMinutes(59).toMillis());
+    assertThat(uut.redeem(refreshToken)).isSameAs(SESSION);
+
+    fixture.now.set(Duration.ofHours(1).toMillis());
+    assertThat(uut.redeem(expiredRefreshToken)).isNull();
+  }
+
+  @Test
+  void expired_refresh_tokens_are_removed_when_creating_new_ones() {
+    RefreshTokenRepository uut =
+        create(aServerConfig().withSessionTtl(Duration.ofHours(1)).build());
+    uut.create(SESSION);
+
+    fixture.now.set(Duration.ofHours(2).toMillis());
+    uut.create(SESSION);
+
+    assertThat(uut.getRefreshTokenCount()).isEqualTo(1);
+  }
+
+  @Test
+  void earliest_expiring_refresh_token_is_evicted_when_capacity_is_reached() {
+    RefreshTokenRepository uut = create(aServerConfig().withSessionCapacity(2).build());
+    String first = uut.create(SESSION);
+    fixture.now.set(Duration.ofMinutes(1).toMillis());
+    String second = uut.create(SESSION);
+    fixture.now.set(Duration.ofMinutes(2).toMillis());
+    String third = uut.create(SESSION);
+
+    assertThat(uut.getRefreshTokenCount()).isEqualTo(2);
+    assertThat(uut.redeem(first)).isNull();
+    assertThat(uut.redeem(second)).isSameAs(SESSION);
+    assertThat(uut.redeem(third)).isSameAs(SESSION);
+  }
+
+  @Test
+  void refresh_tokens_without_ttl_do_not_expire() {
+    RefreshTokenRepository uut = create(aServerConfig().withSessionTtl(Duration.ZERO).build());
+    String refreshToken = uut.create(SESSION);
+
+    fixture.now.set(Duration.ofDays(365).toMillis());
+    uut.create(SESSION);
+
+    assertThat(uut.getTtlMillis()).isZero();
+    assertThat(uut.redeem(refreshToken)).isSameAs(SESSION);
+  }
+
+  @Test
+  void refresh_token_of_logged_out_session_is_rejected() {
+    RefreshTokenRepository uut = create(aServerConfig().build());
+    String refreshToken = uut.create(login(sessionRepository, "session"));
+    String otherRefreshToken = uut.create(login(sessionRepository, "other session"));
+
+    sessionRepository.removeSession("session");
+
+    assertThat(uut.redeem(refreshToken)).isNull();
+    assertThat(uut.redeem(otherRefreshToken)).isNotNull();
+  }
+
+  @Test
+  void refresh_token_of_session_not_stored_locally_stays_valid() {
+    RefreshTokenRepository uut = create(aServerConfig().build());
+    // e.g. a session restored from a stateless authorization code issued by another instance
+    PersistentSession session = createRequest("session").toSession(USER_DATA, roles());
+    String refreshToken = uut.create(session);
+
+    assertThat(uut.redeem(refreshToken)).isSameAs(session);
+  }
+
+  @Nonnull
+  private RefreshTokenRepository create(@Nonnull ServerConfig serverConfig) {
+    sessionRepository = fixture.createSessionRepository(serverConfig);
+    return new RefreshTokenRepository(serverConfig, sessionRepository, fixture.now::get);
+  }
+}
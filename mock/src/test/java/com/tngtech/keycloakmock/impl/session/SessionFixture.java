@@ -0,0 +1,67 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+
+/** Shared setup of the session tests, using a clock that is controlled by the test. */
+final class SessionFixture {
+  static final UserData USER_DATA = UserData.fromUsernameAndHostname("john.doe", "localhost");
+
+  final AtomicLong now = new AtomicLong(0);
+
+  @Nonnull
+  SessionRepository createSessionRepository(@Nonnull ServerConfig serverConfig) {
+    return new SessionRepository(serverConfig, now::get, false);
+  }
+
+  @Nonnull
+  static PersistentSession login(@Nonnull SessionRepository repository, @Nonnull String id) {
+    return login(repository, id, "client", USER_DATA);
+  }
+
+  @Nonnull
+  static PersistentSession login(
+      @Nonnull SessionRepository repository,
+      @Nonnull String id,
+      @Nonnull String clientId,
+      @Nonnull String username) {
+    return login(repository, id, clientId, UserData.fromUsernameAndHostname(username, "localhost"));
+  }
+
+  @Nonnull
+  private static PersistentSession login(
+      @Nonnull SessionRepository repository,
+      @Nonnull String id,
+      @Nonnull String clientId,
+      @Nonnull UserData userData) {
+    SessionRequest request = createRequest(id, clientId);
+    repository.putRequest(request);
+    PersistentSession session = request.toSession(userData, roles());
+    repository.upgradeRequest(request, session);
+    return session;
+  }
+
+  @Nonnull
+  static SessionRequest createRequest(@Nonnull String sessionId) {
+    return createRequest(sessionId, "client");
+  }
+
+  @Nonnull
+  static SessionRequest createRequest(@Nonnull String sessionId, @Nonnull String clientId) {
+    return new SessionRequest.Builder()
+        .setClientId(clientId)
+        .setSessionId(sessionId)
+        .setRedirectUri("http://localhost/callback")
+        .setResponseType("code")
+        .setNonce("nonce")
+        .build();
+  }
+
+  @Nonnull
+  static List<String> roles() {
+    return Collections.singletonList("user");
+  }
+}
@@ -0,0 +1,161 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.USER_DATA;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.createRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionJournalTest {
+  @TempDir Path directory;
+
+  @Test
+  void records_are_replayed_in_order() throws IOException {
+    Path file = directory.resolve("sessions.journal");
+    SessionJournal uut = open(file, new RecordingListener());
+    SessionRequest request = createRequest("first");
+    uut.appendRequest(request, 1);
+    uut.appendSession(request.toSession(USER_DATA, Arrays.asList("reader", "writer")), 2);
+    uut.appendRequest(createRequest("second"), 3);
+    uut.appendRemoval("second");
+    uut.close();
+
+    RecordingListener listener = new RecordingListener();
+    open(file, listener).close();
+
+    assertThat(listener.records)
+        .containsExactly(
+            "request first 1",
+            "session first john.doe [reader, writer] 2",
+            "request second 3",
+            "removal second");
+    assertThat(listener.sessions.get(0).getNonce()).isEqualTo("nonce");
+    assertThat(listener.sessions.get(0).getState()).isNull();
+    assertThat(listener.sessions.get(0).getUserData().getEmail()).isEqualTo("john.doe@localhost");
+  }
+
+  @Test
+  void partly_written_record_is_dropped() throws IOException {
+    Path file = directory.resolve("sessions.journal");
+    SessionJournal uut = open(file, new RecordingListener());
+    uut.appendRequest(createRequest("first"), 1);
+    uut.appendRequest(createRequest("second"), 2);
+    uut.close();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+
+    RecordingListener listener = new RecordingListener();
+    uut = open(file, listener);
+    uut.appendRequest(createRequest("third"), 3);
+    uut.close();
+    RecordingListener secondListener = new RecordingListener();
+    open(file, secondListener).close();
+
+    assertThat(listener.records).containsExactly("request first 1");
+    assertThat(secondListener.records).containsExactly("request first 1", "request third 3");
+  }
+
+  @Test
+  void compaction_only_keeps_the_given_entries() throws IOException {
+    Path file = directory.resolve("sessions.journal");
+    SessionJournal uut = open(file, new RecordingListener());
+    for (int i = 0; i < 20_000; i++) {
+      uut.appendRequest(createRequest("request" + i), i);
+      uut.appendRemoval("request" + i);
+    }
+    assertThat(uut.shouldCompact(1)).isTrue();
+
+    uut.compact(() -> uut.appendRequest(createRequest("kept"), 5));
+    uut.appendRemoval("removed");
+
+    assertThat(uut.shouldCompact(1)).isFalse();
+    uut.close();
+    RecordingListener listener = new RecordingListener();
+    open(file, listener).close();
+    assertThat(listener.records).containsExactly("request kept 5", "removal removed");
+    assertThat(directory.resolve("sessions.journal.compact")).doesNotExist();
+  }
+
+  @Test
+  void journal_is_still_written_if_compaction_fails() throws IOException {
+    Path file = directory.resolve("sessions.journal");
+    IOException failure = new IOException("test");
+    SessionJournal uut =
+        new SessionJournal(file) {
+          @Override
+          void replaceFile(@Nonnull Path source, @Nonnull Path target) throws IOException {
+            throw failure;
+          }
+        };
+    uut.replay(new RecordingListener());
+    uut.appendRequest(createRequest("first"), 1);
+
+    assertThatThrownBy(() -> uut.compact(() -> uut.appendRequest(createRequest("kept"), 5)))
+        .isSameAs(failure);
+    uut.appendRequest(createRequest("second"), 2);
+    uut.close();
+
+    RecordingListener listener = new RecordingListener();
+    open(file, listener).close();
+    assertThat(listener.records).containsExactly("request first 1", "request second 2");
+    assertThat(directory.resolve("sessions.journal.compact")).doesNotExist();
+  }
+
+  @Test
+  void other_files_are_not_replayed() throws IOException {
+    Path file = directory.resolve("sessions.journal");
+    Files.write(file, "not a journal".getBytes());
+    SessionJournal uut = new SessionJournal(file);
+
+    assertThatThrownBy(() -> uut.replay(new RecordingListener())).isInstanceOf(IOException.class);
+  }
+
+  @Nonnull
+  private static SessionJournal open(@Nonnull Path file, @Nonnull RecordingListener listener)
+      throws IOException {
+    SessionJournal journal = new SessionJournal(file);
+    journal.replay(listener);
+    return journal;
+  }
+
+  private static class RecordingListener implements SessionJournal.Listener {
+    private final List<String> records = new ArrayList<>();
+    private final List<PersistentSession> sessions = new ArrayList<>();
+
+    @Override
+    public void onRequest(@Nonnull SessionRequest request, long createdMillis) {
+      records.add("request " + request.getSessionId() + " " + createdMillis);
+    }
+
+    @Override
+    public void onSession(@Nonnull PersistentSession session, long createdMillis) {
+      records.add(
+          "session "
+              + session.getSessionId()
+              + " "
+              + session.getUserData().getSubject()
+              + " "
+              + session.getRoles()
+              + " "
+              + createdMillis);
+      sessions.add(session);
+    }
+
+    @Override
+    public void onRemoval(@Nonnull String sessionId) {
+      records.add("removal " + sessionId);
+    }
+  }
+}
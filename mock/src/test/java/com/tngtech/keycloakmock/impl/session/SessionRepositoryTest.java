@@ -0,0 +1,270 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.USER_DATA;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.createRequest;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.login;
+import static com.tngtech.keycloakmock.impl.session.SessionFixture.roles;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.api.SessionEvictionPolicy;
+import java.nio.file.Path;
+import java.time.Duration;
+import javax.annotation.Nonnull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionRepositoryTest {
+  private final SessionFixture fixture = new SessionFixture();
+
+  @Test
+  void requests_expire_after_their_ttl() {
+    SessionRepository uut =
+        create(
+            aServerConfig()
+                .withSessionRequestTtl(Duration.ofMinutes(1))
+                .withSessionTtl(Duration.ZERO)
+                .build());
+    uut.putRequest(createRequest("request"));
+
+    fixture.now.set(59_999);
+    uut.expire();
+    assertThat(uut.getRequest("request")).isNotNull();
+
+    fixture.now.set(60_000);
+    uut.expire();
+    assertThat(uut.getRequest("request")).isNull();
+    assertThat(uut.getRequestCount()).isZero();
+    assertThat(uut.getExpiredRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void sessions_expire_after_their_ttl_starting_with_the_login() {
+    SessionRepository uut =
+        create(
+            aServerConfig()
+                .withSessionRequestTtl(Duration.ofMinutes(1))
+                .withSessionTtl(Duration.ofHours(1))
+                .build());
+    login(uut, "session");
+
+    fixture.now.set(Duration.ofMinutes(30).toMillis());
+    uut.expire();
+    assertThat(uut.getSession("session")).isNotNull();
+    assertThat(uut.getExpiredRequestCount()).isZero();
+
+    fixture.now.set(Duration.ofHours(2).toMillis());
+    uut.expire();
+    assertThat(uut.getSession("session")).isNull();
+    assertThat(uut.getSessionCount()).isZero();
+    assertThat(uut.getExpiredSessionCount()).isEqualTo(1);
+  }
+
+  @Test
+  void updating_a_session_restarts_its_ttl() {
+    SessionRepository uut = create(aServerConfig().withSessionTtl(Duration.ofHours(1)).build());
+    PersistentSession oldSession = login(uut, "session");
+
+    fixture.now.set(Duration.ofMinutes(50).toMillis());
+    uut.updateSession(oldSession, createRequest("session").toSession(USER_DATA, roles()));
+    fixture.now.set(Duration.ofMinutes(90).toMillis());
+    uut.expire();
+
+    assertThat(uut.getSession("session")).isNotNull();
+    assertThat(uut.getExpiredSessionCount()).isZero();
+  }
+
+  @Test
+  void updating_a_session_fails_if_it_was_changed_in_the_meantime() {
+    SessionRepository uut = create(aServerConfig().build());
+    PersistentSession oldSession = login(uut, "session");
+    uut.updateSession(oldSession, createRequest("session").toSession(USER_DATA, roles()));
+
+    assertThatThrownBy(
+            () ->
+                uut.updateSession(
+                    oldSession, createRequest("session").toSession(USER_DATA, roles())))
+        .isInstanceOf(InvalidSessionStateException.class);
+  }
+
+  @Test
+  void authorization_code_expires_before_the_session() {
+    SessionRepository uut =
+        create(aServerConfig().withAuthorizationCodeTtl(Duration.ofMinutes(1)).build());
+    login(uut, "session");
+
+    assertThat(uut.getSessionForAuthorizationCode("session")).isNotNull();
+
+    fixture.now.set(60_001);
+    assertThat(uut.getSessionForAuthorizationCode("session")).isNull();
+    assertThat(uut.getSession("session")).isNotNull();
+  }
+
+  @Test
+  void removed_sessions_are_not_counted_as_expired() {
+    SessionRepository uut = create(aServerConfig().withSessionTtl(Duration.ofHours(1)).build());
+    login(uut, "session");
+
+    uut.removeSession("session");
+    fixture.now.set(Duration.ofHours(2).toMillis());
+    uut.expire();
+
+    assertThat(uut.getSessionCount()).isZero();
+    assertThat(uut.getExpiredSessionCount()).isZero();
+  }
+
+  @Test
+  void entry_expiring_first_is_evicted_when_capacity_is_reached() {
+    SessionRepository uut = create(aServerConfig().withSessionCapacity(2).build());
+    uut.putRequest(createRequest("first"));
+    fixture.now.set(10_000);
+    uut.putRequest(createRequest("second"));
+
+    uut.putRequest(createRequest("third"));
+
+    assertThat(uut.getRequest("first")).isNull();
+    assertThat(uut.getRequest("second")).isNotNull();
+    assertThat(uut.getRequest("third")).isNotNull();
+    assertThat(uut.getRequestCount()).isEqualTo(2);
+    assertThat(uut.getEvictedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void new_requests_are_rejected_when_capacity_is_reached() {
+    SessionRepository uut =
+        create(
+            aServerConfig()
+                .withSessionCapacity(1)
+                .withSessionEvictionPolicy(SessionEvictionPolicy.REJECT_NEW)
+                .build());
+    uut.putRequest(createRequest("first"));
+
+    assertThatThrownBy(() -> uut.putRequest(createRequest("second")))
+        .isInstanceOf(SessionCapacityExceededException.class);
+    assertThat(uut.getRequest("first")).isNotNull();
+    assertThat(uut.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void new_requests_are_rejected_if_nothing_can_be_evicted() {
+    SessionRepository uut =
+        create(
+            aServerConfig()
+                .withSessionCapacity(1)
+                .withSessionRequestTtl(Duration.ZERO)
+                .withSessionTtl(Duration.ZERO)
+                .build());
+    uut.putRequest(createRequest("first"));
+
+    assertThatThrownBy(() -> uut.putRequest(createRequest("second")))
+        .isInstanceOf(SessionCapacityExceededException.class);
+    assertThat(uut.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void all_sessions_of_a_user_are_removed() {
+    SessionRepository uut = create(aServerConfig().build());
+    login(uut, "first", "client", "john.doe");
+    login(uut, "second", "other client", "john.doe");
+    login(uut, "third", "client", "jane.doe");
+    uut.putRequest(createRequest("pending", "client"));
+
+    assertThat(uut.removeSessionsOfUser("john.doe")).isEqualTo(2);
+
+    assertThat(uut.getSession("first")).isNull();
+    assertThat(uut.getSession("second")).isNull();
+    assertThat(uut.getSession("third")).isNotNull();
+    assertThat(uut.getRequest("pending")).isNotNull();
+    assertThat(uut.getSessionCount()).isEqualTo(1);
+    assertThat(uut.removeSessionsOfUser("john.doe")).isZero();
+  }
+
+  @Test
+  void all_sessions_and_requests_of_a_client_are_removed() {
+    SessionRepository uut = create(aServerConfig().build());
+    login(uut, "first", "client", "john.doe");
+    login(uut, "second", "other client", "john.doe");
+    uut.putRequest(createRequest("pending", "client"));
+
+    assertThat(uut.removeSessionsOfClient("client")).isEqualTo(2);
+
+    assertThat(uut.getSession("first")).isNull();
+    assertThat(uut.getRequest("pending")).isNull();
+    assertThat(uut.getSession("second")).isNotNull();
+    assertThat(uut.getRequestCount()).isZero();
+    assertThat(uut.getSessionCount()).isEqualTo(1);
+  }
+
+  @Test
+  void sessions_are_counted_per_client() {
+    SessionRepository uut = create(aServerConfig().build());
+    login(uut, "first", "client", "john.doe");
+    login(uut, "second", "client", "jane.doe");
+    login(uut, "third", "other client", "jane.doe");
+    uut.putRequest(createRequest("pending", "client"));
+
+    assertThat(uut.getSessionCount("client")).isEqualTo(2);
+    assertThat(uut.getSessionCount("other client")).isEqualTo(1);
+    assertThat(uut.getSessionCount("unknown client")).isZero();
+
+    uut.removeSession("first");
+
+    assertThat(uut.getSessionCount("client")).isEqualTo(1);
+  }
+
+  @Test
+  void updated_sessions_are_indexed_by_their_new_user() {
+    SessionRepository uut = create(aServerConfig().build());
+    PersistentSession oldSession = login(uut, "session", "client", "john.doe");
+
+    uut.updateSession(
+        oldSession,
+        createRequest("session", "client")
+            .toSession(UserData.fromUsernameAndHostname("jane.doe", "localhost"), roles()));
+
+    assertThat(uut.removeSessionsOfUser("john.doe")).isZero();
+    assertThat(uut.removeSessionsOfUser("jane.doe")).isEqualTo(1);
+  }
+
+  @Test
+  void expired_sessions_are_removed_from_the_indexes() {
+    SessionRepository uut = create(aServerConfig().withSessionTtl(Duration.ofHours(1)).build());
+    login(uut, "session", "client", "john.doe");
+
+    fixture.now.set(Duration.ofHours(2).toMillis());
+    uut.expire();
+
+    assertThat(uut.getSessionCount("client")).isZero();
+    assertThat(uut.removeSessionsOfUser("john.doe")).isZero();
+  }
+
+  @Test
+  void requests_and_sessions_are_restored_from_the_journal(@TempDir Path directory) {
+    ServerConfig serverConfig =
+        aServerConfig().withSessionJournalFile(directory.resolve("sessions.journal")).build();
+    SessionRepository first = create(serverConfig);
+    login(first, "session", "client", "john.doe");
+    login(first, "removed", "client", "jane.doe");
+    first.removeSession("removed");
+    first.putRequest(createRequest("pending"));
+    first.close();
+
+    SessionRepository uut = create(serverConfig);
+
+    assertThat(uut.getSession("session")).isNotNull();
+    assertThat(uut.getSession("removed")).isNull();
+    assertThat(uut.getRequest("pending")).isNotNull();
+    assertThat(uut.getSessionCount()).isEqualTo(1);
+    assertThat(uut.getRequestCount()).isEqualTo(1);
+    assertThat(uut.getSessionCount("client")).isEqualTo(1);
+    assertThat(uut.removeSessionsOfUser("john.doe")).isEqualTo(1);
+    uut.close();
+  }
+
+  @Nonnull
+  private SessionRepository create(@Nonnull ServerConfig serverConfig) {
+    return fixture.createSessionRepository(serverConfig);
+  }
+}
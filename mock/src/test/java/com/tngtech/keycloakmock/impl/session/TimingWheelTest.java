@@ -0,0 +1,74 @@
+package com.tngtech.keycloakmock.impl.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tngtech.keycloakmock.impl.session.TimingWheel.Timeout;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+  private final TimingWheel<String> uut = new TimingWheel<>(1_000, 8, 0);
+  private final List<String> expired = new ArrayList<>();
+
+  @Test
+  void values_expire_once_their_deadline_has_passed() {
+    uut.schedule("first", 1_500);
+    uut.schedule("second", 3_000);
+
+    uut.expire(1_999, expired::add);
+    assertThat(expired).isEmpty();
+
+    uut.expire(2_000, expired::add);
+    assertThat(expired).containsExactly("first");
+
+    uut.expire(3_000, expired::add);
+    assertThat(expired).containsExactly("first", "second");
+  }
+
+  @Test
+  void cancelled_values_do_not_expire() {
+    Timeout<String> timeout = uut.schedule("cancelled", 1_000);
+    uut.schedule("kept", 1_000);
+
+    uut.cancel(timeout);
+    uut.cancel(timeout);
+    uut.expire(1_000, expired::add);
+
+    assertThat(expired).containsExactly("kept");
+  }
+
+  @Test
+  void values_beyond_one_revolution_are_kept_until_their_deadline() {
+    uut.schedule("late", 10_000);
+
+    uut.expire(2_000, expired::add);
+    assertThat(expired).isEmpty();
+
+    uut.expire(10_000, expired::add);
+    assertThat(expired).containsExactly("late");
+  }
+
+  @Test
+  void deadlines_in_the_past_expire_with_the_next_tick() {
+    uut.expire(5_000, expired::add);
+    uut.schedule("past", 1_000);
+
+    uut.expire(6_000, expired::add);
+
+    assertThat(expired).containsExactly("past");
+  }
+
+  @Test
+  void values_are_polled_in_order_of_their_deadline() {
+    uut.schedule("late", 5_000);
+    uut.schedule("early", 2_000);
+    uut.schedule("early as well", 2_000);
+
+    assertThat(uut.pollEarliest()).isEqualTo("early");
+    assertThat(uut.pollEarliest()).isEqualTo("early as well");
+    assertThat(uut.pollEarliest()).isEqualTo("late");
+    assertThat(uut.pollEarliest()).isNull();
+  }
+}
@@ -14,6 +14,7 @@ rootProject.name = "keycloak-mock"
 includeBuild("build-logic")
 
 include("mock")
+include("mock-benchmarks")
 include("mock-junit")
 include("mock-junit5")
 include("standalone")
@@ -4,8 +4,14 @@ import static com.tngtech.keycloakmock.api.ServerConfig.DEFAULT_AUDIENCE;
 import static com.tngtech.keycloakmock.api.ServerConfig.DEFAULT_SCOPE;
 import static com.tngtech.keycloakmock.api.ServerConfig.aServerConfig;
 
+import com.tngtech.keycloakmock.api.AccessLogMode;
 import com.tngtech.keycloakmock.api.KeycloakMock;
 import com.tngtech.keycloakmock.api.LoginRoleMapping;
+import com.tngtech.keycloakmock.api.ServerConfig;
+import com.tngtech.keycloakmock.api.SessionEvictionPolicy;
+import com.tngtech.keycloakmock.api.SigningAlgorithm;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
@@ -17,6 +23,7 @@ import picocli.CommandLine;
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
 
 @Command(
     description = "Starts a stand-alone keycloak mock.",
@@ -91,6 +98,230 @@ public class Main implements Callable<Void> {
               + " options: ${COMPLETION-CANDIDATES}")
   private LoginRoleMapping loginRoleMapping;
 
+  @Option(
+      names = {"-sa", "--signingAlgorithm"},
+      defaultValue = "RS256",
+      description =
+          "Algorithm used to sign generated tokens (default: ${DEFAULT-VALUE}). Valid options:"
+              + " ${COMPLETION-CANDIDATES}")
+  private SigningAlgorithm signingAlgorithm;
+
+  @Option(
+      names = {"-st", "--signingThreads"},
+      description =
+          "Number of threads used for signing tokens (default: number of available processors)."
+              + " Use 0 to sign on the event loop.")
+  private Integer signingThreads;
+
+  @Option(
+      names = {"-sq", "--signingQueueLimit"},
+      defaultValue = "1000",
+      description =
+          "Maximum number of pending signing tasks before requests are rejected with status 503"
+              + " (default: ${DEFAULT-VALUE}). Use 0 for an unlimited queue.")
+  private int signingQueueLimit;
+
+  @Option(
+      names = {"-si", "--serverInstances"},
+      defaultValue = "1",
+      description =
+          "Number of HTTP server instances, each running on its own event loop (default:"
+              + " ${DEFAULT-VALUE}).")
+  private int serverInstances;
+
+  @Option(
+      names = {"-h2", "--http2"},
+      description = "Whether to enable HTTP/2 (via ALPN with HTTPS, h2c otherwise).")
+  private boolean http2;
+
+  @Option(
+      names = {"-h2s", "--http2MaxConcurrentStreams"},
+      defaultValue = "100",
+      description =
+          "Maximum number of concurrent HTTP/2 streams per connection (default:"
+              + " ${DEFAULT-VALUE}).")
+  private long http2MaxConcurrentStreams;
+
+  @Option(
+      names = {"-h2w", "--http2InitialWindowSize"},
+      defaultValue = "65535",
+      description =
+          "Initial HTTP/2 flow-control window size of each stream in bytes (default:"
+              + " ${DEFAULT-VALUE}).")
+  private int http2InitialWindowSize;
+
+  @Option(
+      names = {"-h2cw", "--http2ConnectionWindowSize"},
+      defaultValue = "65535",
+      description =
+          "HTTP/2 flow-control window size of each connection in bytes (default:"
+              + " ${DEFAULT-VALUE}).")
+  private int http2ConnectionWindowSize;
+
+  @Option(
+      names = {"-ab", "--acceptBacklog"},
+      defaultValue = "-1",
+      description =
+          "Maximum number of pending connections (default: ${DEFAULT-VALUE}, i.e. the system"
+              + " default).")
+  private int acceptBacklog;
+
+  @Option(
+      names = {"--tcpNoDelay"},
+      negatable = true,
+      defaultValue = "true",
+      fallbackValue = "true",
+      description = "Whether to disable Nagle's algorithm (default: ${DEFAULT-VALUE}).")
+  private boolean tcpNoDelay;
+
+  @Option(
+      names = {"--tcpFastOpen"},
+      description = "Whether to enable TCP fast open (requires native transport).")
+  private boolean tcpFastOpen;
+
+  @Option(
+      names = {"--reusePort"},
+      description = "Whether to enable SO_REUSEPORT (requires native transport).")
+  private boolean reusePort;
+
+  @Option(
+      names = {"--tcpKeepAlive"},
+      description = "Whether to enable TCP keep-alive.")
+  private boolean tcpKeepAlive;
+
+  @Option(
+      names = {"-it", "--idleTimeout"},
+      defaultValue = "0s",
+      description =
+          "Time after which idle connections are closed (default: ${DEFAULT-VALUE}, i.e. never)."
+              + " Valid values are e.g. '30s', '5m'.")
+  private String idleTimeout;
+
+  @Option(
+      names = {"-nt", "--nativeTransport"},
+      description =
+          "Whether to use a native transport (e.g. epoll) instead of NIO, if available on the"
+              + " classpath.")
+  private boolean nativeTransport;
+
+  @Option(
+      names = {"-al", "--accessLog"},
+      defaultValue = "LOGGER",
+      description =
+          "Where to write the access log (default: ${DEFAULT-VALUE}). Valid options:"
+              + " ${COMPLETION-CANDIDATES}")
+  private AccessLogMode accessLogMode;
+
+  @Option(
+      names = {"-alf", "--accessLogFile"},
+      defaultValue = "access.log",
+      description = "File to write the access log to in mode FILE (default: ${DEFAULT-VALUE}).")
+  private Path accessLogFile;
+
+  @Option(
+      names = {"-als", "--accessLogSampleRate"},
+      defaultValue = "1",
+      description =
+          "Fraction of requests to write to the access log, between 0 and 1 (default:"
+              + " ${DEFAULT-VALUE}).")
+  private double accessLogSampleRate;
+
+  @Option(
+      names = {"-alm", "--accessLogMaxFileSize"},
+      defaultValue = "10485760",
+      description =
+          "Size in bytes at which the access log file is rotated (default: ${DEFAULT-VALUE}). Use"
+              + " 0 to never rotate.")
+  private long accessLogMaxFileSize;
+
+  @Option(
+      names = {"-aln", "--accessLogMaxFiles"},
+      defaultValue = "5",
+      description = "Number of rotated access log files to keep (default: ${DEFAULT-VALUE}).")
+  private int accessLogMaxFiles;
+
+  @Option(
+      names = {"-srt", "--sessionRequestTtl"},
+      defaultValue = "30m",
+      description =
+          "Time after which a login that has not been completed is discarded (default:"
+              + " ${DEFAULT-VALUE}). Use 0s to never discard logins.")
+  private String sessionRequestTtl;
+
+  @Option(
+      names = {"-act", "--authorizationCodeTtl"},
+      defaultValue = "10m",
+      description =
+          "Time during which an authorization code can be exchanged for a token (default:"
+              + " ${DEFAULT-VALUE}). Use 0s to accept codes as long as their session exists.")
+  private String authorizationCodeTtl;
+
+  @Option(
+      names = {"-sst", "--sessionTtl"},
+      defaultValue = "10h",
+      description =
+          "Time after which a session is discarded (default: ${DEFAULT-VALUE}). Use 0s to keep"
+              + " sessions until they are logged out.")
+  private String sessionTtl;
+
+  @Option(
+      names = {"-sca", "--sessionCapacity"},
+      defaultValue = "100000",
+      description =
+          "Maximum number of logins and sessions kept at the same time (default:"
+              + " ${DEFAULT-VALUE}). Use 0 for an unlimited number.")
+  private int sessionCapacity;
+
+  @Option(
+      names = {"-sep", "--sessionEvictionPolicy"},
+      defaultValue = "EVICT_EARLIEST_EXPIRING",
+      description =
+          "What to do with new logins once the session capacity is reached (default:"
+              + " ${DEFAULT-VALUE}). Valid options: ${COMPLETION-CANDIDATES}")
+  private SessionEvictionPolicy sessionEvictionPolicy;
+
+  @Option(
+      names = {"-sjf", "--sessionJournalFile"},
+      description =
+          "File to persist logins and sessions in, so that they are restored after a restart"
+              + " (default: none, i.e. sessions are only kept in memory).")
+  private Path sessionJournalFile;
+
+  @Option(
+      names = {"-acs", "--authorizationCodeSecret"},
+      description =
+          "Secret to encrypt self-contained authorization codes with, which can be redeemed by"
+              + " every mock instance using the same secret (default: none, i.e. codes refer to"
+              + " sessions of this instance).")
+  private String authorizationCodeSecret;
+
+  @Option(
+      names = {"-skf", "--signingKeyFile"},
+      description =
+          "PKCS#12 keystore, JWK set or PEM file containing the key to sign tokens with, matching"
+              + " the signing algorithm (default: none, i.e. the built-in RSA key for RS256 and a"
+              + " generated key otherwise).")
+  private Path signingKeyFile;
+
+  @Option(
+      names = {"-skp", "--signingKeyPassword"},
+      description = "Password of the PKCS#12 signing key file (default: empty password).")
+  private String signingKeyPassword;
+
+  @Option(
+      names = {"-ort", "--opaqueRefreshTokens"},
+      description =
+          "Whether to issue short opaque refresh tokens, which are rotated on every use, instead"
+              + " of returning the access token as refresh token.")
+  private boolean opaqueRefreshTokens;
+
+  @Option(
+      names = {"-oat", "--opaqueAccessTokens"},
+      description =
+          "Whether to issue short opaque access tokens, which can only be validated using token"
+              + " introspection, instead of signed access tokens.")
+  private boolean opaqueAccessTokens;
+
   public static void main(@Nonnull final String[] args) {
     if (System.getProperty("org.slf4j.simpleLogger.logFile") == null) {
       System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
@@ -105,17 +336,7 @@ public class Main implements Callable<Void> {
   public Void call() {
     String usedContextPath = contextConfig.noContextPath ? "" : contextConfig.contextPath;
 
-    new KeycloakMock(
-            aServerConfig()
-                .withPort(port)
-                .withTls(tls)
-                .withContextPath(usedContextPath)
-                .withDefaultAudiences(audiences)
-                .withDefaultScopes(scopes)
-                .withDefaultTokenLifespan(getParsedLifespan())
-                .withLoginRoleMapping(loginRoleMapping)
-                .build())
-        .start();
+    new KeycloakMock(buildServerConfig(usedContextPath)).start();
 
     String url = (tls ? "https" : "http") + "://localhost:" + port;
     LOG.info("Server is running on {}{}", url, usedContextPath);
@@ -124,8 +345,75 @@ public class Main implements Callable<Void> {
     return null;
   }
 
-  private Duration getParsedLifespan() {
+  @Command(
+      name = "exportKey",
+      description =
+          "Writes the signing key including its private key to a file and exits. The file can be"
+              + " used as signing key file of other instances, so that they all issue tokens"
+              + " verifiable with the same JWKS. On POSIX systems, only the owner can read the"
+              + " file.")
+  void exportKey(
+      @Parameters(
+              paramLabel = "FILE",
+              description =
+                  "The file to write. If its name ends with '.pem', the key pair is written in PEM"
+                      + " format, which is only possible if the key ID is the JWK thumbprint,"
+                      + " otherwise as JWK set.")
+          Path file)
+      throws IOException {
+    new KeycloakMock(buildServerConfig("")).exportSigningKey(file);
+    LOG.info("Signing key for {} has been written to {}", signingAlgorithm, file);
+  }
+
+  @Nonnull
+  private ServerConfig buildServerConfig(@Nonnull String usedContextPath) {
+    ServerConfig.Builder builder =
+        aServerConfig()
+            .withPort(port)
+            .withTls(tls)
+            .withContextPath(usedContextPath)
+            .withDefaultAudiences(audiences)
+            .withDefaultScopes(scopes)
+            .withDefaultTokenLifespan(parseDuration(tokenLifespan))
+            .withLoginRoleMapping(loginRoleMapping)
+            .withSigningAlgorithm(signingAlgorithm)
+            .withSigningQueueLimit(signingQueueLimit)
+            .withServerInstances(serverInstances)
+            .withHttp2(http2)
+            .withHttp2MaxConcurrentStreams(http2MaxConcurrentStreams)
+            .withHttp2InitialWindowSize(http2InitialWindowSize)
+            .withHttp2ConnectionWindowSize(http2ConnectionWindowSize)
+            .withAcceptBacklog(acceptBacklog)
+            .withTcpNoDelay(tcpNoDelay)
+            .withTcpFastOpen(tcpFastOpen)
+            .withReusePort(reusePort)
+            .withTcpKeepAlive(tcpKeepAlive)
+            .withIdleTimeout(parseDuration(idleTimeout))
+            .withNativeTransport(nativeTransport)
+            .withAccessLogFile(accessLogFile)
+            .withAccessLogMode(accessLogMode)
+            .withAccessLogSampleRate(accessLogSampleRate)
+            .withAccessLogMaxFileSize(accessLogMaxFileSize)
+            .withAccessLogMaxFiles(accessLogMaxFiles)
+            .withSessionRequestTtl(parseDuration(sessionRequestTtl))
+            .withAuthorizationCodeTtl(parseDuration(authorizationCodeTtl))
+            .withSessionTtl(parseDuration(sessionTtl))
+            .withSessionCapacity(sessionCapacity)
+            .withSessionEvictionPolicy(sessionEvictionPolicy)
+            .withSessionJournalFile(sessionJournalFile)
+            .withAuthorizationCodeSecret(authorizationCodeSecret)
+            .withSigningKeyFile(signingKeyFile)
+            .withSigningKeyPassword(signingKeyPassword)
+            .withOpaqueRefreshTokens(opaqueRefreshTokens)
+            .withOpaqueAccessTokens(opaqueAccessTokens);
+    if (signingThreads != null) {
+      builder.withSigningThreads(signingThreads);
+    }
+    return builder.build();
+  }
+
+  private static Duration parseDuration(@Nonnull String duration) {
     // simple trick: just interpret the given string as the suffix part of a Duration string
-    return Duration.parse("PT" + tokenLifespan.toUpperCase(Locale.ROOT));
+    return Duration.parse("PT" + duration.toUpperCase(Locale.ROOT));
   }
 }